@@ -0,0 +1,122 @@
+package com.chaintope.openassetsj;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.core.TransactionOutPoint;
+import org.bitcoinj.core.TransactionOutput;
+import org.bitcoinj.params.TestNet3Params;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.chaintope.openassetsj.model.ColoredOutput;
+
+/**
+ * Measures a burst of concurrent getColoredOutput requests against a node answering after a fixed latency,
+ * served by the blocking API on a fixed pool of platform threads, and by the asynchronous API on its default executor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AsyncOpenAssetsApiBenchmark {
+
+    @Param({"1000"})
+    public int requests;
+
+    @Param({"1000"})
+    public int latencyMicros;
+
+    // Threads of the pool calling the blocking API
+    @Param({"16"})
+    public int blockingThreads;
+
+    private OpenAssetsApi api;
+    private AsyncOpenAssetsApi asyncApi;
+    private ExecutorService blockingPool;
+    private List<Sha256Hash> txHashes;
+
+    @Setup
+    public void setup() {
+
+        NetworkParameters params = TestNet3Params.get();
+        Map<Sha256Hash, Transaction> node = new HashMap<>();
+        txHashes = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+
+            Transaction transaction = new Transaction(params);
+            transaction.addInput(new TransactionInput(params, transaction, new byte[] { 0, 0 },
+                    new TransactionOutPoint(params, i, Sha256Hash.ZERO_HASH)));
+            transaction.addOutput(new TransactionOutput(params, transaction, Coin.valueOf(600), new byte[] { 0x51 }));
+            node.put(transaction.getHash(), transaction);
+            txHashes.add(transaction.getHash());
+        }
+        api = new OpenAssetsApi("testnet", "user", "password", 18332, "localhost", null, txHash -> {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(latencyMicros));
+            return node.get(txHash);
+        });
+        asyncApi = api.async();
+        blockingPool = Executors.newFixedThreadPool(blockingThreads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        blockingPool.shutdownNow();
+    }
+
+    @Benchmark
+    public int blocking() throws InterruptedException, ExecutionException {
+
+        api.getColoringEngine().invalidateAll();
+        List<Future<ColoredOutput>> futures = new ArrayList<>(requests);
+        for (Sha256Hash txHash : txHashes) {
+            futures.add(blockingPool.submit(() -> api.getColoredOutput(txHash, 0)));
+        }
+        int colored = 0;
+        for (Future<ColoredOutput> future : futures) {
+            colored += (future.get() != null) ? 1 : 0;
+        }
+        return colored;
+    }
+
+    @Benchmark
+    public int async() {
+
+        api.getColoringEngine().invalidateAll();
+        List<CompletableFuture<ColoredOutput>> futures = new ArrayList<>(requests);
+        for (Sha256Hash txHash : txHashes) {
+            futures.add(asyncApi.getColoredOutput(txHash, 0));
+        }
+        int colored = 0;
+        for (CompletableFuture<ColoredOutput> future : futures) {
+            colored += (future.join() != null) ? 1 : 0;
+        }
+        return colored;
+    }
+}
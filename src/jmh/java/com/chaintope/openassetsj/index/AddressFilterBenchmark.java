@@ -0,0 +1,83 @@
+package com.chaintope.openassetsj.index;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures matching output owners against a million watched addresses, almost none of which are paid, with
+ * the filter as a pre-check against the exact set alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class AddressFilterBenchmark {
+
+    private static final int LOOKUP_COUNT = 4096;
+
+    @Param({"1000000"})
+    public int addressCount;
+
+    private Set<ByteBuffer> watched;
+    private AddressFilter filter;
+    private byte[][] owners;
+
+    @Setup
+    public void setup() {
+
+        Random random = new Random(42);
+        watched = new HashSet<>();
+        filter = new AddressFilter(addressCount);
+        for (int i = 0; i < addressCount; i++) {
+
+            byte[] hash160 = new byte[20];
+            random.nextBytes(hash160);
+            watched.add(ByteBuffer.wrap(hash160));
+            filter.put(hash160, 0);
+        }
+        owners = new byte[LOOKUP_COUNT][20];
+        for (byte[] owner : owners) {
+            random.nextBytes(owner);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUP_COUNT)
+    public int exactSet() {
+
+        int matches = 0;
+        for (byte[] owner : owners) {
+            matches += watched.contains(ByteBuffer.wrap(owner)) ? 1 : 0;
+        }
+        return matches;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUP_COUNT)
+    public int filterThenExactSet() {
+
+        int matches = 0;
+        for (byte[] owner : owners) {
+            matches += (filter.mightContain(owner, 0) && watched.contains(ByteBuffer.wrap(owner))) ? 1 : 0;
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,138 @@
+package com.chaintope.openassetsj.index;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.bitcoinj.core.Block;
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.core.TransactionOutPoint;
+import org.bitcoinj.core.TransactionOutput;
+import org.bitcoinj.params.TestNet3Params;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.chaintope.openassetsj.model.OutPoint;
+import com.chaintope.openassetsj.protocol.MarkerOutput;
+
+/**
+ * Measures coloring a large synthetic block against the index, serially and on pools of several sizes.
+ * One transaction in ten spends an output of the transaction before it, the rest only spend indexed outputs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockColoringBenchmark {
+
+    private static final byte[] ISSUER = { 0x51 };
+    private static final byte[] OWNER = { 0x52 };
+
+    @Param({"4000"})
+    public int transactionCount;
+
+    // 0 colors on the calling thread
+    @Param({"0", "1", "2", "4", "8"})
+    public int parallelism;
+
+    private Path directory;
+    private ColoredUtxoIndex index;
+    private ForkJoinPool pool;
+    private BlockIngestor ingestor;
+    private Block block;
+
+    @Setup
+    public void setup() throws IOException {
+
+        NetworkParameters params = TestNet3Params.get();
+        directory = Files.createTempDirectory("block-coloring");
+        index = ColoredUtxoIndex.open(directory.resolve("index"), transactionCount * 4);
+        pool = parallelism == 0 ? null : new ForkJoinPool(parallelism);
+        ingestor = new BlockIngestor(params, index, directory.resolve("journal"), 1, pool);
+
+        Transaction funding = transaction(params, new TransactionOutPoint(params, 0xFFFFFFFFL, Sha256Hash.ZERO_HASH));
+        for (int i = 0; i < transactionCount; i++) {
+            funding.addOutput(new TransactionOutput(params, funding, Coin.COIN, ISSUER));
+        }
+        ingestor.connectBlock(block(params, Sha256Hash.ZERO_HASH, Collections.singletonList(funding)));
+
+        List<Transaction> transactions = new ArrayList<>(transactionCount);
+        for (int i = 0; i < transactionCount; i++) {
+
+            Transaction transaction;
+            if (i % 10 == 9) {
+                transaction = transaction(params, new TransactionOutPoint(params, 1, transactions.get(i - 1).getHash()));
+            }
+            else {
+                transaction = transaction(params, new TransactionOutPoint(params, i, funding.getHash()));
+            }
+            transaction.addOutput(new TransactionOutput(params, transaction, Coin.ZERO, marker(i + 1)));
+            transaction.addOutput(new TransactionOutput(params, transaction, Coin.valueOf(600), OWNER));
+            transactions.add(transaction);
+        }
+        block = block(params, ingestor.getTipHash(), transactions);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+
+        if (pool != null) {
+            pool.shutdown();
+        }
+        index.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Collections.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Map<OutPoint, UtxoEntry> colorBlock() {
+
+        Map<OutPoint, UtxoEntry> created = new LinkedHashMap<>();
+        ingestor.colorBlock(block, created, new LinkedHashMap<>());
+        return created;
+    }
+
+    private static Transaction transaction(NetworkParameters params, TransactionOutPoint outPoint) {
+
+        Transaction transaction = new Transaction(params);
+        transaction.addInput(new TransactionInput(params, transaction, new byte[] { 0, 0 }, outPoint));
+        return transaction;
+    }
+
+    private static Block block(NetworkParameters params, Sha256Hash prevHash, List<Transaction> transactions) {
+
+        return new Block(params, 1, prevHash, Sha256Hash.ZERO_HASH, 1500000000L, 0x207fffffL, 0, transactions);
+    }
+
+    private static byte[] marker(long quantity) {
+
+        ArrayList<Long> quantities = new ArrayList<>();
+        quantities.add(quantity);
+        return new MarkerOutput(quantities, "").buildScript().getProgram();
+    }
+}
@@ -0,0 +1,132 @@
+package com.chaintope.openassetsj.index;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bitcoinj.core.Sha256Hash;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.chaintope.openassetsj.index.CoinSelector.Strategy;
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.OutPoint;
+
+/**
+ * Measures coin selection in a synthetic wallet of a million outputs, one in ten uncolored and the rest spread
+ * over ten assets, against a scan of the wallet for the smallest covering output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class CoinSelectorBenchmark {
+
+    private static final int ASSET_COUNT = 10;
+
+    @Param({"1000000"})
+    public int outputCount;
+
+    private AssetId[] assetIds;
+    private OutPoint[] outPoints;
+    private UtxoEntry[] entries;
+    private CoinSelector selector;
+    private long[] amounts;
+    private int next;
+
+    @Setup
+    public void setup() {
+
+        Random random = new Random(42);
+        byte[] owner = UtxoEntry.ownerHash(new byte[] { 1 });
+        assetIds = new AssetId[ASSET_COUNT];
+        for (int i = 0; i < ASSET_COUNT; i++) {
+
+            byte[] hash160 = new byte[20];
+            random.nextBytes(hash160);
+            assetIds[i] = AssetId.of(23, hash160);
+        }
+
+        outPoints = new OutPoint[outputCount];
+        entries = new UtxoEntry[outputCount];
+        selector = new CoinSelector();
+        byte[] hash = new byte[32];
+        for (int i = 0; i < outputCount; i++) {
+
+            random.nextBytes(hash);
+            outPoints[i] = new OutPoint(Sha256Hash.wrap(hash.clone()), i & 3);
+            entries[i] = (i % 10 == 0)
+                    ? new UtxoEntry(null, 0, 1000 + random.nextInt(1000000), owner)
+                    : new UtxoEntry(assetIds[i % ASSET_COUNT], 1 + random.nextInt(100000), 600, owner);
+            selector.add(outPoints[i], entries[i]);
+        }
+
+        // Mostly covered by one output, sometimes by a few
+        amounts = new long[1024];
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = 1 + random.nextInt(150000);
+        }
+    }
+
+    @Benchmark
+    public CoinSelection largestFirst() {
+        return select(Strategy.LARGEST_FIRST);
+    }
+
+    @Benchmark
+    public CoinSelection exactMatch() {
+        return select(Strategy.EXACT_MATCH);
+    }
+
+    @Benchmark
+    public CoinSelection minimizeInputs() {
+        return select(Strategy.MINIMIZE_INPUTS);
+    }
+
+    @Benchmark
+    public boolean spendAndReceive() {
+
+        int i = next++ % outputCount;
+        boolean removed = selector.remove(outPoints[i]);
+        selector.add(outPoints[i], entries[i]);
+        return removed;
+    }
+
+    /**
+     * Baseline: smallest single output covering the amount, found by scanning every output of the wallet
+     */
+    @Benchmark
+    public OutPoint scanSmallestCovering() {
+
+        int n = next++;
+        AssetId assetId = assetIds[n % ASSET_COUNT];
+        long amount = amounts[n & 1023];
+        OutPoint best = null;
+        long bestQuantity = Long.MAX_VALUE;
+        for (int i = 0; i < outputCount; i++) {
+
+            UtxoEntry entry = entries[i];
+            if (assetId.equals(entry.getAssetId()) && entry.getAssetQuantity() >= amount && entry.getAssetQuantity() < bestQuantity) {
+                best = outPoints[i];
+                bestQuantity = entry.getAssetQuantity();
+            }
+        }
+        return best;
+    }
+
+    private CoinSelection select(Strategy strategy) {
+
+        int n = next++;
+        return selector.select(assetIds[n % ASSET_COUNT], amounts[n & 1023], strategy);
+    }
+}
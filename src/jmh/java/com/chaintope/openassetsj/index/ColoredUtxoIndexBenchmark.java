@@ -0,0 +1,88 @@
+package com.chaintope.openassetsj.index;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.bitcoinj.core.Sha256Hash;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.OutPoint;
+
+/**
+ * Measures lookups and spend/create updates on a populated colored UTXO index
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColoredUtxoIndexBenchmark {
+
+    @Param({"1000000"})
+    public int entryCount;
+
+    private Path directory;
+    private ColoredUtxoIndex index;
+    private OutPoint[] outPoints;
+    private UtxoEntry entry;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+
+        directory = Files.createTempDirectory("utxo-index");
+        index = ColoredUtxoIndex.open(directory, entryCount);
+        entry = new UtxoEntry(AssetId.fromString("oMb2yzA542yQgwn8XtmGefTzBv5NJ2nDjh"), 100, 600, UtxoEntry.ownerHash(new byte[] { 1 }));
+
+        Random random = new Random(1);
+        outPoints = new OutPoint[entryCount];
+        byte[] hash = new byte[32];
+        for (int i = 0; i < entryCount; i++) {
+
+            random.nextBytes(hash);
+            outPoints[i] = new OutPoint(Sha256Hash.wrap(hash.clone()), i & 3);
+            index.put(outPoints[i], entry);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+
+        index.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> file.toFile().delete());
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public UtxoEntry get() {
+        return index.get(outPoints[next++ % entryCount]);
+    }
+
+    @Benchmark
+    public UtxoEntry spendAndCreate() throws IOException {
+
+        OutPoint outPoint = outPoints[next++ % entryCount];
+        UtxoEntry spent = index.remove(outPoint);
+        index.put(outPoint, spent);
+        return spent;
+    }
+}
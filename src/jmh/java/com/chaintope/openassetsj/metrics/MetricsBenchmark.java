@@ -0,0 +1,61 @@
+package com.chaintope.openassetsj.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServerFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.chaintope.openassetsj.protocol.MarkerOutput;
+import com.chaintope.openassetsj.protocol.MarkerOutputParser;
+
+/**
+ * Measures the cost of the metrics on marker output validation, with metrics disabled and reported to a
+ * JmxMetricsRegistry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    @Param({"false", "true"})
+    public boolean enabled;
+
+    private byte[] script;
+    private MarkerOutputParser parser = new MarkerOutputParser();
+
+    @Setup
+    public void setup() {
+
+        script = new MarkerOutput(new ArrayList<>(Arrays.asList(100L, 50L, 25L)), "u=https://cpr.sm/5YgSU1Pg-q").buildScript().getProgram();
+        if (enabled) {
+            Metrics.enable(new JmxMetricsRegistry(MBeanServerFactory.newMBeanServer(), "benchmark"));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        Metrics.disable();
+    }
+
+    @Benchmark
+    public boolean validateScript() {
+        return parser.validateScript(script, 0, script.length);
+    }
+}
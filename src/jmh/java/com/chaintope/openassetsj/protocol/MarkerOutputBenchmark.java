@@ -0,0 +1,89 @@
+package com.chaintope.openassetsj.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the hex string API of MarkerOutput against the binary codec it wraps
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarkerOutputBenchmark {
+
+    @Param({"1", "16", "200", "1000"})
+    public int quantityCount;
+
+    @Param({"0", "40", "200"})
+    public int metadataLength;
+
+    private MarkerOutput markerOutput;
+    private String payload;
+    private byte[] script;
+    private ByteBuffer scriptBuffer;
+
+    @Setup
+    public void setup() {
+
+        ArrayList<Long> assetQuantities = new ArrayList<>();
+        for (int i = 0; i < quantityCount; i++) {
+            assetQuantities.add(1000L + i * 7919L);
+        }
+        StringBuilder metadata = new StringBuilder();
+        for (int i = 0; i < metadataLength; i++) {
+            metadata.append((char) ('a' + (i % 26)));
+        }
+        markerOutput = new MarkerOutput(assetQuantities, metadata.toString());
+        payload = markerOutput.toPayload();
+        script = markerOutput.buildScript().getProgram();
+        scriptBuffer = ByteBuffer.allocate(markerOutput.scriptLength());
+    }
+
+    @Benchmark
+    public String toPayload() {
+        return markerOutput.toPayload();
+    }
+
+    @Benchmark
+    public Object buildScript() {
+        return markerOutput.buildScript();
+    }
+
+    @Benchmark
+    public MarkerOutput deserializePayload() {
+        return new MarkerOutput().deserializePayload(payload);
+    }
+
+    @Benchmark
+    public String parseScript() {
+        return new MarkerOutput().parseScript(script);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeTo() {
+        scriptBuffer.clear();
+        markerOutput.encodeTo(scriptBuffer);
+        return scriptBuffer;
+    }
+
+    @Benchmark
+    public MarkerOutput decode() {
+        return MarkerOutput.decode(script, 0, script.length);
+    }
+}
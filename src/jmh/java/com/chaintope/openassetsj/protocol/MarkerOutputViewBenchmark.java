@@ -0,0 +1,54 @@
+package com.chaintope.openassetsj.protocol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading one asset quantity of a marker output with 16 quantities and metadata, through a reused
+ * MarkerOutputView against materializing the marker output with MarkerOutputParser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarkerOutputViewBenchmark {
+
+    private byte[] script;
+    private MarkerOutputParser parser = new MarkerOutputParser();
+    private MarkerOutputView view = new MarkerOutputView();
+
+    @Setup
+    public void setup() {
+
+        ArrayList<Long> assetQuantities = new ArrayList<>(Collections.nCopies(16, 1000000L));
+        script = new MarkerOutput(assetQuantities, "u=https://cpr.sm/5YgSU1Pg-q").buildScript().getProgram();
+    }
+
+    @Benchmark
+    public long view() {
+
+        view.resetScript(script, 0, script.length);
+        return view.quantity(7);
+    }
+
+    @Benchmark
+    public long parse() {
+
+        parser.parseScript(script, 0, script.length);
+        return parser.getMarkerOutput().getAssetQuantities().get(7);
+    }
+}
@@ -0,0 +1,62 @@
+package com.chaintope.openassetsj.protocol;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bitcoinj.core.Address;
+import org.bitcoinj.params.TestNet3Params;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures conversions between bitcoin and Open Assets addresses
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OaAddressBenchmark {
+
+    private OaAddress oaAddress;
+    private OaAddress cachedOaAddress;
+    private Address address;
+    private String openAssetsAddress;
+
+    @Setup
+    public void setup() {
+
+        oaAddress = new OaAddress(TestNet3Params.get());
+        cachedOaAddress = new OaAddress(TestNet3Params.get(), OaAddressCache.withMaximumSize(TestNet3Params.get(), 1000));
+        address = Address.fromBase58(TestNet3Params.get(), "mo949sdMme4nk1QeNva37yTfiXLS1LYh9N");
+        openAssetsAddress = "bWy6wQ3ShF7xUcFa1RYgDmqNF48Wc23wCPq";
+    }
+
+    @Benchmark
+    public String addressToOaAddress() {
+        return oaAddress.addressToOaAddress(address);
+    }
+
+    @Benchmark
+    public Address oaAddressToAddress() {
+        return oaAddress.oaAddressToAddress(openAssetsAddress);
+    }
+
+    @Benchmark
+    public String cachedAddressToOaAddress() {
+        return cachedOaAddress.addressToOaAddress(address);
+    }
+
+    @Benchmark
+    public Address cachedOaAddressToAddress() {
+        return cachedOaAddress.oaAddressToAddress(openAssetsAddress);
+    }
+}
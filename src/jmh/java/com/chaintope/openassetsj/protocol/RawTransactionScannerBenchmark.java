@@ -0,0 +1,107 @@
+package com.chaintope.openassetsj.protocol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.core.TransactionOutPoint;
+import org.bitcoinj.core.TransactionOutput;
+import org.bitcoinj.params.TestNet3Params;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures finding the Open Assets transactions among serialized transactions, one in ten of which has a
+ * marker output, by scanning the bytes against deserializing them and parsing every output script.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RawTransactionScannerBenchmark {
+
+    private static final int TRANSACTION_COUNT = 1000;
+
+    private NetworkParameters params = TestNet3Params.get();
+    private byte[][] transactions;
+    private RawTransactionScanner scanner = new RawTransactionScanner();
+    private MarkerOutputParser parser = new MarkerOutputParser();
+
+    @Setup
+    public void setup() {
+
+        Random random = new Random(42);
+        byte[] marker = new MarkerOutput(new ArrayList<>(Arrays.asList(100L, 50L)), "").buildScript().getProgram();
+        transactions = new byte[TRANSACTION_COUNT][];
+        for (int i = 0; i < TRANSACTION_COUNT; i++) {
+
+            Transaction transaction = new Transaction(params);
+            for (int j = 0; j < 2; j++) {
+
+                byte[] hash = new byte[32];
+                random.nextBytes(hash);
+                // Signed P2PKH inputs carry about 107 bytes of script
+                transaction.addInput(new TransactionInput(params, transaction, new byte[107],
+                        new TransactionOutPoint(params, j, Sha256Hash.wrap(hash))));
+            }
+            if (i % 10 == 0) {
+                transaction.addOutput(new TransactionOutput(params, transaction, Coin.ZERO, marker));
+            }
+            for (int j = 0; j < 2; j++) {
+
+                byte[] script = new byte[25];
+                random.nextBytes(script);
+                transaction.addOutput(new TransactionOutput(params, transaction, Coin.valueOf(600), script));
+            }
+            transactions[i] = transaction.bitcoinSerialize();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRANSACTION_COUNT)
+    public int scan() {
+
+        int found = 0;
+        for (byte[] transaction : transactions) {
+            found += scanner.scan(transaction) ? 1 : 0;
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRANSACTION_COUNT)
+    public int deserializeAndParse() {
+
+        int found = 0;
+        for (byte[] bytes : transactions) {
+
+            Transaction transaction = new Transaction(params, bytes);
+            for (TransactionOutput output : transaction.getOutputs()) {
+
+                byte[] script = output.getScriptBytes();
+                if (parser.parseScript(script, 0, script.length)) {
+                    found++;
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,68 @@
+package com.chaintope.openassetsj.utils;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.bitcoinj.params.TestNet3Params;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures batch asset ID derivation against the pool parallelism
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AssetIDBatchBenchmark {
+
+    private static final int BATCH_SIZE = 100000;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private AssetID assetID;
+    private ForkJoinPool pool;
+    private byte[][] scripts;
+    private String[] assetIds;
+
+    @Setup
+    public void setup() {
+
+        assetID = new AssetID(TestNet3Params.get());
+        pool = new ForkJoinPool(parallelism);
+        Random random = new Random(42);
+        scripts = new byte[BATCH_SIZE][];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            scripts[i] = new byte[25];
+            random.nextBytes(scripts[i]);
+        }
+        assetIds = new String[BATCH_SIZE];
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public String[] scriptsToAssetIDs() {
+        assetID.scriptsToAssetIDs(scripts, assetIds, pool);
+        return assetIds;
+    }
+}
@@ -0,0 +1,49 @@
+package com.chaintope.openassetsj.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bitcoinj.params.TestNet3Params;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures asset ID derivation from scripts and public key hashes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssetIDBenchmark {
+
+    private AssetID assetID;
+    private byte[] script;
+    private byte[] pubKeyHash;
+
+    @Setup
+    public void setup() {
+
+        assetID = new AssetID(TestNet3Params.get());
+        script = Utils.packHexStringToBytes("a914f9d499817e88ef7b10a88673296c6d6df2f4292d87");
+        pubKeyHash = Utils.packHexStringToBytes("081522820f2ccef873e47ee62b31cb9e9267e725");
+    }
+
+    @Benchmark
+    public String scriptToAssetID() {
+        return assetID.scriptToAssetID(script);
+    }
+
+    @Benchmark
+    public String pubKeyHashToAssetID() {
+        return assetID.pubKeyHashToAssetID(pubKeyHash);
+    }
+}
@@ -0,0 +1,96 @@
+package com.chaintope.openassetsj.utils;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.params.TestNet3Params;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures asset ID derivation with and without AssetIDCache on a Zipf distributed
+ * stream of issuer scripts, where a few issuers account for most of the lookups
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class AssetIDCacheBenchmark {
+
+    // Distinct issuer scripts
+    @Param({"100000"})
+    public int scriptCount;
+
+    // Entries the cache may hold
+    @Param({"10000"})
+    public long cacheSize;
+
+    // Zipf exponent of the script distribution
+    @Param({"1.1"})
+    public double skew;
+
+    private static final int STREAM_LENGTH = 1 << 20;
+
+    private byte[][] stream;
+    private AssetID uncached;
+    private AssetID cached;
+
+    @Setup
+    public void setup() {
+
+        NetworkParameters params = TestNet3Params.get();
+        Random random = new Random(42);
+
+        byte[][] scripts = new byte[scriptCount][];
+        for (int i = 0; i < scriptCount; i++) {
+            scripts[i] = new byte[25];
+            random.nextBytes(scripts[i]);
+        }
+
+        // Inverse transform sampling over the Zipf cumulative distribution
+        double[] cumulative = new double[scriptCount];
+        double sum = 0;
+        for (int i = 0; i < scriptCount; i++) {
+            sum += 1.0 / Math.pow(i + 1, skew);
+            cumulative[i] = sum;
+        }
+        stream = new byte[STREAM_LENGTH][];
+        for (int i = 0; i < STREAM_LENGTH; i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            stream[i] = scripts[Math.min(index < 0 ? -index - 1 : index, scriptCount - 1)];
+        }
+
+        uncached = new AssetID(params);
+        cached = new AssetID(params, AssetIDCache.withMaximumSize(params, cacheSize));
+    }
+
+    @State(Scope.Thread)
+    public static class Position {
+        int next = new Random().nextInt(STREAM_LENGTH);
+    }
+
+    @Benchmark
+    public String uncached(Position position) {
+        return uncached.scriptToAssetID(stream[position.next++ & (STREAM_LENGTH - 1)]);
+    }
+
+    @Benchmark
+    public String cached(Position position) {
+        return cached.scriptToAssetID(stream[position.next++ & (STREAM_LENGTH - 1)]);
+    }
+}
@@ -0,0 +1,65 @@
+package com.chaintope.openassetsj.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures LEB128 encoding and decoding, binary and hex string forms
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Leb128Benchmark {
+
+    // 1, 5 and 9 byte encodings
+    @Param({"100", "5000000000", "4611686018427387904"})
+    public long value;
+
+    private byte[] buffer;
+    private int[] cursor;
+    private String encoded;
+
+    @Setup
+    public void setup() {
+
+        buffer = new byte[Leb128.MAX_LENGTH];
+        cursor = new int[1];
+        encoded = Leb128.encodeLeb128(value);
+    }
+
+    @Benchmark
+    public int writeLeb128() {
+        return Leb128.writeLeb128(value, buffer, 0);
+    }
+
+    @Benchmark
+    public long readLeb128() {
+        Leb128.writeLeb128(value, buffer, 0);
+        cursor[0] = 0;
+        return Leb128.readLeb128(buffer, cursor);
+    }
+
+    @Benchmark
+    public String encodeLeb128() {
+        return Leb128.encodeLeb128(value);
+    }
+
+    @Benchmark
+    public long decodeLeb128() {
+        return Leb128.decodeLeb128(encoded);
+    }
+}
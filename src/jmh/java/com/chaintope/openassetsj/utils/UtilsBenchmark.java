@@ -0,0 +1,51 @@
+package com.chaintope.openassetsj.utils;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the hashing helpers in Utils
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilsBenchmark {
+
+    // A P2PKH script and a typical transaction
+    @Param({"25", "250"})
+    public int length;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+
+        data = new byte[length];
+        new Random(42).nextBytes(data);
+    }
+
+    @Benchmark
+    public byte[] hash160() {
+        return Utils.hash160(data);
+    }
+
+    @Benchmark
+    public byte[] checksum() {
+        return Utils.checksum(data);
+    }
+}
@@ -0,0 +1,137 @@
+package com.chaintope.openassetsj;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.ColoredOutput;
+import com.chaintope.openassetsj.model.TransferLeg;
+import com.chaintope.openassetsj.utils.AsyncTasks;
+
+/**
+ * CompletableFuture counterparts of the OpenAssetsApi operations, obtained with OpenAssetsApi.async().
+ *
+ * Each operation runs its blocking counterpart on the executor, by default AsyncTasks.defaultExecutor(),
+ * which uses virtual threads where the runtime has them. Cancelling a returned future, or letting its timeout
+ * expire, interrupts the operation, and an operation interrupted while waiting on the node cancels its request.
+ * Views are immutable, withExecutor() and withTimeout() return new ones.
+ */
+public class AsyncOpenAssetsApi {
+
+	private final OpenAssetsApi api;
+	private final Executor executor;
+	private final Duration timeout;
+
+	AsyncOpenAssetsApi(OpenAssetsApi api, Executor executor, Duration timeout) {
+
+		this.api = api;
+		this.executor = executor;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Gets a view running the operations on another executor
+	 * @param executor Executor, e.g. a bounded pool to cap the node calls of this view
+	 * @return View with the same timeout
+	 */
+	public AsyncOpenAssetsApi withExecutor(Executor executor) {
+		return new AsyncOpenAssetsApi(api, executor, timeout);
+	}
+
+	/**
+	 * Gets a view whose operations fail with a TimeoutException once the timeout expires
+	 * @param timeout Timeout of each call, null for none
+	 * @return View with the same executor
+	 */
+	public AsyncOpenAssetsApi withTimeout(Duration timeout) {
+		return new AsyncOpenAssetsApi(api, executor, timeout);
+	}
+
+	/**
+	 * @see OpenAssetsApi#issueAssets()
+	 */
+	public CompletableFuture<Transaction> issueAssets() {
+		return run(api::issueAssets);
+	}
+
+	/**
+	 * @see OpenAssetsApi#transferAssets()
+	 */
+	public CompletableFuture<Transaction> transferAssets() {
+		return run(api::transferAssets);
+	}
+
+	/**
+	 * @see OpenAssetsApi#transferAssets(String, List)
+	 */
+	public CompletableFuture<List<Transaction>> transferAssets(String fromOaAddress, List<TransferLeg> legs) {
+		return run(() -> api.transferAssets(fromOaAddress, legs));
+	}
+
+	/**
+	 * @see OpenAssetsApi#burnAssets()
+	 */
+	public CompletableFuture<Transaction> burnAssets() {
+		return run(api::burnAssets);
+	}
+
+	/**
+	 * @see OpenAssetsApi#getAssetsBalance(String)
+	 */
+	public CompletableFuture<Integer> getAssetsBalance(String oaAddress) {
+		return run(() -> api.getAssetsBalance(oaAddress));
+	}
+
+	/**
+	 * @see OpenAssetsApi#getAssetsBalance(String, AssetId)
+	 */
+	public CompletableFuture<Long> getAssetsBalance(String oaAddress, AssetId assetId) {
+		return run(() -> api.getAssetsBalance(oaAddress, assetId));
+	}
+
+	/**
+	 * @see OpenAssetsApi#getAssetsBalanceByAsset(String)
+	 */
+	public CompletableFuture<Map<AssetId, Long>> getAssetsBalanceByAsset(String oaAddress) {
+		return run(() -> api.getAssetsBalanceByAsset(oaAddress));
+	}
+
+	/**
+	 * @see OpenAssetsApi#getAssetsBalance()
+	 */
+	public CompletableFuture<Integer> getAssetsBalance() {
+		return run(api::getAssetsBalance);
+	}
+
+	/**
+	 * @see OpenAssetsApi#getAssetsBalanceByAsset()
+	 */
+	public CompletableFuture<Map<AssetId, Long>> getAssetsBalanceByAsset() {
+		return run(api::getAssetsBalanceByAsset);
+	}
+
+	/**
+	 * @see OpenAssetsApi#getColoredOutputs(Transaction)
+	 */
+	public CompletableFuture<List<ColoredOutput>> getColoredOutputs(Transaction transaction) {
+		return run(() -> api.getColoredOutputs(transaction));
+	}
+
+	/**
+	 * @see OpenAssetsApi#getColoredOutput(Sha256Hash, long)
+	 */
+	public CompletableFuture<ColoredOutput> getColoredOutput(Sha256Hash txHash, long index) {
+		return run(() -> api.getColoredOutput(txHash, index));
+	}
+
+	private <T> CompletableFuture<T> run(Callable<T> operation) {
+		return AsyncTasks.supplyAsync(operation, executor, timeout);
+	}
+}
@@ -1,28 +1,181 @@
 package com.chaintope.openassetsj;
 
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bitcoinj.core.Address;
 import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
 import org.bitcoinj.core.Transaction;
 import org.bitcoinj.kits.WalletAppKit;
 import org.bitcoinj.params.MainNetParams;
 import org.bitcoinj.params.TestNet3Params;
-
+import org.bitcoinj.script.ScriptBuilder;
+
+import com.chaintope.openassetsj.index.ColoredUtxoIndex;
+import com.chaintope.openassetsj.index.OwnerCoinSelectors;
+import com.chaintope.openassetsj.index.UtxoEntry;
+import com.chaintope.openassetsj.metrics.LatencyTimer;
+import com.chaintope.openassetsj.metrics.Metrics;
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.ColoredOutput;
 import com.chaintope.openassetsj.model.Rpc;
+import com.chaintope.openassetsj.model.TransferLeg;
+import com.chaintope.openassetsj.protocol.ColoringEngine;
+import com.chaintope.openassetsj.protocol.OaAddress;
+import com.chaintope.openassetsj.protocol.OaAddressCache;
+import com.chaintope.openassetsj.protocol.TransactionProvider;
+import com.chaintope.openassetsj.utils.AsyncTasks;
 
 /**
  * Instantiates an OpenAssetsJ API, and provides commonly used OpenAssets operations
  * 
+ * The latency of every operation is reported as api.&lt;operation&gt; while metrics are enabled, see Metrics.
  */
 public class OpenAssetsApi {
 
+	private static final LatencyTimer COLORED_OUTPUTS_TIMER = Metrics.timer("api.get_colored_outputs");
+	private static final LatencyTimer COLORED_OUTPUT_TIMER = Metrics.timer("api.get_colored_output");
+	private static final LatencyTimer ISSUE_TIMER = Metrics.timer("api.issue_assets");
+	private static final LatencyTimer TRANSFER_TIMER = Metrics.timer("api.transfer_assets");
+	private static final LatencyTimer BATCH_TRANSFER_TIMER = Metrics.timer("api.transfer_assets_batch");
+	private static final LatencyTimer BURN_TIMER = Metrics.timer("api.burn_assets");
+	private static final LatencyTimer BALANCE_TIMER = Metrics.timer("api.get_assets_balance");
+	private static final LatencyTimer BALANCE_BY_ASSET_TIMER = Metrics.timer("api.get_assets_balance_by_asset");
+
 	private NetworkParameters params;
 	private WalletAppKit walletAppKit;
 	private Rpc rpc;
+	private ColoringEngine coloringEngine;
+	private ColoredUtxoIndex utxoIndex;
+	// Selectors of the senders of batch transfers, following utxoIndex
+	private OwnerCoinSelectors coinSelectors;
+	private WalletAssetTracker walletTracker;
+	private OaAddress oaAddressConverter;
 
+	/**
+	 * Creates an API that looks up the inputs of colored transactions in the wallet of the kit
+	 */
 	public OpenAssetsApi(String network, String rpcUsername, String rpcPassword, int rpcPort, String rpcHost, WalletAppKit walletAppKit) {
 
+		this(network, rpcUsername, rpcPassword, rpcPort, rpcHost, walletAppKit,
+				txHash -> walletAppKit.wallet().getTransaction(txHash));
+	}
+
+	/**
+	 * Creates an API that looks up the inputs of colored transactions through the given provider
+	 */
+	public OpenAssetsApi(String network, String rpcUsername, String rpcPassword, int rpcPort, String rpcHost, WalletAppKit walletAppKit,
+			TransactionProvider transactionProvider) {
+
 		this.walletAppKit = walletAppKit;
 		rpc = new Rpc(rpcUsername, rpcPassword, rpcPort, rpcHost);
 		setNetworkParameters(network);
+		// Unknown network names leave params unset, see setNetworkParameters()
+		if (params != null) {
+
+			coloringEngine = new ColoringEngine(params, transactionProvider);
+			oaAddressConverter = new OaAddress(params, OaAddressCache.shared(params));
+		}
+	}
+
+	/**
+	 * Gets the engine assigning assets to transaction outputs
+	 */
+	public ColoringEngine getColoringEngine() {
+		return coloringEngine;
+	}
+
+	/**
+	 * Gets the index balances are read from
+	 * @return Index, null if none was set
+	 */
+	public ColoredUtxoIndex getUtxoIndex() {
+		return utxoIndex;
+	}
+
+	/**
+	 * Sets the index balances are read from and transfers select their inputs from
+	 * @param utxoIndex Colored UTXO index of the same network
+	 */
+	public synchronized void setUtxoIndex(ColoredUtxoIndex utxoIndex) {
+
+		if (coinSelectors != null) {
+			coinSelectors.close();
+		}
+		this.utxoIndex = utxoIndex;
+		coinSelectors = (utxoIndex != null) ? new OwnerCoinSelectors(utxoIndex) : null;
+	}
+
+	/**
+	 * Starts keeping the asset balances of the wallet of the kit up to date from its events. From then on
+	 * getAssetsBalance() and getAssetsBalanceByAsset() read them in constant time instead of querying the
+	 * UTXO index for every address of the wallet.
+	 * @return Tracker of the wallet, the same on every call
+	 * @throws IllegalStateException if the API has no running wallet kit
+	 */
+	public synchronized WalletAssetTracker startWalletTracking() {
+
+		if (walletTracker == null) {
+
+			if (walletAppKit == null || coloringEngine == null) {
+				throw new IllegalStateException("Wallet tracking needs a wallet kit on a known network");
+			}
+			WalletAssetTracker tracker = new WalletAssetTracker(coloringEngine);
+			tracker.attach(walletAppKit.wallet());
+			walletTracker = tracker;
+		}
+		return walletTracker;
+	}
+
+	/**
+	 * Gets the tracker of the wallet balances
+	 * @return Tracker, null if startWalletTracking() was not called
+	 */
+	public synchronized WalletAssetTracker getWalletTracker() {
+		return walletTracker;
+	}
+
+	/**
+	 * Gets the CompletableFuture counterparts of the operations, run on AsyncTasks.defaultExecutor() without timeout
+	 * @return Asynchronous view of this API
+	 */
+	public AsyncOpenAssetsApi async() {
+		return new AsyncOpenAssetsApi(this, AsyncTasks.defaultExecutor(), null);
+	}
+
+	/**
+	 * Gets the asset ID and quantity of every output of a transaction
+	 * @param transaction Transaction to color
+	 * @return Colored outputs in the order of the transaction outputs
+	 */
+	public List<ColoredOutput> getColoredOutputs(Transaction transaction) {
+
+		long start = COLORED_OUTPUTS_TIMER.start();
+		try {
+			return coloringEngine.colorTransaction(transaction);
+		} finally {
+			COLORED_OUTPUTS_TIMER.stop(start);
+		}
+	}
+
+	/**
+	 * Gets the asset ID and quantity of a transaction output
+	 * @param txHash Hash of the transaction holding the output
+	 * @param index Index of the output
+	 * @return Colored output
+	 */
+	public ColoredOutput getColoredOutput(Sha256Hash txHash, long index) {
+
+		long start = COLORED_OUTPUT_TIMER.start();
+		try {
+			return coloringEngine.getOutput(txHash, index);
+		} finally {
+			COLORED_OUTPUT_TIMER.stop(start);
+		}
 	}
 
 	/**
@@ -48,8 +201,12 @@ public class OpenAssetsApi {
 	 * @return Issuance transaction
 	 */
 	public Transaction issueAssets() {
+
+		long start = ISSUE_TIMER.start();
 		// TODO: Create asset issuance transaction
-		return new Transaction(this.params);
+		Transaction transaction = new Transaction(this.params);
+		ISSUE_TIMER.stop(start);
+		return transaction;
 	}
 
 	/**
@@ -57,8 +214,41 @@ public class OpenAssetsApi {
 	 * @return Asset transfer transaction
 	 */
 	public Transaction transferAssets() {
+
+		long start = TRANSFER_TIMER.start();
 		// TODO: Create asset transfer transaction
-		return new Transaction(this.params);
+		Transaction transaction = new Transaction(this.params);
+		TRANSFER_TIMER.stop(start);
+		return transaction;
+	}
+
+	/**
+	 * Creates the transactions of a batch of asset transfers, packing as many transfers into each transaction as
+	 * its marker output can hold, see TransferBuilder. The spendable outputs of the sender are read from the
+	 * UTXO index with a single pass the first time the sender transfers, then kept up to date as the index changes.
+	 * The outputs the returned transactions spend are not offered to later batches, even before they leave the
+	 * index, until the UTXO index is set again.
+	 * @param fromOaAddress OA address holding the assets and the bitcoins paying the fees, receiving the change
+	 * @param legs Transfers, in any order
+	 * @return Unsigned transactions spending distinct outputs
+	 * @throws IllegalStateException if no UTXO index is set or the sender cannot cover the batch
+	 */
+	public List<Transaction> transferAssets(String fromOaAddress, List<TransferLeg> legs) {
+
+		OwnerCoinSelectors selectors;
+		synchronized (this) {
+			selectors = coinSelectors;
+		}
+		if (selectors == null) {
+			throw new IllegalStateException("Transfers need a UTXO index to select outputs from");
+		}
+		long start = BATCH_TRANSFER_TIMER.start();
+		try {
+			Address from = oaAddressConverter.oaAddressToAddress(fromOaAddress);
+			return new TransferBuilder(params, selectors.get(ownerHash(from)), from).build(legs);
+		} finally {
+			BATCH_TRANSFER_TIMER.stop(start);
+		}
 	}
 
 	/**
@@ -66,8 +256,12 @@ public class OpenAssetsApi {
 	 * @return Asset transfer transaction
 	 */
 	public Transaction burnAssets() {
+
+		long start = BURN_TIMER.start();
 		// TODO: Create asset transfer transaction
-		return new Transaction(this.params);
+		Transaction transaction = new Transaction(this.params);
+		BURN_TIMER.stop(start);
+		return transaction;
 	}
 
 	/**
@@ -76,22 +270,127 @@ public class OpenAssetsApi {
 	 */
 	public int getAssetsBalance(String oaAddress) {
 		
-		if (oaAddress == null) {
-			// TODO: Calculate asset balance for all addresses
+		long start = BALANCE_TIMER.start();
+		try {
+			// Quantities of all assets summed and capped to the int result
+			return capToInt((oaAddress == null) ? walletBalances() : balancesOf(oaAddress));
+		} finally {
+			BALANCE_TIMER.stop(start);
+		}
+	}
+
+	/**
+	 * Gets the quantity of one asset held by an OA address
+	 * @param oaAddress OA address
+	 * @param assetId Asset ID
+	 * @return Asset quantity, 0 if no UTXO index is set
+	 */
+	public long getAssetsBalance(String oaAddress, AssetId assetId) {
+
+		long start = BALANCE_TIMER.start();
+		try {
+			if (utxoIndex == null) {
+				return 0;
+			}
+			return utxoIndex.getBalance(ownerHash(oaAddressConverter.oaAddressToAddress(oaAddress)), assetId);
+		} finally {
+			BALANCE_TIMER.stop(start);
 		}
-		else {
-			// TODO: Calculate asset balance for particular address
+	}
+
+	/**
+	 * Gets the quantity of every asset held by an OA address
+	 * @param oaAddress OA address
+	 * @return Quantity per asset ID, empty if no UTXO index is set
+	 */
+	public Map<AssetId, Long> getAssetsBalanceByAsset(String oaAddress) {
+
+		long start = BALANCE_BY_ASSET_TIMER.start();
+		try {
+			return balancesOf(oaAddress);
+		} finally {
+			BALANCE_BY_ASSET_TIMER.stop(start);
 		}
-		return 0;
 	}
 
 	/**
-	 * Gets total assets balance
+	 * Gets total assets balance, read as getAssetsBalanceByAsset() does
 	 * @return Assets balance quantity
 	 */
 	public int getAssetsBalance() {
-		// TODO: Calculate assets balance for all the address in a wallet
-		return getAssetsBalance(null);
+
+		long start = BALANCE_TIMER.start();
+		try {
+			return capToInt(walletBalances());
+		} finally {
+			BALANCE_TIMER.stop(start);
+		}
+	}
+
+	/**
+	 * Gets the quantity of every asset held by the receive and watched addresses of the wallet. Once
+	 * startWalletTracking() was called this reads the totals kept by the tracker in constant time, otherwise it
+	 * falls back to one UTXO index lookup per address, linear in the number of addresses of the wallet.
+	 * @return Quantity per asset ID, empty if neither the tracker nor the UTXO index is set
+	 */
+	public Map<AssetId, Long> getAssetsBalanceByAsset() {
+
+		long start = BALANCE_BY_ASSET_TIMER.start();
+		try {
+			return walletBalances();
+		} finally {
+			BALANCE_BY_ASSET_TIMER.stop(start);
+		}
+	}
+
+	/**
+	 * Sums the balances of the receive and watched addresses of the wallet, from the tracker if started,
+	 * otherwise address by address from the index
+	 */
+	private Map<AssetId, Long> walletBalances() {
+
+		WalletAssetTracker tracker = getWalletTracker();
+		if (tracker != null) {
+			return tracker.getBalances();
+		}
+		Map<AssetId, Long> balances = new HashMap<>();
+		if (utxoIndex == null || walletAppKit == null) {
+			return balances;
+		}
+		Set<Address> addresses = new LinkedHashSet<>(walletAppKit.wallet().getIssuedReceiveAddresses());
+		addresses.addAll(walletAppKit.wallet().getWatchedAddresses());
+		for (Address address : addresses) {
+			utxoIndex.getBalances(ownerHash(address)).forEach((assetId, quantity) -> balances.merge(assetId, quantity, Long::sum));
+		}
+		return balances;
+	}
+
+	/**
+	 * Reads the balances of an OA address from the index
+	 */
+	private Map<AssetId, Long> balancesOf(String oaAddress) {
+
+		if (utxoIndex == null) {
+			return new HashMap<>();
+		}
+		return utxoIndex.getBalances(ownerHash(oaAddressConverter.oaAddressToAddress(oaAddress)));
+	}
+
+	/**
+	 * Gets the owner hash the UTXO index records for outputs paying to the address
+	 */
+	private static byte[] ownerHash(Address address) {
+
+		return UtxoEntry.ownerHash(ScriptBuilder.createOutputScript(address).getProgram());
+	}
+
+	private static int capToInt(Map<AssetId, Long> balances) {
+
+		long total = 0;
+		for (long quantity : balances.values()) {
+			total += quantity;
+		}
+		return (int) Math.min(total, Integer.MAX_VALUE);
 	}
 	
 }
@@ -0,0 +1,309 @@
+package com.chaintope.openassetsj;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.core.TransactionOutPoint;
+import org.bitcoinj.core.TransactionOutput;
+import org.bitcoinj.core.VarInt;
+import org.bitcoinj.script.Script;
+import org.bitcoinj.script.ScriptBuilder;
+
+import com.chaintope.openassetsj.index.CoinSelection;
+import com.chaintope.openassetsj.index.CoinSelector;
+import com.chaintope.openassetsj.index.CoinSelector.Strategy;
+import com.chaintope.openassetsj.index.UtxoEntry;
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.OutPoint;
+import com.chaintope.openassetsj.model.TransferLeg;
+import com.chaintope.openassetsj.protocol.MarkerOutput;
+import com.chaintope.openassetsj.utils.Leb128;
+
+/**
+ * Builds the transactions of a batch of asset transfers, packing as many transfers into each transaction as
+ * its marker output can list quantities for.
+ *
+ * Each transaction starts with the marker output, followed by the outputs of one asset after the other: the
+ * transfers of the asset, then its change. Its inputs spend the outputs of the assets in the same order,
+ * then uncolored outputs paying the asset output values and the fee, so that the asset units of the inputs
+ * flow into the outputs of the same asset. Bitcoin change comes last and carries no asset.
+ * A transaction is closed when the marker output script would exceed maxMarkerScriptLength, the standard
+ * OP_RETURN size by default, with room kept for the change quantity of every asset it transfers.
+ *
+ * Inputs are taken from the CoinSelector and removed from it, so the transactions of a batch spend distinct
+ * outputs and can be signed and sent in any order. Fees are estimated for P2PKH inputs.
+ */
+public class TransferBuilder {
+
+	public static final long DEFAULT_ASSET_OUTPUT_VALUE = 600;
+
+	// Signed P2PKH input: out point 36, script length 1, signature and public key up to 107, sequence 4
+	private static final int SIGNED_INPUT_SIZE = 148;
+	// P2PKH output: value 8, script length 1, script 25
+	private static final int CHANGE_OUTPUT_SIZE = 34;
+	// Version 4, lock time 4, and the input and output counts for up to 252 of each
+	private static final int TRANSACTION_OVERHEAD = 10;
+
+	private final NetworkParameters params;
+	private final CoinSelector selector;
+	private final Script changeScript;
+
+	private long assetOutputValue = DEFAULT_ASSET_OUTPUT_VALUE;
+	private Coin feePerKb = Transaction.DEFAULT_TX_FEE;
+	private int maxMarkerScriptLength = MarkerOutput.STANDARD_SCRIPT_LENGTH;
+	private Strategy strategy = Strategy.MINIMIZE_INPUTS;
+	private String metadata = "";
+
+	/**
+	 * @param params Network of the transactions
+	 * @param selector Spendable outputs of the sender, colored ones and uncolored ones for the fees
+	 * @param changeAddress Address receiving the asset and bitcoin change
+	 */
+	public TransferBuilder(NetworkParameters params, CoinSelector selector, Address changeAddress) {
+
+		this.params = params;
+		this.selector = selector;
+		this.changeScript = ScriptBuilder.createOutputScript(changeAddress);
+	}
+
+	/**
+	 * Sets the bitcoin value of the outputs carrying assets
+	 * @param assetOutputValue Value in satoshis, above the dust limit
+	 */
+	public void setAssetOutputValue(long assetOutputValue) {
+		this.assetOutputValue = assetOutputValue;
+	}
+
+	/**
+	 * Sets the fee rate
+	 * @param feePerKb Fee per 1000 bytes
+	 */
+	public void setFeePerKb(Coin feePerKb) {
+		this.feePerKb = feePerKb;
+	}
+
+	/**
+	 * Sets the size above which marker outputs are not relayed
+	 * @param maxMarkerScriptLength Largest marker output script, in bytes
+	 */
+	public void setMaxMarkerScriptLength(int maxMarkerScriptLength) {
+		this.maxMarkerScriptLength = maxMarkerScriptLength;
+	}
+
+	/**
+	 * Sets how the inputs of each asset, and for the fees, are picked
+	 * @param strategy Coin selection strategy
+	 */
+	public void setStrategy(Strategy strategy) {
+		this.strategy = strategy;
+	}
+
+	/**
+	 * Sets the metadata written into every marker output
+	 * @param metadata Metadata, empty for none
+	 */
+	public void setMetadata(String metadata) {
+		this.metadata = metadata;
+	}
+
+	/**
+	 * Builds the transactions of a batch
+	 * @param legs Transfers, in any order. Transfers of the same asset are kept together.
+	 * @return Unsigned transactions, as few as the marker output size allows
+	 * @throws IllegalStateException if the spendable outputs do not cover the batch, in which case the selector
+	 * is left as it was
+	 */
+	public List<Transaction> build(List<TransferLeg> legs) {
+
+		Map<AssetId, List<TransferLeg>> legsByAsset = new LinkedHashMap<>();
+		for (TransferLeg leg : legs) {
+			legsByAsset.computeIfAbsent(leg.getAssetId(), assetId -> new ArrayList<>()).add(leg);
+		}
+		int metadataLength = metadata.getBytes(StandardCharsets.UTF_8).length;
+
+		List<Transaction> transactions = new ArrayList<>();
+		List<CoinSelection> spent = new ArrayList<>();
+		try {
+			Map<AssetId, List<TransferLeg>> batch = new LinkedHashMap<>();
+			int quantityCount = 0;
+			int quantitiesLength = 0;
+			for (Map.Entry<AssetId, List<TransferLeg>> group : legsByAsset.entrySet()) {
+
+				AssetId assetId = group.getKey();
+				for (TransferLeg leg : group.getValue()) {
+
+					int count = quantityCount + 1;
+					int length = quantitiesLength + Leb128.encodedLength(leg.getQuantity());
+					if (!batch.containsKey(assetId)) {
+
+						// The change of an asset is less than what is spendable of it
+						count++;
+						length += Leb128.encodedLength(selector.getSpendable(assetId));
+					}
+					if (!batch.isEmpty() && !fits(count, length, metadataLength)) {
+
+						transactions.add(buildTransaction(batch, spent));
+						batch.clear();
+						count = 2;
+						length = Leb128.encodedLength(leg.getQuantity()) + Leb128.encodedLength(selector.getSpendable(assetId));
+					}
+					if (!fits(count, length, metadataLength)) {
+						throw new IllegalArgumentException("Marker output of " + maxMarkerScriptLength + " bytes cannot hold " + leg);
+					}
+					batch.computeIfAbsent(assetId, key -> new ArrayList<>()).add(leg);
+					quantityCount = count;
+					quantitiesLength = length;
+				}
+			}
+			if (!batch.isEmpty()) {
+				transactions.add(buildTransaction(batch, spent));
+			}
+		} catch (RuntimeException e) {
+
+			for (CoinSelection selection : spent) {
+				for (int i = 0; i < selection.getOutPoints().size(); i++) {
+					selector.add(selection.getOutPoints().get(i), selection.getEntries().get(i));
+				}
+			}
+			throw e;
+		}
+		return transactions;
+	}
+
+	private boolean fits(int quantityCount, int quantitiesLength, int metadataLength) {
+
+		int payloadLength = MarkerOutput.payloadOverhead(quantityCount, metadataLength) + quantitiesLength;
+		return MarkerOutput.scriptLengthOf(payloadLength) <= maxMarkerScriptLength;
+	}
+
+	/**
+	 * Builds the transaction of the transfers of a batch, removing the outputs it spends from the selector
+	 */
+	private Transaction buildTransaction(Map<AssetId, List<TransferLeg>> batch, List<CoinSelection> spent) {
+
+		Transaction transaction = new Transaction(params);
+		ArrayList<Long> quantities = new ArrayList<>();
+		List<CoinSelection> selections = new ArrayList<>(batch.size());
+		for (Map.Entry<AssetId, List<TransferLeg>> group : batch.entrySet()) {
+
+			long needed = 0;
+			for (TransferLeg leg : group.getValue()) {
+
+				needed = Math.addExact(needed, leg.getQuantity());
+				quantities.add(leg.getQuantity());
+			}
+			CoinSelection selection = take(group.getKey(), needed);
+			spent.add(selection);
+			selections.add(selection);
+			if (selection.getChange() > 0) {
+				quantities.add(selection.getChange());
+			}
+		}
+
+		transaction.addOutput(Coin.ZERO, new MarkerOutput(quantities, metadata).buildScript());
+		Coin assetOutput = Coin.valueOf(assetOutputValue);
+		int selectionIndex = 0;
+		for (List<TransferLeg> group : batch.values()) {
+
+			for (TransferLeg leg : group) {
+				transaction.addOutput(assetOutput, ScriptBuilder.createOutputScript(leg.getRecipient()));
+			}
+			if (selections.get(selectionIndex++).getChange() > 0) {
+				transaction.addOutput(assetOutput, changeScript);
+			}
+		}
+		long inputValue = 0;
+		for (CoinSelection selection : selections) {
+			inputValue += addInputs(transaction, selection);
+		}
+
+		// Uncolored inputs pay the asset outputs and the fee, the fee depending on how many inputs that takes
+		long outputValue = assetOutputValue * (transaction.getOutputs().size() - 1);
+		int outputsSize = 0;
+		for (TransactionOutput output : transaction.getOutputs()) {
+
+			int scriptLength = output.getScriptBytes().length;
+			outputsSize += 8 + VarInt.sizeOf(scriptLength) + scriptLength;
+		}
+		int inputCount = transaction.getInputs().size();
+		int feeInputCount = 0;
+		CoinSelection fees = null;
+		long fee;
+		while (true) {
+
+			fee = fee(TRANSACTION_OVERHEAD + (inputCount + feeInputCount) * SIGNED_INPUT_SIZE + outputsSize + CHANGE_OUTPUT_SIZE);
+			long needed = outputValue + fee - inputValue;
+			if (needed <= 0) {
+				break;
+			}
+			fees = select(null, needed, false);
+			if (fees.getOutPoints().size() <= feeInputCount) {
+				break;
+			}
+			feeInputCount = fees.getOutPoints().size();
+		}
+		if (fees != null) {
+
+			selector.removeAll(fees);
+			spent.add(fees);
+			inputValue += addInputs(transaction, fees);
+		}
+		long change = inputValue - outputValue - fee;
+		if (change >= Transaction.MIN_NONDUST_OUTPUT.value) {
+			transaction.addOutput(Coin.valueOf(change), changeScript);
+		}
+		return transaction;
+	}
+
+	/**
+	 * Selects outputs of an asset and removes them from the selector
+	 */
+	private CoinSelection take(AssetId assetId, long amount) {
+
+		CoinSelection selection = select(assetId, amount, true);
+		selector.removeAll(selection);
+		return selection;
+	}
+
+	private CoinSelection select(AssetId assetId, long amount, boolean colored) {
+
+		CoinSelection selection = selector.select(assetId, amount, strategy);
+		if (selection == null) {
+			throw new IllegalStateException(colored
+					? "Spendable outputs hold less than " + amount + " units of " + assetId
+					: "Uncolored spendable outputs hold less than " + amount + " satoshis");
+		}
+		return selection;
+	}
+
+	/**
+	 * Adds unsigned inputs spending the selected outputs
+	 * @return Bitcoin value of the selected outputs
+	 */
+	private long addInputs(Transaction transaction, CoinSelection selection) {
+
+		long value = 0;
+		for (int i = 0; i < selection.getOutPoints().size(); i++) {
+
+			OutPoint outPoint = selection.getOutPoints().get(i);
+			transaction.addInput(new TransactionInput(params, transaction, new byte[0],
+					new TransactionOutPoint(params, outPoint.getIndex(), outPoint.getHash())));
+			UtxoEntry entry = selection.getEntries().get(i);
+			value += entry.getValue();
+		}
+		return value;
+	}
+
+	private long fee(int size) {
+
+		return (feePerKb.value * size + 999) / 1000;
+	}
+}
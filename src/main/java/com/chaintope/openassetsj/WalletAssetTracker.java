@@ -0,0 +1,325 @@
+package com.chaintope.openassetsj;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionConfidence.ConfidenceType;
+import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.core.listeners.TransactionConfidenceEventListener;
+import org.bitcoinj.wallet.Wallet;
+import org.bitcoinj.wallet.listeners.WalletCoinsReceivedEventListener;
+import org.bitcoinj.wallet.listeners.WalletCoinsSentEventListener;
+import org.bitcoinj.wallet.listeners.WalletReorganizeEventListener;
+
+import com.chaintope.openassetsj.metrics.LatencyTimer;
+import com.chaintope.openassetsj.metrics.Metrics;
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.ColoredOutput;
+import com.chaintope.openassetsj.model.OutPoint;
+import com.chaintope.openassetsj.protocol.ColoringEngine;
+
+/**
+ * Asset balances of a wallet, kept up to date from its events so that reading them does not rescan the wallet.
+ *
+ * Every wallet transaction is colored once, when it is received or sent, and applied as a delta: its colored
+ * outputs paying to the wallet are credited unless an applied transaction spends them, and the owned colored
+ * outputs its inputs spend are debited. Applying and reverting do not depend on the order transactions come
+ * in, so a transaction that turns dead, or is found dead after a reorganization, is reverted on its own.
+ * Conflicting transactions stay applied until one of them is reported dead, an output spent by several of them
+ * being debited once, when the first one is applied, and credited back when the last one is reverted.
+ * Transactions whose ancestry the coloring engine cannot fetch are left out, and retried whenever another
+ * transaction is applied and after reorganizations.
+ *
+ * Events are handled one at a time, balance reads take no lock.
+ */
+public class WalletAssetTracker implements WalletCoinsReceivedEventListener, WalletCoinsSentEventListener,
+		WalletReorganizeEventListener, TransactionConfidenceEventListener {
+
+	private static final LatencyTimer APPLY_TIMER = Metrics.timer("wallet_coloring.apply");
+
+	private final ColoringEngine coloringEngine;
+	private final ConcurrentMap<AssetId, Long> balances = new ConcurrentHashMap<>();
+
+	// Colored outputs paying to the wallet, created by applied transactions, spent or not
+	private final Map<OutPoint, ColoredOutput> ownedOutputs = new HashMap<>();
+	// Spending transactions of every out point spent by an applied transaction, several for conflicting ones
+	private final Map<OutPoint, Set<Sha256Hash>> spenders = new HashMap<>();
+	private final Map<Sha256Hash, AppliedTransaction> applied = new HashMap<>();
+	private final Set<Sha256Hash> unresolved = new HashSet<>();
+
+	private Wallet wallet;
+
+	/**
+	 * Creates a tracker coloring transactions with the engine
+	 * @param coloringEngine Engine whose provider knows the wallet transactions and their ancestry
+	 */
+	public WalletAssetTracker(ColoringEngine coloringEngine) {
+		this.coloringEngine = coloringEngine;
+	}
+
+	/**
+	 * Listens to the events of a wallet and applies the transactions it already holds
+	 * @param wallet Wallet to track
+	 * @throws IllegalStateException if the tracker is already attached
+	 */
+	public void attach(Wallet wallet) {
+
+		synchronized (this) {
+
+			if (this.wallet != null) {
+				throw new IllegalStateException("Tracker is already attached to a wallet");
+			}
+			this.wallet = wallet;
+		}
+		wallet.addCoinsReceivedEventListener(this);
+		wallet.addCoinsSentEventListener(this);
+		wallet.addReorganizeEventListener(this);
+		wallet.addTransactionConfidenceEventListener(this);
+		reconcile();
+	}
+
+	/**
+	 * Stops listening to the wallet, keeping the balances as they are
+	 */
+	public void detach() {
+
+		Wallet detached;
+		synchronized (this) {
+
+			detached = wallet;
+			wallet = null;
+		}
+		if (detached != null) {
+
+			detached.removeCoinsReceivedEventListener(this);
+			detached.removeCoinsSentEventListener(this);
+			detached.removeReorganizeEventListener(this);
+			detached.removeTransactionConfidenceEventListener(this);
+		}
+	}
+
+	/**
+	 * Gets the quantity of an asset held by the wallet
+	 * @param assetId Asset ID
+	 * @return Asset quantity, 0 if the wallet holds none
+	 */
+	public long getBalance(AssetId assetId) {
+
+		Long balance = balances.get(assetId);
+		return (balance != null) ? balance : 0;
+	}
+
+	/**
+	 * Gets the quantity of every asset held by the wallet
+	 * @return Snapshot of the non-zero quantities per asset ID
+	 */
+	public Map<AssetId, Long> getBalances() {
+		return new HashMap<>(balances);
+	}
+
+	/**
+	 * Gets the number of transactions applied to the balances
+	 */
+	public synchronized int getTransactionCount() {
+		return applied.size();
+	}
+
+	/**
+	 * Gets the wallet transactions that could not be colored yet
+	 * @return Hashes of the transactions
+	 */
+	public synchronized Set<Sha256Hash> getUnresolved() {
+		return Collections.unmodifiableSet(new HashSet<>(unresolved));
+	}
+
+	@Override
+	public void onCoinsReceived(Wallet wallet, Transaction tx, Coin prevBalance, Coin newBalance) {
+		update(tx);
+	}
+
+	@Override
+	public void onCoinsSent(Wallet wallet, Transaction tx, Coin prevBalance, Coin newBalance) {
+		update(tx);
+	}
+
+	@Override
+	public void onTransactionConfidenceChanged(Wallet wallet, Transaction tx) {
+		update(tx);
+	}
+
+	@Override
+	public void onReorganize(Wallet wallet) {
+		reconcile();
+	}
+
+	/**
+	 * Applies a live transaction that is not applied yet, reverts a dead one that is
+	 */
+	private synchronized void update(Transaction transaction) {
+
+		boolean dead = isDead(transaction);
+		boolean isApplied = applied.containsKey(transaction.getHash());
+		if (dead && isApplied) {
+			revert(transaction.getHash());
+		}
+		// A new transaction may be the missing ancestor of the unresolved ones
+		else if (!dead && !isApplied && apply(transaction) && !unresolved.isEmpty()) {
+			retryUnresolved();
+		}
+	}
+
+	/**
+	 * Brings the balances in line with the wallet after a reorganization or on attach, reverting the applied
+	 * transactions that are dead or gone and applying the live ones that are not applied yet
+	 */
+	private synchronized void reconcile() {
+
+		if (wallet == null) {
+			return;
+		}
+		for (Sha256Hash txHash : new ArrayList<>(applied.keySet())) {
+
+			Transaction transaction = wallet.getTransaction(txHash);
+			if (transaction == null || isDead(transaction)) {
+				revert(txHash);
+			}
+		}
+		for (Transaction transaction : wallet.getTransactions(false)) {
+			if (!applied.containsKey(transaction.getHash()) && !isDead(transaction)) {
+				apply(transaction);
+			}
+		}
+	}
+
+	private void retryUnresolved() {
+
+		for (Sha256Hash txHash : new ArrayList<>(unresolved)) {
+
+			Transaction transaction = (wallet != null) ? wallet.getTransaction(txHash) : null;
+			if (transaction == null || isDead(transaction)) {
+				unresolved.remove(txHash);
+			}
+			else {
+				apply(transaction);
+			}
+		}
+	}
+
+	/**
+	 * Colors the transaction and applies its delta
+	 * @return true if the transaction was applied, false if it could not be colored
+	 */
+	private boolean apply(Transaction transaction) {
+
+		long start = APPLY_TIMER.start();
+		Sha256Hash txHash = transaction.getHash();
+		List<ColoredOutput> outputs;
+		try {
+			outputs = coloringEngine.colorTransaction(transaction);
+		} catch (IllegalStateException e) {
+
+			// An ancestor is not known yet
+			unresolved.add(txHash);
+			APPLY_TIMER.stop(start);
+			return false;
+		}
+		unresolved.remove(txHash);
+
+		List<TransactionInput> inputs = transaction.getInputs();
+		OutPoint[] spent = new OutPoint[transaction.isCoinBase() ? 0 : inputs.size()];
+		for (int i = 0; i < spent.length; i++) {
+
+			spent[i] = OutPoint.of(inputs.get(i).getOutpoint());
+			Set<Sha256Hash> outPointSpenders = spenders.computeIfAbsent(spent[i], outPoint -> new HashSet<>());
+			ColoredOutput owned = ownedOutputs.get(spent[i]);
+			// Only the first spender debits the output
+			if (outPointSpenders.isEmpty() && owned != null) {
+				adjust(owned, -1);
+			}
+			outPointSpenders.add(txHash);
+		}
+		for (int i = 0; i < outputs.size(); i++) {
+
+			ColoredOutput output = outputs.get(i);
+			if (output.isColored() && transaction.getOutput(i).isMineOrWatched(wallet)) {
+
+				OutPoint outPoint = new OutPoint(txHash, i);
+				ownedOutputs.put(outPoint, output);
+				if (!spenders.containsKey(outPoint)) {
+					adjust(output, 1);
+				}
+			}
+		}
+		applied.put(txHash, new AppliedTransaction(spent, outputs.size()));
+		APPLY_TIMER.stop(start);
+		return true;
+	}
+
+	/**
+	 * Undoes apply(), leaving the transactions that spend its outputs applied
+	 */
+	private void revert(Sha256Hash txHash) {
+
+		AppliedTransaction reverted = applied.remove(txHash);
+		for (OutPoint outPoint : reverted.spent) {
+
+			Set<Sha256Hash> outPointSpenders = spenders.get(outPoint);
+			// Credited back once no applied transaction spends the output anymore
+			if (outPointSpenders != null && outPointSpenders.remove(txHash) && outPointSpenders.isEmpty()) {
+
+				spenders.remove(outPoint);
+				ColoredOutput owned = ownedOutputs.get(outPoint);
+				if (owned != null) {
+					adjust(owned, 1);
+				}
+			}
+		}
+		for (int i = 0; i < reverted.outputCount; i++) {
+
+			OutPoint outPoint = new OutPoint(txHash, i);
+			ColoredOutput owned = ownedOutputs.remove(outPoint);
+			// An output spent by an applied transaction was debited already, which cancelled its credit
+			if (owned != null && !spenders.containsKey(outPoint)) {
+				adjust(owned, -1);
+			}
+		}
+	}
+
+	private void adjust(ColoredOutput output, int sign) {
+
+		balances.merge(output.getAssetId(), sign * output.getAssetQuantity(), (balance, delta) -> {
+
+			long sum = balance + delta;
+			return (sum == 0) ? null : sum;
+		});
+	}
+
+	private static boolean isDead(Transaction transaction) {
+		return transaction.getConfidence().getConfidenceType() == ConfidenceType.DEAD;
+	}
+
+	/**
+	 * What revert() needs to undo a transaction, kept in case the wallet drops it
+	 */
+	private static final class AppliedTransaction {
+
+		private final OutPoint[] spent;
+		private final int outputCount;
+
+		AppliedTransaction(OutPoint[] spent, int outputCount) {
+
+			this.spent = spent;
+			this.outputCount = outputCount;
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package com.chaintope.openassetsj.index;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.Base58;
+import org.bitcoinj.script.ScriptOpCodes;
+
+/**
+ * Blocked Bloom filter over the hash160s of watched addresses, used as a pre-check before the exact lookup
+ * of output owners during chain scans.
+ *
+ * All bits of an address fall into one 512 bit block, a single cache line, so a lookup touches one line
+ * whatever the number of hash functions. A hash160 is already uniformly distributed, so the block and the
+ * bit positions are taken from its bytes instead of hashing it again. Blocks trade a slightly higher false
+ * positive rate for that locality, which the sizing takes into account.
+ *
+ * Lookups and inserts may run concurrently without locking, bits are set with compare-and-set.
+ */
+public class AddressFilter {
+
+	public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.001;
+
+	private static final int HASH160_LENGTH = 20;
+	private static final int BLOCK_BITS = 512;
+	private static final int WORDS_PER_BLOCK = BLOCK_BITS / Long.SIZE;
+	private static final int MAX_HASH_COUNT = 16;
+	// Standard P2PKH and P2SH script lengths
+	private static final int P2PKH_LENGTH = 25;
+	private static final int P2SH_LENGTH = 23;
+
+	private final AtomicLongArray words;
+	private final int blockCount;
+	private final int hashCount;
+	private final long expectedInsertions;
+	private final AtomicLong insertionCount = new AtomicLong();
+
+	/**
+	 * Creates a filter sized for the number of addresses at the default false positive rate
+	 * @param expectedInsertions Number of addresses the filter is expected to hold
+	 */
+	public AddressFilter(long expectedInsertions) {
+		this(expectedInsertions, DEFAULT_FALSE_POSITIVE_RATE);
+	}
+
+	/**
+	 * Creates a filter sized for the number of addresses and the false positive rate
+	 * @param expectedInsertions Number of addresses the filter is expected to hold
+	 * @param falsePositiveRate Rate of lookups of unknown addresses that may report a match once the filter
+	 * holds expectedInsertions addresses, between 0 and 1 exclusive
+	 */
+	public AddressFilter(long expectedInsertions, double falsePositiveRate) {
+
+		if (expectedInsertions < 1) {
+			throw new IllegalArgumentException("Expected insertions " + expectedInsertions);
+		}
+		if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+			throw new IllegalArgumentException("False positive rate " + falsePositiveRate);
+		}
+		double ln2 = Math.log(2);
+		double bitsPerInsertion = -Math.log(falsePositiveRate) / (ln2 * ln2);
+		int hashCount = (int) Math.max(1, Math.min(MAX_HASH_COUNT, Math.round(bitsPerInsertion * ln2)));
+		long blockCount = Math.max(1, (long) Math.ceil(expectedInsertions * bitsPerInsertion / BLOCK_BITS));
+		// The unblocked size falls short because block loads vary, grow it until the blocked estimate meets the rate
+		while (estimateFalsePositiveRate(expectedInsertions, blockCount, hashCount) > falsePositiveRate) {
+			blockCount += Math.max(1, blockCount / 16);
+		}
+		if (blockCount * WORDS_PER_BLOCK > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Filter of " + blockCount + " blocks is too large");
+		}
+		this.blockCount = (int) blockCount;
+		this.hashCount = hashCount;
+		this.expectedInsertions = expectedInsertions;
+		this.words = new AtomicLongArray(this.blockCount * WORDS_PER_BLOCK);
+	}
+
+	/**
+	 * Creates a filter holding the addresses
+	 * @param addresses Watched addresses
+	 * @param falsePositiveRate Rate of false positives at the number of addresses
+	 * @return Filter
+	 */
+	public static AddressFilter of(Collection<Address> addresses, double falsePositiveRate) {
+
+		AddressFilter filter = new AddressFilter(Math.max(1, addresses.size()), falsePositiveRate);
+		for (Address address : addresses) {
+			filter.put(address);
+		}
+		return filter;
+	}
+
+	/**
+	 * Adds an address
+	 * @param address Bitcoin address
+	 * @return true if the filter changed, false if it might already hold the address
+	 */
+	public boolean put(Address address) {
+		return put(address.getHash160(), 0);
+	}
+
+	/**
+	 * Adds the address wrapped by an OpenAssets address
+	 * @param oaAddress OpenAssets address
+	 * @return true if the filter changed, false if it might already hold the address
+	 * @throws org.bitcoinj.core.AddressFormatException if the OpenAssets address is malformed
+	 */
+	public boolean putOaAddress(String oaAddress) {
+
+		// namespace, address version, hash160
+		byte[] decoded = Base58.decodeChecked(oaAddress);
+		if (decoded.length != 2 + HASH160_LENGTH) {
+			throw new IllegalArgumentException("OA address of " + decoded.length + " bytes");
+		}
+		return put(decoded, 2);
+	}
+
+	/**
+	 * Adds a hash160
+	 * @param bytes Buffer holding the hash160
+	 * @param offset Offset of the 20 bytes of the hash160 in the buffer
+	 * @return true if the filter changed, false if it might already hold the hash160
+	 */
+	public boolean put(byte[] bytes, int offset) {
+
+		checkHash160(bytes, offset);
+		int base = blockOf(bytes, offset) * WORDS_PER_BLOCK;
+		long h1 = readLong(bytes, offset + 4);
+		long h2 = readLong(bytes, offset + 12) | 1;
+		boolean changed = false;
+		for (int i = 0; i < hashCount; i++) {
+
+			int bit = (int) ((h1 + i * h2) >>> 55);
+			int index = base + (bit >>> 6);
+			long mask = 1L << bit;
+			long word = words.get(index);
+			while ((word & mask) == 0) {
+
+				if (words.compareAndSet(index, word, word | mask)) {
+					changed = true;
+					break;
+				}
+				word = words.get(index);
+			}
+		}
+		if (changed) {
+			insertionCount.incrementAndGet();
+		}
+		return changed;
+	}
+
+	/**
+	 * Checks whether the filter might hold an address
+	 * @param address Bitcoin address
+	 * @return false if the address was never added, true if it might have been
+	 */
+	public boolean mightContain(Address address) {
+		return mightContain(address.getHash160(), 0);
+	}
+
+	/**
+	 * Checks whether the filter might hold a hash160
+	 * @param bytes Buffer holding the hash160
+	 * @param offset Offset of the 20 bytes of the hash160 in the buffer
+	 * @return false if the hash160 was never added, true if it might have been
+	 */
+	public boolean mightContain(byte[] bytes, int offset) {
+
+		checkHash160(bytes, offset);
+		int base = blockOf(bytes, offset) * WORDS_PER_BLOCK;
+		long h1 = readLong(bytes, offset + 4);
+		long h2 = readLong(bytes, offset + 12) | 1;
+		for (int i = 0; i < hashCount; i++) {
+
+			int bit = (int) ((h1 + i * h2) >>> 55);
+			if ((words.get(base + (bit >>> 6)) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the filter might hold the address an output script pays to, reading the hash160 in place
+	 * @param script Output script
+	 * @return false if the script is not a P2PKH or P2SH script or its address was never added,
+	 * true if its address might have been
+	 */
+	public boolean mightContainScript(byte[] script) {
+
+		if (script.length == P2PKH_LENGTH
+				&& (script[0] & 0xff) == ScriptOpCodes.OP_DUP
+				&& (script[1] & 0xff) == ScriptOpCodes.OP_HASH160
+				&& script[2] == HASH160_LENGTH
+				&& (script[23] & 0xff) == ScriptOpCodes.OP_EQUALVERIFY
+				&& (script[24] & 0xff) == ScriptOpCodes.OP_CHECKSIG) {
+			return mightContain(script, 3);
+		}
+		if (script.length == P2SH_LENGTH
+				&& (script[0] & 0xff) == ScriptOpCodes.OP_HASH160
+				&& script[1] == HASH160_LENGTH
+				&& (script[22] & 0xff) == ScriptOpCodes.OP_EQUAL) {
+			return mightContain(script, 2);
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the number of addresses added, not counting those the filter reported as already held
+	 */
+	public long getInsertionCount() {
+		return insertionCount.get();
+	}
+
+	public long getExpectedInsertions() {
+		return expectedInsertions;
+	}
+
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	/**
+	 * Gets the memory taken by the bits of the filter
+	 * @return Size in bytes
+	 */
+	public long getMemoryBytes() {
+		return (long) words.length() * Long.BYTES;
+	}
+
+	/**
+	 * Estimates the rate of false positives at the current number of addresses
+	 * @return Rate between 0 and 1
+	 */
+	public double getFalsePositiveRate() {
+		return estimateFalsePositiveRate(insertionCount.get(), blockCount, hashCount);
+	}
+
+	/**
+	 * Estimates the rate of false positives once the filter holds the expected number of addresses
+	 * @return Rate between 0 and 1
+	 */
+	public double getExpectedFalsePositiveRate() {
+		return estimateFalsePositiveRate(expectedInsertions, blockCount, hashCount);
+	}
+
+	/**
+	 * Sums the false positive rate of a block holding j addresses over the Poisson distribution of block loads
+	 */
+	static double estimateFalsePositiveRate(long insertions, long blockCount, int hashCount) {
+
+		double mean = (double) insertions / blockCount;
+		if (mean == 0) {
+			return 0;
+		}
+		int limit = (int) Math.ceil(mean + 10 * Math.sqrt(mean) + 10);
+		double logProbability = -mean;
+		double rate = 0;
+		for (int j = 0; j <= limit; j++) {
+
+			if (j > 0) {
+				logProbability += Math.log(mean) - Math.log(j);
+			}
+			double bitSet = -Math.expm1((double) j * hashCount * Math.log1p(-1.0 / BLOCK_BITS));
+			rate += Math.exp(logProbability) * Math.pow(bitSet, hashCount);
+		}
+		return Math.min(1, rate);
+	}
+
+	/**
+	 * Maps the first 4 bytes of the hash160 to a block, without the bias of a modulo
+	 */
+	private int blockOf(byte[] bytes, int offset) {
+
+		long high = ((bytes[offset] & 0xffL) << 24) | ((bytes[offset + 1] & 0xff) << 16)
+				| ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+		return (int) ((high * blockCount) >>> 32);
+	}
+
+	private static long readLong(byte[] bytes, int offset) {
+
+		long value = 0;
+		for (int i = 0; i < Long.BYTES; i++) {
+			value = (value << 8) | (bytes[offset + i] & 0xff);
+		}
+		return value;
+	}
+
+	private static void checkHash160(byte[] bytes, int offset) {
+
+		if (offset < 0 || offset + HASH160_LENGTH > bytes.length) {
+			throw new IllegalArgumentException("No hash160 at offset " + offset + " of " + bytes.length + " bytes");
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package com.chaintope.openassetsj.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Asset quantities held by each owner and in total, updated by ColoredUtxoIndex as entries come and go.
+ * Assets are the ordinals of the AssetIdPool of the index, owners the hash160 of their output scripts.
+ * An owner only takes room for the assets it holds, and is dropped when its last quantity goes back to 0.
+ * The table is not thread safe, the index guards it with its own lock.
+ */
+final class BalanceTable {
+
+	private final Map<OwnerKey, OwnerBalances> owners = new HashMap<>();
+	private long[] totals = new long[16];
+
+	/**
+	 * Adds a quantity to the balance of an owner, negative when an output is spent
+	 * @param owner0 First 8 bytes of the owner hash
+	 * @param owner1 Next 8 bytes of the owner hash
+	 * @param owner2 Last 4 bytes of the owner hash
+	 * @param assetOrdinal Ordinal of the asset ID
+	 * @param delta Quantity to add
+	 */
+	void add(long owner0, long owner1, int owner2, int assetOrdinal, long delta) {
+
+		OwnerKey key = new OwnerKey(owner0, owner1, owner2);
+		OwnerBalances balances = owners.get(key);
+		if (balances == null) {
+
+			balances = new OwnerBalances();
+			owners.put(key, balances);
+		}
+		if (balances.add(assetOrdinal, delta)) {
+			owners.remove(key);
+		}
+
+		if (assetOrdinal >= totals.length) {
+			totals = Arrays.copyOf(totals, Math.max(assetOrdinal + 1, totals.length * 2));
+		}
+		totals[assetOrdinal] += delta;
+	}
+
+	/**
+	 * Gets the balances of an owner
+	 * @return Balances, null if the owner holds no asset
+	 */
+	OwnerBalances get(long owner0, long owner1, int owner2) {
+		return owners.get(new OwnerKey(owner0, owner1, owner2));
+	}
+
+	/**
+	 * Gets the quantity of an asset held by all owners together
+	 */
+	long getTotal(int assetOrdinal) {
+		return (assetOrdinal < totals.length) ? totals[assetOrdinal] : 0;
+	}
+
+	/**
+	 * Gets the number of owners holding at least one asset
+	 */
+	int getOwnerCount() {
+		return owners.size();
+	}
+
+	/**
+	 * Non-zero asset quantities of one owner, as parallel arrays of asset ordinals and quantities
+	 */
+	static final class OwnerBalances {
+
+		private int[] assetOrdinals = new int[2];
+		private long[] quantities = new long[2];
+		private int count;
+
+		int size() {
+			return count;
+		}
+
+		int getAssetOrdinal(int i) {
+			return assetOrdinals[i];
+		}
+
+		long getQuantity(int i) {
+			return quantities[i];
+		}
+
+		/**
+		 * Gets the quantity of an asset
+		 * @return Quantity, 0 if the owner does not hold the asset
+		 */
+		long getQuantityOf(int assetOrdinal) {
+
+			for (int i = 0; i < count; i++) {
+				if (assetOrdinals[i] == assetOrdinal) {
+					return quantities[i];
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * Adds a quantity to the balance of an asset
+		 * @return true if the owner no longer holds any asset
+		 */
+		private boolean add(int assetOrdinal, long delta) {
+
+			int i = 0;
+			while (i < count && assetOrdinals[i] != assetOrdinal) {
+				i++;
+			}
+			if (i == count) {
+
+				if (count == assetOrdinals.length) {
+
+					assetOrdinals = Arrays.copyOf(assetOrdinals, count * 2);
+					quantities = Arrays.copyOf(quantities, count * 2);
+				}
+				assetOrdinals[i] = assetOrdinal;
+				quantities[i] = 0;
+				count++;
+			}
+			quantities[i] += delta;
+			if (quantities[i] == 0) {
+
+				// The last asset takes the place of the one whose balance fell to 0
+				count--;
+				assetOrdinals[i] = assetOrdinals[count];
+				quantities[i] = quantities[count];
+			}
+			return count == 0;
+		}
+	}
+
+	/**
+	 * Owner hash read from a slot as two longs and an int, so that updates allocate no byte array
+	 */
+	private static final class OwnerKey {
+
+		private final long owner0;
+		private final long owner1;
+		private final int owner2;
+
+		OwnerKey(long owner0, long owner1, int owner2) {
+
+			this.owner0 = owner0;
+			this.owner1 = owner1;
+			this.owner2 = owner2;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof OwnerKey)) {
+				return false;
+			}
+			OwnerKey other = (OwnerKey) o;
+			return owner0 == other.owner0 && owner1 == other.owner1 && owner2 == other.owner2;
+		}
+
+		@Override
+		public int hashCode() {
+			// The owner hash is a hash already, its first bytes are spread enough
+			return (int) (owner0 ^ (owner0 >>> 32));
+		}
+	}
+}
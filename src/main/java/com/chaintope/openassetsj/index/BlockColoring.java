@@ -0,0 +1,274 @@
+package com.chaintope.openassetsj.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionOutPoint;
+import org.bitcoinj.script.ScriptOpCodes;
+
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.ColoredOutput;
+import com.chaintope.openassetsj.model.OutPoint;
+import com.chaintope.openassetsj.model.OutputType;
+import com.chaintope.openassetsj.protocol.ColoringEngine;
+import com.chaintope.openassetsj.utils.AssetID;
+
+/**
+ * Colors the transactions of one block against a ColoredUtxoIndex.
+ *
+ * The transactions of a block mostly spend outputs of earlier blocks, which are read from the index.
+ * Only a transaction spending an output of another transaction of the same block has to wait for it,
+ * so the spend graph between the transactions of the block is built first, and a transaction is colored
+ * as soon as the last of its parents in the block is. Colorings land in per-transaction slots and are
+ * merged in block order afterwards, so the outcome does not depend on the order the colorings finish in.
+ */
+class BlockColoring {
+
+	// Input whose spent output is not in the index, e.g. an output created before indexing started
+	private static final ColoredOutput UNKNOWN_INPUT = ColoredOutput.uncolored(0, null, OutputType.UNCOLORED);
+	private static final int OUTSIDE_BLOCK = -1;
+
+	private final ColoredUtxoIndex index;
+	private final ColoringEngine coloringEngine;
+	private final AssetID assetID;
+	private final List<Transaction> transactions;
+
+	// parents[i][j] is the position of the transaction whose output input j of transaction i spends, or OUTSIDE_BLOCK
+	private final int[][] parents;
+	private final int[][] children;
+	private final AtomicIntegerArray pendingParents;
+	private final int[] roots;
+
+	// Outputs spent by the inputs of each transaction, null where the output is unknown
+	private final UtxoEntry[][] inputEntries;
+	// Outputs created by each transaction, null where the output is unspendable
+	private final UtxoEntry[][] outputEntries;
+
+	BlockColoring(ColoredUtxoIndex index, ColoringEngine coloringEngine, AssetID assetID, List<Transaction> transactions) {
+
+		this.index = index;
+		this.coloringEngine = coloringEngine;
+		this.assetID = assetID;
+		this.transactions = transactions;
+
+		int count = transactions.size();
+		parents = new int[count][];
+		inputEntries = new UtxoEntry[count][];
+		outputEntries = new UtxoEntry[count][];
+		pendingParents = new AtomicIntegerArray(count);
+
+		Map<Sha256Hash, Integer> positions = new HashMap<>(count * 2);
+		List<List<Integer>> childLists = new ArrayList<>(count);
+		List<Integer> rootList = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+
+			Transaction transaction = transactions.get(i);
+			childLists.add(new ArrayList<>(0));
+			int inputCount = transaction.isCoinBase() ? 0 : transaction.getInputs().size();
+			parents[i] = new int[inputCount];
+
+			int parentCount = 0;
+			for (int j = 0; j < inputCount; j++) {
+
+				Integer parent = positions.get(transaction.getInput(j).getOutpoint().getHash());
+				parents[i][j] = (parent == null) ? OUTSIDE_BLOCK : parent;
+				if (parent != null) {
+
+					List<Integer> siblings = childLists.get(parent);
+					// Several inputs spending the same parent make a single edge
+					if (siblings.isEmpty() || siblings.get(siblings.size() - 1) != i) {
+
+						siblings.add(i);
+						parentCount++;
+					}
+				}
+			}
+			pendingParents.set(i, parentCount);
+			if (parentCount == 0) {
+				rootList.add(i);
+			}
+			// Only earlier transactions count as parents, like in serial processing
+			positions.putIfAbsent(transaction.getHash(), i);
+		}
+
+		children = new int[count][];
+		for (int i = 0; i < count; i++) {
+			children[i] = childLists.get(i).stream().mapToInt(Integer::intValue).toArray();
+		}
+		roots = rootList.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Colors every transaction on the calling thread, in block order
+	 */
+	void colorSerially() {
+
+		for (int i = 0; i < transactions.size(); i++) {
+			color(i);
+		}
+	}
+
+	/**
+	 * Colors the transactions on the pool, each one once all of its parents in the block are colored
+	 * @param pool Pool running the colorings
+	 */
+	void colorInParallel(ForkJoinPool pool) {
+
+		pool.invoke(new RecursiveAction() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+
+				List<ColorTask> tasks = new ArrayList<>(roots.length);
+				for (int root : roots) {
+					tasks.add(new ColorTask(root));
+				}
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	/**
+	 * Merges the colorings into the changes the block makes to the index, in block order
+	 * @param created Receives the outputs created by the block and not spent within it
+	 * @param spent Receives the index entries spent by the block
+	 */
+	void collectChanges(Map<OutPoint, UtxoEntry> created, Map<OutPoint, UtxoEntry> spent) {
+
+		for (int i = 0; i < transactions.size(); i++) {
+
+			Transaction transaction = transactions.get(i);
+			UtxoEntry[] entries = inputEntries[i];
+			for (int j = 0; j < entries.length; j++) {
+
+				OutPoint outPoint = OutPoint.of(transaction.getInput(j).getOutpoint());
+				// Outputs created and spent within the block never reach the index
+				if (created.remove(outPoint) == null && parents[i][j] == OUTSIDE_BLOCK && entries[j] != null) {
+					spent.put(outPoint, entries[j]);
+				}
+			}
+			UtxoEntry[] outputs = outputEntries[i];
+			for (int k = 0; k < outputs.length; k++) {
+				if (outputs[k] != null) {
+					created.put(new OutPoint(transaction.getHash(), k), outputs[k]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Colors the transaction at the position, once the outputs of its parents in the block are known
+	 */
+	private void color(int position) {
+
+		Transaction transaction = transactions.get(position);
+		int[] inputParents = parents[position];
+		UtxoEntry[] entries = new UtxoEntry[inputParents.length];
+		for (int j = 0; j < entries.length; j++) {
+
+			TransactionOutPoint outPoint = transaction.getInput(j).getOutpoint();
+			if (inputParents[j] == OUTSIDE_BLOCK) {
+				entries[j] = index.get(OutPoint.of(outPoint));
+			}
+			else {
+
+				UtxoEntry[] parentOutputs = outputEntries[inputParents[j]];
+				entries[j] = (outPoint.getIndex() < parentOutputs.length) ? parentOutputs[(int) outPoint.getIndex()] : null;
+			}
+		}
+		inputEntries[position] = entries;
+
+		List<ColoredOutput> inputs = null;
+		AssetId issuanceAssetId = null;
+		if (entries.length > 0 && ColoringEngine.needsInputs(transaction)) {
+
+			inputs = new ArrayList<>(entries.length);
+			for (UtxoEntry entry : entries) {
+				inputs.add(entry == null ? UNKNOWN_INPUT
+						: new ColoredOutput(entry.getValue(), null, entry.getAssetId(), entry.getAssetQuantity(), OutputType.UNCOLORED));
+			}
+			// Left null for an unknown first input, which makes an issuance invalid
+			if (entries[0] != null) {
+				issuanceAssetId = assetID.scriptHashToAssetId(entries[0].getOwnerHash());
+			}
+		}
+
+		List<ColoredOutput> outputs = coloringEngine.colorTransaction(transaction, inputs, issuanceAssetId);
+		UtxoEntry[] created = new UtxoEntry[outputs.size()];
+		for (int k = 0; k < created.length; k++) {
+
+			ColoredOutput output = outputs.get(k);
+			if (!isUnspendable(output.getScript())) {
+				created[k] = UtxoEntry.of(output);
+			}
+		}
+		outputEntries[position] = created;
+	}
+
+	/**
+	 * Checks whether the script can never be spent, e.g. a marker output
+	 */
+	private static boolean isUnspendable(byte[] script) {
+		return script.length > 0 && (script[0] & 0xff) == ScriptOpCodes.OP_RETURN;
+	}
+
+	/**
+	 * Colors a transaction, then the children it was the last uncolored parent of
+	 */
+	private class ColorTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int position;
+
+		ColorTask(int position) {
+			this.position = position;
+		}
+
+		@Override
+		protected void compute() {
+
+			int current = position;
+			while (true) {
+
+				color(current);
+				List<ColorTask> ready = null;
+				int next = -1;
+				for (int child : children[current]) {
+
+					if (pendingParents.decrementAndGet(child) == 0) {
+
+						if (next < 0) {
+							next = child;
+						}
+						else {
+							if (ready == null) {
+								ready = new ArrayList<>();
+							}
+							ready.add(new ColorTask(child));
+						}
+					}
+				}
+				if (ready != null) {
+					ready.add(new ColorTask(next));
+					invokeAll(ready);
+					return;
+				}
+				if (next < 0) {
+					return;
+				}
+				// A single ready child is colored in this task, so chains do not deepen the stack
+				current = next;
+			}
+		}
+	}
+}
@@ -0,0 +1,379 @@
+package com.chaintope.openassetsj.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.ProtocolException;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+
+import com.chaintope.openassetsj.protocol.RawTransactionScanner;
+import com.chaintope.openassetsj.utils.Utils;
+
+/**
+ * Reads the blk*.dat files written by Bitcoin Core, for indexing the chain without a node.
+ *
+ * A block file is memory-mapped and walked record by record: network magic, little-endian size, then the
+ * serialized block. The scanner is a cursor over the blocks of one file. Moving to a block walks the
+ * framing of its transactions in place with a RawTransactionScanner, recording where each one starts and
+ * which of its outputs is a valid marker output. Block and transaction bytes are handed out as
+ * read-only slices of the mapping, and only getTransaction() deserializes a transaction, so callers
+ * interested in Open Assets transactions deserialize those alone.
+ *
+ * Blocks are stored in the order Core received them, not in chain order, and the end of a file is padded
+ * with zeros. A scanner must not be shared between threads.
+ */
+public class BlockFileScanner implements Closeable {
+
+	private static final String BLOCK_FILE_PREFIX = "blk";
+	private static final String BLOCK_FILE_SUFFIX = ".dat";
+	private static final int HEADER_SIZE = 80;
+	private static final int PREV_HASH = 4;
+	// Version and lock time lengths of a serialized transaction
+	private static final int VERSION_SIZE = 4;
+	private static final int LOCK_TIME_SIZE = 4;
+
+	private final NetworkParameters params;
+	private final Path file;
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private final int magic;
+	private final RawTransactionScanner transactionScanner = new RawTransactionScanner();
+
+	private int nextRecord;
+	private int blockOffset = -1;
+	private int blockLength;
+	private Sha256Hash blockHash;
+
+	private int transactionCount;
+	private int[] transactionOffsets = new int[256];
+	private int[] transactionLengths = new int[256];
+	// Offset of the witness data of segwit transactions, -1 for the others
+	private int[] witnessOffsets = new int[256];
+	private int[] markerOutputs = new int[256];
+
+	private BlockFileScanner(NetworkParameters params, Path file) throws IOException {
+
+		this.params = params;
+		this.file = file;
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		long size = channel.size();
+		if (size > Integer.MAX_VALUE) {
+
+			channel.close();
+			throw new IOException("Block file " + file + " is larger than 2 GB");
+		}
+		this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+		this.magic = (int) params.getPacketMagic();
+	}
+
+	/**
+	 * Maps a block file
+	 * @param params Network the file belongs to, giving the magic of its records
+	 * @param file Path of a blk*.dat file
+	 * @return Scanner positioned before the first block
+	 * @throws IOException if the file cannot be mapped
+	 */
+	public static BlockFileScanner open(NetworkParameters params, Path file) throws IOException {
+		return new BlockFileScanner(params, file);
+	}
+
+	/**
+	 * Lists the block files of a Core blocks directory in the order Core wrote them
+	 * @param blocksDirectory Directory holding the blk*.dat files
+	 * @return Paths of the block files, sorted by file number
+	 * @throws IOException if the directory cannot be listed
+	 */
+	public static List<Path> listBlockFiles(Path blocksDirectory) throws IOException {
+
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(blocksDirectory, BLOCK_FILE_PREFIX + "*" + BLOCK_FILE_SUFFIX)) {
+			for (Path path : stream) {
+				files.add(path);
+			}
+		}
+		// blk00000.dat to blk99999.dat have the same length, so names sort by number
+		Collections.sort(files);
+		return files;
+	}
+
+	/**
+	 * Moves to the next block of the file
+	 * @return true if there is a next block, false at the zero padding, a truncated last record or the end of the file
+	 * @throws ProtocolException if a record has another network magic, or its block is malformed
+	 */
+	public boolean nextBlock() {
+
+		blockOffset = -1;
+		blockHash = null;
+		transactionCount = 0;
+		int limit = buffer.limit();
+		if (nextRecord + 8 > limit) {
+			return false;
+		}
+		int recordMagic = Integer.reverseBytes(buffer.getInt(nextRecord));
+		if (recordMagic == 0) {
+			return false;
+		}
+		if (recordMagic != magic) {
+			throw new ProtocolException("Unexpected magic " + Integer.toHexString(recordMagic) + " at offset " + nextRecord + " of " + file);
+		}
+		int length = buffer.getInt(nextRecord + 4);
+		if (length < 0 || nextRecord + 8 + length > limit) {
+			// Core was stopped while appending the block
+			return false;
+		}
+		blockOffset = nextRecord + 8;
+		blockLength = length;
+		nextRecord = blockOffset + length;
+		walkTransactions();
+		return true;
+	}
+
+	/**
+	 * Gets the bytes of the current block, header and transactions
+	 * @return Read-only slice of the mapping
+	 */
+	public ByteBuffer getBlockBytes() {
+
+		checkBlock();
+		return slice(blockOffset, blockLength);
+	}
+
+	/**
+	 * Gets the hash of the current block
+	 */
+	public Sha256Hash getBlockHash() {
+
+		checkBlock();
+		if (blockHash == null) {
+
+			byte[] header = new byte[HEADER_SIZE];
+			copy(blockOffset, header, 0, HEADER_SIZE);
+			blockHash = Sha256Hash.wrapReversed(Sha256Hash.hashTwice(header));
+		}
+		return blockHash;
+	}
+
+	/**
+	 * Gets the hash of the block the current block extends
+	 */
+	public Sha256Hash getPrevBlockHash() {
+
+		checkBlock();
+		byte[] hash = new byte[Sha256Hash.LENGTH];
+		copy(blockOffset + PREV_HASH, hash, 0, hash.length);
+		return Sha256Hash.wrapReversed(hash);
+	}
+
+	/**
+	 * Gets the offset of the current block record in the file, for resuming a scan later
+	 * @return Offset of the magic of the record
+	 */
+	public long getBlockFileOffset() {
+
+		checkBlock();
+		return blockOffset - 8;
+	}
+
+	public int getTransactionCount() {
+
+		checkBlock();
+		return transactionCount;
+	}
+
+	/**
+	 * Gets the serialized transaction, including the witness data of segwit transactions
+	 * @param index Position of the transaction in the current block
+	 * @return Read-only slice of the mapping
+	 */
+	public ByteBuffer getTransactionBytes(int index) {
+
+		checkTransaction(index);
+		return slice(transactionOffsets[index], transactionLengths[index]);
+	}
+
+	/**
+	 * Gets the marker output of the transaction, the first output whose script is a valid marker output
+	 * @param index Position of the transaction in the current block
+	 * @return Output index, -1 if the transaction is not an Open Assets transaction
+	 */
+	public int getMarkerOutputIndex(int index) {
+
+		checkTransaction(index);
+		return markerOutputs[index];
+	}
+
+	/**
+	 * Checks whether the transaction is an Open Assets transaction, i.e. getMarkerOutputIndex() is not -1
+	 * @param index Position of the transaction in the current block
+	 */
+	public boolean hasMarkerOutput(int index) {
+		return getMarkerOutputIndex(index) >= 0;
+	}
+
+	/**
+	 * Deserializes the transaction. Witness data is left out, since only its ID and outputs matter for coloring.
+	 * @param index Position of the transaction in the current block
+	 * @return Transaction
+	 */
+	public Transaction getTransaction(int index) {
+
+		checkTransaction(index);
+		int offset = transactionOffsets[index];
+		int length = transactionLengths[index];
+		int witnessOffset = witnessOffsets[index];
+		byte[] bytes;
+		if (witnessOffset < 0) {
+
+			bytes = new byte[length];
+			copy(offset, bytes, 0, length);
+		}
+		else {
+
+			// Version, inputs and outputs, lock time: the serialization the transaction ID is computed on
+			int bodyLength = witnessOffset - (offset + VERSION_SIZE + 2);
+			bytes = new byte[VERSION_SIZE + bodyLength + LOCK_TIME_SIZE];
+			copy(offset, bytes, 0, VERSION_SIZE);
+			copy(offset + VERSION_SIZE + 2, bytes, VERSION_SIZE, bodyLength);
+			copy(offset + length - LOCK_TIME_SIZE, bytes, VERSION_SIZE + bodyLength, LOCK_TIME_SIZE);
+		}
+		return new Transaction(params, bytes);
+	}
+
+	/**
+	 * Deserializes the transactions of the current block that have a marker output
+	 * @return Transactions in block order
+	 */
+	public List<Transaction> getMarkerTransactions() {
+
+		checkBlock();
+		List<Transaction> transactions = new ArrayList<>();
+		for (int i = 0; i < transactionCount; i++) {
+			if (markerOutputs[i] >= 0) {
+				transactions.add(getTransaction(i));
+			}
+		}
+		return transactions;
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		// The mapping is released when the buffer is collected
+		channel.close();
+	}
+
+	/**
+	 * Records the framing of the transactions of the current block
+	 */
+	private void walkTransactions() {
+
+		int end = blockOffset + blockLength;
+		int position = blockOffset + HEADER_SIZE;
+		checkAvailable(position, 1, end);
+		long count = readVarInt(position, end);
+		position += varIntLength(position);
+		if (count > blockLength) {
+			throw malformed(position);
+		}
+		ensureTransactionCapacity((int) count);
+
+		for (int i = 0; i < count; i++) {
+
+			try {
+				transactionScanner.scan(buffer, position, end - position);
+			} catch (ProtocolException e) {
+				throw new ProtocolException("Malformed block at offset " + (blockOffset - 8) + " of " + file
+						+ ", transaction " + i, e);
+			}
+			transactionOffsets[i] = position;
+			transactionLengths[i] = transactionScanner.getTransactionLength();
+			witnessOffsets[i] = transactionScanner.getWitnessOffset();
+			markerOutputs[i] = transactionScanner.getMarkerOutputIndex();
+			position += transactionLengths[i];
+		}
+		transactionCount = (int) count;
+	}
+
+	/**
+	 * Reads a var-int, values too large for a long being longer than any block and caught by the callers' bounds checks
+	 */
+	private long readVarInt(int position, int end) {
+
+		long value = Utils.readVarInteger(buffer, position, end);
+		if (value < 0) {
+			throw malformed(position);
+		}
+		return value;
+	}
+
+	private int varIntLength(int position) {
+		return Utils.varIntegerLength(buffer, position);
+	}
+
+	private void checkAvailable(int position, int length, int end) {
+
+		if (position < 0 || position + length > end) {
+			throw malformed(position);
+		}
+	}
+
+	private ProtocolException malformed(int position) {
+		return new ProtocolException("Malformed block at offset " + (blockOffset - 8) + " of " + file + ", byte " + (position - blockOffset));
+	}
+
+	private void ensureTransactionCapacity(int count) {
+
+		if (count > transactionOffsets.length) {
+
+			int capacity = Math.max(count, transactionOffsets.length * 2);
+			transactionOffsets = Arrays.copyOf(transactionOffsets, capacity);
+			transactionLengths = Arrays.copyOf(transactionLengths, capacity);
+			witnessOffsets = Arrays.copyOf(witnessOffsets, capacity);
+			markerOutputs = Arrays.copyOf(markerOutputs, capacity);
+		}
+	}
+
+	private ByteBuffer slice(int offset, int length) {
+
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.position(offset);
+		duplicate.limit(offset + length);
+		return duplicate.slice().asReadOnlyBuffer();
+	}
+
+	private void copy(int offset, byte[] destination, int destinationOffset, int length) {
+
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.position(offset);
+		duplicate.get(destination, destinationOffset, length);
+	}
+
+	private void checkBlock() {
+
+		if (blockOffset < 0) {
+			throw new IllegalStateException("No current block, nextBlock() did not return true");
+		}
+	}
+
+	private void checkTransaction(int index) {
+
+		checkBlock();
+		if (index < 0 || index >= transactionCount) {
+			throw new IndexOutOfBoundsException("Transaction " + index + " of " + transactionCount);
+		}
+	}
+}
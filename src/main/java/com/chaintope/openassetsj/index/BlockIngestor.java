@@ -0,0 +1,233 @@
+package com.chaintope.openassetsj.index;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.bitcoinj.core.Block;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+
+import com.chaintope.openassetsj.index.UndoJournal.BlockUndo;
+import com.chaintope.openassetsj.model.OutPoint;
+import com.chaintope.openassetsj.protocol.ColoringEngine;
+import com.chaintope.openassetsj.utils.AssetID;
+
+/**
+ * Follows the chain block by block, keeping a ColoredUtxoIndex in step with the tip.
+ *
+ * Every spendable output is indexed, colored or not, so that blocks can be colored from the index alone:
+ * the inputs of a transaction are looked up by out point, and the issuance asset ID is derived from the
+ * owner hash of the output spent by the first input. The transactions of large blocks are colored on a
+ * fork-join pool, a transaction waiting only for the transactions of the block it spends from.
+ *
+ * Connecting a block writes an undo record listing the entries it removed and the out points it added,
+ * so disconnecting a block during a reorganization only touches the outputs that block changed.
+ * Undo records are kept for the last maxReorgDepth blocks. A marker file names the block being applied
+ * or reverted, and an ingestor opened after a crash reverts that block before doing anything else.
+ */
+public class BlockIngestor {
+
+	public static final int DEFAULT_MAX_REORG_DEPTH = 100;
+
+	// Blocks with fewer transactions are colored on the calling thread
+	static final int PARALLEL_THRESHOLD = 64;
+
+	private final ColoredUtxoIndex index;
+	private final ColoringEngine coloringEngine;
+	private final AssetID assetID;
+	private final UndoJournal journal;
+	private final int maxReorgDepth;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Creates an ingestor keeping undo records for DEFAULT_MAX_REORG_DEPTH blocks
+	 * @param params Network of the blocks
+	 * @param index Index to keep up to date
+	 * @param journalDirectory Directory of the tip and undo records, normally next to the index
+	 * @throws IOException if the journal cannot be read, or a block interrupted by a crash cannot be reverted
+	 */
+	public BlockIngestor(NetworkParameters params, ColoredUtxoIndex index, Path journalDirectory) throws IOException {
+
+		this(params, index, journalDirectory, DEFAULT_MAX_REORG_DEPTH);
+	}
+
+	/**
+	 * Creates an ingestor keeping undo records for the given number of blocks
+	 * @param params Network of the blocks
+	 * @param index Index to keep up to date
+	 * @param journalDirectory Directory of the tip and undo records, normally next to the index
+	 * @param maxReorgDepth Number of most recent blocks that can be disconnected
+	 * @throws IOException if the journal cannot be read, or a block interrupted by a crash cannot be reverted
+	 */
+	public BlockIngestor(NetworkParameters params, ColoredUtxoIndex index, Path journalDirectory, int maxReorgDepth) throws IOException {
+
+		this(params, index, journalDirectory, maxReorgDepth, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates an ingestor coloring the transactions of large blocks on the given pool
+	 * @param params Network of the blocks
+	 * @param index Index to keep up to date
+	 * @param journalDirectory Directory of the tip and undo records, normally next to the index
+	 * @param maxReorgDepth Number of most recent blocks that can be disconnected
+	 * @param pool Pool coloring the transactions of a block, null to color them on the calling thread
+	 * @throws IOException if the journal cannot be read, or a block interrupted by a crash cannot be reverted
+	 */
+	public BlockIngestor(NetworkParameters params, ColoredUtxoIndex index, Path journalDirectory, int maxReorgDepth,
+			ForkJoinPool pool) throws IOException {
+
+		this.index = index;
+		this.coloringEngine = new ColoringEngine(params, null);
+		this.assetID = new AssetID(params);
+		this.journal = new UndoJournal(journalDirectory);
+		this.maxReorgDepth = maxReorgDepth;
+		this.pool = pool;
+		recover();
+	}
+
+	/**
+	 * Gets the hash of the last connected block
+	 * @return Block hash, null if no block was connected
+	 */
+	public synchronized Sha256Hash getTipHash() {
+		return journal.getTipHash();
+	}
+
+	/**
+	 * Gets the height of the last connected block, counting the first connected block as 0
+	 * @return Height, -1 if no block was connected
+	 */
+	public synchronized int getTipHeight() {
+		return journal.getTipHeight();
+	}
+
+	/**
+	 * Colors the transactions of the block and applies the outputs they create and spend to the index
+	 * @param block Block extending the current tip, or any block if none was connected yet
+	 * @throws IllegalArgumentException if the block does not extend the tip
+	 * @throws IOException if the index or the journal cannot be written
+	 */
+	public synchronized void connectBlock(Block block) throws IOException {
+
+		Sha256Hash tipHash = journal.getTipHash();
+		if (tipHash != null && !tipHash.equals(block.getPrevBlockHash())) {
+			throw new IllegalArgumentException("Block " + block.getHash() + " does not extend tip " + tipHash);
+		}
+		int height = journal.getTipHeight() + 1;
+
+		Map<OutPoint, UtxoEntry> created = new LinkedHashMap<>();
+		Map<OutPoint, UtxoEntry> spent = new LinkedHashMap<>();
+		colorBlock(block, created, spent);
+
+		// The undo record reaches the disk before the index changes, so a crash can always be reverted
+		journal.write(new BlockUndo(block.getHash(), block.getPrevBlockHash(), height, spent, new ArrayList<>(created.keySet())));
+		journal.setPending(height);
+		for (OutPoint outPoint : spent.keySet()) {
+			index.remove(outPoint);
+		}
+		for (Map.Entry<OutPoint, UtxoEntry> entry : created.entrySet()) {
+			index.put(entry.getKey(), entry.getValue());
+		}
+		index.flush();
+		journal.writeTip(height, block.getHash());
+		journal.clearPending();
+		journal.delete(height - maxReorgDepth);
+	}
+
+	/**
+	 * Reverts the changes of the last connected block
+	 * @return Hash of the disconnected block
+	 * @throws IllegalStateException if no block is connected, or the tip is older than the undo records kept
+	 * @throws IOException if the index or the journal cannot be written
+	 */
+	public synchronized Sha256Hash disconnectTip() throws IOException {
+
+		int height = journal.getTipHeight();
+		if (height < 0) {
+			throw new IllegalStateException("No block to disconnect");
+		}
+		BlockUndo undo = journal.read(height);
+		if (undo == null || !undo.blockHash.equals(journal.getTipHash())) {
+			throw new IllegalStateException("No undo record for tip " + journal.getTipHash() + " at height " + height);
+		}
+		journal.setPending(height);
+		revert(undo);
+		return undo.blockHash;
+	}
+
+	/**
+	 * Switches to another branch: disconnects blocks down to the fork point, then connects the new branch
+	 * @param forkPoint Hash of the last block shared by both branches
+	 * @param newBranch Blocks of the new branch in chain order, the first one extending the fork point
+	 * @throws IllegalStateException if the fork point is deeper than the undo records kept
+	 * @throws IOException if the index or the journal cannot be written
+	 */
+	public synchronized void reorganize(Sha256Hash forkPoint, List<Block> newBranch) throws IOException {
+
+		while (!forkPoint.equals(journal.getTipHash())) {
+			disconnectTip();
+		}
+		for (Block block : newBranch) {
+			connectBlock(block);
+		}
+	}
+
+	/**
+	 * Colors the transactions of the block from the index, on the pool when the block is large enough
+	 */
+	void colorBlock(Block block, Map<OutPoint, UtxoEntry> created, Map<OutPoint, UtxoEntry> spent) {
+
+		List<Transaction> transactions = block.getTransactions();
+		BlockColoring coloring = new BlockColoring(index, coloringEngine, assetID, transactions);
+		if (pool == null || transactions.size() < PARALLEL_THRESHOLD) {
+			coloring.colorSerially();
+		}
+		else {
+			coloring.colorInParallel(pool);
+		}
+		coloring.collectChanges(created, spent);
+	}
+
+	/**
+	 * Undoes the changes of a block and makes its parent the tip. Applying it twice has the same effect as once.
+	 */
+	private void revert(BlockUndo undo) throws IOException {
+
+		ListIterator<OutPoint> created = undo.created.listIterator(undo.created.size());
+		while (created.hasPrevious()) {
+			index.remove(created.previous());
+		}
+		for (Map.Entry<OutPoint, UtxoEntry> entry : undo.spent.entrySet()) {
+			index.put(entry.getKey(), entry.getValue());
+		}
+		index.flush();
+		journal.writeTip(undo.height - 1, undo.height == 0 ? null : undo.prevBlockHash);
+		journal.clearPending();
+		journal.delete(undo.height);
+	}
+
+	/**
+	 * Reverts the block whose changes were interrupted by a crash
+	 */
+	private void recover() throws IOException {
+
+		int pending = journal.getPending();
+		if (pending < 0) {
+			return;
+		}
+		BlockUndo undo = journal.read(pending);
+		if (undo == null) {
+			// The block was fully reverted, only the marker was left
+			journal.clearPending();
+			return;
+		}
+		revert(undo);
+	}
+}
@@ -0,0 +1,78 @@
+package com.chaintope.openassetsj.index;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.OutPoint;
+
+/**
+ * Outputs picked by a CoinSelector to cover an amount of an asset, or of satoshis for uncolored outputs
+ */
+public final class CoinSelection {
+
+	private final AssetId assetId;
+	private final long target;
+	private final long total;
+	private final List<OutPoint> outPoints;
+	private final List<UtxoEntry> entries;
+
+	CoinSelection(AssetId assetId, long target, long total, List<OutPoint> outPoints, List<UtxoEntry> entries) {
+
+		this.assetId = assetId;
+		this.target = target;
+		this.total = total;
+		this.outPoints = Collections.unmodifiableList(outPoints);
+		this.entries = Collections.unmodifiableList(entries);
+	}
+
+	/**
+	 * Gets the selected asset
+	 * @return Asset ID, null for uncolored outputs
+	 */
+	public AssetId getAssetId() {
+		return assetId;
+	}
+
+	/**
+	 * Gets the amount the selection covers
+	 */
+	public long getTarget() {
+		return target;
+	}
+
+	/**
+	 * Gets the sum of the asset quantities, or values for uncolored outputs, of the selected outputs
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * Gets the amount to send back as change
+	 */
+	public long getChange() {
+		return total - target;
+	}
+
+	/**
+	 * Gets the selected outputs, in the order they were picked
+	 */
+	public List<OutPoint> getOutPoints() {
+		return outPoints;
+	}
+
+	/**
+	 * Gets the entries of the selected outputs, in the order of getOutPoints()
+	 */
+	public List<UtxoEntry> getEntries() {
+		return entries;
+	}
+
+	@Override
+	public String toString() {
+
+		return "CoinSelection{assetId=" + assetId + ", target=" + target + ", total=" + total
+				+ ", inputs=" + outPoints.size() + "}";
+	}
+}
@@ -0,0 +1,289 @@
+package com.chaintope.openassetsj.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.OutPoint;
+
+/**
+ * Spendable outputs of a wallet, kept sorted per asset so that inputs are picked without scanning the wallet.
+ *
+ * Colored outputs are ordered by asset quantity under their asset ID, uncolored outputs by value under the
+ * null asset ID, which is where fees are paid from. Every pick is a single navigation of a sorted set,
+ * O(log n) in the number of outputs of the asset, and adding or removing an output is O(log n) as well.
+ * Selecting does not reserve anything, outputs are removed once the transaction spending them is sent.
+ *
+ * Selections may run concurrently, updates are serialized.
+ */
+public class CoinSelector {
+
+	/**
+	 * How outputs are picked to cover an amount
+	 */
+	public enum Strategy {
+
+		/**
+		 * Largest outputs first, which consolidates the wallet
+		 */
+		LARGEST_FIRST,
+
+		/**
+		 * A single output of exactly the amount, leaving no change, otherwise as MINIMIZE_INPUTS
+		 */
+		EXACT_MATCH,
+
+		/**
+		 * Largest outputs until the smallest output covering the rest can be picked, which takes as few inputs
+		 * as largest-first but leaves less change
+		 */
+		MINIMIZE_INPUTS
+	}
+
+	private final Map<AssetId, NavigableSet<Coin>> coinsByAsset = new HashMap<>();
+	private final Map<AssetId, Long> totals = new HashMap<>();
+	private final Map<OutPoint, Coin> coins = new HashMap<>();
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private long nextSequence;
+
+	/**
+	 * Creates a selector over the outputs of an owner in the index, skipping outputs locked by other scripts
+	 * @param index Colored UTXO index
+	 * @param ownerHash hash160 of the output script of the owner
+	 * @return Selector
+	 */
+	public static CoinSelector of(ColoredUtxoIndex index, byte[] ownerHash) {
+
+		CoinSelector selector = new CoinSelector();
+		index.forEach((outPoint, entry) -> {
+			if (Arrays.equals(ownerHash, entry.getOwnerHash())) {
+				selector.add(outPoint, entry);
+			}
+		});
+		return selector;
+	}
+
+	/**
+	 * Adds a spendable output, replacing the output at the same out point
+	 * @param outPoint Out point of the output
+	 * @param entry Asset, quantity and value of the output
+	 */
+	public void add(OutPoint outPoint, UtxoEntry entry) {
+
+		AssetId assetId = entry.getAssetId();
+		long amount = entry.isColored() ? entry.getAssetQuantity() : entry.getValue();
+		lock.writeLock().lock();
+		try {
+			removeCoin(coins.get(outPoint));
+			Coin coin = new Coin(outPoint, entry, amount, nextSequence++);
+			coins.put(outPoint, coin);
+			coinsByAsset.computeIfAbsent(assetId, key -> new TreeSet<>()).add(coin);
+			totals.merge(assetId, amount, Long::sum);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes an output, e.g. once it is spent
+	 * @param outPoint Out point of the output
+	 * @return Whether the output was spendable
+	 */
+	public boolean remove(OutPoint outPoint) {
+
+		lock.writeLock().lock();
+		try {
+			return removeCoin(coins.get(outPoint));
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the outputs of a selection
+	 * @param selection Selection whose transaction was sent
+	 */
+	public void removeAll(CoinSelection selection) {
+
+		lock.writeLock().lock();
+		try {
+			for (OutPoint outPoint : selection.getOutPoints()) {
+				removeCoin(coins.get(outPoint));
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of spendable outputs
+	 */
+	public int size() {
+
+		lock.readLock().lock();
+		try {
+			return coins.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the spendable amount of an asset
+	 * @param assetId Asset ID, null for the value of uncolored outputs
+	 * @return Sum of the asset quantities, or of the values for uncolored outputs
+	 */
+	public long getSpendable(AssetId assetId) {
+
+		lock.readLock().lock();
+		try {
+			return totals.getOrDefault(assetId, 0L);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Picks outputs of an asset covering an amount
+	 * @param assetId Asset ID, null to pick uncolored outputs by value, e.g. for fees
+	 * @param amount Asset quantity, or satoshis for uncolored outputs, greater than 0
+	 * @param strategy How outputs are picked
+	 * @return Selection, null if the spendable outputs of the asset do not cover the amount
+	 */
+	public CoinSelection select(AssetId assetId, long amount, Strategy strategy) {
+
+		if (amount <= 0) {
+			throw new IllegalArgumentException("Amount must be positive: " + amount);
+		}
+		lock.readLock().lock();
+		try {
+			NavigableSet<Coin> sorted = coinsByAsset.get(assetId);
+			if (sorted == null || totals.get(assetId) < amount) {
+				return null;
+			}
+			List<Coin> picked = new ArrayList<>();
+			long total;
+			switch (strategy) {
+				case LARGEST_FIRST:
+					total = largestFirst(sorted, amount, picked);
+					break;
+				case EXACT_MATCH:
+					Coin exact = sorted.ceiling(Coin.probe(amount));
+					if (exact != null && exact.amount == amount) {
+						picked.add(exact);
+						total = amount;
+						break;
+					}
+					total = minimizeInputs(sorted, amount, picked);
+					break;
+				default:
+					total = minimizeInputs(sorted, amount, picked);
+					break;
+			}
+			List<OutPoint> outPoints = new ArrayList<>(picked.size());
+			List<UtxoEntry> entries = new ArrayList<>(picked.size());
+			for (Coin coin : picked) {
+
+				outPoints.add(coin.outPoint);
+				entries.add(coin.entry);
+			}
+			return new CoinSelection(assetId, amount, total, outPoints, entries);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private static long largestFirst(NavigableSet<Coin> sorted, long amount, List<Coin> picked) {
+
+		long total = 0;
+		Iterator<Coin> largest = sorted.descendingIterator();
+		while (total < amount) {
+
+			Coin coin = largest.next();
+			picked.add(coin);
+			total += coin.amount;
+		}
+		return total;
+	}
+
+	private static long minimizeInputs(NavigableSet<Coin> sorted, long amount, List<Coin> picked) {
+
+		long total = 0;
+		NavigableSet<Coin> remaining = sorted;
+		while (total < amount) {
+
+			// Smallest output covering the rest, among those not picked yet
+			Coin covering = remaining.ceiling(Coin.probe(amount - total));
+			if (covering != null) {
+
+				picked.add(covering);
+				return total + covering.amount;
+			}
+			Coin largest = remaining.last();
+			picked.add(largest);
+			total += largest.amount;
+			remaining = remaining.headSet(largest, false);
+		}
+		return total;
+	}
+
+	private boolean removeCoin(Coin coin) {
+
+		if (coin == null) {
+			return false;
+		}
+		AssetId assetId = coin.entry.getAssetId();
+		coins.remove(coin.outPoint);
+		NavigableSet<Coin> sorted = coinsByAsset.get(assetId);
+		sorted.remove(coin);
+		if (sorted.isEmpty()) {
+
+			coinsByAsset.remove(assetId);
+			totals.remove(assetId);
+		}
+		else {
+			totals.merge(assetId, -coin.amount, Long::sum);
+		}
+		return true;
+	}
+
+	/**
+	 * Output ordered by amount, then by the order it was added in
+	 */
+	private static final class Coin implements Comparable<Coin> {
+
+		private final OutPoint outPoint;
+		private final UtxoEntry entry;
+		private final long amount;
+		private final long sequence;
+
+		Coin(OutPoint outPoint, UtxoEntry entry, long amount, long sequence) {
+
+			this.outPoint = outPoint;
+			this.entry = entry;
+			this.amount = amount;
+			this.sequence = sequence;
+		}
+
+		/**
+		 * Creates a key sorting before every output of the amount
+		 */
+		static Coin probe(long amount) {
+			return new Coin(null, null, amount, Long.MIN_VALUE);
+		}
+
+		@Override
+		public int compareTo(Coin other) {
+
+			int byAmount = Long.compare(amount, other.amount);
+			return (byAmount != 0) ? byAmount : Long.compare(sequence, other.sequence);
+		}
+	}
+}
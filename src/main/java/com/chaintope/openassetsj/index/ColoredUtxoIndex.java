@@ -0,0 +1,817 @@
+package com.chaintope.openassetsj.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+import org.bitcoinj.core.Sha256Hash;
+
+import com.chaintope.openassetsj.index.BalanceTable.OwnerBalances;
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.AssetIdPool;
+import com.chaintope.openassetsj.model.OutPoint;
+
+/**
+ * Persistent index of unspent outputs, mapping out points to their asset, quantity and owner.
+ *
+ * Entries live in an open-addressing hash table of fixed 80 byte slots, spread over memory-mapped segment
+ * files so that no single mapping exceeds the 2 GB limit of a MappedByteBuffer. Asset IDs are stored as the
+ * ordinals of an AssetIdPool, persisted in an append-only file next to the segments.
+ * When the table fills up it is rebuilt into a new generation of segment files, and the old generation is
+ * deleted only after the metadata points at the new one, so a crash during a rebuild keeps the old table.
+ * Asset balances per owner and in total are kept in memory, summed from the slots on the first balance
+ * query and updated with every put() and remove() after that.
+ *
+ * Lookups may run concurrently, updates are serialized. Changes reach the disk on flush() and close().
+ * Listeners are told of every put() and remove() while the update still holds the index.
+ */
+public class ColoredUtxoIndex implements Closeable {
+
+	public static final long DEFAULT_INITIAL_CAPACITY = 1 << 16;
+	// 2^20 slots of 80 bytes, 80 MB per segment file
+	static final int DEFAULT_SEGMENT_SHIFT = 20;
+
+	private static final String META_FILE = "index.meta";
+	private static final String ASSETS_FILE = "assets.dat";
+	private static final String SEGMENT_PREFIX = "slots-";
+	private static final String SEGMENT_SUFFIX = ".seg";
+
+	// "OAUX"
+	private static final int MAGIC = 0x4f415558;
+	private static final int FORMAT_VERSION = 1;
+	private static final int META_SIZE = 48;
+
+	private static final int SLOT_SIZE = 80;
+	private static final int STATE = 0;
+	private static final int TX_HASH = 1;
+	private static final int OUTPUT_INDEX = 33;
+	private static final int ASSET = 37;
+	private static final int QUANTITY = 41;
+	private static final int VALUE = 49;
+	private static final int OWNER = 57;
+
+	private static final byte EMPTY = 0;
+	private static final byte LIVE = 1;
+	private static final byte DELETED = 2;
+
+	private static final int NO_ASSET = -1;
+	private static final double MAX_LOAD = 0.7;
+
+	private final Path directory;
+	private final FileChannel metaChannel;
+	private final FileChannel assetChannel;
+	private final AssetIdPool assetIds = new AssetIdPool();
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final List<UtxoIndexListener> listeners = new CopyOnWriteArrayList<>();
+
+	private int segmentShift;
+	private long generation;
+	private long capacity;
+	private long size;
+	private long tombstones;
+	private MappedByteBuffer[] segments;
+	private boolean dirty;
+	private boolean closed;
+	// Built on the first balance query, then updated by put() and remove()
+	private volatile BalanceTable balances;
+
+	private ColoredUtxoIndex(Path directory, long initialCapacity, int segmentShift) throws IOException {
+
+		this.directory = directory;
+		Files.createDirectories(directory);
+		Path metaPath = directory.resolve(META_FILE);
+		boolean exists = Files.exists(metaPath) && Files.size(metaPath) >= META_SIZE;
+
+		metaChannel = FileChannel.open(metaPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		assetChannel = FileChannel.open(directory.resolve(ASSETS_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		boolean clean = true;
+		if (exists) {
+			clean = readMeta();
+		}
+		else {
+
+			this.segmentShift = segmentShift;
+			this.generation = 0;
+			this.capacity = tableCapacity(initialCapacity);
+		}
+		loadAssets();
+		deleteOtherGenerations();
+		segments = mapSegments(generation, capacity);
+		if (!exists) {
+			writeMeta(true);
+		}
+		else if (!clean) {
+			recount();
+		}
+	}
+
+	/**
+	 * Opens the index stored in the directory, creating an empty one if there is none
+	 * @param directory Directory holding the index files
+	 * @return Open index
+	 * @throws IOException if the files cannot be read or created
+	 */
+	public static ColoredUtxoIndex open(Path directory) throws IOException {
+
+		return open(directory, DEFAULT_INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Opens the index stored in the directory, creating an empty one sized for the expected number of outputs
+	 * @param directory Directory holding the index files
+	 * @param initialCapacity Number of outputs the new index holds before it is first rebuilt, ignored for an existing index
+	 * @return Open index
+	 * @throws IOException if the files cannot be read or created
+	 */
+	public static ColoredUtxoIndex open(Path directory, long initialCapacity) throws IOException {
+
+		return new ColoredUtxoIndex(directory, initialCapacity, DEFAULT_SEGMENT_SHIFT);
+	}
+
+	/**
+	 * Opens the index with segments of 2^segmentShift slots, so that tests can cross segment boundaries
+	 */
+	static ColoredUtxoIndex open(Path directory, long initialCapacity, int segmentShift) throws IOException {
+
+		return new ColoredUtxoIndex(directory, initialCapacity, segmentShift);
+	}
+
+	/**
+	 * Gets the pool numbering the asset IDs held by the index
+	 * @return Asset ID pool, to be read only
+	 */
+	public AssetIdPool getAssetIds() {
+		return assetIds;
+	}
+
+	/**
+	 * Gets the unspent output at the out point
+	 * @param outPoint Out point of the output
+	 * @return Entry, null if the output is not in the index
+	 */
+	public UtxoEntry get(OutPoint outPoint) {
+
+		Key key = new Key(outPoint);
+		lock.readLock().lock();
+		try {
+			ensureOpen();
+			long slot = find(key);
+			return (slot < 0) ? null : readEntry(slot);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Checks whether the output at the out point is in the index
+	 * @param outPoint Out point of the output
+	 * @return true if the output is unspent
+	 */
+	public boolean contains(OutPoint outPoint) {
+
+		Key key = new Key(outPoint);
+		lock.readLock().lock();
+		try {
+			ensureOpen();
+			return find(key) >= 0;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds an unspent output, replacing the entry already stored at the out point
+	 * @param outPoint Out point of the output
+	 * @param entry Asset, quantity and owner of the output
+	 * @throws IOException if the index cannot grow or record a new asset ID
+	 */
+	public void put(OutPoint outPoint, UtxoEntry entry) throws IOException {
+
+		Key key = new Key(outPoint);
+		lock.writeLock().lock();
+		try {
+			ensureOpen();
+			markDirty();
+			int assetOrdinal = internAsset(entry.getAssetId());
+			if (size + tombstones + 1 > capacity * MAX_LOAD) {
+				rebuild();
+			}
+
+			long mask = capacity - 1;
+			long slot = key.hash() & mask;
+			long target = -1;
+			while (true) {
+
+				ByteBuffer segment = segments[(int) (slot >>> segmentShift)];
+				int offset = slotOffset(slot);
+				byte state = segment.get(offset + STATE);
+				if (state == EMPTY) {
+
+					if (target < 0) {
+						target = slot;
+					}
+					break;
+				}
+				if (state == DELETED) {
+
+					if (target < 0) {
+						target = slot;
+					}
+				}
+				else if (key.matches(segment, offset)) {
+
+					UtxoEntry replaced = listeners.isEmpty() ? null : readEntry(slot);
+					updateBalance(segment, offset, -1);
+					writeEntry(segment, offset, key, assetOrdinal, entry);
+					updateBalance(segment, offset, 1);
+					for (UtxoIndexListener listener : listeners) {
+
+						listener.onRemoved(outPoint, replaced);
+						listener.onAdded(outPoint, entry);
+					}
+					return;
+				}
+				slot = (slot + 1) & mask;
+			}
+
+			ByteBuffer segment = segments[(int) (target >>> segmentShift)];
+			int offset = slotOffset(target);
+			if (segment.get(offset + STATE) == DELETED) {
+				tombstones--;
+			}
+			writeEntry(segment, offset, key, assetOrdinal, entry);
+			updateBalance(segment, offset, 1);
+			size++;
+			for (UtxoIndexListener listener : listeners) {
+				listener.onAdded(outPoint, entry);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the output at the out point, e.g. when it is spent
+	 * @param outPoint Out point of the output
+	 * @return The removed entry, null if the output was not in the index
+	 * @throws IOException if the index cannot record the change
+	 */
+	public UtxoEntry remove(OutPoint outPoint) throws IOException {
+
+		Key key = new Key(outPoint);
+		lock.writeLock().lock();
+		try {
+			ensureOpen();
+			long slot = find(key);
+			if (slot < 0) {
+				return null;
+			}
+			markDirty();
+			UtxoEntry entry = readEntry(slot);
+			updateBalance(segments[(int) (slot >>> segmentShift)], slotOffset(slot), -1);
+
+			// A slot followed by an empty one ends every probe sequence through it, so it can be emptied
+			long next = (slot + 1) & (capacity - 1);
+			boolean endOfRun = segments[(int) (next >>> segmentShift)].get(slotOffset(next) + STATE) == EMPTY;
+			segments[(int) (slot >>> segmentShift)].put(slotOffset(slot) + STATE, endOfRun ? EMPTY : DELETED);
+			if (!endOfRun) {
+				tombstones++;
+			}
+			size--;
+			for (UtxoIndexListener listener : listeners) {
+				listener.onRemoved(outPoint, entry);
+			}
+			return entry;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Registers a listener for the outputs put into and removed from the index. It is called from put() and
+	 * remove() while they hold the index, after the change, so it must be quick and must not call the index.
+	 * @param listener Listener
+	 */
+	public void addListener(UtxoIndexListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Unregisters a listener
+	 * @param listener Listener
+	 * @return Whether the listener was registered
+	 */
+	public boolean removeListener(UtxoIndexListener listener) {
+		return listeners.remove(listener);
+	}
+
+	/**
+	 * Gets the number of unspent outputs in the index
+	 */
+	public long size() {
+
+		lock.readLock().lock();
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Calls the action for every unspent output, in no particular order.
+	 * The index must not be updated from the action.
+	 * @param action Receives the out point and entry of each output
+	 */
+	public void forEach(BiConsumer<OutPoint, UtxoEntry> action) {
+
+		lock.readLock().lock();
+		try {
+			ensureOpen();
+			for (long slot = 0; slot < capacity; slot++) {
+
+				ByteBuffer segment = segments[(int) (slot >>> segmentShift)];
+				int offset = slotOffset(slot);
+				if (segment.get(offset + STATE) == LIVE) {
+					action.accept(readOutPoint(segment, offset), readEntry(slot));
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the asset quantities held by an owner. The first balance query sums the index once,
+	 * later ones read the per-owner balances kept up to date by put() and remove().
+	 * @param ownerHash hash160 of the output script of the owner, see UtxoEntry.ownerHash()
+	 * @return Quantity per asset ID, empty if the owner holds no asset
+	 */
+	public Map<AssetId, Long> getBalances(byte[] ownerHash) {
+
+		BalanceTable table = balanceTable();
+		ByteBuffer owner = ByteBuffer.wrap(ownerHash);
+		Map<AssetId, Long> balances = new HashMap<>();
+		lock.readLock().lock();
+		try {
+			ensureOpen();
+			OwnerBalances ownerBalances = table.get(owner.getLong(0), owner.getLong(8), owner.getInt(16));
+			if (ownerBalances != null) {
+				for (int i = 0; i < ownerBalances.size(); i++) {
+					balances.put(assetIds.get(ownerBalances.getAssetOrdinal(i)), ownerBalances.getQuantity(i));
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return balances;
+	}
+
+	/**
+	 * Gets the quantity of an asset held by an owner
+	 * @param ownerHash hash160 of the output script of the owner, see UtxoEntry.ownerHash()
+	 * @param assetId Asset ID
+	 * @return Quantity, 0 if the owner does not hold the asset
+	 */
+	public long getBalance(byte[] ownerHash, AssetId assetId) {
+
+		BalanceTable table = balanceTable();
+		ByteBuffer owner = ByteBuffer.wrap(ownerHash);
+		lock.readLock().lock();
+		try {
+			ensureOpen();
+			int assetOrdinal = assetIds.ordinalOf(assetId);
+			OwnerBalances ownerBalances = table.get(owner.getLong(0), owner.getLong(8), owner.getInt(16));
+			return (assetOrdinal < 0 || ownerBalances == null) ? 0 : ownerBalances.getQuantityOf(assetOrdinal);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the quantity of an asset held by the unspent outputs of all owners
+	 * @param assetId Asset ID
+	 * @return Quantity, 0 if no unspent output holds the asset
+	 */
+	public long getTotalBalance(AssetId assetId) {
+
+		BalanceTable table = balanceTable();
+		lock.readLock().lock();
+		try {
+			ensureOpen();
+			int assetOrdinal = assetIds.ordinalOf(assetId);
+			return (assetOrdinal < 0) ? 0 : table.getTotal(assetOrdinal);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes every change to the disk
+	 * @throws IOException if the files cannot be written
+	 */
+	public void flush() throws IOException {
+
+		lock.writeLock().lock();
+		try {
+			ensureOpen();
+			for (MappedByteBuffer segment : segments) {
+				segment.force();
+			}
+			assetChannel.force(false);
+			writeMeta(true);
+			dirty = false;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes every change to the disk and releases the files
+	 */
+	@Override
+	public void close() throws IOException {
+
+		lock.writeLock().lock();
+		try {
+			if (closed) {
+				return;
+			}
+			flush();
+			closed = true;
+			// The mappings are released when the buffers are garbage collected
+			segments = null;
+			assetChannel.close();
+			metaChannel.close();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void ensureOpen() {
+
+		if (closed) {
+			throw new IllegalStateException("Index " + directory + " is closed");
+		}
+	}
+
+	/**
+	 * Marks the counters on disk as stale before the first change after a flush
+	 */
+	private void markDirty() throws IOException {
+
+		if (!dirty) {
+
+			writeMeta(false);
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Gets the ordinal of the asset ID, appending new asset IDs to the asset file
+	 */
+	private int internAsset(AssetId assetId) throws IOException {
+
+		if (assetId == null) {
+			return NO_ASSET;
+		}
+		int count = assetIds.size();
+		int ordinal = assetIds.intern(assetId);
+		if (ordinal == count) {
+
+			ByteBuffer record = ByteBuffer.wrap(assetId.toByteArray());
+			long position = (long) ordinal * AssetId.LENGTH;
+			while (record.hasRemaining()) {
+				position += assetChannel.write(record, position);
+			}
+		}
+		return ordinal;
+	}
+
+	/**
+	 * Finds the slot holding the key
+	 * @return Slot, -1 if the key is not in the table
+	 */
+	private long find(Key key) {
+
+		long mask = capacity - 1;
+		long slot = key.hash() & mask;
+		while (true) {
+
+			ByteBuffer segment = segments[(int) (slot >>> segmentShift)];
+			int offset = slotOffset(slot);
+			byte state = segment.get(offset + STATE);
+			if (state == EMPTY) {
+				return -1;
+			}
+			if (state == LIVE && key.matches(segment, offset)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private int slotOffset(long slot) {
+		return (int) (slot & ((1L << segmentShift) - 1)) * SLOT_SIZE;
+	}
+
+	/**
+	 * Builds the balance table from the live slots on first use
+	 */
+	private BalanceTable balanceTable() {
+
+		BalanceTable table = balances;
+		if (table != null) {
+			return table;
+		}
+		lock.writeLock().lock();
+		try {
+			ensureOpen();
+			if (balances == null) {
+
+				table = new BalanceTable();
+				for (long slot = 0; slot < capacity; slot++) {
+
+					ByteBuffer segment = segments[(int) (slot >>> segmentShift)];
+					int offset = slotOffset(slot);
+					if (segment.get(offset + STATE) == LIVE) {
+						addBalance(table, segment, offset, 1);
+					}
+				}
+				balances = table;
+			}
+			return balances;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds or subtracts the quantity of the entry in the slot to the balances, once they are built
+	 */
+	private void updateBalance(ByteBuffer segment, int offset, int sign) {
+
+		if (balances != null) {
+			addBalance(balances, segment, offset, sign);
+		}
+	}
+
+	private static void addBalance(BalanceTable table, ByteBuffer segment, int offset, int sign) {
+
+		int assetOrdinal = segment.getInt(offset + ASSET);
+		if (assetOrdinal != NO_ASSET) {
+			table.add(segment.getLong(offset + OWNER), segment.getLong(offset + OWNER + 8), segment.getInt(offset + OWNER + 16),
+					assetOrdinal, sign * segment.getLong(offset + QUANTITY));
+		}
+	}
+
+	private void writeEntry(ByteBuffer segment, int offset, Key key, int assetOrdinal, UtxoEntry entry) {
+
+		segment.putLong(offset + TX_HASH, key.hash0);
+		segment.putLong(offset + TX_HASH + 8, key.hash1);
+		segment.putLong(offset + TX_HASH + 16, key.hash2);
+		segment.putLong(offset + TX_HASH + 24, key.hash3);
+		segment.putInt(offset + OUTPUT_INDEX, key.index);
+		segment.putInt(offset + ASSET, assetOrdinal);
+		segment.putLong(offset + QUANTITY, entry.getAssetQuantity());
+		segment.putLong(offset + VALUE, entry.getValue());
+		byte[] ownerHash = entry.getOwnerHash();
+		for (int i = 0; i < ownerHash.length; i++) {
+			segment.put(offset + OWNER + i, ownerHash[i]);
+		}
+		// The state goes last, so a slot is never live with a partially written entry
+		segment.put(offset + STATE, LIVE);
+	}
+
+	private UtxoEntry readEntry(long slot) {
+
+		ByteBuffer segment = segments[(int) (slot >>> segmentShift)];
+		int offset = slotOffset(slot);
+		int assetOrdinal = segment.getInt(offset + ASSET);
+		byte[] ownerHash = new byte[UtxoEntry.OWNER_HASH_LENGTH];
+		for (int i = 0; i < ownerHash.length; i++) {
+			ownerHash[i] = segment.get(offset + OWNER + i);
+		}
+		return new UtxoEntry(assetOrdinal == NO_ASSET ? null : assetIds.get(assetOrdinal),
+				segment.getLong(offset + QUANTITY), segment.getLong(offset + VALUE), ownerHash);
+	}
+
+	private static OutPoint readOutPoint(ByteBuffer segment, int offset) {
+
+		ByteBuffer hash = ByteBuffer.allocate(Sha256Hash.LENGTH);
+		for (int i = 0; i < Sha256Hash.LENGTH; i += 8) {
+			hash.putLong(i, segment.getLong(offset + TX_HASH + i));
+		}
+		return new OutPoint(Sha256Hash.wrap(hash.array()), segment.getInt(offset + OUTPUT_INDEX) & 0xffffffffL);
+	}
+
+	/**
+	 * Copies every live slot into a new generation of segments, doubling the capacity if the table is
+	 * more than half full and only dropping tombstones otherwise
+	 */
+	private void rebuild() throws IOException {
+
+		long newCapacity = (size + 1 > capacity * MAX_LOAD / 2) ? capacity * 2 : capacity;
+		long newGeneration = generation + 1;
+		MappedByteBuffer[] newSegments = mapSegments(newGeneration, newCapacity);
+		long mask = newCapacity - 1;
+
+		for (long slot = 0; slot < capacity; slot++) {
+
+			ByteBuffer segment = segments[(int) (slot >>> segmentShift)];
+			int offset = slotOffset(slot);
+			if (segment.get(offset + STATE) != LIVE) {
+				continue;
+			}
+			long target = Key.hash(segment.getLong(offset + TX_HASH), segment.getInt(offset + OUTPUT_INDEX)) & mask;
+			while (newSegments[(int) (target >>> segmentShift)].get(slotOffset(target) + STATE) != EMPTY) {
+				target = (target + 1) & mask;
+			}
+			ByteBuffer newSegment = newSegments[(int) (target >>> segmentShift)];
+			int newOffset = slotOffset(target);
+			for (int i = 0; i < SLOT_SIZE; i += 8) {
+				newSegment.putLong(newOffset + i, segment.getLong(offset + i));
+			}
+		}
+		for (MappedByteBuffer segment : newSegments) {
+			segment.force();
+		}
+
+		segments = newSegments;
+		generation = newGeneration;
+		capacity = newCapacity;
+		tombstones = 0;
+		writeMeta(false);
+		deleteOtherGenerations();
+	}
+
+	private MappedByteBuffer[] mapSegments(long generation, long capacity) throws IOException {
+
+		long segmentSlots = Math.min(capacity, 1L << segmentShift);
+		int count = (int) (capacity / segmentSlots);
+		MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+		for (int i = 0; i < count; i++) {
+
+			Path path = directory.resolve(SEGMENT_PREFIX + generation + "-" + i + SEGMENT_SUFFIX);
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSlots * SLOT_SIZE);
+			}
+		}
+		return mapped;
+	}
+
+	/**
+	 * Deletes the segment files left by earlier generations or by an interrupted rebuild
+	 */
+	private void deleteOtherGenerations() throws IOException {
+
+		String current = SEGMENT_PREFIX + generation + "-";
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path file : files) {
+				if (!file.getFileName().toString().startsWith(current)) {
+					Files.deleteIfExists(file);
+				}
+			}
+		}
+	}
+
+	private void loadAssets() throws IOException {
+
+		long count = assetChannel.size() / AssetId.LENGTH;
+		// A record cut off by a crash was never referenced by a slot
+		assetChannel.truncate(count * AssetId.LENGTH);
+		ByteBuffer records = ByteBuffer.allocate((int) (count * AssetId.LENGTH));
+		while (records.hasRemaining() && assetChannel.read(records, records.position()) >= 0) {
+		}
+		byte[] bytes = records.array();
+		for (int i = 0; i < count; i++) {
+			assetIds.intern(AssetId.fromBytes(bytes, i * AssetId.LENGTH));
+		}
+	}
+
+	/**
+	 * Reads the metadata file
+	 * @return true if the counters were written by a flush and are accurate
+	 */
+	private boolean readMeta() throws IOException {
+
+		ByteBuffer meta = ByteBuffer.allocate(META_SIZE);
+		while (meta.hasRemaining() && metaChannel.read(meta, meta.position()) >= 0) {
+		}
+		if (meta.getInt(0) != MAGIC || meta.getInt(4) != FORMAT_VERSION) {
+			throw new IOException("Not a colored UTXO index: " + directory);
+		}
+		generation = meta.getLong(8);
+		capacity = meta.getLong(16);
+		size = meta.getLong(24);
+		tombstones = meta.getLong(32);
+		segmentShift = meta.getInt(40);
+		return meta.getInt(44) == 1;
+	}
+
+	private void writeMeta(boolean clean) throws IOException {
+
+		ByteBuffer meta = ByteBuffer.allocate(META_SIZE);
+		meta.putInt(0, MAGIC);
+		meta.putInt(4, FORMAT_VERSION);
+		meta.putLong(8, generation);
+		meta.putLong(16, capacity);
+		meta.putLong(24, size);
+		meta.putLong(32, tombstones);
+		meta.putInt(40, segmentShift);
+		meta.putInt(44, clean ? 1 : 0);
+		while (meta.hasRemaining()) {
+			metaChannel.write(meta, meta.position());
+		}
+		metaChannel.force(false);
+	}
+
+	/**
+	 * Recomputes the counters after the index was not closed properly
+	 */
+	private void recount() {
+
+		size = 0;
+		tombstones = 0;
+		for (long slot = 0; slot < capacity; slot++) {
+
+			byte state = segments[(int) (slot >>> segmentShift)].get(slotOffset(slot) + STATE);
+			if (state == LIVE) {
+				size++;
+			}
+			else if (state == DELETED) {
+				tombstones++;
+			}
+		}
+		dirty = true;
+	}
+
+	/**
+	 * Power of two number of slots that holds the expected number of entries under MAX_LOAD
+	 */
+	private static long tableCapacity(long expectedEntries) {
+
+		long capacity = 64;
+		while (capacity * MAX_LOAD < expectedEntries) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	/**
+	 * Out point in the binary form of the slots, a 32 byte transaction hash and a 4 byte output index
+	 */
+	private static final class Key {
+
+		private final long hash0;
+		private final long hash1;
+		private final long hash2;
+		private final long hash3;
+		private final int index;
+
+		Key(OutPoint outPoint) {
+
+			ByteBuffer hash = ByteBuffer.wrap(outPoint.getHash().getBytes());
+			hash0 = hash.getLong(0);
+			hash1 = hash.getLong(8);
+			hash2 = hash.getLong(16);
+			hash3 = hash.getLong(24);
+			index = (int) outPoint.getIndex();
+		}
+
+		long hash() {
+			return hash(hash0, index);
+		}
+
+		/**
+		 * Transaction hashes are already uniform, so eight of their bytes mixed with the index are enough
+		 */
+		static long hash(long hash0, int index) {
+
+			long h = hash0 ^ (index * 0x9E3779B97F4A7C15L);
+			return h ^ (h >>> 29);
+		}
+
+		boolean matches(ByteBuffer segment, int offset) {
+
+			return segment.getLong(offset + TX_HASH) == hash0
+					&& segment.getLong(offset + TX_HASH + 8) == hash1
+					&& segment.getLong(offset + TX_HASH + 16) == hash2
+					&& segment.getLong(offset + TX_HASH + 24) == hash3
+					&& segment.getInt(offset + OUTPUT_INDEX) == index;
+		}
+	}
+}
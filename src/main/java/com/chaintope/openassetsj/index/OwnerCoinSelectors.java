@@ -0,0 +1,98 @@
+package com.chaintope.openassetsj.index;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.chaintope.openassetsj.model.OutPoint;
+
+/**
+ * Coin selectors of the owners spending from an index, each built with a single pass over the index the first
+ * time its owner is asked for and kept up to date from the index changes after that, so that repeated transfers
+ * from an owner pick their inputs in O(log n) without rescanning the index.
+ *
+ * Selectors are kept until close(), one per owner asked for.
+ */
+public class OwnerCoinSelectors implements UtxoIndexListener, AutoCloseable {
+
+	private final ColoredUtxoIndex index;
+	private final ConcurrentMap<ByteBuffer, CoinSelector> selectors = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates the selectors of an index and starts following its changes
+	 * @param index Colored UTXO index
+	 */
+	public OwnerCoinSelectors(ColoredUtxoIndex index) {
+
+		this.index = index;
+		index.addListener(this);
+	}
+
+	/**
+	 * Gets the selector over the outputs of an owner, building it on the first call for the owner
+	 * @param ownerHash hash160 of the output script of the owner, see UtxoEntry.ownerHash()
+	 * @return Selector following the index
+	 */
+	public CoinSelector get(byte[] ownerHash) {
+
+		ByteBuffer owner = ByteBuffer.wrap(ownerHash.clone());
+		CoinSelector selector = selectors.get(owner);
+		if (selector != null) {
+			return selector;
+		}
+		synchronized (this) {
+
+			selector = selectors.get(owner);
+			if (selector == null) {
+
+				// Registered before the pass, so that outputs put during it are not missed. The pass holds the
+				// index, so updates following it reach the selector after it.
+				selector = new CoinSelector();
+				selectors.put(owner, selector);
+				CoinSelector populated = selector;
+				index.forEach((outPoint, entry) -> {
+					if (Arrays.equals(ownerHash, entry.getOwnerHash())) {
+						populated.add(outPoint, entry);
+					}
+				});
+			}
+			return selector;
+		}
+	}
+
+	/**
+	 * Gets the number of owners with a selector
+	 */
+	public int size() {
+		return selectors.size();
+	}
+
+	@Override
+	public void onAdded(OutPoint outPoint, UtxoEntry entry) {
+
+		CoinSelector selector = selectors.get(ByteBuffer.wrap(entry.getOwnerHash()));
+		if (selector != null) {
+			selector.add(outPoint, entry);
+		}
+	}
+
+	@Override
+	public void onRemoved(OutPoint outPoint, UtxoEntry entry) {
+
+		CoinSelector selector = selectors.get(ByteBuffer.wrap(entry.getOwnerHash()));
+		if (selector != null) {
+			selector.remove(outPoint);
+		}
+	}
+
+	/**
+	 * Stops following the index and drops the selectors
+	 */
+	@Override
+	public void close() {
+
+		index.removeListener(this);
+		selectors.clear();
+	}
+}
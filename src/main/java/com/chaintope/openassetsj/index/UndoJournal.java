@@ -0,0 +1,259 @@
+package com.chaintope.openassetsj.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bitcoinj.core.Sha256Hash;
+
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.OutPoint;
+
+/**
+ * Files kept by BlockIngestor next to the index: the current tip, one undo record per recent block,
+ * and a marker naming the block whose changes may be half applied.
+ */
+class UndoJournal {
+
+	// "OAUJ"
+	private static final int MAGIC = 0x4f41554a;
+	private static final String TIP_FILE = "tip";
+	private static final String PENDING_FILE = "pending";
+	private static final String UNDO_PREFIX = "undo-";
+	private static final String UNDO_SUFFIX = ".dat";
+
+	private final Path directory;
+	private int tipHeight = -1;
+	private Sha256Hash tipHash;
+
+	UndoJournal(Path directory) throws IOException {
+
+		this.directory = directory;
+		Files.createDirectories(directory);
+		readTip();
+	}
+
+	/**
+	 * Changes a block made to the index, enough to revert them
+	 */
+	static final class BlockUndo {
+
+		final Sha256Hash blockHash;
+		final Sha256Hash prevBlockHash;
+		final int height;
+		// Entries removed from the index by the inputs of the block
+		final Map<OutPoint, UtxoEntry> spent;
+		// Outputs of the block added to the index
+		final List<OutPoint> created;
+
+		BlockUndo(Sha256Hash blockHash, Sha256Hash prevBlockHash, int height, Map<OutPoint, UtxoEntry> spent, List<OutPoint> created) {
+
+			this.blockHash = blockHash;
+			this.prevBlockHash = prevBlockHash;
+			this.height = height;
+			this.spent = spent;
+			this.created = created;
+		}
+	}
+
+	/**
+	 * Writes the undo record of a block and waits until it is on disk
+	 */
+	void write(BlockUndo undo) throws IOException {
+
+		Path path = undoPath(undo.height);
+		try (FileOutputStream file = new FileOutputStream(path.toFile());
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+
+			out.writeInt(MAGIC);
+			out.write(undo.blockHash.getBytes());
+			out.write(undo.prevBlockHash.getBytes());
+			out.writeInt(undo.height);
+			out.writeInt(undo.spent.size());
+			for (Map.Entry<OutPoint, UtxoEntry> spent : undo.spent.entrySet()) {
+
+				writeOutPoint(out, spent.getKey());
+				UtxoEntry entry = spent.getValue();
+				out.writeBoolean(entry.isColored());
+				if (entry.isColored()) {
+					out.write(entry.getAssetId().toByteArray());
+				}
+				out.writeLong(entry.getAssetQuantity());
+				out.writeLong(entry.getValue());
+				out.write(entry.getOwnerHash());
+			}
+			out.writeInt(undo.created.size());
+			for (OutPoint created : undo.created) {
+				writeOutPoint(out, created);
+			}
+			out.flush();
+			file.getFD().sync();
+		}
+	}
+
+	/**
+	 * Reads the undo record of the block at the height
+	 * @return Undo record, null if there is none
+	 */
+	BlockUndo read(int height) throws IOException {
+
+		Path path = undoPath(height);
+		if (!Files.exists(path)) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not an undo record: " + path);
+			}
+			Sha256Hash blockHash = readHash(in);
+			Sha256Hash prevBlockHash = readHash(in);
+			int recordHeight = in.readInt();
+
+			int spentCount = in.readInt();
+			Map<OutPoint, UtxoEntry> spent = new LinkedHashMap<>();
+			for (int i = 0; i < spentCount; i++) {
+
+				OutPoint outPoint = readOutPoint(in);
+				AssetId assetId = null;
+				if (in.readBoolean()) {
+
+					byte[] assetIdBytes = new byte[AssetId.LENGTH];
+					in.readFully(assetIdBytes);
+					assetId = AssetId.fromBytes(assetIdBytes, 0);
+				}
+				long assetQuantity = in.readLong();
+				long value = in.readLong();
+				byte[] ownerHash = new byte[UtxoEntry.OWNER_HASH_LENGTH];
+				in.readFully(ownerHash);
+				spent.put(outPoint, new UtxoEntry(assetId, assetQuantity, value, ownerHash));
+			}
+
+			int createdCount = in.readInt();
+			List<OutPoint> created = new ArrayList<>(createdCount);
+			for (int i = 0; i < createdCount; i++) {
+				created.add(readOutPoint(in));
+			}
+			return new BlockUndo(blockHash, prevBlockHash, recordHeight, spent, created);
+		}
+	}
+
+	void delete(int height) throws IOException {
+		Files.deleteIfExists(undoPath(height));
+	}
+
+	/**
+	 * Records that the changes of the block at the height are about to be applied or reverted
+	 */
+	void setPending(int height) throws IOException {
+		writeAtomically(PENDING_FILE, height, null);
+	}
+
+	/**
+	 * Gets the height of the block whose changes may be half applied
+	 * @return Height, -1 if every change completed
+	 */
+	int getPending() throws IOException {
+
+		Path path = directory.resolve(PENDING_FILE);
+		if (!Files.exists(path)) {
+			return -1;
+		}
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+			return in.readInt();
+		}
+	}
+
+	void clearPending() throws IOException {
+		Files.deleteIfExists(directory.resolve(PENDING_FILE));
+	}
+
+	/**
+	 * Records the block the index reflects
+	 * @param height Height of the tip, -1 for an empty chain
+	 * @param blockHash Hash of the tip, null for an empty chain
+	 */
+	void writeTip(int height, Sha256Hash blockHash) throws IOException {
+
+		writeAtomically(TIP_FILE, height, blockHash);
+		tipHeight = height;
+		tipHash = blockHash;
+	}
+
+	/**
+	 * Gets the height of the tip, -1 if no block is connected
+	 */
+	int getTipHeight() {
+		return tipHeight;
+	}
+
+	/**
+	 * Gets the hash of the tip, null if no block is connected
+	 */
+	Sha256Hash getTipHash() {
+		return tipHash;
+	}
+
+	private void readTip() throws IOException {
+
+		Path path = directory.resolve(TIP_FILE);
+		if (!Files.exists(path)) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+
+			tipHeight = in.readInt();
+			tipHash = in.readBoolean() ? readHash(in) : null;
+		}
+	}
+
+	private void writeAtomically(String name, int height, Sha256Hash blockHash) throws IOException {
+
+		Path temp = directory.resolve(name + ".tmp");
+		try (FileOutputStream file = new FileOutputStream(temp.toFile());
+				DataOutputStream out = new DataOutputStream(file)) {
+
+			out.writeInt(height);
+			out.writeBoolean(blockHash != null);
+			if (blockHash != null) {
+				out.write(blockHash.getBytes());
+			}
+			out.flush();
+			file.getFD().sync();
+		}
+		Files.move(temp, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private Path undoPath(int height) {
+		return directory.resolve(UNDO_PREFIX + height + UNDO_SUFFIX);
+	}
+
+	private static void writeOutPoint(DataOutputStream out, OutPoint outPoint) throws IOException {
+
+		out.write(outPoint.getHash().getBytes());
+		out.writeInt((int) outPoint.getIndex());
+	}
+
+	private static OutPoint readOutPoint(DataInputStream in) throws IOException {
+
+		Sha256Hash hash = readHash(in);
+		return new OutPoint(hash, in.readInt() & 0xffffffffL);
+	}
+
+	private static Sha256Hash readHash(DataInputStream in) throws IOException {
+
+		byte[] hash = new byte[Sha256Hash.LENGTH];
+		in.readFully(hash);
+		return Sha256Hash.wrap(hash);
+	}
+}
@@ -0,0 +1,111 @@
+package com.chaintope.openassetsj.index;
+
+import java.util.Arrays;
+
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.ColoredOutput;
+import com.chaintope.openassetsj.utils.ReusableDigests;
+import com.chaintope.openassetsj.utils.Utils;
+
+/**
+ * Unspent output as stored in the colored UTXO index.
+ * The owner is kept as the hash160 of the output script, which identifies any script type in 20 bytes.
+ */
+public final class UtxoEntry {
+
+	public static final int OWNER_HASH_LENGTH = 20;
+
+	private final AssetId assetId;
+	private final long assetQuantity;
+	private final long value;
+	private final byte[] ownerHash;
+
+	/**
+	 * @param assetId Asset carried by the output, null if it carries none
+	 * @param assetQuantity Quantity of the asset, 0 if it carries none
+	 * @param value Bitcoin value in satoshis
+	 * @param ownerHash hash160 of the output script, 20 bytes
+	 */
+	public UtxoEntry(AssetId assetId, long assetQuantity, long value, byte[] ownerHash) {
+
+		if (ownerHash.length != OWNER_HASH_LENGTH) {
+			throw new IllegalArgumentException("Owner hash of " + ownerHash.length + " bytes");
+		}
+		this.assetId = assetId;
+		this.assetQuantity = assetQuantity;
+		this.value = value;
+		this.ownerHash = ownerHash;
+	}
+
+	/**
+	 * Creates the entry of a colored output
+	 * @param output Output assigned by the coloring engine
+	 * @return Entry
+	 */
+	public static UtxoEntry of(ColoredOutput output) {
+
+		return new UtxoEntry(output.getAssetId(), output.getAssetQuantity(), output.getValue(), ownerHash(output.getScript()));
+	}
+
+	/**
+	 * Computes the owner hash of an output script
+	 * @param script Output script bytes
+	 * @return hash160 of the script
+	 */
+	public static byte[] ownerHash(byte[] script) {
+
+		byte[] hash = new byte[OWNER_HASH_LENGTH];
+		ReusableDigests.forCurrentThread().hash160(script, 0, script.length, hash, 0);
+		return hash;
+	}
+
+	public AssetId getAssetId() {
+		return assetId;
+	}
+
+	public long getAssetQuantity() {
+		return assetQuantity;
+	}
+
+	public long getValue() {
+		return value;
+	}
+
+	public byte[] getOwnerHash() {
+		return ownerHash;
+	}
+
+	/**
+	 * Checks whether the output carries an asset
+	 */
+	public boolean isColored() {
+		return assetId != null;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(ownerHash) * 31 + Long.hashCode(assetQuantity);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof UtxoEntry)) {
+			return false;
+		}
+		UtxoEntry other = (UtxoEntry) o;
+		return assetQuantity == other.assetQuantity && value == other.value
+				&& (assetId == null ? other.assetId == null : assetId.equals(other.assetId))
+				&& Arrays.equals(ownerHash, other.ownerHash);
+	}
+
+	@Override
+	public String toString() {
+
+		return "UtxoEntry{assetId=" + assetId + ", assetQuantity=" + assetQuantity + ", value=" + value
+				+ ", owner=" + Utils.packByteArrayToString(ownerHash) + "}";
+	}
+}
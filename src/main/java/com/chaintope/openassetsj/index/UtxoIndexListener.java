@@ -0,0 +1,23 @@
+package com.chaintope.openassetsj.index;
+
+import com.chaintope.openassetsj.model.OutPoint;
+
+/**
+ * Receives the changes made to a ColoredUtxoIndex, see ColoredUtxoIndex.addListener()
+ */
+public interface UtxoIndexListener {
+
+	/**
+	 * Called when an output is put into the index, after onRemoved() for the entry it replaces if any
+	 * @param outPoint Out point of the output
+	 * @param entry Asset, quantity and owner of the output
+	 */
+	void onAdded(OutPoint outPoint, UtxoEntry entry);
+
+	/**
+	 * Called when an output leaves the index, removed or replaced
+	 * @param outPoint Out point of the output
+	 * @param entry Entry the index held for the output
+	 */
+	void onRemoved(OutPoint outPoint, UtxoEntry entry);
+}
@@ -0,0 +1,13 @@
+package com.chaintope.openassetsj.metrics;
+
+/**
+ * Monotonic count of events, provided by a MetricsRegistry
+ */
+public interface Counter {
+
+	/**
+	 * Adds to the count
+	 * @param count Number of events, at least 0
+	 */
+	void increment(long count);
+}
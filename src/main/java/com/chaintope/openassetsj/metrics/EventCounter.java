@@ -0,0 +1,34 @@
+package com.chaintope.openassetsj.metrics;
+
+/**
+ * Handle of a count metric, held in a static field by the instrumented class and bound to a counter of the
+ * enabled registry. While metrics are disabled increment() does nothing.
+ */
+public final class EventCounter {
+
+	private final String name;
+	private volatile Counter counter;
+
+	EventCounter(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Counts one event
+	 */
+	public void increment() {
+
+		Counter counter = this.counter;
+		if (counter != null) {
+			counter.increment(1);
+		}
+	}
+
+	void bind(MetricsRegistry registry) {
+		counter = (registry != null) ? registry.counter(name) : null;
+	}
+}
@@ -0,0 +1,13 @@
+package com.chaintope.openassetsj.metrics;
+
+/**
+ * Distribution of recorded values, provided by a MetricsRegistry
+ */
+public interface Histogram {
+
+	/**
+	 * Records a value
+	 * @param value Value, at least 0, in nanoseconds for latencies
+	 */
+	void record(long value);
+}
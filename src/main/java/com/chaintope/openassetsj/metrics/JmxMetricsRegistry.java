@@ -0,0 +1,203 @@
+package com.chaintope.openassetsj.metrics;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Registry keeping metrics in memory and exporting each of them as an MXBean, named
+ * &lt;domain&gt;:type=Counter|Histogram|Gauge,name=&lt;metric name&gt;. Histograms are LatencyHistograms.
+ * Closing the registry unregisters its beans.
+ */
+public class JmxMetricsRegistry implements MetricsRegistry, Closeable {
+
+	public static final String DEFAULT_DOMAIN = "com.chaintope.openassetsj";
+
+	// Metric names used as object name values without quoting
+	private static final Pattern PLAIN_NAME = Pattern.compile("[A-Za-z0-9._\\-]+");
+
+	/**
+	 * Attributes of an exported counter
+	 */
+	public interface CounterMXBean {
+
+		long getCount();
+	}
+
+	/**
+	 * Attributes of an exported histogram, latencies in nanoseconds
+	 */
+	public interface HistogramMXBean {
+
+		long getCount();
+
+		double getMean();
+
+		long getMax();
+
+		long getMedian();
+
+		long get95thPercentile();
+
+		long get99thPercentile();
+
+		long get999thPercentile();
+	}
+
+	/**
+	 * Attributes of an exported gauge
+	 */
+	public interface GaugeMXBean {
+
+		long getValue();
+	}
+
+	private final MBeanServer server;
+	private final String domain;
+	private final Map<String, JmxCounter> counters = new ConcurrentHashMap<>();
+	private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+	private final Map<String, ObjectName> registered = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a registry exporting to the platform MBean server under DEFAULT_DOMAIN
+	 */
+	public JmxMetricsRegistry() {
+		this(ManagementFactory.getPlatformMBeanServer(), DEFAULT_DOMAIN);
+	}
+
+	/**
+	 * Creates a registry exporting to an MBean server
+	 * @param server MBean server
+	 * @param domain Domain of the object names, distinct for every open registry of the server
+	 */
+	public JmxMetricsRegistry(MBeanServer server, String domain) {
+
+		this.server = server;
+		this.domain = domain;
+	}
+
+	@Override
+	public Counter counter(String name) {
+
+		return counters.computeIfAbsent(name, n -> {
+
+			JmxCounter counter = new JmxCounter();
+			register("Counter", n, counter, CounterMXBean.class);
+			return counter;
+		});
+	}
+
+	@Override
+	public Histogram histogram(String name) {
+
+		return histograms.computeIfAbsent(name, n -> {
+
+			LatencyHistogram histogram = new LatencyHistogram();
+			register("Histogram", n, histogram, HistogramMXBean.class);
+			return histogram;
+		});
+	}
+
+	@Override
+	public synchronized void gauge(String name, LongSupplier value) {
+
+		unregister("Gauge", name);
+		GaugeMXBean gauge = value::getAsLong;
+		register("Gauge", name, gauge, GaugeMXBean.class);
+	}
+
+	/**
+	 * Gets the count of a counter
+	 * @param name Metric name
+	 * @return Count, 0 if the counter was never requested
+	 */
+	public long getCount(String name) {
+
+		JmxCounter counter = counters.get(name);
+		return (counter != null) ? counter.getCount() : 0;
+	}
+
+	/**
+	 * Gets a histogram
+	 * @param name Metric name
+	 * @return Histogram, null if it was never requested
+	 */
+	public LatencyHistogram getHistogram(String name) {
+		return histograms.get(name);
+	}
+
+	/**
+	 * Unregisters every bean of the registry and drops its counters and histograms, so that enabling the
+	 * registry again exports fresh ones
+	 */
+	@Override
+	public synchronized void close() {
+
+		for (ObjectName objectName : registered.values()) {
+			try {
+				if (server.isRegistered(objectName)) {
+					server.unregisterMBean(objectName);
+				}
+			} catch (JMException e) {
+				// Already gone
+			}
+		}
+		registered.clear();
+		counters.clear();
+		histograms.clear();
+	}
+
+	private <T> void register(String type, String name, T bean, Class<T> mxBeanInterface) {
+
+		try {
+			ObjectName objectName = objectName(type, name);
+			server.registerMBean(new StandardMBean(bean, mxBeanInterface, true), objectName);
+			registered.put(type + ":" + name, objectName);
+		} catch (JMException e) {
+			throw new IllegalStateException("Cannot export metric " + name, e);
+		}
+	}
+
+	private void unregister(String type, String name) {
+
+		ObjectName objectName = registered.remove(type + ":" + name);
+		if (objectName == null) {
+			return;
+		}
+		try {
+			server.unregisterMBean(objectName);
+		} catch (JMException e) {
+			// Already gone
+		}
+	}
+
+	private ObjectName objectName(String type, String name) throws JMException {
+
+		String value = PLAIN_NAME.matcher(name).matches() ? name : ObjectName.quote(name);
+		return new ObjectName(domain + ":type=" + type + ",name=" + value);
+	}
+
+	private static class JmxCounter implements Counter, CounterMXBean {
+
+		private final LongAdder count = new LongAdder();
+
+		@Override
+		public void increment(long count) {
+			this.count.add(count);
+		}
+
+		@Override
+		public long getCount() {
+			return count.sum();
+		}
+	}
+}
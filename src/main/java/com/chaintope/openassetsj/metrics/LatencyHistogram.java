@@ -0,0 +1,140 @@
+package com.chaintope.openassetsj.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of fixed memory over log-linear buckets, exact below 32 and within 1/16 of the value above.
+ * Every power of two is split into 16 buckets, so 960 buckets cover the whole long range.
+ * Recording takes no lock and may run concurrently with reads, which see a slightly moving snapshot.
+ */
+public class LatencyHistogram implements Histogram, JmxMetricsRegistry.HistogramMXBean {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	// Values below this get a bucket of their own
+	private static final int LINEAR_LIMIT = 2 * SUB_BUCKET_COUNT;
+	private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	@Override
+	public void record(long value) {
+
+		if (value < 0) {
+			value = 0;
+		}
+		buckets.incrementAndGet(bucketOf(value));
+		sum.add(value);
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	@Override
+	public long getCount() {
+
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			count += buckets.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the sum of the recorded values
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	@Override
+	public double getMean() {
+
+		long count = getCount();
+		return (count == 0) ? 0 : (double) sum.sum() / count;
+	}
+
+	@Override
+	public long getMax() {
+		return max.get();
+	}
+
+	@Override
+	public long getMedian() {
+		return getValueAtPercentile(50);
+	}
+
+	@Override
+	public long get95thPercentile() {
+		return getValueAtPercentile(95);
+	}
+
+	@Override
+	public long get99thPercentile() {
+		return getValueAtPercentile(99);
+	}
+
+	@Override
+	public long get999thPercentile() {
+		return getValueAtPercentile(99.9);
+	}
+
+	/**
+	 * Gets the value below which the percentage of recorded values falls
+	 * @param percentile Percentage between 0 and 100
+	 * @return Upper bound of the bucket holding the percentile, capped to the maximum, 0 if nothing was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile " + percentile);
+		}
+		long[] counts = new long[BUCKET_COUNT];
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+
+			counts[i] = buckets.get(i);
+			count += counts[i];
+		}
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(upperBoundOf(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	static int bucketOf(long value) {
+
+		if (value < LINEAR_LIMIT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+		return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	static long upperBoundOf(int bucket) {
+
+		if (bucket < LINEAR_LIMIT) {
+			return bucket;
+		}
+		int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKET_COUNT + SUB_BUCKET_BITS + 1;
+		int subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKET_COUNT;
+		int shift = exponent - SUB_BUCKET_BITS;
+		long lowerBound = (long) (SUB_BUCKET_COUNT + subBucket) << shift;
+		return lowerBound + ((1L << shift) - 1);
+	}
+}
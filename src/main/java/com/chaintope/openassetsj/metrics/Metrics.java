@@ -0,0 +1,153 @@
+package com.chaintope.openassetsj.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.function.LongSupplier;
+
+/**
+ * Entry point of the metrics of the library, disabled until a registry is enabled.
+ *
+ * Instrumented classes hold LatencyTimer and EventCounter handles created here, which are bound to the
+ * instruments of the registry when it is enabled and unbound when it is disabled. The library reports:
+ * <ul>
+ * <li>marker_output.parse, marker_output.validate: latency of MarkerOutputParser calls</li>
+ * <li>marker_output.rejected: payloads starting with the marker prefix that are not valid marker outputs</li>
+ * <li>asset_id.derive: latency of deriving an asset ID from a script, cache hits excluded</li>
+ * <li>oa_address.to_oa_address, oa_address.to_address: latency of OA address conversions, cache hits excluded</li>
+ * <li>utils.hash160: latency of Utils.hash160()</li>
+ * <li>api.&lt;operation&gt;: latency of each OpenAssetsApi operation</li>
+ * <li>wallet_coloring.apply: latency of coloring and applying a wallet transaction in WalletAssetTracker</li>
+ * <li>asset_id_cache.&lt;network&gt;.size, oa_address_cache.&lt;network&gt;.size: entries of the shared caches</li>
+ * </ul>
+ */
+public final class Metrics {
+
+	private static final Map<String, LatencyTimer> TIMERS = new HashMap<>();
+	private static final Map<String, EventCounter> COUNTERS = new HashMap<>();
+	private static final Map<String, LongSupplier> GAUGES = new HashMap<>();
+
+	private static MetricsRegistry registry;
+
+	private Metrics() {
+	}
+
+	/**
+	 * Gets the handle of a latency metric
+	 * @param name Metric name
+	 * @return Timer, the same for every call with the same name
+	 */
+	public static synchronized LatencyTimer timer(String name) {
+
+		return TIMERS.computeIfAbsent(name, n -> {
+
+			LatencyTimer timer = new LatencyTimer(n);
+			timer.bind(registry);
+			return timer;
+		});
+	}
+
+	/**
+	 * Gets the handle of a count metric
+	 * @param name Metric name
+	 * @return Counter, the same for every call with the same name
+	 */
+	public static synchronized EventCounter counter(String name) {
+
+		return COUNTERS.computeIfAbsent(name, n -> {
+
+			EventCounter counter = new EventCounter(n);
+			counter.bind(registry);
+			return counter;
+		});
+	}
+
+	/**
+	 * Registers a gauge, replacing the gauge of the same name. It is reported to the registry enabled now
+	 * and to every registry enabled later.
+	 * @param name Metric name
+	 * @param value Current value of the gauge
+	 */
+	public static synchronized void gauge(String name, LongSupplier value) {
+
+		GAUGES.put(name, value);
+		if (registry != null) {
+			registry.gauge(name, value);
+		}
+	}
+
+	/**
+	 * Enables the registry found through ServiceLoader, or a JmxMetricsRegistry if there is none
+	 * @return Enabled registry
+	 */
+	public static synchronized MetricsRegistry enable() {
+
+		Iterator<MetricsRegistry> providers = ServiceLoader.load(MetricsRegistry.class).iterator();
+		MetricsRegistry provided = providers.hasNext() ? providers.next() : new JmxMetricsRegistry();
+		enable(provided);
+		return provided;
+	}
+
+	/**
+	 * Reports metrics to a registry, replacing the enabled one which is closed if it is Closeable
+	 * @param metricsRegistry Registry
+	 */
+	public static synchronized void enable(MetricsRegistry metricsRegistry) {
+
+		if (metricsRegistry == null) {
+			throw new IllegalArgumentException("Registry is null, use disable()");
+		}
+		if (registry != null && registry != metricsRegistry) {
+			disable();
+		}
+		registry = metricsRegistry;
+		GAUGES.forEach(metricsRegistry::gauge);
+		bindAll(metricsRegistry);
+	}
+
+	/**
+	 * Stops reporting metrics, closing the enabled registry if it is Closeable
+	 */
+	public static synchronized void disable() {
+
+		MetricsRegistry disabled = registry;
+		registry = null;
+		bindAll(null);
+		if (disabled instanceof Closeable) {
+			try {
+				((Closeable) disabled).close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Checks whether metrics are reported
+	 */
+	public static synchronized boolean isEnabled() {
+		return registry != null;
+	}
+
+	/**
+	 * Gets the enabled registry
+	 * @return Registry, null if metrics are disabled
+	 */
+	public static synchronized MetricsRegistry getRegistry() {
+		return registry;
+	}
+
+	private static void bindAll(MetricsRegistry metricsRegistry) {
+
+		for (LatencyTimer timer : TIMERS.values()) {
+			timer.bind(metricsRegistry);
+		}
+		for (EventCounter counter : COUNTERS.values()) {
+			counter.bind(metricsRegistry);
+		}
+	}
+}
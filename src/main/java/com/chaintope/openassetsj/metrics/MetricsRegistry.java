@@ -0,0 +1,34 @@
+package com.chaintope.openassetsj.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Service provider interface of the registry metrics are reported to, see Metrics.enable().
+ *
+ * Implementations bridging to another metrics library are found through java.util.ServiceLoader when listed
+ * in META-INF/services/com.chaintope.openassetsj.metrics.MetricsRegistry. Each method is called once per
+ * metric name while the registry is enabled, and the returned instruments are then called from any thread.
+ */
+public interface MetricsRegistry {
+
+	/**
+	 * Gets the counter of a metric
+	 * @param name Metric name, e.g. "marker_output.rejected"
+	 * @return Counter, shared by every call with the same name
+	 */
+	Counter counter(String name);
+
+	/**
+	 * Gets the histogram of a metric
+	 * @param name Metric name, e.g. "marker_output.parse"
+	 * @return Histogram, shared by every call with the same name, receiving latencies in nanoseconds for timers
+	 */
+	Histogram histogram(String name);
+
+	/**
+	 * Registers a gauge, read whenever the registry reports it
+	 * @param name Metric name, e.g. "oa_address_cache.org.bitcoin.production.size"
+	 * @param value Current value of the gauge
+	 */
+	void gauge(String name, LongSupplier value);
+}
@@ -0,0 +1,158 @@
+package com.chaintope.openassetsj.model;
+
+import java.util.Arrays;
+
+import org.bitcoinj.core.Base58;
+
+import com.chaintope.openassetsj.utils.ReusableDigests;
+
+/**
+ * Immutable binary form of an Open Assets asset ID, the version byte followed by the hash160 of the issuing script.
+ * Equality and hashing work on the 21 bytes, the Base58 text is only built when asked for.
+ */
+public final class AssetId implements Comparable<AssetId> {
+
+	// version byte + hash160
+	public static final int LENGTH = 21;
+
+	private final byte[] bytes;
+	private final int hash;
+	// Built on first use, racing threads compute the same text
+	private String base58;
+
+	private AssetId(byte[] bytes, String base58) {
+
+		this.bytes = bytes;
+		this.hash = Arrays.hashCode(bytes);
+		this.base58 = base58;
+	}
+
+	/**
+	 * Creates an asset ID from its version byte and script hash
+	 * @param version Version byte of the network
+	 * @param hash160 RIPEMD160(SHA256(script)) of the issuing script
+	 * @return Asset ID
+	 */
+	public static AssetId of(int version, byte[] hash160) {
+
+		if (hash160.length != LENGTH - 1) {
+			throw new IllegalArgumentException("Hash160 of " + hash160.length + " bytes");
+		}
+		byte[] bytes = new byte[LENGTH];
+		bytes[0] = (byte) version;
+		System.arraycopy(hash160, 0, bytes, 1, hash160.length);
+		return new AssetId(bytes, null);
+	}
+
+	/**
+	 * Creates an asset ID from its 21 byte binary form
+	 * @param src Buffer holding the asset ID
+	 * @param off Offset of the asset ID in the buffer
+	 * @return Asset ID, holding a copy of the bytes
+	 */
+	public static AssetId fromBytes(byte[] src, int off) {
+
+		return new AssetId(Arrays.copyOfRange(src, off, off + LENGTH), null);
+	}
+
+	/**
+	 * Parses a Base58 asset ID
+	 * @param base58 Asset ID as produced by AssetID
+	 * @return Asset ID
+	 * @throws org.bitcoinj.core.AddressFormatException if the text is not valid Base58Check
+	 * @throws IllegalArgumentException if the decoded asset ID is not 21 bytes long
+	 */
+	public static AssetId fromString(String base58) {
+
+		byte[] bytes = Base58.decodeChecked(base58);
+		if (bytes.length != LENGTH) {
+			throw new IllegalArgumentException("Asset ID of " + bytes.length + " bytes: " + base58);
+		}
+		return new AssetId(bytes, base58);
+	}
+
+	/**
+	 * Gets the version byte
+	 * @return Version byte, 23 on mainnet and 115 on testnet
+	 */
+	public int getVersion() {
+		return bytes[0] & 0xff;
+	}
+
+	/**
+	 * Gets the hash160 of the issuing script
+	 * @return Copy of the 20 hash bytes
+	 */
+	public byte[] getHash160() {
+		return Arrays.copyOfRange(bytes, 1, LENGTH);
+	}
+
+	/**
+	 * Gets the binary form
+	 * @return Copy of the 21 bytes
+	 */
+	public byte[] toByteArray() {
+		return bytes.clone();
+	}
+
+	/**
+	 * Writes the binary form into the array
+	 * @param dest Destination with room for 21 bytes
+	 * @param off Position in dest to write at
+	 */
+	public void copyTo(byte[] dest, int off) {
+		System.arraycopy(bytes, 0, dest, off, LENGTH);
+	}
+
+	/**
+	 * Gets the Base58Check text of the asset ID
+	 * @return Asset ID as produced by AssetID
+	 */
+	@Override
+	public String toString() {
+
+		String text = base58;
+		if (text == null) {
+
+			byte[] checked = Arrays.copyOf(bytes, LENGTH + 4);
+			ReusableDigests.forCurrentThread().checksum(bytes, 0, LENGTH, checked, LENGTH);
+			text = Base58.encode(checked);
+			base58 = text;
+		}
+		return text;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof AssetId)) {
+			return false;
+		}
+		AssetId other = (AssetId) o;
+		return hash == other.hash && Arrays.equals(bytes, other.bytes);
+	}
+
+	/**
+	 * Orders asset IDs by their unsigned bytes
+	 */
+	@Override
+	public int compareTo(AssetId other) {
+
+		for (int i = 0; i < LENGTH; i++) {
+
+			int diff = (bytes[i] & 0xff) - (other.bytes[i] & 0xff);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return 0;
+	}
+}
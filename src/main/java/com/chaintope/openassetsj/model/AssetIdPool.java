@@ -0,0 +1,89 @@
+package com.chaintope.openassetsj.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns asset IDs and numbers them with dense ordinals 0, 1, 2, ... in the order they are first seen.
+ * Indexes and balance tables can then key their entries by an int instead of an asset ID.
+ * Lookups are lock free, assigning a new ordinal takes the pool lock.
+ */
+public class AssetIdPool {
+
+	private final ConcurrentHashMap<AssetId, Integer> ordinals = new ConcurrentHashMap<>();
+	private volatile AssetId[] assetIds = new AssetId[16];
+	private volatile int size;
+
+	/**
+	 * Gets the ordinal of the asset ID, assigning the next free one if the asset ID is new
+	 * @param assetId Asset ID to intern
+	 * @return Ordinal of the asset ID
+	 */
+	public int intern(AssetId assetId) {
+
+		Integer ordinal = ordinals.get(assetId);
+		if (ordinal != null) {
+			return ordinal;
+		}
+		synchronized (this) {
+
+			ordinal = ordinals.get(assetId);
+			if (ordinal != null) {
+				return ordinal;
+			}
+			int next = size;
+			AssetId[] table = assetIds;
+			if (next == table.length) {
+				table = Arrays.copyOf(table, table.length * 2);
+			}
+			table[next] = assetId;
+			assetIds = table;
+			size = next + 1;
+			ordinals.put(assetId, next);
+			return next;
+		}
+	}
+
+	/**
+	 * Gets the ordinal of an asset ID without interning it
+	 * @param assetId Asset ID to look up
+	 * @return Ordinal, -1 if the asset ID was never interned
+	 */
+	public int ordinalOf(AssetId assetId) {
+
+		Integer ordinal = ordinals.get(assetId);
+		return (ordinal == null) ? -1 : ordinal;
+	}
+
+	/**
+	 * Gets the asset ID of an ordinal
+	 * @param ordinal Ordinal returned by intern()
+	 * @return The interned asset ID instance
+	 * @throws IndexOutOfBoundsException if no asset ID has that ordinal
+	 */
+	public AssetId get(int ordinal) {
+
+		int count = size;
+		if (ordinal < 0 || ordinal >= count) {
+			throw new IndexOutOfBoundsException("Ordinal " + ordinal + " of " + count);
+		}
+		return assetIds[ordinal];
+	}
+
+	/**
+	 * Gets the canonical instance of an asset ID, interning it if needed
+	 * @param assetId Asset ID to intern
+	 * @return The instance stored in the pool, equal to assetId
+	 */
+	public AssetId canonical(AssetId assetId) {
+		return get(intern(assetId));
+	}
+
+	/**
+	 * Gets the number of interned asset IDs
+	 * @return Number of asset IDs, also the next ordinal to be assigned
+	 */
+	public int size() {
+		return size;
+	}
+}
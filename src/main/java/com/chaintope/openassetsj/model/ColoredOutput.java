@@ -0,0 +1,93 @@
+package com.chaintope.openassetsj.model;
+
+import java.util.Arrays;
+
+/**
+ * Transaction output together with the asset it carries, as assigned by the coloring engine
+ */
+public final class ColoredOutput {
+
+	private final long value;
+	private final byte[] script;
+	private final AssetId assetId;
+	private final long assetQuantity;
+	private final OutputType outputType;
+
+	/**
+	 * @param value Bitcoin value in satoshis
+	 * @param script Output script bytes, not copied
+	 * @param assetId Asset carried by the output, null if it carries none
+	 * @param assetQuantity Quantity of the asset, 0 if it carries none
+	 * @param outputType Role of the output
+	 */
+	public ColoredOutput(long value, byte[] script, AssetId assetId, long assetQuantity, OutputType outputType) {
+
+		this.value = value;
+		this.script = script;
+		this.assetId = assetId;
+		this.assetQuantity = assetQuantity;
+		this.outputType = outputType;
+	}
+
+	/**
+	 * Creates an output carrying no asset
+	 */
+	public static ColoredOutput uncolored(long value, byte[] script, OutputType outputType) {
+
+		return new ColoredOutput(value, script, null, 0, outputType);
+	}
+
+	public long getValue() {
+		return value;
+	}
+
+	public byte[] getScript() {
+		return script;
+	}
+
+	public AssetId getAssetId() {
+		return assetId;
+	}
+
+	public long getAssetQuantity() {
+		return assetQuantity;
+	}
+
+	public OutputType getOutputType() {
+		return outputType;
+	}
+
+	/**
+	 * Checks whether the output carries an asset
+	 */
+	public boolean isColored() {
+		return assetId != null;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(script) * 31 + Long.hashCode(value);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof ColoredOutput)) {
+			return false;
+		}
+		ColoredOutput other = (ColoredOutput) o;
+		return value == other.value && assetQuantity == other.assetQuantity && outputType == other.outputType
+				&& (assetId == null ? other.assetId == null : assetId.equals(other.assetId))
+				&& Arrays.equals(script, other.script);
+	}
+
+	@Override
+	public String toString() {
+
+		return "ColoredOutput{value=" + value + ", assetId=" + assetId + ", assetQuantity=" + assetQuantity
+				+ ", outputType=" + outputType + "}";
+	}
+}
@@ -0,0 +1,61 @@
+package com.chaintope.openassetsj.model;
+
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.TransactionOutPoint;
+
+/**
+ * Immutable reference to a transaction output, usable as a map key.
+ * Unlike TransactionOutPoint it carries no parent message or network parameters.
+ */
+public final class OutPoint {
+
+	private final Sha256Hash hash;
+	private final long index;
+
+	public OutPoint(Sha256Hash hash, long index) {
+
+		this.hash = hash;
+		this.index = index;
+	}
+
+	/**
+	 * Creates the out point referenced by a bitcoinj out point
+	 * @param outPoint Out point of a transaction input
+	 * @return Out point
+	 */
+	public static OutPoint of(TransactionOutPoint outPoint) {
+
+		return new OutPoint(outPoint.getHash(), outPoint.getIndex());
+	}
+
+	public Sha256Hash getHash() {
+		return hash;
+	}
+
+	public long getIndex() {
+		return index;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash.hashCode() * 31 + (int) index;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof OutPoint)) {
+			return false;
+		}
+		OutPoint other = (OutPoint) o;
+		return index == other.index && hash.equals(other.hash);
+	}
+
+	@Override
+	public String toString() {
+		return hash + ":" + index;
+	}
+}
@@ -0,0 +1,15 @@
+package com.chaintope.openassetsj.model;
+
+/**
+ * Role of a transaction output in the Open Assets protocol
+ */
+public enum OutputType {
+	// Output of a transaction without a valid marker output
+	UNCOLORED,
+	// The marker output itself
+	MARKER_OUTPUT,
+	// Output placed before the marker output, issuing assets
+	ISSUANCE,
+	// Output placed after the marker output, receiving transferred assets
+	TRANSFER
+}
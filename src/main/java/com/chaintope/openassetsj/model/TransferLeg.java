@@ -0,0 +1,48 @@
+package com.chaintope.openassetsj.model;
+
+import org.bitcoinj.core.Address;
+
+/**
+ * Quantity of an asset to send to a recipient, one of the transfers of a batch
+ */
+public final class TransferLeg {
+
+	private final Address recipient;
+	private final AssetId assetId;
+	private final long quantity;
+
+	/**
+	 * @param recipient Address receiving the asset
+	 * @param assetId Asset to send, not null
+	 * @param quantity Quantity to send, greater than 0
+	 */
+	public TransferLeg(Address recipient, AssetId assetId, long quantity) {
+
+		if (assetId == null) {
+			throw new IllegalArgumentException("Asset ID of a transfer cannot be null");
+		}
+		if (quantity <= 0) {
+			throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+		}
+		this.recipient = recipient;
+		this.assetId = assetId;
+		this.quantity = quantity;
+	}
+
+	public Address getRecipient() {
+		return recipient;
+	}
+
+	public AssetId getAssetId() {
+		return assetId;
+	}
+
+	public long getQuantity() {
+		return quantity;
+	}
+
+	@Override
+	public String toString() {
+		return "TransferLeg{recipient=" + recipient + ", assetId=" + assetId + ", quantity=" + quantity + "}";
+	}
+}
@@ -0,0 +1,370 @@
+package com.chaintope.openassetsj.protocol;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.core.TransactionOutPoint;
+import org.bitcoinj.core.TransactionOutput;
+
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.ColoredOutput;
+import com.chaintope.openassetsj.model.OutPoint;
+import com.chaintope.openassetsj.model.OutputType;
+import com.chaintope.openassetsj.utils.AssetID;
+import com.chaintope.openassetsj.utils.CacheStatistics;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Assigns asset IDs and quantities to transaction outputs following the Open Assets protocol.
+ * Colored outputs are memoized by out point, so ancestry shared by several transactions is colored once.
+ * Input chains are walked with an explicit stack, so long chains do not exhaust the thread stack.
+ * An engine is safe for concurrent use.
+ */
+public class ColoringEngine {
+
+	public static final long DEFAULT_MAXIMUM_SIZE = 100000;
+
+	private final TransactionProvider transactionProvider;
+	private final AssetID assetID;
+	private final Cache<OutPoint, ColoredOutput> coloredOutputs;
+
+	/**
+	 * Creates an engine memoizing up to DEFAULT_MAXIMUM_SIZE colored outputs
+	 * @param params Network of the transactions
+	 * @param transactionProvider Source of the transactions referenced by inputs
+	 */
+	public ColoringEngine(NetworkParameters params, TransactionProvider transactionProvider) {
+
+		this(params, transactionProvider, DEFAULT_MAXIMUM_SIZE);
+	}
+
+	/**
+	 * Creates an engine memoizing up to the given number of colored outputs
+	 * @param params Network of the transactions
+	 * @param transactionProvider Source of the transactions referenced by inputs,
+	 * may be null if only the colorTransaction() overloads taking the inputs are used
+	 * @param maximumSize Maximum number of memoized outputs
+	 */
+	public ColoringEngine(NetworkParameters params, TransactionProvider transactionProvider, long maximumSize) {
+
+		this.transactionProvider = transactionProvider;
+		this.assetID = new AssetID(params);
+		this.coloredOutputs = CacheBuilder.newBuilder()
+				.maximumSize(maximumSize)
+				.recordStats()
+				.<OutPoint, ColoredOutput>build();
+	}
+
+	/**
+	 * Gets the colored output an out point refers to
+	 * @param txHash Hash of the transaction holding the output
+	 * @param index Index of the output
+	 * @return Colored output
+	 * @throws IllegalStateException if the transaction or one of its ancestors is unknown to the provider
+	 * @throws IllegalArgumentException if the transaction has no output at the index
+	 */
+	public ColoredOutput getOutput(Sha256Hash txHash, long index) {
+
+		ColoredOutput output = coloredOutputs.getIfPresent(new OutPoint(txHash, index));
+		if (output != null) {
+			return output;
+		}
+		List<ColoredOutput> outputs = new Resolution().resolve(txHash);
+		if (index < 0 || index >= outputs.size()) {
+			throw new IllegalArgumentException("Transaction " + txHash + " has no output " + index);
+		}
+		return outputs.get((int) index);
+	}
+
+	/**
+	 * Colors every output of a transaction, fetching the ancestors it depends on
+	 * @param transaction Transaction to color, does not need to be known to the provider
+	 * @return Colored outputs in the order of the transaction outputs
+	 * @throws IllegalStateException if one of the ancestors is unknown to the provider
+	 */
+	public List<ColoredOutput> colorTransaction(Transaction transaction) {
+
+		Resolution resolution = new Resolution();
+		resolution.transactions.put(transaction.getHash(), transaction);
+		return resolution.resolve(transaction.getHash());
+	}
+
+	/**
+	 * Checks whether coloring the transaction requires the colored outputs its inputs spend
+	 * @param transaction Transaction to check
+	 * @return true if the transaction has an output that parses as a marker output
+	 */
+	public static boolean needsInputs(Transaction transaction) {
+
+		if (transaction.isCoinBase()) {
+			return false;
+		}
+		MarkerOutputParser parser = new MarkerOutputParser();
+		for (TransactionOutput output : transaction.getOutputs()) {
+
+			byte[] script = output.getScriptBytes();
+			if (parser.validateScript(script, 0, script.length)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Colors every output of a transaction from the colored outputs its inputs spend
+	 * @param transaction Transaction to color
+	 * @param inputs Outputs spent by the inputs, in input order. Ignored, and may be null, if needsInputs() is false.
+	 * @return Colored outputs in the order of the transaction outputs
+	 */
+	public List<ColoredOutput> colorTransaction(Transaction transaction, List<ColoredOutput> inputs) {
+
+		return colorTransaction(transaction, inputs, () -> assetID.toAssetId(inputs.get(0).getScript()));
+	}
+
+	/**
+	 * Colors every output of a transaction from the colored outputs its inputs spend, for callers that
+	 * know the spent outputs only by their asset and quantity and not by their scripts
+	 * @param transaction Transaction to color
+	 * @param inputs Outputs spent by the inputs, in input order, scripts are not read.
+	 * Ignored, and may be null, if needsInputs() is false.
+	 * @param issuanceAssetId Asset ID derived from the script spent by the first input, null if unknown.
+	 * A marker output issuing assets is then treated as invalid, as the asset it issues cannot be told.
+	 * @return Colored outputs in the order of the transaction outputs
+	 */
+	public List<ColoredOutput> colorTransaction(Transaction transaction, List<ColoredOutput> inputs, AssetId issuanceAssetId) {
+
+		return colorTransaction(transaction, inputs, () -> issuanceAssetId);
+	}
+
+	private List<ColoredOutput> colorTransaction(Transaction transaction, List<ColoredOutput> inputs,
+			Supplier<AssetId> issuanceAssetId) {
+
+		List<TransactionOutput> outputs = transaction.getOutputs();
+		if (!transaction.isCoinBase()) {
+
+			MarkerOutputParser parser = new MarkerOutputParser();
+			for (int i = 0; i < outputs.size(); i++) {
+
+				byte[] script = outputs.get(i).getScriptBytes();
+				if (parser.parseScript(script, 0, script.length)) {
+
+					List<ColoredOutput> result = computeAssetIds(inputs, i, outputs,
+							parser.getMarkerOutput().getAssetQuantities(), issuanceAssetId);
+					if (result != null) {
+						return result;
+					}
+				}
+			}
+		}
+
+		List<ColoredOutput> result = new ArrayList<>(outputs.size());
+		for (TransactionOutput output : outputs) {
+			result.add(ColoredOutput.uncolored(output.getValue().value, output.getScriptBytes(), OutputType.UNCOLORED));
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the hit, miss and eviction counters of the memoized outputs
+	 * @return Statistics snapshot
+	 */
+	public CacheStatistics getStatistics() {
+
+		CacheStats stats = coloredOutputs.stats();
+		return new CacheStatistics(stats.hitCount(), stats.missCount(), stats.evictionCount(), coloredOutputs.size());
+	}
+
+	/**
+	 * Forgets every memoized output, e.g. after a chain reorganization
+	 */
+	public void invalidateAll() {
+		coloredOutputs.invalidateAll();
+	}
+
+	/**
+	 * Assigns asset IDs to the outputs of a transaction holding a marker output at markerIndex
+	 * @return Colored outputs, null if the asset quantities do not match the inputs and outputs,
+	 * or if assets are issued and the issuance asset ID is unknown
+	 */
+	private List<ColoredOutput> computeAssetIds(List<ColoredOutput> inputs, int markerIndex,
+			List<TransactionOutput> outputs, List<Long> assetQuantities, Supplier<AssetId> issuance) {
+
+		if (assetQuantities.size() > outputs.size() - 1 || inputs.isEmpty()) {
+			return null;
+		}
+		List<ColoredOutput> result = new ArrayList<>(outputs.size());
+
+		// Issuance outputs take the asset ID of the script spent by the first input
+		AssetId issuanceAssetId = null;
+		for (int i = 0; i < markerIndex; i++) {
+
+			TransactionOutput output = outputs.get(i);
+			if (i < assetQuantities.size() && assetQuantities.get(i) > 0) {
+
+				if (issuanceAssetId == null) {
+
+					issuanceAssetId = issuance.get();
+					if (issuanceAssetId == null) {
+						return null;
+					}
+				}
+				result.add(new ColoredOutput(output.getValue().value, output.getScriptBytes(), issuanceAssetId,
+						assetQuantities.get(i), OutputType.ISSUANCE));
+			}
+			else {
+				result.add(ColoredOutput.uncolored(output.getValue().value, output.getScriptBytes(), OutputType.ISSUANCE));
+			}
+		}
+
+		TransactionOutput marker = outputs.get(markerIndex);
+		result.add(ColoredOutput.uncolored(marker.getValue().value, marker.getScriptBytes(), OutputType.MARKER_OUTPUT));
+
+		// Transfer outputs consume the asset units of the inputs in order
+		int inputIndex = 0;
+		ColoredOutput currentInput = null;
+		long inputUnitsLeft = 0;
+		for (int i = markerIndex + 1; i < outputs.size(); i++) {
+
+			long outputAssetQuantity = (i <= assetQuantities.size()) ? assetQuantities.get(i - 1) : 0;
+			long outputUnitsLeft = outputAssetQuantity;
+			AssetId assetId = null;
+
+			while (outputUnitsLeft > 0) {
+
+				if (inputUnitsLeft == 0) {
+
+					if (inputIndex == inputs.size()) {
+						return null;
+					}
+					currentInput = inputs.get(inputIndex++);
+					inputUnitsLeft = currentInput.getAssetQuantity();
+				}
+				if (currentInput.getAssetId() != null) {
+
+					long progress = Math.min(inputUnitsLeft, outputUnitsLeft);
+					outputUnitsLeft -= progress;
+					inputUnitsLeft -= progress;
+					if (assetId == null) {
+						assetId = currentInput.getAssetId();
+					}
+					else if (!assetId.equals(currentInput.getAssetId())) {
+						return null;
+					}
+				}
+			}
+
+			TransactionOutput output = outputs.get(i);
+			result.add(new ColoredOutput(output.getValue().value, output.getScriptBytes(), assetId,
+					(assetId == null) ? 0 : outputAssetQuantity, OutputType.TRANSFER));
+		}
+		return result;
+	}
+
+	/**
+	 * State of one coloring call. Transactions fetched and colored during the call are kept until it
+	 * returns, so outputs evicted from the memo in the meantime are not fetched again.
+	 */
+	private class Resolution {
+
+		private final Map<Sha256Hash, Transaction> transactions = new HashMap<>();
+		private final Map<Sha256Hash, List<ColoredOutput>> colored = new HashMap<>();
+
+		List<ColoredOutput> resolve(Sha256Hash root) {
+
+			Deque<Sha256Hash> pending = new ArrayDeque<>();
+			Set<Sha256Hash> expanded = new HashSet<>();
+			pending.push(root);
+
+			while (!pending.isEmpty()) {
+
+				Sha256Hash txHash = pending.peek();
+				if (colored.containsKey(txHash)) {
+
+					pending.pop();
+					continue;
+				}
+
+				Transaction transaction = fetch(txHash);
+				List<ColoredOutput> inputs = null;
+				if (needsInputs(transaction)) {
+
+					inputs = new ArrayList<>(transaction.getInputs().size());
+					boolean missing = false;
+					for (TransactionInput input : transaction.getInputs()) {
+
+						ColoredOutput output = lookup(input.getOutpoint());
+						if (output == null) {
+
+							Sha256Hash inputHash = input.getOutpoint().getHash();
+							// Everything above an expanded transaction on the stack is one of its ancestors
+							if (expanded.contains(inputHash)) {
+								throw new IllegalStateException("Transaction " + inputHash + " spends its own descendant");
+							}
+							pending.push(inputHash);
+							missing = true;
+						}
+						inputs.add(output);
+					}
+					if (missing) {
+
+						expanded.add(txHash);
+						continue;
+					}
+				}
+
+				pending.pop();
+				List<ColoredOutput> outputs = Collections.unmodifiableList(colorTransaction(transaction, inputs));
+				colored.put(txHash, outputs);
+				for (int i = 0; i < outputs.size(); i++) {
+					coloredOutputs.put(new OutPoint(txHash, i), outputs.get(i));
+				}
+			}
+			return colored.get(root);
+		}
+
+		private Transaction fetch(Sha256Hash txHash) {
+
+			Transaction transaction = transactions.get(txHash);
+			if (transaction == null) {
+
+				transaction = transactionProvider.getTransaction(txHash);
+				if (transaction == null) {
+					throw new IllegalStateException("Transaction not found: " + txHash);
+				}
+				transactions.put(txHash, transaction);
+			}
+			return transaction;
+		}
+
+		private ColoredOutput lookup(TransactionOutPoint outPoint) {
+
+			List<ColoredOutput> outputs = colored.get(outPoint.getHash());
+			if (outputs != null) {
+				return outputAt(outputs, outPoint);
+			}
+			return coloredOutputs.getIfPresent(OutPoint.of(outPoint));
+		}
+
+		private ColoredOutput outputAt(List<ColoredOutput> outputs, TransactionOutPoint outPoint) {
+
+			if (outPoint.getIndex() >= outputs.size()) {
+				throw new IllegalStateException("Input spends missing output " + outPoint);
+			}
+			return outputs.get((int) outPoint.getIndex());
+		}
+	}
+}
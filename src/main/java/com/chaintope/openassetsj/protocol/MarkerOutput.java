@@ -1,18 +1,14 @@
 package com.chaintope.openassetsj.protocol;
 
-import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
 
 import org.bitcoinj.script.Script;
-import org.bitcoinj.script.ScriptBuilder;
 import org.bitcoinj.script.ScriptOpCodes;
 
 import com.chaintope.openassetsj.utils.Leb128;
 import com.chaintope.openassetsj.utils.Utils;
-import com.google.common.base.Joiner;
 
 /**
  * Builds, validates and deserializes the marker output script
@@ -22,11 +18,22 @@ public class MarkerOutput {
     private ArrayList<Long> assetQuantities;
     private String metadata;
 
+    // UTF-8 form of metadata, whichever of the two is set first derives the other lazily
+    private byte[] metadataBytes;
+
     // A tag indicating that this transaction is an Open Assets transaction
-    private final String OAP_MARKER = "4f41";
+    private static final String OAP_MARKER = "4f41";
 
     // The major revision number of the Open Assets Protocol (1 = 0x0100)
-    private final String VERSION = "0100";
+    private static final String VERSION = "0100";
+
+    // OAP_MARKER followed by VERSION, as it appears at the start of every payload
+    static final byte[] MARKER_PREFIX = Utils.packHexStringToBytes(OAP_MARKER + VERSION);
+
+    static final byte[] EMPTY_METADATA = new byte[0];
+
+    // Largest OP_RETURN output script relayed and mined by default (-datacarriersize of Bitcoin Core)
+    public static final int STANDARD_SCRIPT_LENGTH = 83;
 
     public MarkerOutput() {}
 
@@ -35,6 +42,11 @@ public class MarkerOutput {
         this.metadata = metadata;
     }
 
+    private MarkerOutput(ArrayList<Long> assetQuantities, byte[] metadataBytes) {
+        this.assetQuantities = assetQuantities;
+        this.metadataBytes = metadataBytes;
+    }
+
     public ArrayList<Long> getAssetQuantities() {
 		return assetQuantities;
 	}
@@ -44,11 +56,27 @@ public class MarkerOutput {
 	}
 
 	public String getMetadata() {
+		if (metadata == null && metadataBytes != null) {
+			metadata = new String(metadataBytes, StandardCharsets.UTF_8);
+		}
 		return metadata;
 	}
 
 	public void setMetadata(String metadata) {
 		this.metadata = metadata;
+		this.metadataBytes = null;
+	}
+
+	/**
+	 * Gets the metadata as the UTF-8 bytes written into the payload
+	 * @return Metadata bytes, empty if there is no metadata
+	 */
+	public byte[] getMetadataBytes() {
+		if (metadataBytes == null) {
+			metadataBytes = (metadata == null || metadata.isEmpty())
+					? EMPTY_METADATA : metadata.getBytes(StandardCharsets.UTF_8);
+		}
+		return metadataBytes;
 	}
 
 	/**
@@ -57,201 +85,164 @@ public class MarkerOutput {
      */
     public String toPayload() {
 
-        String payload;
-        ArrayList<String> payloadArray = new ArrayList<>();
-        payloadArray.add(OAP_MARKER);
-        payloadArray.add(VERSION);
-        String asset_quantity_count = Utils.packVarInteger(assetQuantities.size());
-
-        payloadArray.add(asset_quantity_count);
-        for (Long assetId: assetQuantities) {
-
-            payloadArray.add(Leb128.encodeLeb128(assetId.intValue()));
-        }
-
-        String metadata_length = Utils.packVarInteger(metadata.length());
-        payloadArray.add(metadata_length);
-            
-
-        if(!metadata.isEmpty()) {
-            try {
-
-                payloadArray.add(String.format("%040x", new BigInteger(1, metadata.getBytes("utf8"))));
-            } catch (UnsupportedEncodingException e){
-
-                e.printStackTrace();
-            }
-        }
-        payload = Joiner.on("").join(payloadArray).trim();
-        return payload;
+        return Utils.packByteArrayToString(toPayloadBytes());
     }
 
     /**
-     * Deserializes the input payload,
-	 * and extracts the asset quantities and metadata
-	 * from the given payload 
-     * @param payload Payload string to deserialize
-     * @return MarkerOutput if payload deserializes successfully, null otherwise
+     * Serializes the marker output into Open Assets payload bytes
+     * @return Payload bytes for marker output
      */
-    public MarkerOutput deserializePayload(String payload) {
-
-        if(!validatePayload(payload)){
-            return null;
-        }
-
-        payload = payload.substring(8, payload.length());
+    public byte[] toPayloadBytes() {
 
-        List<Object> parsedPayload = parseAssetQuantity(payload);
-        long assetQuantity = (long) parsedPayload.get(0);
-        payload = parsedPayload.get(1).toString();
+        ByteBuffer buffer = ByteBuffer.allocate(payloadLength());
+        encodePayloadTo(buffer);
+        return buffer.array();
+    }
 
-        int payloadLength = payload.length() / 2;
-        String payloadBytes = "";
-        String assetQuantityList = "";
+    /**
+     * Calculates the size of the serialized payload
+     * @return Number of bytes written by encodePayloadTo()
+     */
+    public int payloadLength() {
 
-        for (int i = 0; i < payloadLength; i++) {
+        int quantityCount = assetQuantities.size();
+        int length = MARKER_PREFIX.length + varIntegerLength(quantityCount);
+        for (int i = 0; i < quantityCount; i++) {
 
-            String payloadByte = payload.substring(i*2, (i+1)*2);
-            payloadBytes += (Integer.parseInt(payloadByte, 16) >= 128 ? payloadByte : payloadByte + "|");
+            length += Leb128.encodedLength(assetQuantities.get(i));
         }
+        int metadataLength = getMetadataBytes().length;
+        return length + varIntegerLength(metadataLength) + metadataLength;
+    }
 
-        assetQuantityList = Joiner.on("").join(
-                Arrays.copyOfRange(
-                        payloadBytes.split("\\|"), 0, (int)(assetQuantity)));
-
-        ArrayList<Long> assetQuantities = decodeLeb128(assetQuantityList);
-
-        String metadataHex = payload.substring(assetQuantityList.length());
-        String metadata = Utils.packHexStringToCharString(metadataHex.substring(2));
+    /**
+     * Calculates the size of the marker output script
+     * @return Number of bytes written by encodeTo()
+     */
+    public int scriptLength() {
 
-        MarkerOutput res = new MarkerOutput(assetQuantities, metadata);
-        return res;
+        return scriptLengthOf(payloadLength());
     }
 
     /**
-     * Decodes the LEB128 encoded string of asset quantities 
-     * @param assetQuantityList LEB128 encoded string of asset quantities
-     * @return The decoded asset quantity list
+     * Calculates the size of a payload without its asset quantities
+     * @param quantityCount Number of asset quantities
+     * @param metadataLength Length of the UTF-8 metadata
+     * @return Payload length less the leb128 encoded quantities
      */
-    private ArrayList<Long> decodeLeb128(String assetQuantityList) {
-
-        ArrayList<Long> decodedAssetQuantities = new ArrayList<>();
+    public static int payloadOverhead(int quantityCount, int metadataLength) {
 
-        String assetQuantityBytes = "";
-        int assetQuantityListLength = assetQuantityList.length() / 2;
+        return MARKER_PREFIX.length + varIntegerLength(quantityCount) + varIntegerLength(metadataLength) + metadataLength;
+    }
 
-        for (int i = 0; i < assetQuantityListLength; i++) {
+    /**
+     * Calculates the size of the marker output script holding a payload
+     * @param payloadLength Length of the payload
+     * @return Script length
+     */
+    public static int scriptLengthOf(int payloadLength) {
 
-            String assetQuantityByte = assetQuantityList.substring(i*2, (i+1)*2);
+        return 1 + pushOpcodeLength(payloadLength) + payloadLength;
+    }
 
-            if (Integer.parseInt(assetQuantityByte, 16) >= 128) {
+    /**
+     * Writes the Open Assets payload at the current position of the buffer
+     * @param buffer Buffer with at least payloadLength() bytes remaining
+     */
+    public void encodePayloadTo(ByteBuffer buffer) {
 
-                assetQuantityBytes += assetQuantityByte;
-            }
-            else {
+        buffer.put(MARKER_PREFIX);
+        int quantityCount = assetQuantities.size();
+        putVarInteger(buffer, quantityCount);
+        for (int i = 0; i < quantityCount; i++) {
 
-                assetQuantityBytes += assetQuantityByte;
-                decodedAssetQuantities.add(Leb128.decodeLeb128(assetQuantityBytes));
-                assetQuantityBytes = "";
-            }
+            Leb128.writeLeb128(assetQuantities.get(i), buffer);
         }
-
-        return decodedAssetQuantities;
+        byte[] metadataBytes = getMetadataBytes();
+        putVarInteger(buffer, metadataBytes.length);
+        buffer.put(metadataBytes);
     }
 
     /**
-     * Parses asset quantities from the payload
-     * @param payload Payload of marker output
-     * @return A list containing parsed asset quantity and the payload string
+     * Writes the marker output script (OP_RETURN followed by the payload push)
+     * at the current position of the buffer
+     * @param buffer Buffer with at least scriptLength() bytes remaining
      */
-    private List<Object> parseAssetQuantity(String payload) {
-
-        List<Object> parsedPayload = new ArrayList<Object>();
-        long assetQuantity;
-        String payloadStr;
+    public void encodeTo(ByteBuffer buffer) {
 
-        if (payload.startsWith(OAP_MARKER + VERSION)) {
+        int payloadLength = payloadLength();
+        buffer.put((byte) ScriptOpCodes.OP_RETURN);
+        if (payloadLength < ScriptOpCodes.OP_PUSHDATA1) {
 
-            payload = payload.substring(8, payload.length());
+            buffer.put((byte) payloadLength);
         }
+        else if (payloadLength <= 0xff) {
 
-        int assetQuantityByte = Integer.parseInt(payload.substring(0, 2), 16);
-
-        switch (assetQuantityByte) {
-            // 0xFD = 253
-            case 253:
-                assetQuantity = Long.parseLong(payload.substring(2, 6), 16);
-                payloadStr = payload.substring(6);
-                break;
-            // 0xFE = 254
-            case 254:
-                assetQuantity = Long.parseLong(payload.substring(2, 10), 16);
-                payloadStr = payload.substring(10);
-                break;
-            default:
-                assetQuantity = assetQuantityByte;
-                payloadStr = payload.substring(2);
+            buffer.put((byte) ScriptOpCodes.OP_PUSHDATA1);
+            buffer.put((byte) payloadLength);
         }
+        else if (payloadLength <= 0xffff) {
 
-        parsedPayload.add(assetQuantity);
-        parsedPayload.add(payloadStr);
+            buffer.put((byte) ScriptOpCodes.OP_PUSHDATA2);
+            buffer.put((byte) payloadLength);
+            buffer.put((byte) (payloadLength >>> 8));
+        }
+        else {
 
-        return parsedPayload;
+            buffer.put((byte) ScriptOpCodes.OP_PUSHDATA4);
+            buffer.put((byte) payloadLength);
+            buffer.put((byte) (payloadLength >>> 8));
+            buffer.put((byte) (payloadLength >>> 16));
+            buffer.put((byte) (payloadLength >>> 24));
+        }
+        encodePayloadTo(buffer);
     }
 
     /**
-     * Validates the payload data
-     * @param payload Payload of marker output
-     * @return true if payload is valid, false otherwise
+     * Deserializes the input payload,
+	 * and extracts the asset quantities and metadata
+	 * from the given payload
+     * @param payload Payload string to deserialize
+     * @return MarkerOutput if payload deserializes successfully, null otherwise
      */
-    private boolean validatePayload(String payload) {
-
-        boolean res = false;
-        if(payload.equals("")) {
-            return res;
-        }
-
-        if(!payload.startsWith( OAP_MARKER + VERSION )) {
-            return res;
-        }
-
-        int offset = (OAP_MARKER + VERSION).length() / 2;
-
-        List<Object> varIntData = Utils.readVarInteger(payload, offset);
-        int count = Integer.parseInt(varIntData.get(0).toString());
-        offset = Integer.parseInt(varIntData.get(1).toString());
-
-        if (count == 0) {
-
-            return res;
-        }
+    public MarkerOutput deserializePayload(String payload) {
 
-        for (int i = 0; i < count; i++) {
+        byte[] data = Utils.packHexStringToBytes(payload);
+        return decodePayload(data, 0, data.length);
+    }
 
-            List<Object> leb128Data = Leb128.readLeb128(payload, offset);
-            int quantity = Integer.parseInt(leb128Data.get(0).toString());
-            int length = Integer.parseInt(leb128Data.get(1).toString());
+    /**
+     * Deserializes the marker output script
+     * @param script Buffer holding the marker output script
+     * @param off Offset of the script in the buffer
+     * @param len Length of the script
+     * @return MarkerOutput if the script holds a valid payload, null otherwise
+     */
+    public static MarkerOutput decode(byte[] script, int off, int len) {
 
-            if ((quantity == 0) || (length - offset) > 9) {
-                return res;
-            }
-            offset = length;
-        }
+        MarkerOutputParser parser = new MarkerOutputParser();
+        return parser.parseScript(script, off, len) ? parser.getMarkerOutput() : null;
+    }
 
-        List<Object> varIntData2 = Utils.readVarInteger(payload, offset);
+    /**
+     * Deserializes the Open Assets payload
+     * @param payload Buffer holding the payload
+     * @param off Offset of the payload in the buffer
+     * @param len Length of the payload
+     * @return MarkerOutput if payload deserializes successfully, null otherwise
+     */
+    public static MarkerOutput decodePayload(byte[] payload, int off, int len) {
 
-        if (varIntData2.get(0) == null) {
-            return res;
-        }
+        MarkerOutputParser parser = new MarkerOutputParser();
+        return parser.parsePayload(payload, off, len) ? parser.getMarkerOutput() : null;
+    }
 
-        int length = Integer.parseInt(varIntData2.get(0).toString());
-        offset = Integer.parseInt(varIntData2.get(1).toString());
+    /**
+     * Creates the marker output for fields checked by MarkerOutputParser
+     */
+    static MarkerOutput fromParsed(ArrayList<Long> assetQuantities, byte[] metadataBytes) {
 
-        if (Utils.packHexStringToCharString(payload).length() < (length + offset)) {
-            return res;
-        }
-        res = true;
-        return res;
+        return new MarkerOutput(assetQuantities, metadataBytes);
     }
 
     /**
@@ -260,10 +251,10 @@ public class MarkerOutput {
      * @return Data if the given script is valid, empty string otherwise
      */
     public String parseScript(byte[] outputScript){
-        Script script = new Script(outputScript);
-        String scriptData = Utils.packByteArrayToString(script.getChunks().get(1).data);
-        if (validatePayload(scriptData)) {
-        	return scriptData;
+
+        MarkerOutputParser parser = new MarkerOutputParser();
+        if (parser.validateScript(outputScript, 0, outputScript.length)) {
+            return Utils.packByteArrayToString(outputScript, parser.getPayloadOffset(), parser.getPayloadLength());
         }
         return "";
     }
@@ -274,9 +265,71 @@ public class MarkerOutput {
      */
     public Script buildScript(){
 
-        return new ScriptBuilder()
-                .op(ScriptOpCodes.OP_RETURN)
-                .data(Utils.packHexStringToBytes(toPayload()))
-                .build();
+        ByteBuffer buffer = ByteBuffer.allocate(scriptLength());
+        encodeTo(buffer);
+        return new Script(buffer.array());
+    }
+
+    /**
+     * Calculates the number of bytes the push opcode and its length prefix take
+     */
+    private static int pushOpcodeLength(int dataLength) {
+
+        if (dataLength < ScriptOpCodes.OP_PUSHDATA1) {
+            return 1;
+        }
+        else if (dataLength <= 0xff) {
+            return 2;
+        }
+        else if (dataLength <= 0xffff) {
+            return 3;
+        }
+        return 5;
+    }
+
+    /**
+     * Calculates the number of bytes a var-int takes
+     */
+    private static int varIntegerLength(long value) {
+
+        // 0xfd = 253
+        if (value < 253) {
+            return 1;
+        }
+        // 0xffff = 65535
+        else if (value <= 65535) {
+            return 3;
+        }
+        // 0xffffffff = 4294967295
+        else if (value <= 4294967295L) {
+            return 5;
+        }
+        return 9;
+    }
+
+    /**
+     * Writes the var-int. The value after the 0xfd/0xfe/0xff prefix is written
+     * most significant byte first, the layout toPayload() has always produced.
+     */
+    private static void putVarInteger(ByteBuffer buffer, long value) {
+
+        int length = varIntegerLength(value);
+        switch (length) {
+            case 3:
+                buffer.put((byte) 0xfd);
+                break;
+            case 5:
+                buffer.put((byte) 0xfe);
+                break;
+            case 9:
+                buffer.put((byte) 0xff);
+                break;
+            default:
+                buffer.put((byte) value);
+                return;
+        }
+        for (int shift = (length - 2) * 8; shift >= 0; shift -= 8) {
+            buffer.put((byte) (value >>> shift));
+        }
     }
 }
@@ -0,0 +1,414 @@
+package com.chaintope.openassetsj.protocol;
+
+import java.util.ArrayList;
+
+import org.bitcoinj.script.ScriptOpCodes;
+
+import com.chaintope.openassetsj.metrics.EventCounter;
+import com.chaintope.openassetsj.metrics.LatencyTimer;
+import com.chaintope.openassetsj.metrics.Metrics;
+import com.chaintope.openassetsj.utils.Leb128;
+
+/**
+ * Validates and deserializes marker output scripts in a single pass over the script bytes.
+ * A parser keeps the outcome of its last call, so an instance must not be shared between threads.
+ */
+public class MarkerOutputParser {
+
+    /**
+     * Reasons a script or payload is not a valid marker output
+     */
+    public enum Rejection {
+        // The script does not start with OP_RETURN
+        NOT_OP_RETURN,
+        // OP_RETURN is not followed by a data push that fits in the script
+        NO_DATA_PUSH,
+        // The payload does not start with OAP_MARKER and VERSION
+        NO_MARKER,
+        // The asset quantity count is cut off
+        TRUNCATED_QUANTITY_COUNT,
+        // The asset quantity list is empty
+        EMPTY_QUANTITY_LIST,
+        // An asset quantity is cut off
+        TRUNCATED_QUANTITY,
+        // An asset quantity is longer than 9 bytes
+        QUANTITY_TOO_LONG,
+        // An asset quantity is zero
+        ZERO_QUANTITY,
+        // The metadata length is cut off
+        TRUNCATED_METADATA_LENGTH,
+        // The payload is shorter than the metadata length
+        TRUNCATED_METADATA
+    }
+
+    // Quantities longer than this are invalid
+    private static final int MAX_QUANTITY_LENGTH = 9;
+
+    private static final LatencyTimer PARSE_TIMER = Metrics.timer("marker_output.parse");
+    private static final LatencyTimer VALIDATE_TIMER = Metrics.timer("marker_output.validate");
+    private static final EventCounter REJECTED = Metrics.counter("marker_output.rejected");
+
+    private MarkerOutput markerOutput;
+    private Rejection rejection;
+    private int payloadOffset;
+    private int payloadLength;
+    // Array of the last index call of MarkerOutputView, null after other calls
+    private int[] quantityOffsets;
+    private int quantityCount;
+    private int metadataOffset;
+    private int metadataLength;
+
+    /**
+     * Parses the marker output script
+     * @param script Buffer holding the script
+     * @param off Offset of the script in the buffer
+     * @param len Length of the script
+     * @return true if the script is a valid marker output, false otherwise
+     */
+    public boolean parseScript(byte[] script, int off, int len) {
+
+        long start = PARSE_TIMER.start();
+        boolean valid = locatePayload(script, off, len) && walkPayload(script, payloadOffset, payloadLength, true, null);
+        PARSE_TIMER.stop(start);
+        return valid;
+    }
+
+    /**
+     * Parses the Open Assets payload
+     * @param payload Buffer holding the payload
+     * @param off Offset of the payload in the buffer
+     * @param len Length of the payload
+     * @return true if the payload is valid, false otherwise
+     */
+    public boolean parsePayload(byte[] payload, int off, int len) {
+
+        long start = PARSE_TIMER.start();
+        reset(off, len);
+        boolean valid = walkPayload(payload, off, len, true, null);
+        PARSE_TIMER.stop(start);
+        return valid;
+    }
+
+    /**
+     * Validates the marker output script without materializing the marker output
+     * @param script Buffer holding the script
+     * @param off Offset of the script in the buffer
+     * @param len Length of the script
+     * @return true if the script is a valid marker output, false otherwise
+     */
+    public boolean validateScript(byte[] script, int off, int len) {
+
+        long start = VALIDATE_TIMER.start();
+        boolean valid = locatePayload(script, off, len) && walkPayload(script, payloadOffset, payloadLength, false, null);
+        VALIDATE_TIMER.stop(start);
+        return valid;
+    }
+
+    /**
+     * Validates the Open Assets payload without materializing the marker output
+     * @param payload Buffer holding the payload
+     * @param off Offset of the payload in the buffer
+     * @param len Length of the payload
+     * @return true if the payload is valid, false otherwise
+     */
+    public boolean validatePayload(byte[] payload, int off, int len) {
+
+        long start = VALIDATE_TIMER.start();
+        reset(off, len);
+        boolean valid = walkPayload(payload, off, len, false, null);
+        VALIDATE_TIMER.stop(start);
+        return valid;
+    }
+
+    /**
+     * Validates the marker output script, recording where every asset quantity and the metadata start
+     * @param quantityOffsets Array receiving the offset of each quantity, replaced by a larger one when too short
+     * @return true if the script is a valid marker output, false otherwise
+     */
+    boolean indexScript(byte[] script, int off, int len, int[] quantityOffsets) {
+
+        long start = VALIDATE_TIMER.start();
+        boolean valid = locatePayload(script, off, len)
+                && walkPayload(script, payloadOffset, payloadLength, false, quantityOffsets);
+        VALIDATE_TIMER.stop(start);
+        return valid;
+    }
+
+    /**
+     * Validates the Open Assets payload, recording where every asset quantity and the metadata start
+     * @param quantityOffsets Array receiving the offset of each quantity, replaced by a larger one when too short
+     * @return true if the payload is valid, false otherwise
+     */
+    boolean indexPayload(byte[] payload, int off, int len, int[] quantityOffsets) {
+
+        long start = VALIDATE_TIMER.start();
+        reset(off, len);
+        boolean valid = walkPayload(payload, off, len, false, quantityOffsets);
+        VALIDATE_TIMER.stop(start);
+        return valid;
+    }
+
+    /**
+     * Gets the array the last index call recorded the quantity offsets in
+     * @return Array, null if the call was rejected before reaching the quantities
+     */
+    int[] getQuantityOffsets() {
+        return quantityOffsets;
+    }
+
+    /**
+     * Gets the number of asset quantities found by the last successful call
+     */
+    int getQuantityCount() {
+        return quantityCount;
+    }
+
+    /**
+     * Gets the offset of the metadata found by the last successful call
+     */
+    int getMetadataOffset() {
+        return metadataOffset;
+    }
+
+    /**
+     * Gets the length of the metadata found by the last successful call
+     */
+    int getMetadataLength() {
+        return metadataLength;
+    }
+
+    /**
+     * Gets the marker output built by the last successful parse call
+     * @return Marker output, null after a rejection or a validate call
+     */
+    public MarkerOutput getMarkerOutput() {
+        return markerOutput;
+    }
+
+    /**
+     * Gets the reason the last call failed
+     * @return Rejection reason, null if the last call succeeded
+     */
+    public Rejection getRejection() {
+        return rejection;
+    }
+
+    /**
+     * Gets the offset of the payload found by the last call
+     */
+    public int getPayloadOffset() {
+        return payloadOffset;
+    }
+
+    /**
+     * Gets the length of the payload found by the last call
+     */
+    public int getPayloadLength() {
+        return payloadLength;
+    }
+
+    private void reset(int off, int len) {
+
+        markerOutput = null;
+        rejection = null;
+        payloadOffset = off;
+        payloadLength = len;
+        quantityOffsets = null;
+        quantityCount = 0;
+        metadataOffset = 0;
+        metadataLength = 0;
+    }
+
+    private boolean reject(Rejection reason) {
+
+        rejection = reason;
+        // Scripts that are not marker outputs at all are the common case, only malformed markers are counted
+        if (reason.compareTo(Rejection.NO_MARKER) > 0) {
+            REJECTED.increment();
+        }
+        return false;
+    }
+
+    /**
+     * Finds the data pushed right after OP_RETURN and records its position
+     */
+    private boolean locatePayload(byte[] script, int off, int len) {
+
+        reset(off, 0);
+        int end = off + len;
+        if (len < 1 || (script[off] & 0xff) != ScriptOpCodes.OP_RETURN) {
+            return reject(Rejection.NOT_OP_RETURN);
+        }
+        if (len < 2) {
+            return reject(Rejection.NO_DATA_PUSH);
+        }
+
+        int opcode = script[off + 1] & 0xff;
+        int offset = off + 2;
+        long dataLength;
+
+        if (opcode > 0 && opcode < ScriptOpCodes.OP_PUSHDATA1) {
+
+            dataLength = opcode;
+        }
+        else if (opcode == ScriptOpCodes.OP_PUSHDATA1 && offset + 1 <= end) {
+
+            dataLength = script[offset] & 0xff;
+            offset += 1;
+        }
+        else if (opcode == ScriptOpCodes.OP_PUSHDATA2 && offset + 2 <= end) {
+
+            dataLength = (script[offset] & 0xff) | (script[offset + 1] & 0xff) << 8;
+            offset += 2;
+        }
+        else if (opcode == ScriptOpCodes.OP_PUSHDATA4 && offset + 4 <= end) {
+
+            dataLength = ((script[offset] & 0xff) | (script[offset + 1] & 0xff) << 8
+                    | (script[offset + 2] & 0xff) << 16 | (long) (script[offset + 3] & 0xff) << 24);
+            offset += 4;
+        }
+        else {
+            return reject(Rejection.NO_DATA_PUSH);
+        }
+
+        if (dataLength > end - offset) {
+            return reject(Rejection.NO_DATA_PUSH);
+        }
+        payloadOffset = offset;
+        payloadLength = (int) dataLength;
+        return true;
+    }
+
+    /**
+     * Walks the payload once, checking every field and collecting them if asked to
+     * @param offsets Array receiving the quantity offsets, null not to record them
+     */
+    private boolean walkPayload(byte[] data, int off, int len, boolean materialize, int[] offsets) {
+
+        int end = off + len;
+        if (len < MarkerOutput.MARKER_PREFIX.length) {
+            return reject(Rejection.NO_MARKER);
+        }
+        for (int i = 0; i < MarkerOutput.MARKER_PREFIX.length; i++) {
+
+            if (data[off + i] != MarkerOutput.MARKER_PREFIX[i]) {
+                return reject(Rejection.NO_MARKER);
+            }
+        }
+
+        int offset = off + MarkerOutput.MARKER_PREFIX.length;
+        int countLength = varIntegerLength(data, offset, end);
+        if (countLength < 0) {
+            return reject(Rejection.TRUNCATED_QUANTITY_COUNT);
+        }
+        long count = getVarInteger(data, offset, countLength);
+        offset += countLength;
+
+        if (count == 0) {
+            return reject(Rejection.EMPTY_QUANTITY_LIST);
+        }
+        // Every quantity takes at least one byte
+        if (count < 0 || count > end - offset) {
+            return reject(Rejection.TRUNCATED_QUANTITY);
+        }
+
+        if (offsets != null && count > offsets.length) {
+            offsets = new int[(int) Math.max(count, 2L * offsets.length)];
+        }
+        quantityOffsets = offsets;
+        ArrayList<Long> assetQuantities = materialize ? new ArrayList<>((int) count) : null;
+        int[] cursor = { offset };
+        for (int i = 0; i < count; i++) {
+
+            if (offsets != null) {
+                offsets[i] = offset;
+            }
+
+            long quantity = Leb128.readLeb128(data, end, cursor);
+            if (cursor[0] < 0) {
+                return reject(end - offset < Leb128.MAX_LENGTH
+                        ? Rejection.TRUNCATED_QUANTITY : Rejection.QUANTITY_TOO_LONG);
+            }
+            if (cursor[0] - offset > MAX_QUANTITY_LENGTH) {
+                return reject(Rejection.QUANTITY_TOO_LONG);
+            }
+            if (quantity == 0) {
+                return reject(Rejection.ZERO_QUANTITY);
+            }
+            if (materialize) {
+                assetQuantities.add(quantity);
+            }
+            offset = cursor[0];
+        }
+
+        int metadataLengthLength = varIntegerLength(data, offset, end);
+        if (metadataLengthLength < 0) {
+            return reject(Rejection.TRUNCATED_METADATA_LENGTH);
+        }
+        long length = getVarInteger(data, offset, metadataLengthLength);
+        offset += metadataLengthLength;
+
+        if (length < 0 || end - offset < length) {
+            return reject(Rejection.TRUNCATED_METADATA);
+        }
+        quantityCount = (int) count;
+        metadataOffset = offset;
+        metadataLength = (int) length;
+
+        if (materialize) {
+
+            byte[] metadataBytes = MarkerOutput.EMPTY_METADATA;
+            if (metadataLength > 0) {
+
+                metadataBytes = new byte[metadataLength];
+                System.arraycopy(data, offset, metadataBytes, 0, metadataBytes.length);
+            }
+            markerOutput = MarkerOutput.fromParsed(assetQuantities, metadataBytes);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the size of the var-int at the offset
+     * @return Size in bytes, -1 if the var-int does not fit before end
+     */
+    private static int varIntegerLength(byte[] data, int offset, int end) {
+
+        if (offset >= end) {
+            return -1;
+        }
+        int length;
+        switch (data[offset] & 0xff) {
+            // 0xFD = 253
+            case 253:
+                length = 3;
+                break;
+            // 0xFE = 254
+            case 254:
+                length = 5;
+                break;
+            // 0xFF = 255
+            case 255:
+                length = 9;
+                break;
+            default:
+                length = 1;
+        }
+        return (offset + length <= end) ? length : -1;
+    }
+
+    /**
+     * Reads the var-int the way MarkerOutput writes it, most significant byte first after the prefix
+     */
+    private static long getVarInteger(byte[] data, int offset, int length) {
+
+        if (length == 1) {
+            return data[offset] & 0xff;
+        }
+        long value = 0;
+        for (int i = 1; i < length; i++) {
+            value = (value << 8) | (data[offset + i] & 0xff);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,172 @@
+package com.chaintope.openassetsj.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.chaintope.openassetsj.protocol.MarkerOutputParser.Rejection;
+import com.chaintope.openassetsj.utils.Leb128;
+
+/**
+ * Read-only view of a marker output held in a byte array, for callers that only need some of its fields.
+ *
+ * Resetting the view onto a script or payload validates it with MarkerOutputParser, which records where each
+ * asset quantity starts without decoding the quantities or copying the metadata. quantity(i) then decodes
+ * the i-th quantity in place. The offset table is kept and only grows, so a view reset onto marker after marker
+ * allocates nothing once it has seen the longest quantity list. The bytes must not change while viewed, and an
+ * instance must not be shared between threads.
+ */
+public class MarkerOutputView {
+
+    private static final int[] NO_OFFSETS = new int[0];
+
+    private final MarkerOutputParser parser = new MarkerOutputParser();
+    private final int[] cursor = new int[1];
+    private byte[] data;
+    private int[] quantityOffsets = NO_OFFSETS;
+    private int quantityCount;
+    private int payloadOffset;
+    private int payloadLength;
+    private int metadataOffset;
+    private int metadataLength;
+    private Rejection rejection;
+    private boolean valid;
+
+    /**
+     * Views the marker output script
+     * @param script Buffer holding the script
+     * @param off Offset of the script in the buffer
+     * @param len Length of the script
+     * @return true if the script is a valid marker output, false otherwise
+     */
+    public boolean resetScript(byte[] script, int off, int len) {
+
+        data = script;
+        return record(parser.indexScript(script, off, len, quantityOffsets));
+    }
+
+    /**
+     * Views the Open Assets payload
+     * @param payload Buffer holding the payload
+     * @param off Offset of the payload in the buffer
+     * @param len Length of the payload
+     * @return true if the payload is valid, false otherwise
+     */
+    public boolean resetPayload(byte[] payload, int off, int len) {
+
+        data = payload;
+        return record(parser.indexPayload(payload, off, len, quantityOffsets));
+    }
+
+    /**
+     * Checks whether the last reset found a valid marker output
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Gets the reason the last reset failed
+     * @return Rejection reason, null if the last reset succeeded
+     */
+    public Rejection getRejection() {
+        return rejection;
+    }
+
+    /**
+     * Gets the number of asset quantities
+     * @return Count, 0 if the view is not valid
+     */
+    public int quantityCount() {
+        return quantityCount;
+    }
+
+    /**
+     * Decodes an asset quantity
+     * @param index Index of the quantity, the output it applies to being the index-th output after the marker
+     * output for transfers
+     * @return Asset quantity
+     * @throws IndexOutOfBoundsException if index is not below quantityCount()
+     */
+    public long quantity(int index) {
+
+        if (index < 0 || index >= quantityCount) {
+            throw new IndexOutOfBoundsException("Quantity " + index + " of " + quantityCount);
+        }
+        // Validated on reset, so it ends within the payload
+        cursor[0] = quantityOffsets[index];
+        return Leb128.readLeb128(data, payloadOffset + payloadLength, cursor);
+    }
+
+    /**
+     * Gets the metadata as a read-only slice of the viewed buffer, the only call that allocates
+     * @return Metadata bytes, null if the view is not valid
+     */
+    public ByteBuffer metadataBytes() {
+
+        if (!valid) {
+            return null;
+        }
+        return ByteBuffer.wrap(data, metadataOffset, metadataLength).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Gets the offset of the metadata in the viewed buffer
+     */
+    public int getMetadataOffset() {
+        return metadataOffset;
+    }
+
+    public int getMetadataLength() {
+        return metadataLength;
+    }
+
+    /**
+     * Gets the offset of the payload in the viewed buffer
+     */
+    public int getPayloadOffset() {
+        return payloadOffset;
+    }
+
+    public int getPayloadLength() {
+        return payloadLength;
+    }
+
+    /**
+     * Materializes the viewed marker output
+     * @return Marker output, null if the view is not valid
+     */
+    public MarkerOutput toMarkerOutput() {
+
+        if (!valid) {
+            return null;
+        }
+        ArrayList<Long> assetQuantities = new ArrayList<>(quantityCount);
+        for (int i = 0; i < quantityCount; i++) {
+            assetQuantities.add(quantity(i));
+        }
+        byte[] metadata = (metadataLength == 0) ? MarkerOutput.EMPTY_METADATA
+                : Arrays.copyOfRange(data, metadataOffset, metadataOffset + metadataLength);
+        return MarkerOutput.fromParsed(assetQuantities, metadata);
+    }
+
+    /**
+     * Takes the outcome of the last parser call
+     */
+    private boolean record(boolean valid) {
+
+        int[] offsets = parser.getQuantityOffsets();
+        if (offsets != null) {
+            // Grown by the parser for a longer quantity list
+            quantityOffsets = offsets;
+        }
+        this.valid = valid;
+        rejection = parser.getRejection();
+        payloadOffset = parser.getPayloadOffset();
+        payloadLength = parser.getPayloadLength();
+        quantityCount = valid ? parser.getQuantityCount() : 0;
+        metadataOffset = valid ? parser.getMetadataOffset() : 0;
+        metadataLength = valid ? parser.getMetadataLength() : 0;
+        return valid;
+    }
+}
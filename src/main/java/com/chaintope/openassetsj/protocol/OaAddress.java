@@ -1,24 +1,62 @@
 package com.chaintope.openassetsj.protocol;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
 import org.bitcoinj.core.Address;
 import org.bitcoinj.core.Base58;
 import org.bitcoinj.core.ECKey;
 import org.bitcoinj.core.NetworkParameters;
-import org.bitcoinj.core.VersionedChecksummedBytes;
+
+import com.chaintope.openassetsj.metrics.LatencyTimer;
+import com.chaintope.openassetsj.metrics.Metrics;
+import com.chaintope.openassetsj.utils.ReusableDigests;
 
 public class OaAddress {
 
 	private NetworkParameters params;
+	private OaAddressCache cache;
 
     private final int OA_NAMESPACE = 19;
 
+    // Batches up to this size are converted on the calling thread
+    private static final int BATCH_SPLIT_THRESHOLD = 512;
+
+    private static final LatencyTimer TO_OA_ADDRESS_TIMER = Metrics.timer("oa_address.to_oa_address");
+    private static final LatencyTimer TO_ADDRESS_TIMER = Metrics.timer("oa_address.to_address");
+
     /**
      * Initializes network parameters necessary to generate OA address
      * @param params Network to use while dealing with OA address
      */
     public OaAddress(NetworkParameters params) {
 
+		this(params, null);
+	}
+
+    /**
+     * Initializes network parameters and a cache of converted addresses
+     * @param params Network to use while dealing with OA address
+     * @param cache Cache of conversions for the same network, e.g. OaAddressCache.shared(params)
+     */
+    public OaAddress(NetworkParameters params, OaAddressCache cache) {
+
+		if (cache != null && !cache.getNetworkId().equals(params.getId())) {
+			throw new IllegalArgumentException("OA address cache of " + cache.getNetworkId() + " used for " + params.getId());
+		}
 		this.params = params;
+		this.cache = cache;
+	}
+
+	/**
+	 * Gets the cache of converted addresses
+	 * @return Cache, null if addresses are converted on every call
+	 */
+	public OaAddressCache getCache() {
+		return cache;
 	}
 
 	/**
@@ -28,9 +66,20 @@ public class OaAddress {
      */
     public String generateOaAddress(ECKey ecKey) {
 
-        Address address = ecKey.decompress().toAddress(params);
+        // Same hash as ecKey.decompress().toAddress(), without building a second key
+        byte[] pubKeyHash;
+        if (ecKey.isCompressed()) {
+
+            byte[] pubKey = ecKey.getPubKeyPoint().getEncoded(false);
+            pubKeyHash = new byte[20];
+            ReusableDigests.forCurrentThread().hash160(pubKey, 0, pubKey.length, pubKeyHash, 0);
+        }
+        else {
+            pubKeyHash = ecKey.getPubKeyHash();
+        }
+        Address address = new Address(params, pubKeyHash);
         String oaAddress = addressToOaAddress(address);
-        
+
         return oaAddress;
     }
 
@@ -42,14 +91,9 @@ public class OaAddress {
     public String addressToOaAddress(Address address) {
 
         String oaAddress = "";
-        
+
         try {
-            byte[] pubkeyHash = address.getHash160();
-            int addrLen = 1 + 20;
-            byte[] data = new byte[addrLen];
-            System.arraycopy(pubkeyHash, 0, data, 1, 20);
-            data[0] = (byte) address.getVersion();
-            oaAddress = new VersionedChecksummedBytes(OA_NAMESPACE, data) { }.toString();
+            oaAddress = (cache != null) ? cache.getOaAddress(address, this::deriveOaAddress) : deriveOaAddress(address);
         }
         catch (Exception e) {
 
@@ -57,7 +101,7 @@ public class OaAddress {
         }
         return oaAddress;
     }
-    
+
     /**
      * Converts OpenAsset address to normal bitcoin address
      * @param oaAddress openassets address
@@ -65,11 +109,83 @@ public class OaAddress {
      */
     public Address oaAddressToAddress(String oaAddress) {
 
-        byte[] decodedAddress = Base58.decodeChecked(oaAddress);
-        byte[] normalAddress = new byte[20];
-        /* First 2 bytes - OAVersion byte and address version byte - skipped */
-        System.arraycopy(decodedAddress, 2, normalAddress , 0, 20);
-        Address newAddress = new Address(params, normalAddress);
-        return newAddress;
+        if (cache != null) {
+            return cache.getAddress(oaAddress, this::deriveAddress);
+        }
+        return deriveAddress(oaAddress);
+    }
+
+    /**
+     * Generates OpenAsset addresses for many addresses, in parallel for large batches
+     * @param addresses Addresses from which OpenAsset Addresses should be generated
+     * @return OpenAsset addresses in the iteration order of the addresses
+     */
+    public List<String> toOaAddresses(Collection<Address> addresses) {
+
+        Address[] addressArray = addresses.toArray(new Address[addresses.size()]);
+        String[] oaAddresses = new String[addressArray.length];
+        convertBatch(addressArray.length, i -> oaAddresses[i] = addressToOaAddress(addressArray[i]));
+        return Arrays.asList(oaAddresses);
+    }
+
+    /**
+     * Converts many OpenAsset addresses to bitcoin addresses, in parallel for large batches
+     * @param oaAddresses openassets addresses
+     * @return bitcoin addresses in the iteration order of the OpenAsset addresses
+     * @throws org.bitcoinj.core.AddressFormatException if one of the OpenAsset addresses is malformed
+     */
+    public List<Address> toAddresses(Collection<String> oaAddresses) {
+
+        String[] oaAddressArray = oaAddresses.toArray(new String[oaAddresses.size()]);
+        Address[] addresses = new Address[oaAddressArray.length];
+        convertBatch(oaAddressArray.length, i -> addresses[i] = oaAddressToAddress(oaAddressArray[i]));
+        return Arrays.asList(addresses);
+    }
+
+    /**
+     * Runs the conversion of indexes [0, count) on the calling thread for short batches, on the common pool otherwise
+     */
+    private static void convertBatch(int count, IntConsumer conversion) {
+
+        IntStream indexes = IntStream.range(0, count);
+        if (count > BATCH_SPLIT_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(conversion);
+    }
+
+    /**
+     * Builds the OA address of the address, Base58Check of OA_NAMESPACE, address version and hash160
+     */
+    private String deriveOaAddress(Address address) {
+
+        long start = TO_OA_ADDRESS_TIMER.start();
+        // namespace, address version, hash160, 4 bytes for checksum
+        byte[] data = new byte[26];
+        data[0] = (byte) OA_NAMESPACE;
+        data[1] = (byte) address.getVersion();
+        System.arraycopy(address.getHash160(), 0, data, 2, 20);
+        ReusableDigests.forCurrentThread().checksum(data, 0, 22, data, 22);
+        String oaAddress = Base58.encode(data);
+        TO_OA_ADDRESS_TIMER.stop(start);
+        return oaAddress;
+    }
+
+    /**
+     * Decodes the OA address into the bitcoin address it wraps
+     */
+    private Address deriveAddress(String oaAddress) {
+
+        long start = TO_ADDRESS_TIMER.start();
+        try {
+            byte[] decodedAddress = Base58.decodeChecked(oaAddress);
+            byte[] normalAddress = new byte[20];
+            /* First 2 bytes - OAVersion byte and address version byte - skipped */
+            System.arraycopy(decodedAddress, 2, normalAddress , 0, 20);
+            Address newAddress = new Address(params, normalAddress);
+            return newAddress;
+        } finally {
+            TO_ADDRESS_TIMER.stop(start);
+        }
     }
 }
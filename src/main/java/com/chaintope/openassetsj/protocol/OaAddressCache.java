@@ -0,0 +1,143 @@
+package com.chaintope.openassetsj.protocol;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.NetworkParameters;
+
+import com.chaintope.openassetsj.metrics.Metrics;
+import com.chaintope.openassetsj.utils.CacheStatistics;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Bounded cache of conversions between bitcoin addresses and OA addresses, safe for concurrent use.
+ * Converting a P2PKH address also records the reverse conversion, so a round trip costs a single derivation.
+ * Converting an OA address does not, and neither does converting a P2SH address, since an OA address always decodes
+ * to a P2PKH address and either would make the cache answer differently from an uncached conversion.
+ */
+public class OaAddressCache {
+
+	public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+	private static final ConcurrentMap<String, OaAddressCache> SHARED_CACHES = new ConcurrentHashMap<>();
+
+	private final String networkId;
+	private final Cache<Address, String> oaAddresses;
+	private final Cache<String, Address> addresses;
+
+	private OaAddressCache(String networkId, long maximumSize) {
+
+		this.networkId = networkId;
+		this.oaAddresses = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+		this.addresses = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+	}
+
+	/**
+	 * Creates a cache holding at most the given number of conversions in each direction
+	 * @param params Network of the addresses
+	 * @param maximumSize Maximum number of entries per direction
+	 * @return New cache
+	 */
+	public static OaAddressCache withMaximumSize(NetworkParameters params, long maximumSize) {
+
+		return new OaAddressCache(params.getId(), maximumSize);
+	}
+
+	/**
+	 * Gets the cache shared by every OaAddress of the network, creating it with DEFAULT_MAXIMUM_SIZE.
+	 * Its size is reported as the gauge oa_address_cache.&lt;network&gt;.size.
+	 * @param params Network of the addresses
+	 * @return Shared cache of the network
+	 */
+	public static OaAddressCache shared(NetworkParameters params) {
+
+		return SHARED_CACHES.computeIfAbsent(params.getId(), id -> {
+
+			OaAddressCache cache = withMaximumSize(params, DEFAULT_MAXIMUM_SIZE);
+			Metrics.gauge("oa_address_cache." + id + ".size", cache::size);
+			return cache;
+		});
+	}
+
+	/**
+	 * Gets the network the cached addresses belong to
+	 * @return Network ID, as returned by NetworkParameters.getId()
+	 */
+	public String getNetworkId() {
+		return networkId;
+	}
+
+	/**
+	 * Gets the cached OA address of the address, converting and caching it on a miss
+	 */
+	String getOaAddress(Address address, Function<Address, String> conversion) {
+
+		String oaAddress = oaAddresses.getIfPresent(address);
+		if (oaAddress != null) {
+			return oaAddress;
+		}
+		oaAddress = load(oaAddresses, address, conversion);
+		if (!address.isP2SHAddress()) {
+			addresses.put(oaAddress, address);
+		}
+		return oaAddress;
+	}
+
+	/**
+	 * Gets the cached address of the OA address, converting and caching it on a miss
+	 */
+	Address getAddress(String oaAddress, Function<String, Address> conversion) {
+
+		Address address = addresses.getIfPresent(oaAddress);
+		if (address != null) {
+			return address;
+		}
+		return load(addresses, oaAddress, conversion);
+	}
+
+	private static <K, V> V load(Cache<K, V> cache, K key, Function<K, V> conversion) {
+
+		try {
+			return cache.get(key, () -> conversion.apply(key));
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} catch (UncheckedExecutionException e) {
+			// Conversion errors such as AddressFormatException reach the caller unwrapped
+			Throwable cause = e.getCause();
+			throw (cause instanceof RuntimeException) ? (RuntimeException) cause : e;
+		}
+	}
+
+	/**
+	 * Gets the number of cached conversions in both directions
+	 */
+	public long size() {
+		return oaAddresses.size() + addresses.size();
+	}
+
+	/**
+	 * Removes every cached conversion
+	 */
+	public void invalidateAll() {
+
+		oaAddresses.invalidateAll();
+		addresses.invalidateAll();
+	}
+
+	/**
+	 * Gets the hit, miss and eviction counters summed over both directions
+	 * @return Statistics snapshot
+	 */
+	public CacheStatistics getStatistics() {
+
+		CacheStats stats = oaAddresses.stats().plus(addresses.stats());
+		// A lookup that misses is retried with get(), so misses are counted by the conversions it triggers
+		return new CacheStatistics(stats.hitCount(), stats.loadCount(), stats.evictionCount(), size());
+	}
+}
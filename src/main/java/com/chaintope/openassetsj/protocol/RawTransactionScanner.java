@@ -0,0 +1,306 @@
+package com.chaintope.openassetsj.protocol;
+
+import java.nio.ByteBuffer;
+
+import org.bitcoinj.core.ProtocolException;
+import org.bitcoinj.script.ScriptOpCodes;
+
+import com.chaintope.openassetsj.utils.Utils;
+
+/**
+ * Finds the marker output of a serialized transaction by walking its framing in place, without building a
+ * Transaction or Script, so that transactions which are not Open Assets transactions are skipped for the cost
+ * of reading their var-int lengths. Witness data of segwit transactions is walked as well.
+ *
+ * The marker output is the first output whose script MarkerOutputParser validates, as for ColoringEngine, so
+ * an earlier malformed OP_RETURN carrying the marker prefix is skipped. Only OP_RETURN scripts are handed to
+ * the parser, in place for buffers backed by an accessible array, otherwise through a reused copy.
+ * A scanner keeps the outcome of its last call and reads buffers at absolute positions only, so it allocates
+ * nothing once its copy buffer fits the longest OP_RETURN script, and an instance must not be shared between threads.
+ */
+public class RawTransactionScanner {
+
+	// Version, input out point, sequence, lock time and output value lengths of a serialized transaction
+	private static final int VERSION_SIZE = 4;
+	private static final int OUT_POINT_SIZE = 36;
+	private static final int SEQUENCE_SIZE = 4;
+	private static final int LOCK_TIME_SIZE = 4;
+	private static final int VALUE_SIZE = 8;
+
+	private final MarkerOutputParser parser = new MarkerOutputParser();
+	// Copy of the OP_RETURN script being validated, for buffers without an accessible array
+	private byte[] scriptCopy = new byte[MarkerOutput.STANDARD_SCRIPT_LENGTH];
+
+	private byte[] wrappedArray;
+	private ByteBuffer wrappedBuffer;
+
+	private ByteBuffer buffer;
+	private int offset;
+	private int length;
+	private int inputCount;
+	private int outputCount;
+	private int witnessOffset;
+	private int markerOutputIndex;
+	private int payloadOffset;
+	private int payloadLength;
+
+	/**
+	 * Scans a serialized transaction
+	 * @param transaction Transaction bytes
+	 * @return true if the transaction has a marker output, false if it is not an Open Assets transaction
+	 * @throws ProtocolException if the transaction is malformed
+	 */
+	public boolean scan(byte[] transaction) {
+		return scan(transaction, 0, transaction.length);
+	}
+
+	/**
+	 * Scans a serialized transaction held in an array
+	 * @param bytes Buffer holding the transaction
+	 * @param off Offset of the transaction in the buffer
+	 * @param len Number of bytes available for the transaction, it may be followed by other data
+	 * @return true if the transaction has a marker output, false if it is not an Open Assets transaction
+	 * @throws ProtocolException if the transaction is malformed or longer than len
+	 */
+	public boolean scan(byte[] bytes, int off, int len) {
+
+		if (bytes != wrappedArray) {
+
+			wrappedArray = bytes;
+			wrappedBuffer = ByteBuffer.wrap(bytes);
+		}
+		return scan(wrappedBuffer, off, len);
+	}
+
+	/**
+	 * Scans a serialized transaction held in a buffer, e.g. a memory-mapped block file
+	 * @param buffer Buffer holding the transaction, in any byte order
+	 * @param off Offset of the transaction in the buffer
+	 * @param len Number of bytes available for the transaction, it may be followed by other data
+	 * @return true if the transaction has a marker output, false if it is not an Open Assets transaction
+	 * @throws ProtocolException if the transaction is malformed or longer than len
+	 */
+	public boolean scan(ByteBuffer buffer, int off, int len) {
+
+		this.buffer = buffer;
+		this.offset = off;
+		markerOutputIndex = -1;
+		payloadOffset = -1;
+		payloadLength = 0;
+		witnessOffset = -1;
+
+		int end = off + len;
+		int position = off;
+		checkAvailable(position, VERSION_SIZE + 1, end);
+		position += VERSION_SIZE;
+		boolean segwit = buffer.get(position) == 0;
+		if (segwit) {
+
+			checkAvailable(position, 2, end);
+			if (buffer.get(position + 1) == 0) {
+				throw malformed(position);
+			}
+			position += 2;
+		}
+
+		long inputs = readVarInt(position, end);
+		position += varIntLength(position);
+		if (inputs > end - position) {
+			throw malformed(position);
+		}
+		for (long i = 0; i < inputs; i++) {
+
+			position += OUT_POINT_SIZE;
+			position = skipBytes(position, end);
+			checkAvailable(position, SEQUENCE_SIZE, end);
+			position += SEQUENCE_SIZE;
+		}
+
+		long outputs = readVarInt(position, end);
+		position += varIntLength(position);
+		if (outputs > end - position) {
+			throw malformed(position);
+		}
+		for (int i = 0; i < outputs; i++) {
+
+			position += VALUE_SIZE;
+			int scriptEnd = skipBytes(position, end);
+			if (markerOutputIndex < 0) {
+
+				int scriptOffset = position + varIntLength(position);
+				if (locatePayload(scriptOffset, scriptEnd)) {
+					markerOutputIndex = i;
+				}
+			}
+			position = scriptEnd;
+		}
+
+		if (segwit) {
+
+			witnessOffset = position;
+			for (long i = 0; i < inputs; i++) {
+
+				long itemCount = readVarInt(position, end);
+				position += varIntLength(position);
+				if (itemCount > end - position) {
+					throw malformed(position);
+				}
+				for (long item = 0; item < itemCount; item++) {
+					position = skipBytes(position, end);
+				}
+			}
+		}
+		checkAvailable(position, LOCK_TIME_SIZE, end);
+		position += LOCK_TIME_SIZE;
+
+		inputCount = (int) inputs;
+		outputCount = (int) outputs;
+		length = position - off;
+		return markerOutputIndex >= 0;
+	}
+
+	/**
+	 * Checks whether the last scanned transaction has a marker output
+	 */
+	public boolean isOpenAssetsTransaction() {
+		return markerOutputIndex >= 0;
+	}
+
+	/**
+	 * Gets the index of the marker output of the last scanned transaction
+	 * @return Output index, -1 if the transaction is not an Open Assets transaction
+	 */
+	public int getMarkerOutputIndex() {
+		return markerOutputIndex;
+	}
+
+	/**
+	 * Gets the offset of the marker output payload in the scanned buffer
+	 * @return Offset, -1 if the transaction is not an Open Assets transaction
+	 */
+	public int getPayloadOffset() {
+		return payloadOffset;
+	}
+
+	/**
+	 * Gets the length of the marker output payload
+	 * @return Length, 0 if the transaction is not an Open Assets transaction
+	 */
+	public int getPayloadLength() {
+		return payloadLength;
+	}
+
+	/**
+	 * Gets the marker output payload as a read-only slice of the scanned buffer
+	 * @return Payload, null if the transaction is not an Open Assets transaction
+	 */
+	public ByteBuffer getPayload() {
+
+		if (markerOutputIndex < 0) {
+			return null;
+		}
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.limit(payloadOffset + payloadLength);
+		duplicate.position(payloadOffset);
+		return duplicate.slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Gets the number of bytes the last scanned transaction takes, including witness data
+	 */
+	public int getTransactionLength() {
+		return length;
+	}
+
+	/**
+	 * Gets the offset of the witness data in the scanned buffer
+	 * @return Offset, -1 if the transaction does not use the segwit serialization
+	 */
+	public int getWitnessOffset() {
+		return witnessOffset;
+	}
+
+	public int getInputCount() {
+		return inputCount;
+	}
+
+	public int getOutputCount() {
+		return outputCount;
+	}
+
+	/**
+	 * Records the payload if the script is a valid marker output
+	 */
+	private boolean locatePayload(int scriptOffset, int scriptEnd) {
+
+		int scriptLength = scriptEnd - scriptOffset;
+		if (scriptLength < 1 || (buffer.get(scriptOffset) & 0xff) != ScriptOpCodes.OP_RETURN) {
+			return false;
+		}
+		byte[] script;
+		int off;
+		if (buffer.hasArray()) {
+
+			script = buffer.array();
+			off = buffer.arrayOffset() + scriptOffset;
+		}
+		else {
+
+			if (scriptCopy.length < scriptLength) {
+				scriptCopy = new byte[scriptLength];
+			}
+			for (int i = 0; i < scriptLength; i++) {
+				scriptCopy[i] = buffer.get(scriptOffset + i);
+			}
+			script = scriptCopy;
+			off = 0;
+		}
+		if (!parser.validateScript(script, off, scriptLength)) {
+			return false;
+		}
+		payloadOffset = scriptOffset + (parser.getPayloadOffset() - off);
+		payloadLength = parser.getPayloadLength();
+		return true;
+	}
+
+	/**
+	 * Skips a length-prefixed byte string
+	 * @return Offset following the string
+	 */
+	private int skipBytes(int position, int end) {
+
+		long length = readVarInt(position, end);
+		position += varIntLength(position);
+		if (length > end - position) {
+			throw malformed(position);
+		}
+		return position + (int) length;
+	}
+
+	/**
+	 * Reads a var-int, values too large for a long being longer than any transaction and caught by the callers' bounds checks
+	 */
+	private long readVarInt(int position, int end) {
+
+		long value = Utils.readVarInteger(buffer, position, end);
+		if (value < 0) {
+			throw malformed(position);
+		}
+		return value;
+	}
+
+	private int varIntLength(int position) {
+		return Utils.varIntegerLength(buffer, position);
+	}
+
+	private void checkAvailable(int position, int length, int end) {
+
+		if (position < 0 || position + length > end) {
+			throw malformed(position);
+		}
+	}
+
+	private ProtocolException malformed(int position) {
+		return new ProtocolException("Malformed transaction at byte " + (position - offset));
+	}
+}
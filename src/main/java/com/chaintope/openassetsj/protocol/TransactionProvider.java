@@ -0,0 +1,17 @@
+package com.chaintope.openassetsj.protocol;
+
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+
+/**
+ * Source of the transactions the coloring engine walks back through
+ */
+public interface TransactionProvider {
+
+	/**
+	 * Gets a transaction by its hash
+	 * @param txHash Transaction hash
+	 * @return Transaction, null if it is unknown to the provider
+	 */
+	Transaction getTransaction(Sha256Hash txHash);
+}
@@ -0,0 +1,445 @@
+package com.chaintope.openassetsj.rpc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Utils;
+
+import com.chaintope.openassetsj.model.Rpc;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.Callback;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.Credentials;
+import com.squareup.okhttp.Dispatcher;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+
+/**
+ * JSON-RPC client for a bitcoind-compatible node, configured from the Rpc settings.
+ *
+ * Requests go over a pool of keep-alive HTTP connections. Calls of the same method are sent as JSON-RPC
+ * batch arrays of up to maxBatchSize calls, one HTTP request per batch, so resolving the transactions
+ * of hundreds of inputs costs a single round trip. At most maxInFlight HTTP requests are outstanding:
+ * sending one more blocks the caller until a response comes back, which keeps a fast producer from
+ * queueing unbounded work in front of the node.
+ */
+public class JsonRpcClient implements Closeable, RawTransactionSource {
+
+	public static final int DEFAULT_MAX_CONNECTIONS = 8;
+	public static final int DEFAULT_MAX_IN_FLIGHT = 16;
+	public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+
+	// RPC_INVALID_ADDRESS_OR_KEY, returned by getrawtransaction for unknown transactions
+	public static final int INVALID_ADDRESS_OR_KEY = -5;
+
+	private static final MediaType JSON = MediaType.parse("application/json");
+	// Below the 30 second idle timeout of bitcoind, so pooled connections are not closed under us
+	private static final long KEEP_ALIVE_SECONDS = 20;
+	private static final long TIMEOUT_SECONDS = 60;
+
+	private final String url;
+	private final String credentials;
+	private final int maxBatchSize;
+	private final Semaphore inFlight;
+	private final ExecutorService executor;
+	private final OkHttpClient httpClient;
+	private final JsonParser parser = new JsonParser();
+	private final AtomicLong nextId = new AtomicLong();
+
+	/**
+	 * Creates a client with DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_IN_FLIGHT and DEFAULT_MAX_BATCH_SIZE
+	 * @param rpc Host, port and credentials of the node
+	 */
+	public JsonRpcClient(Rpc rpc) {
+
+		this(rpc, DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_BATCH_SIZE);
+	}
+
+	/**
+	 * Creates a client
+	 * @param rpc Host, port and credentials of the node
+	 * @param maxConnections Number of idle connections kept alive
+	 * @param maxInFlight Number of HTTP requests sent and not yet answered
+	 * @param maxBatchSize Number of calls sent in one HTTP request
+	 */
+	public JsonRpcClient(Rpc rpc, int maxConnections, int maxInFlight, int maxBatchSize) {
+
+		if (maxConnections < 1 || maxInFlight < 1 || maxBatchSize < 1) {
+			throw new IllegalArgumentException("Connection, in-flight and batch limits must be positive");
+		}
+		this.url = "http://" + rpc.getHost() + ":" + rpc.getPort() + "/";
+		this.credentials = Credentials.basic(rpc.getUsername(), rpc.getPassword());
+		this.maxBatchSize = maxBatchSize;
+		this.inFlight = new Semaphore(maxInFlight);
+
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(maxInFlight, maxInFlight, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, "openassetsj-rpc");
+					thread.setDaemon(true);
+					return thread;
+				});
+		pool.allowCoreThreadTimeOut(true);
+		this.executor = pool;
+
+		Dispatcher dispatcher = new Dispatcher(executor);
+		dispatcher.setMaxRequests(maxInFlight);
+		dispatcher.setMaxRequestsPerHost(maxInFlight);
+		httpClient = new OkHttpClient();
+		httpClient.setDispatcher(dispatcher);
+		httpClient.setConnectionPool(new ConnectionPool(maxConnections, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS));
+		httpClient.setConnectTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		httpClient.setReadTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Calls a method and waits for its result
+	 * @param method Method name, e.g. "getblockcount"
+	 * @param params Parameters, serialized to JSON
+	 * @return Result of the call
+	 * @throws JsonRpcException if the node returned an error
+	 * @throws IOException if the node cannot be reached or its response cannot be read
+	 */
+	public JsonElement call(String method, Object... params) throws IOException {
+
+		return join(callAsync(method, params)).getResult();
+	}
+
+	/**
+	 * Calls a method without waiting for its result. Blocks while maxInFlight requests are outstanding.
+	 * Cancelling the future cancels the HTTP request.
+	 * @param method Method name
+	 * @param params Parameters, serialized to JSON
+	 * @return Future of the response, failing with an IOException if the node cannot be reached
+	 */
+	public CompletableFuture<JsonRpcResponse> callAsync(String method, Object... params) {
+
+		JsonObject request = request(nextId.getAndIncrement(), method, params);
+		CompletableFuture<List<JsonRpcResponse>> sent = send(request, 1);
+		return cancelling(sent.thenApply(responses -> responses.get(0)), Collections.singletonList(sent));
+	}
+
+	/**
+	 * Calls a method once per parameter list and waits for all the responses
+	 * @param method Method name
+	 * @param paramsList Parameters of each call
+	 * @return Responses in the order of the parameter lists
+	 * @throws IOException if the node cannot be reached or a response cannot be read
+	 */
+	public List<JsonRpcResponse> batch(String method, List<Object[]> paramsList) throws IOException {
+
+		return join(batchAsync(method, paramsList));
+	}
+
+	/**
+	 * Calls a method once per parameter list, in batches of at most maxBatchSize calls.
+	 * Blocks while maxInFlight requests are outstanding. Cancelling the future cancels the HTTP requests.
+	 * @param method Method name
+	 * @param paramsList Parameters of each call
+	 * @return Future of the responses in the order of the parameter lists
+	 */
+	public CompletableFuture<List<JsonRpcResponse>> batchAsync(String method, List<Object[]> paramsList) {
+
+		List<CompletableFuture<List<JsonRpcResponse>>> batches = new ArrayList<>();
+		for (int from = 0; from < paramsList.size(); from += maxBatchSize) {
+
+			int to = Math.min(from + maxBatchSize, paramsList.size());
+			long firstId = nextId.getAndAdd(to - from);
+			JsonArray request = new JsonArray();
+			for (int i = from; i < to; i++) {
+				request.add(request(firstId + i - from, method, paramsList.get(i)));
+			}
+			batches.add(send(request, to - from));
+		}
+		if (batches.isEmpty()) {
+			return CompletableFuture.completedFuture(Collections.emptyList());
+		}
+
+		return cancelling(CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+
+			List<JsonRpcResponse> responses = new ArrayList<>(paramsList.size());
+			for (CompletableFuture<List<JsonRpcResponse>> batch : batches) {
+				responses.addAll(batch.join());
+			}
+			return responses;
+		}), batches);
+	}
+
+	/**
+	 * Gets the serialized transaction with getrawtransaction
+	 * @param txHash Hash of the transaction
+	 * @return Transaction bytes, null if the node does not know the transaction
+	 * @throws IOException if the node cannot be reached or returned another error
+	 */
+	public byte[] getRawTransaction(Sha256Hash txHash) throws IOException {
+
+		return getRawTransactions(Collections.singletonList(txHash)).get(0);
+	}
+
+	/**
+	 * Gets serialized transactions with getrawtransaction, in as few round trips as the batch size allows
+	 * @param txHashes Hashes of the transactions
+	 * @return Transaction bytes in the order of the hashes, null for transactions the node does not know
+	 * @throws IOException if the node cannot be reached or returned another error
+	 */
+	public List<byte[]> getRawTransactions(List<Sha256Hash> txHashes) throws IOException {
+
+		return join(getRawTransactionsAsync(txHashes));
+	}
+
+	/**
+	 * Gets serialized transactions with getrawtransaction without waiting for them.
+	 * Cancelling the future cancels the HTTP requests.
+	 * @param txHashes Hashes of the transactions
+	 * @return Future of the transaction bytes in the order of the hashes, null for unknown transactions
+	 */
+	@Override
+	public CompletableFuture<List<byte[]>> getRawTransactionsAsync(List<Sha256Hash> txHashes) {
+
+		List<Object[]> paramsList = new ArrayList<>(txHashes.size());
+		for (Sha256Hash txHash : txHashes) {
+			paramsList.add(new Object[] { txHash.toString() });
+		}
+		CompletableFuture<List<JsonRpcResponse>> batch = batchAsync("getrawtransaction", paramsList);
+		return cancelling(batch.thenApply(responses -> {
+
+			List<byte[]> transactions = new ArrayList<>(responses.size());
+			for (JsonRpcResponse response : responses) {
+
+				if (response.isError() && response.getErrorCode() == INVALID_ADDRESS_OR_KEY) {
+					transactions.add(null);
+					continue;
+				}
+				try {
+					transactions.add(Utils.HEX.decode(response.getResult().getAsString()));
+				} catch (JsonRpcException e) {
+					// Completes the future with the node error itself rather than a wrapper
+					throw new CompletionException(e);
+				}
+			}
+			return transactions;
+		}), Collections.singletonList(batch));
+	}
+
+	/**
+	 * Releases the connections and threads of the client. Outstanding requests are cancelled.
+	 */
+	@Override
+	public void close() {
+
+		executor.shutdownNow();
+		httpClient.getConnectionPool().evictAll();
+	}
+
+	/**
+	 * Posts a request holding the given number of calls, once fewer than maxInFlight requests are outstanding
+	 */
+	private CompletableFuture<List<JsonRpcResponse>> send(JsonElement body, int callCount) {
+
+		inFlight.acquireUninterruptibly();
+		Request request = new Request.Builder()
+				.url(url)
+				.header("Authorization", credentials)
+				.post(RequestBody.create(JSON, body.toString()))
+				.build();
+		CompletableFuture<List<JsonRpcResponse>> future = new CompletableFuture<>();
+		Call call;
+		try {
+			call = httpClient.newCall(request);
+			call.enqueue(new Callback() {
+
+				@Override
+				public void onFailure(Request request, IOException e) {
+
+					inFlight.release();
+					future.completeExceptionally(e);
+				}
+
+				@Override
+				public void onResponse(Response response) {
+
+					inFlight.release();
+					try {
+						future.complete(parse(response, body, callCount));
+					} catch (IOException | RuntimeException e) {
+						future.completeExceptionally(e);
+					} finally {
+						try {
+							response.body().close();
+						} catch (IOException e) {
+							// The response was read already
+						}
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+
+			// The dispatcher rejects requests once the client is closed
+			inFlight.release();
+			future.completeExceptionally(new IOException("JSON-RPC client is closed", e));
+			return future;
+		}
+		future.whenComplete((responses, e) -> {
+			if (future.isCancelled()) {
+				call.cancel();
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Reads the responses of a request and puts them in the order of its calls, matching them by ID
+	 */
+	private List<JsonRpcResponse> parse(Response response, JsonElement body, int callCount) throws IOException {
+
+		JsonElement parsed;
+		try (Reader reader = response.body().charStream()) {
+			parsed = parser.parse(reader);
+		} catch (JsonParseException e) {
+			// bitcoind answers bad credentials with an empty 401, and other failures with HTML
+			throw new IOException("Unexpected HTTP " + response.code() + " response from " + url, e);
+		}
+
+		JsonRpcResponse[] ordered = new JsonRpcResponse[callCount];
+		long firstId = body.isJsonArray() ? body.getAsJsonArray().get(0).getAsJsonObject().get("id").getAsLong()
+				: body.getAsJsonObject().get("id").getAsLong();
+		if (parsed.isJsonArray()) {
+			for (JsonElement element : parsed.getAsJsonArray()) {
+				place(ordered, firstId, element);
+			}
+		}
+		else if (parsed.isJsonObject()) {
+			place(ordered, firstId, parsed);
+		}
+		for (JsonRpcResponse entry : ordered) {
+			if (entry == null) {
+				throw new IOException("Missing JSON-RPC response in HTTP " + response.code() + " response from " + url);
+			}
+		}
+		List<JsonRpcResponse> responses = new ArrayList<>(callCount);
+		Collections.addAll(responses, ordered);
+		return responses;
+	}
+
+	private static void place(JsonRpcResponse[] ordered, long firstId, JsonElement element) throws IOException {
+
+		if (!element.isJsonObject()) {
+			throw new IOException("Malformed JSON-RPC response: " + element);
+		}
+		JsonObject object = element.getAsJsonObject();
+		JsonElement id = object.get("id");
+		if (id == null || !id.isJsonPrimitive() || !id.getAsJsonPrimitive().isNumber()) {
+			throw new IOException("JSON-RPC response without ID: " + element);
+		}
+		long position = id.getAsLong() - firstId;
+		if (position < 0 || position >= ordered.length) {
+			throw new IOException("Unexpected JSON-RPC response ID: " + id);
+		}
+
+		JsonElement error = object.get("error");
+		if (error != null && error.isJsonObject()) {
+
+			JsonObject errorObject = error.getAsJsonObject();
+			JsonElement message = errorObject.get("message");
+			ordered[(int) position] = JsonRpcResponse.error(errorObject.get("code").getAsInt(),
+					message == null || message.isJsonNull() ? "" : message.getAsString());
+		}
+		else {
+
+			JsonElement result = object.get("result");
+			ordered[(int) position] = JsonRpcResponse.success(result == null ? JsonNull.INSTANCE : result);
+		}
+	}
+
+	private static JsonObject request(long id, String method, Object[] params) {
+
+		JsonObject request = new JsonObject();
+		request.addProperty("jsonrpc", "1.0");
+		request.addProperty("id", id);
+		request.addProperty("method", method);
+		JsonArray array = new JsonArray();
+		for (Object param : params) {
+			array.add(toJson(param));
+		}
+		request.add("params", array);
+		return request;
+	}
+
+	private static JsonElement toJson(Object param) {
+
+		if (param == null) {
+			return JsonNull.INSTANCE;
+		}
+		if (param instanceof JsonElement) {
+			return (JsonElement) param;
+		}
+		if (param instanceof Number) {
+			return new JsonPrimitive((Number) param);
+		}
+		if (param instanceof Boolean) {
+			return new JsonPrimitive((Boolean) param);
+		}
+		return new JsonPrimitive(param.toString());
+	}
+
+	/**
+	 * Makes cancelling a derived future cancel the futures it was derived from, which CompletableFuture does not do
+	 */
+	private static <T> CompletableFuture<T> cancelling(CompletableFuture<T> derived, List<? extends CompletableFuture<?>> sources) {
+
+		derived.whenComplete((result, e) -> {
+			if (derived.isCancelled()) {
+				for (CompletableFuture<?> source : sources) {
+					source.cancel(true);
+				}
+			}
+		});
+		return derived;
+	}
+
+	/**
+	 * Waits for a future, rethrowing the IOException it failed with
+	 */
+	private static <T> T join(CompletableFuture<T> future) throws IOException {
+
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the node");
+		} catch (ExecutionException e) {
+
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+}
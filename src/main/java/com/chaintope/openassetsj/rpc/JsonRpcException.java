@@ -0,0 +1,26 @@
+package com.chaintope.openassetsj.rpc;
+
+import java.io.IOException;
+
+/**
+ * Error returned by the node for a JSON-RPC call
+ */
+public class JsonRpcException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int code;
+
+	public JsonRpcException(int code, String message) {
+
+		super(message + " (code " + code + ")");
+		this.code = code;
+	}
+
+	/**
+	 * Gets the error code, e.g. -5 (RPC_INVALID_ADDRESS_OR_KEY) for an unknown transaction
+	 */
+	public int getCode() {
+		return code;
+	}
+}
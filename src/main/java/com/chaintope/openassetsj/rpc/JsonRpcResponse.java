@@ -0,0 +1,66 @@
+package com.chaintope.openassetsj.rpc;
+
+import com.google.gson.JsonElement;
+
+/**
+ * Outcome of one call of a JSON-RPC request or batch: a result, or an error from the node
+ */
+public final class JsonRpcResponse {
+
+	private final JsonElement result;
+	private final Integer errorCode;
+	private final String errorMessage;
+
+	private JsonRpcResponse(JsonElement result, Integer errorCode, String errorMessage) {
+
+		this.result = result;
+		this.errorCode = errorCode;
+		this.errorMessage = errorMessage;
+	}
+
+	static JsonRpcResponse success(JsonElement result) {
+		return new JsonRpcResponse(result, null, null);
+	}
+
+	static JsonRpcResponse error(int code, String message) {
+		return new JsonRpcResponse(null, code, message);
+	}
+
+	public boolean isError() {
+		return errorCode != null;
+	}
+
+	/**
+	 * Gets the result of the call
+	 * @return Result, JsonNull for calls returning null
+	 * @throws JsonRpcException if the node returned an error
+	 */
+	public JsonElement getResult() throws JsonRpcException {
+
+		if (errorCode != null) {
+			throw new JsonRpcException(errorCode, errorMessage);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the error code
+	 * @return Error code, 0 if the call succeeded
+	 */
+	public int getErrorCode() {
+		return errorCode == null ? 0 : errorCode;
+	}
+
+	/**
+	 * Gets the error message
+	 * @return Error message, null if the call succeeded
+	 */
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+
+	@Override
+	public String toString() {
+		return isError() ? "error " + errorCode + ": " + errorMessage : String.valueOf(result);
+	}
+}
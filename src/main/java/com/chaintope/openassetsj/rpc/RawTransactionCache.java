@@ -0,0 +1,320 @@
+package com.chaintope.openassetsj.rpc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionInput;
+
+import com.chaintope.openassetsj.protocol.ColoringEngine;
+import com.chaintope.openassetsj.protocol.TransactionProvider;
+import com.chaintope.openassetsj.utils.CacheStatistics;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Transaction provider keeping recently fetched transactions as serialized bytes in front of a RawTransactionSource.
+ *
+ * The cache is bounded both by number of transactions and by bytes: every entry weighs its length, but no less
+ * than maximumBytes / maximumCount, so neither bound can be exceeded. Transactions are deserialized on every
+ * request, so callers never share a mutable bitcoinj Transaction.
+ *
+ * Funding transactions are typically spent into many children, and coloring a transaction with a marker output
+ * walks back to the transactions its inputs spend. So when such a transaction is requested, the parents that are
+ * neither cached nor already being fetched are requested in a single batch, without waiting for it. A later
+ * request for one of them waits for that batch instead of fetching the transaction on its own.
+ */
+public class RawTransactionCache implements TransactionProvider {
+
+	public static final long DEFAULT_MAXIMUM_COUNT = 100000;
+	public static final long DEFAULT_MAXIMUM_BYTES = 256L * 1024 * 1024;
+
+	private final NetworkParameters params;
+	private final RawTransactionSource source;
+	private final Cache<Sha256Hash, CachedTransaction> transactions;
+	private final ConcurrentHashMap<Sha256Hash, CompletableFuture<byte[]>> prefetching = new ConcurrentHashMap<>();
+
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder prefetchedCount = new LongAdder();
+	private final LongAdder prefetchHitCount = new LongAdder();
+
+	/**
+	 * Creates a cache holding up to DEFAULT_MAXIMUM_COUNT transactions and DEFAULT_MAXIMUM_BYTES bytes
+	 * @param params Network of the transactions
+	 * @param source Source of the transactions missing from the cache
+	 */
+	public RawTransactionCache(NetworkParameters params, RawTransactionSource source) {
+
+		this(params, source, DEFAULT_MAXIMUM_COUNT, DEFAULT_MAXIMUM_BYTES);
+	}
+
+	/**
+	 * Creates a cache with the given bounds
+	 * @param params Network of the transactions
+	 * @param source Source of the transactions missing from the cache
+	 * @param maximumCount Number of transactions kept
+	 * @param maximumBytes Total size of the serialized transactions kept
+	 */
+	public RawTransactionCache(NetworkParameters params, RawTransactionSource source, long maximumCount, long maximumBytes) {
+
+		if (maximumCount < 1 || maximumBytes < maximumCount) {
+			throw new IllegalArgumentException("Cache must hold at least one transaction and one byte per transaction");
+		}
+		this.params = params;
+		this.source = source;
+		long minimumWeight = (maximumBytes + maximumCount - 1) / maximumCount;
+		if (minimumWeight > Integer.MAX_VALUE) {
+
+			// No transaction comes close to 2 GB, the count bound is always reached first
+			this.transactions = CacheBuilder.newBuilder().maximumSize(maximumCount).recordStats().build();
+		}
+		else {
+
+			this.transactions = CacheBuilder.newBuilder()
+					.maximumWeight(maximumBytes)
+					.weigher((Sha256Hash txHash, CachedTransaction cached) -> Math.max(cached.bytes.length, (int) minimumWeight))
+					.recordStats()
+					.build();
+		}
+	}
+
+	/**
+	 * Gets a transaction, from the cache or from the source, and prefetches its parents if coloring it needs them
+	 * @param txHash Transaction hash
+	 * @return Transaction, null if it is unknown to the source
+	 * @throws UncheckedIOException if the source fails
+	 */
+	@Override
+	public Transaction getTransaction(Sha256Hash txHash) {
+
+		byte[] bytes = getCachedBytes(txHash);
+		if (bytes == null) {
+			return null;
+		}
+		Transaction transaction = new Transaction(params, bytes);
+		if (ColoringEngine.needsInputs(transaction)) {
+
+			Set<Sha256Hash> parents = new LinkedHashSet<>();
+			for (TransactionInput input : transaction.getInputs()) {
+				parents.add(input.getOutpoint().getHash());
+			}
+			prefetch(parents);
+		}
+		return transaction;
+	}
+
+	/**
+	 * Gets a serialized transaction, from the cache or from the source, without prefetching anything
+	 * @param txHash Transaction hash
+	 * @return Copy of the transaction bytes, null if the transaction is unknown to the source
+	 * @throws UncheckedIOException if the source fails
+	 */
+	public byte[] getRawTransaction(Sha256Hash txHash) {
+
+		byte[] bytes = getCachedBytes(txHash);
+		return (bytes == null) ? null : bytes.clone();
+	}
+
+	/**
+	 * Gets the cached bytes of a transaction, fetching them on a miss. The array is shared and must not be modified.
+	 */
+	private byte[] getCachedBytes(Sha256Hash txHash) {
+
+		CachedTransaction cached = transactions.getIfPresent(txHash);
+		if (cached != null) {
+
+			hitCount.increment();
+			if (cached.prefetched && cached.unused.compareAndSet(true, false)) {
+				prefetchHitCount.increment();
+			}
+			return cached.bytes;
+		}
+
+		CompletableFuture<byte[]> pending = prefetching.get(txHash);
+		if (pending != null) {
+			try {
+				byte[] bytes = pending.get();
+				hitCount.increment();
+				if (bytes != null) {
+
+					CachedTransaction prefetched = transactions.getIfPresent(txHash);
+					if (prefetched == null || prefetched.unused.compareAndSet(true, false)) {
+						prefetchHitCount.increment();
+					}
+				}
+				return bytes;
+			} catch (InterruptedException e) {
+				// The batch is shared with other requests, so it is left running
+				throw interrupted();
+			} catch (ExecutionException e) {
+				// The batch failed, the transaction is fetched on its own below
+			}
+		}
+
+		missCount.increment();
+		List<byte[]> fetched = join(source.getRawTransactionsAsync(Collections.singletonList(txHash)));
+		byte[] bytes = fetched.get(0);
+		if (bytes != null) {
+			transactions.put(txHash, new CachedTransaction(bytes, false));
+		}
+		return bytes;
+	}
+
+	/**
+	 * Fetches the transactions that are neither cached nor already being fetched, in one batch, without waiting
+	 * @param txHashes Hashes of the transactions
+	 */
+	public void prefetch(Collection<Sha256Hash> txHashes) {
+
+		List<Sha256Hash> batch = new ArrayList<>();
+		List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+		for (Sha256Hash txHash : txHashes) {
+
+			if (transactions.getIfPresent(txHash) != null) {
+				continue;
+			}
+			CompletableFuture<byte[]> future = new CompletableFuture<>();
+			if (prefetching.putIfAbsent(txHash, future) == null) {
+
+				batch.add(txHash);
+				futures.add(future);
+			}
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		CompletableFuture<List<byte[]>> fetch;
+		try {
+			fetch = source.getRawTransactionsAsync(batch);
+		} catch (RuntimeException e) {
+			fetch = new CompletableFuture<>();
+			fetch.completeExceptionally(e);
+		}
+		fetch.whenComplete((fetched, failure) -> {
+
+			for (int i = 0; i < batch.size(); i++) {
+
+				Sha256Hash txHash = batch.get(i);
+				if (failure != null) {
+					futures.get(i).completeExceptionally(failure);
+				}
+				else {
+
+					byte[] bytes = fetched.get(i);
+					// Cached before the pending future goes away, so requests find it in one place or the other
+					if (bytes != null) {
+						transactions.put(txHash, new CachedTransaction(bytes, true));
+						prefetchedCount.increment();
+					}
+					futures.get(i).complete(bytes);
+				}
+				prefetching.remove(txHash, futures.get(i));
+			}
+		});
+	}
+
+	/**
+	 * Gets the counters of the cache. Requests served by a pending prefetch count as hits.
+	 * @return Statistics snapshot
+	 */
+	public CacheStatistics getStatistics() {
+
+		return new CacheStatistics(hitCount.sum(), missCount.sum(), transactions.stats().evictionCount(), transactions.size());
+	}
+
+	/**
+	 * Gets the number of transactions cached by prefetches
+	 */
+	public long getPrefetchedCount() {
+		return prefetchedCount.sum();
+	}
+
+	/**
+	 * Gets the number of prefetched transactions that were requested afterwards
+	 */
+	public long getPrefetchHitCount() {
+		return prefetchHitCount.sum();
+	}
+
+	/**
+	 * Gets the share of prefetched transactions that were requested afterwards
+	 * @return Ratio between 0 and 1, 1 if nothing was prefetched yet
+	 */
+	public double getPrefetchEffectiveness() {
+
+		long prefetched = prefetchedCount.sum();
+		return (prefetched == 0) ? 1.0 : (double) prefetchHitCount.sum() / prefetched;
+	}
+
+	/**
+	 * Forgets every cached transaction, pending prefetches still complete
+	 */
+	public void invalidateAll() {
+		transactions.invalidateAll();
+	}
+
+	/**
+	 * Waits for a fetch of this request only, cancelling it if the thread is interrupted
+	 */
+	private static <T> T join(CompletableFuture<T> future) {
+
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+
+			future.cancel(true);
+			throw interrupted();
+		} catch (ExecutionException e) {
+
+			Throwable cause = (e.getCause() instanceof CompletionException && e.getCause().getCause() != null)
+					? e.getCause().getCause() : e.getCause();
+			if (cause instanceof IOException) {
+				throw new UncheckedIOException((IOException) cause);
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new CompletionException(cause);
+		}
+	}
+
+	private static UncheckedIOException interrupted() {
+
+		Thread.currentThread().interrupt();
+		return new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for transactions"));
+	}
+
+	/**
+	 * Serialized transaction, remembering whether a prefetch brought it in and no request used it yet
+	 */
+	private static final class CachedTransaction {
+
+		private final byte[] bytes;
+		private final boolean prefetched;
+		private final AtomicBoolean unused;
+
+		CachedTransaction(byte[] bytes, boolean prefetched) {
+
+			this.bytes = bytes;
+			this.prefetched = prefetched;
+			this.unused = new AtomicBoolean(prefetched);
+		}
+	}
+}
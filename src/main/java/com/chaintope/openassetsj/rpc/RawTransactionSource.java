@@ -0,0 +1,19 @@
+package com.chaintope.openassetsj.rpc;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.bitcoinj.core.Sha256Hash;
+
+/**
+ * Source of serialized transactions fetched in batches, e.g. a node queried with getrawtransaction
+ */
+public interface RawTransactionSource {
+
+	/**
+	 * Gets serialized transactions
+	 * @param txHashes Hashes of the transactions
+	 * @return Future of the transaction bytes in the order of the hashes, null for unknown transactions
+	 */
+	CompletableFuture<List<byte[]>> getRawTransactionsAsync(List<Sha256Hash> txHashes);
+}
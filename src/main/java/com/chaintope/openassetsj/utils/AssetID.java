@@ -1,25 +1,64 @@
 package com.chaintope.openassetsj.utils;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 import org.bitcoinj.core.Address;
 import org.bitcoinj.core.Base58;
 import org.bitcoinj.core.ECKey;
 import org.bitcoinj.core.NetworkParameters;
 import org.bitcoinj.script.ScriptOpCodes;
 
+import com.chaintope.openassetsj.metrics.LatencyTimer;
+import com.chaintope.openassetsj.metrics.Metrics;
+import com.chaintope.openassetsj.model.AssetId;
+
 public class AssetID {
 
 	private NetworkParameters params;
+	private AssetIDCache cache;
+	private int versionByte;
 
     private final int OA_VERSION_BYTE = 23;
     private final int OA_VERSION_BYTE_TESTNET = 115;
 
+    // Batches up to this size are derived on a single thread
+    private static final int BATCH_SPLIT_THRESHOLD = 512;
+
+    private static final LatencyTimer DERIVE_TIMER = Metrics.timer("asset_id.derive");
+
     /**
      * Initializes network parameters necessary to generate Asset ID
      * @param params Network to use while dealing with Asset ID
      */
 	public AssetID(NetworkParameters params) {
 
+		this(params, null);
+	}
+
+    /**
+     * Initializes network parameters and a cache of derived asset IDs
+     * @param params Network to use while dealing with Asset ID
+     * @param cache Cache of asset IDs for the same network, e.g. AssetIDCache.shared(params)
+     */
+	public AssetID(NetworkParameters params, AssetIDCache cache) {
+
+		if (cache != null && !cache.getNetworkId().equals(params.getId())) {
+			throw new IllegalArgumentException("Asset ID cache of " + cache.getNetworkId() + " used for " + params.getId());
+		}
 		this.params = params;
+		this.cache = cache;
+		this.versionByte = getVersionByte();
+	}
+
+	/**
+	 * Gets the cache of derived asset IDs
+	 * @return Cache, null if asset IDs are derived on every call
+	 */
+	public AssetIDCache getCache() {
+		return cache;
 	}
 
 	/**
@@ -54,6 +93,15 @@ public class AssetID {
      */
     public String pubKeyHashToAssetID(byte[] pubKeyHash) {
 
+        String assetId = scriptToAssetID(payToPubKeyHashScript(pubKeyHash));
+        return assetId;
+    }
+
+    /**
+     * Builds the pay-to-pubkey-hash script of a public key hash
+     */
+    private static byte[] payToPubKeyHashScript(byte[] pubKeyHash) {
+
         byte[] script = new byte[5 + pubKeyHash.length];
         script[0] = (byte) ScriptOpCodes.OP_DUP;
         script[1] = (byte) ScriptOpCodes.OP_HASH160;
@@ -61,9 +109,7 @@ public class AssetID {
         System.arraycopy(pubKeyHash, 0, script, 3, pubKeyHash.length);
         script[script.length - 2] = (byte) ScriptOpCodes.OP_EQUALVERIFY;
         script[script.length - 1] = (byte) ScriptOpCodes.OP_CHECKSIG;
-
-        String assetId = scriptToAssetID(script);
-        return assetId;
+        return script;
     }
 
     /**
@@ -85,19 +131,188 @@ public class AssetID {
      */
     public String scriptToAssetID(byte[] script) {
 
-        byte[] scriptHash160 = Utils.hash160(script);
+        if (cache != null) {
+            return cache.get(script, this::deriveAssetID);
+        }
+        return deriveAssetID(script);
+    }
+
+    /**
+     * Generates OpenAsset IDs for many scripts, splitting the work across the common fork-join pool
+     * @param scripts Script bytes used to derive asset ids
+     * @return Asset IDs in the same order as the scripts
+     */
+    public List<String> scriptsToAssetIDs(List<byte[]> scripts) {
+
+        byte[][] scriptArray = scripts.toArray(new byte[scripts.size()][]);
+        String[] assetIds = new String[scriptArray.length];
+        scriptsToAssetIDs(scriptArray, assetIds, ForkJoinPool.commonPool());
+        return Arrays.asList(assetIds);
+    }
+
+    /**
+     * Generates OpenAsset IDs for many scripts into a pre-sized array
+     * @param scripts Script bytes used to derive asset ids
+     * @param assetIds Receives the asset ID of scripts[i] at index i, at least as long as scripts
+     * @param pool Pool running the derivation
+     */
+    public void scriptsToAssetIDs(byte[][] scripts, String[] assetIds, ForkJoinPool pool) {
+
+        if (assetIds.length < scripts.length) {
+            throw new IllegalArgumentException("Output holds " + assetIds.length + " asset IDs for " + scripts.length + " scripts");
+        }
+        deriveBatch(scripts.length, pool, (from, to) -> {
+
+            ReusableDigests digests = ReusableDigests.forCurrentThread();
+            for (int i = from; i < to; i++) {
+
+                byte[] script = scripts[i];
+                assetIds[i] = (cache != null)
+                        ? cache.get(script, s -> deriveAssetID(s, digests))
+                        : deriveAssetID(script, digests);
+            }
+        });
+    }
+
+    /**
+     * Generates the binary asset ID of the script bytes, without building its Base58 text
+     * @param script Script bytes used to derive asset id
+     * @return Asset ID
+     */
+    public AssetId toAssetId(byte[] script) {
+
+        return deriveAssetId(script, ReusableDigests.forCurrentThread());
+    }
+
+    /**
+     * Generates the binary asset ID of a public key hash
+     * @param pubKeyHash Public key hash used to derive asset id
+     * @return Asset ID
+     */
+    public AssetId pubKeyHashToAssetId(byte[] pubKeyHash) {
+
+        return toAssetId(payToPubKeyHashScript(pubKeyHash));
+    }
+
+    /**
+     * Generates the binary asset ID of a script known only by its hash
+     * @param scriptHash RIPEMD160(SHA256(script)) of the script
+     * @return Asset ID
+     */
+    public AssetId scriptHashToAssetId(byte[] scriptHash) {
+
+        return AssetId.of(versionByte, scriptHash);
+    }
+
+    /**
+     * Generates binary asset IDs for many scripts into a pre-sized array
+     * @param scripts Script bytes used to derive asset ids
+     * @param assetIds Receives the asset ID of scripts[i] at index i, at least as long as scripts
+     * @param pool Pool running the derivation
+     */
+    public void toAssetIds(byte[][] scripts, AssetId[] assetIds, ForkJoinPool pool) {
+
+        if (assetIds.length < scripts.length) {
+            throw new IllegalArgumentException("Output holds " + assetIds.length + " asset IDs for " + scripts.length + " scripts");
+        }
+        deriveBatch(scripts.length, pool, (from, to) -> {
+
+            ReusableDigests digests = ReusableDigests.forCurrentThread();
+            for (int i = from; i < to; i++) {
+                assetIds[i] = deriveAssetId(scripts[i], digests);
+            }
+        });
+    }
+
+    /**
+     * Runs the derivation of [0, count) on the calling thread for short batches, on the pool otherwise
+     */
+    private static void deriveBatch(int count, ForkJoinPool pool, RangeDerivation derivation) {
+
+        if (count <= BATCH_SPLIT_THRESHOLD) {
+
+            derivation.derive(0, count);
+            return;
+        }
+        pool.invoke(new DerivationTask(derivation, 0, count));
+    }
+
+    /**
+     * Derives the asset IDs of one slice of a batch
+     */
+    private interface RangeDerivation {
+
+        void derive(int from, int to);
+    }
 
-        byte[] scriptWithVersionByte = new byte[scriptHash160.length + 1];
-        scriptWithVersionByte[0] = (byte) getVersionByte();
-        System.arraycopy(scriptHash160, 0, scriptWithVersionByte, 1, scriptHash160.length);
+    /**
+     * Splits a batch in halves until it is small enough to derive directly
+     */
+    private static class DerivationTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RangeDerivation derivation;
+        private final int from;
+        private final int to;
+
+        DerivationTask(RangeDerivation derivation, int from, int to) {
+
+            this.derivation = derivation;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from <= BATCH_SPLIT_THRESHOLD) {
+
+                derivation.derive(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new DerivationTask(derivation, from, middle),
+                    new DerivationTask(derivation, middle, to));
+        }
+    }
+
+    /**
+     * Derives the OpenAsset ID of the script bytes
+     */
+    private String deriveAssetID(byte[] script) {
+
+        return deriveAssetID(script, ReusableDigests.forCurrentThread());
+    }
+
+    /**
+     * Derives the OpenAsset ID of the script bytes with the given digests
+     */
+    private String deriveAssetID(byte[] script, ReusableDigests digests) {
 
-        byte[] checksum = Utils.checksum(scriptWithVersionByte);
+        long start = DERIVE_TIMER.start();
+        // version byte, hash160 of the script, 4 bytes for checksum
+        byte[] assetIdBytes = new byte[25];
+        assetIdBytes[0] = (byte) versionByte;
+        digests.hash160(script, 0, script.length, assetIdBytes, 1);
+        digests.checksum(assetIdBytes, 0, 21, assetIdBytes, 21);
 
-        byte[] assetIdBytes = new byte[scriptWithVersionByte.length + 4]; // 4 bytes for checksum
-        System.arraycopy(scriptWithVersionByte, 0, assetIdBytes, 0, scriptWithVersionByte.length);
-        System.arraycopy(checksum, 0, assetIdBytes, scriptWithVersionByte.length, 4);
+        String assetId = Base58.encode(assetIdBytes);
+        DERIVE_TIMER.stop(start);
+        return assetId;
+    }
+
+    /**
+     * Derives the binary asset ID of the script bytes with the given digests
+     */
+    private AssetId deriveAssetId(byte[] script, ReusableDigests digests) {
 
-        return Base58.encode(assetIdBytes);
+        long start = DERIVE_TIMER.start();
+        byte[] hash160 = new byte[20];
+        digests.hash160(script, 0, script.length, hash160, 0);
+        AssetId assetId = AssetId.of(versionByte, hash160);
+        DERIVE_TIMER.stop(start);
+        return assetId;
     }
     
     /**
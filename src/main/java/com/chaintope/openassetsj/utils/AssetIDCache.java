@@ -0,0 +1,171 @@
+package com.chaintope.openassetsj.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import org.bitcoinj.core.NetworkParameters;
+
+import com.chaintope.openassetsj.metrics.Metrics;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Bounded cache of asset IDs keyed by script bytes, safe for concurrent use.
+ * Asset IDs depend on the network, so a cache serves AssetID instances of a single network.
+ */
+public class AssetIDCache {
+
+	public static final long DEFAULT_MAXIMUM_SIZE = 100000;
+
+	// Approximate heap taken by an entry besides the script bytes (key, Base58 string, cache node)
+	private static final int ENTRY_OVERHEAD = 200;
+
+	private static final ConcurrentMap<String, AssetIDCache> SHARED_CACHES = new ConcurrentHashMap<>();
+
+	private final String networkId;
+	private final Cache<ScriptKey, String> cache;
+
+	private AssetIDCache(String networkId, Cache<ScriptKey, String> cache) {
+
+		this.networkId = networkId;
+		this.cache = cache;
+	}
+
+	/**
+	 * Creates a cache holding at most the given number of asset IDs
+	 * @param params Network of the asset IDs
+	 * @param maximumSize Maximum number of entries
+	 * @return New cache
+	 */
+	public static AssetIDCache withMaximumSize(NetworkParameters params, long maximumSize) {
+
+		return new AssetIDCache(params.getId(), CacheBuilder.newBuilder()
+				.maximumSize(maximumSize)
+				.recordStats()
+				.<ScriptKey, String>build());
+	}
+
+	/**
+	 * Creates a cache bounded by the approximate heap its entries take
+	 * @param params Network of the asset IDs
+	 * @param maximumBytes Maximum total weight of the entries in bytes
+	 * @return New cache
+	 */
+	public static AssetIDCache withMaximumWeight(NetworkParameters params, long maximumBytes) {
+
+		return new AssetIDCache(params.getId(), CacheBuilder.newBuilder()
+				.maximumWeight(maximumBytes)
+				.weigher((ScriptKey key, String assetId) -> key.script.length + ENTRY_OVERHEAD)
+				.recordStats()
+				.<ScriptKey, String>build());
+	}
+
+	/**
+	 * Gets the cache shared by every AssetID of the network, creating it with DEFAULT_MAXIMUM_SIZE.
+	 * Its size is reported as the gauge asset_id_cache.&lt;network&gt;.size.
+	 * @param params Network of the asset IDs
+	 * @return Shared cache of the network
+	 */
+	public static AssetIDCache shared(NetworkParameters params) {
+
+		return SHARED_CACHES.computeIfAbsent(params.getId(), id -> {
+
+			AssetIDCache cache = withMaximumSize(params, DEFAULT_MAXIMUM_SIZE);
+			Metrics.gauge("asset_id_cache." + id + ".size", cache::size);
+			return cache;
+		});
+	}
+
+	/**
+	 * Gets the network the cached asset IDs belong to
+	 * @return Network ID, as returned by NetworkParameters.getId()
+	 */
+	public String getNetworkId() {
+		return networkId;
+	}
+
+	/**
+	 * Gets the cached asset ID of the script, deriving and caching it on a miss.
+	 * Concurrent misses for the same script derive it once.
+	 * @param script Script bytes, copied when the entry is created
+	 * @param derivation Derives the asset ID on a miss
+	 * @return Asset ID
+	 */
+	String get(byte[] script, Function<byte[], String> derivation) {
+
+		ScriptKey lookupKey = new ScriptKey(script);
+		String assetId = cache.getIfPresent(lookupKey);
+		if (assetId != null) {
+			return assetId;
+		}
+
+		byte[] copy = Arrays.copyOf(script, script.length);
+		try {
+			return cache.get(new ScriptKey(copy), () -> derivation.apply(copy));
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Gets the number of cached asset IDs
+	 */
+	public long size() {
+		return cache.size();
+	}
+
+	/**
+	 * Removes every cached asset ID
+	 */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * Gets the hit, miss and eviction counters
+	 * @return Statistics snapshot
+	 */
+	public CacheStatistics getStatistics() {
+
+		CacheStats stats = cache.stats();
+		// A lookup that misses is retried with get(), so misses are counted by the derivations it triggers
+		return new CacheStatistics(stats.hitCount(), stats.loadCount(), stats.evictionCount(), cache.size());
+	}
+
+	/**
+	 * Script bytes compared by content, with the hash computed once
+	 */
+	private static final class ScriptKey {
+
+		private final byte[] script;
+		private final int hash;
+
+		ScriptKey(byte[] script) {
+
+			this.script = script;
+			this.hash = Arrays.hashCode(script);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof ScriptKey)) {
+				return false;
+			}
+			ScriptKey other = (ScriptKey) o;
+			return hash == other.hash && Arrays.equals(script, other.script);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.chaintope.openassetsj.utils;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs blocking calls as CompletableFutures whose cancellation and timeout interrupt the running call,
+ * so that a call waiting on the node gives up its request instead of finishing in the background.
+ */
+public final class AsyncTasks {
+
+	private AsyncTasks() {}
+
+	/**
+	 * Gets the executor shared by default: one virtual thread per task on runtimes that have them (Java 21+),
+	 * otherwise daemon threads created as needed and dropped after a minute idle
+	 * @return Shared executor
+	 */
+	public static ExecutorService defaultExecutor() {
+		return DefaultExecutorHolder.EXECUTOR;
+	}
+
+	/**
+	 * Runs the call on the executor
+	 * @param call Blocking call
+	 * @param executor Executor running the call
+	 * @param timeout Time after which the future fails with a TimeoutException and the call is interrupted, null for none
+	 * @return Future of the result of the call. Cancelling it interrupts the call.
+	 */
+	public static <T> CompletableFuture<T> supplyAsync(Callable<T> call, Executor executor, Duration timeout) {
+
+		TaskFuture<T> future = new TaskFuture<>();
+		FutureTask<Void> task = new FutureTask<>(() -> {
+
+			try {
+				future.complete(call.call());
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+			return null;
+		});
+		future.task = task;
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+			return future;
+		}
+
+		if (timeout != null) {
+
+			ScheduledFuture<?> timer = TimerHolder.TIMER.schedule(() -> {
+				if (future.completeExceptionally(new TimeoutException("Call did not complete within " + timeout))) {
+					task.cancel(true);
+				}
+			}, timeout.toNanos(), TimeUnit.NANOSECONDS);
+			future.whenComplete((result, e) -> timer.cancel(false));
+		}
+		return future;
+	}
+
+	/**
+	 * Future interrupting its task when cancelled
+	 */
+	private static final class TaskFuture<T> extends CompletableFuture<T> {
+
+		private volatile FutureTask<?> task;
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			FutureTask<?> running = task;
+			if (running != null) {
+				running.cancel(true);
+			}
+			return cancelled;
+		}
+	}
+
+	private static final class DefaultExecutorHolder {
+
+		private static final ExecutorService EXECUTOR = create();
+
+		private static ExecutorService create() {
+
+			try {
+				Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+				return (ExecutorService) factory.invoke(null);
+			} catch (ReflectiveOperationException e) {
+				return Executors.newCachedThreadPool(runnable -> {
+					Thread thread = new Thread(runnable, "openassetsj-async");
+					thread.setDaemon(true);
+					return thread;
+				});
+			}
+		}
+	}
+
+	private static final class TimerHolder {
+
+		private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "openassetsj-async-timeout");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+}
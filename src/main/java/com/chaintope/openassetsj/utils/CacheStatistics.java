@@ -0,0 +1,53 @@
+package com.chaintope.openassetsj.utils;
+
+/**
+ * Snapshot of the counters of a cache
+ */
+public class CacheStatistics {
+
+	private final long hitCount;
+	private final long missCount;
+	private final long evictionCount;
+	private final long size;
+
+	public CacheStatistics(long hitCount, long missCount, long evictionCount, long size) {
+
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.size = size;
+	}
+
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	public long getMissCount() {
+		return missCount;
+	}
+
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets the ratio of lookups that were served from the cache
+	 * @return Hit rate between 0 and 1, 1 if there was no lookup yet
+	 */
+	public double getHitRate() {
+
+		long requestCount = hitCount + missCount;
+		return (requestCount == 0) ? 1.0 : (double) hitCount / requestCount;
+	}
+
+	@Override
+	public String toString() {
+
+		return "CacheStatistics{hits=" + hitCount + ", misses=" + missCount
+				+ ", evictions=" + evictionCount + ", size=" + size + "}";
+	}
+}
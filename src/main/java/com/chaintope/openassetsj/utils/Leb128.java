@@ -1,13 +1,14 @@
 package com.chaintope.openassetsj.utils;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
-import com.google.common.base.Joiner;
-
 public class Leb128 {
 
+    // An unsigned 64-bit value takes at most 10 LEB128 bytes
+    public static final int MAX_LENGTH = 10;
+
     /**
      * Converts input value to unsigned leb128 equivalent
      * @param value integer value to convert into unsigned leb128
@@ -15,62 +16,159 @@ public class Leb128 {
      */
     public static String encodeLeb128(int value) {
 
-        String binaryStr = Integer.toString(value, 2);
-        int strLength = (((int) Math.floor(binaryStr.length() / 7)) * 7);
-        strLength += (strLength == binaryStr.length() ? 0 : 7);
-        String paddedBinaryString = String.format("%" + strLength + "s", binaryStr).replace(' ', '0');
-        int loopCount = paddedBinaryString.length() / 7;
-        List<String> lebBytes = new ArrayList<String>();
-        for (int i = 0; i < loopCount; i++) {
-
-            String paddedStr = ( i == 0 ? "0" : "1") + paddedBinaryString.substring(i*7, (i+1)*7);
-            int decimal = Integer.parseInt(paddedStr, 2);
-            String hexStr = Utils.getHexString(decimal);
-            lebBytes.add(hexStr);
+        return encodeLeb128(value & 0xffffffffL);
+    }
+
+    /**
+     * Converts input value to unsigned leb128 equivalent
+     * @param value value to convert into unsigned leb128, treated as unsigned
+     * @return unsigned leb128 as hex string
+     */
+    public static String encodeLeb128(long value) {
+
+        byte[] encoded = new byte[encodedLength(value)];
+        writeLeb128(value, encoded, 0);
+        return Utils.packByteArrayToString(encoded);
+    }
+
+    /**
+     * Calculates the number of bytes the unsigned leb128 form of the value takes
+     * @param value value treated as unsigned
+     * @return Encoded length in bytes
+     */
+    public static int encodedLength(long value) {
+
+        int length = 1;
+        while ((value & ~0x7fL) != 0) {
+
+            value >>>= 7;
+            length++;
         }
-        Collections.reverse(lebBytes);
-        String leb128Str = Joiner.on("").join(lebBytes.toArray());
-        return leb128Str;
+        return length;
     }
 
     /**
-     * Reads data from LEB128 encoded string
-     * @param payload
-     * @param offset
-     * @return List containing quantity and length
+     * Writes the unsigned leb128 form of the value into the array
+     * @param value value treated as unsigned
+     * @param dest Destination array
+     * @param offset Position to start writing at
+     * @return Position right after the last written byte
      */
-    public static List<Object> readLeb128(String payload, int offset) {
+    public static int writeLeb128(long value, byte[] dest, int offset) {
 
-            List<Object> objList = new ArrayList<>();
-        Object quantityObj = null;
-        Object lengthObj = 0;
+        while ((value & ~0x7fL) != 0) {
+
+            dest[offset++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        dest[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * Writes the unsigned leb128 form of the value at the current position of the buffer
+     * @param value value treated as unsigned
+     * @param dest Destination buffer
+     */
+    public static void writeLeb128(long value, ByteBuffer dest) {
+
+        while ((value & ~0x7fL) != 0) {
 
-        byte[] data = Utils.packHexStringToBytes(payload);
+            dest.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        dest.put((byte) value);
+    }
+
+    /**
+     * Reads an unsigned leb128 value
+     * @param data Source array
+     * @param cursor cursor[0] holds the position to read from, and is moved past the value.
+     * It is set to -1 if the value is truncated or longer than MAX_LENGTH bytes.
+     * @return Decoded value, 0 if the value is malformed
+     */
+    public static long readLeb128(byte[] data, int[] cursor) {
+
+        return readLeb128(data, data.length, cursor);
+    }
+
+    /**
+     * Reads an unsigned leb128 value that must end before the limit
+     * @param data Source array
+     * @param limit Position the value must not reach past
+     * @param cursor cursor[0] holds the position to read from, and is moved past the value.
+     * It is set to -1 if the value is truncated or longer than MAX_LENGTH bytes.
+     * @return Decoded value, 0 if the value is malformed
+     */
+    public static long readLeb128(byte[] data, int limit, int[] cursor) {
 
-        int result = 0;
+        int offset = cursor[0];
+        int end = Math.min(limit, offset + MAX_LENGTH);
+        long result = 0;
         int shift = 0;
 
-        while(true) {
+        while (offset < end) {
 
-            if (data.length < (1 + offset)) {
+            byte b = data[offset++];
+            result |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
 
-                quantityObj = null;
-                lengthObj = offset;
+                cursor[0] = offset;
+                return result;
             }
+            shift += 7;
+        }
+        cursor[0] = -1;
+        return 0;
+    }
 
-            byte byteToCheck = data[offset];
-            result = result | ((byteToCheck & 0x7F) << shift);
+    /**
+     * Reads an unsigned leb128 value from the current position of the buffer
+     * @param src Source buffer, its position is moved past the value
+     * @return Decoded value
+     * @throws IllegalArgumentException if the value is longer than MAX_LENGTH bytes
+     * @throws java.nio.BufferUnderflowException if the value is truncated
+     */
+    public static long readLeb128(ByteBuffer src) {
 
-            if (0 == (int)(byteToCheck & 0x80)) {
+        long result = 0;
+        for (int shift = 0; shift < 7 * MAX_LENGTH; shift += 7) {
 
-                break;
+            byte b = src.get();
+            result |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
             }
-            shift += 7;
-            offset += 1;
         }
+        throw new IllegalArgumentException("LEB128 value longer than " + MAX_LENGTH + " bytes");
+    }
+
+    /**
+     * Reads data from LEB128 encoded string
+     * @param payload
+     * @param offset
+     * @return List containing quantity and length
+     */
+    public static List<Object> readLeb128(String payload, int offset) {
 
-        quantityObj = result;
-        lengthObj = offset + 1;
+        List<Object> objList = new ArrayList<>();
+        Object quantityObj = null;
+        Object lengthObj = offset;
+
+        // Only the bytes of the value are unpacked, not the whole payload
+        int available = Math.min(payload.length() / 2 - offset, MAX_LENGTH);
+        if (available > 0) {
+
+            byte[] data = new byte[available];
+            Utils.packHexStringToBytes(payload, offset * 2, available, data, 0);
+            int[] cursor = { 0 };
+            long result = readLeb128(data, cursor);
+            if (cursor[0] >= 0) {
+
+                quantityObj = result;
+                lengthObj = offset + cursor[0];
+            }
+        }
 
         objList.add(quantityObj);
         objList.add(lengthObj);
@@ -86,25 +184,6 @@ public class Leb128 {
     public static long decodeLeb128(String encodedString) {
 
         byte[] data = Utils.packHexStringToBytes(encodedString);
-
-        long result = 0;
-        int shift = 0;
-        int offset = 0;
-
-        while (true) {
-
-            byte byteToCheck = data[offset];
-
-            result = result | ((byteToCheck & 0x7F) << shift);
-
-            if (0 == (int) (byteToCheck & 0x80)) {
-
-                break;
-            }
-            shift += 7;
-            offset += 1;
-        }
-
-        return result;
+        return readLeb128(data, new int[] { 0 });
     }
 }
@@ -0,0 +1,74 @@
+package com.chaintope.openassetsj.utils;
+
+import org.spongycastle.crypto.digests.RIPEMD160Digest;
+import org.spongycastle.crypto.digests.SHA256Digest;
+
+/**
+ * Digest state and scratch buffers reused across hash computations.
+ * An instance is not thread safe, forCurrentThread() hands out one per thread.
+ */
+public class ReusableDigests {
+
+    private static final ThreadLocal<ReusableDigests> PER_THREAD = ThreadLocal.withInitial(ReusableDigests::new);
+
+    private final SHA256Digest sha256 = new SHA256Digest();
+    private final RIPEMD160Digest ripemd160 = new RIPEMD160Digest();
+    private final byte[] scratch = new byte[32];
+
+    /**
+     * Gets the digests owned by the calling thread
+     * @return Digests of the calling thread
+     */
+    public static ReusableDigests forCurrentThread() {
+        return PER_THREAD.get();
+    }
+
+    /**
+     * Computes RIPEMD160(SHA256(input)) into the output array
+     * @param input Source bytes
+     * @param off Offset of the first byte to hash
+     * @param len Number of bytes to hash
+     * @param out Destination with room for 20 bytes
+     * @param outOff Position in out to write the hash
+     */
+    public void hash160(byte[] input, int off, int len, byte[] out, int outOff) {
+
+        sha256.update(input, off, len);
+        sha256.doFinal(scratch, 0);
+        ripemd160.update(scratch, 0, scratch.length);
+        ripemd160.doFinal(out, outOff);
+    }
+
+    /**
+     * Computes SHA256(SHA256(input)) into the output array
+     * @param input Source bytes
+     * @param off Offset of the first byte to hash
+     * @param len Number of bytes to hash
+     * @param out Destination with room for 32 bytes
+     * @param outOff Position in out to write the hash
+     */
+    public void doubleSha256(byte[] input, int off, int len, byte[] out, int outOff) {
+
+        sha256.update(input, off, len);
+        sha256.doFinal(scratch, 0);
+        sha256.update(scratch, 0, scratch.length);
+        sha256.doFinal(out, outOff);
+    }
+
+    /**
+     * Writes the first 4 bytes of SHA256(SHA256(input)), the Base58Check checksum
+     * @param input Source bytes
+     * @param off Offset of the first byte to hash
+     * @param len Number of bytes to hash
+     * @param out Destination with room for 4 bytes
+     * @param outOff Position in out to write the checksum
+     */
+    public void checksum(byte[] input, int off, int len, byte[] out, int outOff) {
+
+        sha256.update(input, off, len);
+        sha256.doFinal(scratch, 0);
+        sha256.update(scratch, 0, scratch.length);
+        sha256.doFinal(scratch, 0);
+        System.arraycopy(scratch, 0, out, outOff, 4);
+    }
+}
@@ -1,6 +1,8 @@
 package com.chaintope.openassetsj.utils;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -8,14 +10,13 @@ import org.bitcoinj.core.Address;
 import org.bitcoinj.core.Base58;
 import org.bitcoinj.core.ECKey;
 import org.bitcoinj.core.NetworkParameters;
-import org.bitcoinj.core.Sha256Hash;
 import org.bitcoinj.core.VersionedChecksummedBytes;
 import org.bitcoinj.params.MainNetParams;
 import org.bitcoinj.params.TestNet3Params;
 import org.bitcoinj.script.ScriptOpCodes;
-import org.spongycastle.crypto.digests.RIPEMD160Digest;
-import org.spongycastle.crypto.digests.SHA256Digest;
 
+import com.chaintope.openassetsj.metrics.LatencyTimer;
+import com.chaintope.openassetsj.metrics.Metrics;
 import com.google.common.base.Joiner;
 import com.google.common.primitives.Bytes;
 
@@ -24,6 +25,25 @@ import com.google.common.primitives.Bytes;
  */
 public class Utils {
 
+    // Lower case hex digit for every nibble value
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // Nibble value for every ASCII hex digit, -1 for any other character
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    private static final LatencyTimer HASH160_TIMER = Metrics.timer("utils.hash160");
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
     /**
      * Hash160 of the given input byte array
      * @param bytes Bytes to be hashed
@@ -31,15 +51,11 @@ public class Utils {
      */
     public static byte[] hash160(byte[] bytes) {
 
-        SHA256Digest firstDigest = new SHA256Digest();
-        firstDigest.update(bytes, 0, bytes.length);
-        byte[] firstHash = new byte[32];
-        firstDigest.doFinal(firstHash, 0);
-        RIPEMD160Digest secondDigest = new RIPEMD160Digest();
-        secondDigest.update(firstHash, 0, firstHash.length);
-        byte[] secondHash = new byte[20];
-        secondDigest.doFinal(secondHash, 0);
-        return secondHash;
+        long start = HASH160_TIMER.start();
+        byte[] hash = new byte[20];
+        ReusableDigests.forCurrentThread().hash160(bytes, 0, bytes.length, hash, 0);
+        HASH160_TIMER.stop(start);
+        return hash;
     }
 
     /**
@@ -49,14 +65,8 @@ public class Utils {
      */
     public static byte[] checksum(byte[] arr) {
 
-        byte[] checksum = null;
-        try {
-
-            checksum = Sha256Hash.hashTwice(arr, 0, arr.length);
-        } catch (Exception e) {
-
-            e.printStackTrace();
-        }
+        byte[] checksum = new byte[32];
+        ReusableDigests.forCurrentThread().doubleSha256(arr, 0, arr.length, checksum, 0);
         return checksum;
     }
 
@@ -69,11 +79,28 @@ public class Utils {
 
         int loopCount = unpackedStr.length() / 2;
         byte[] packedData = new byte[loopCount];
-        for(int i=0;i<loopCount;i++) {
+        packHexStringToBytes(unpackedStr, 0, loopCount, packedData, 0);
+        return packedData;
+    }
+
+    /**
+     * Converts part of a hex string into the given array
+     * @param hex Hex characters
+     * @param hexOffset Index of the first hex character to convert
+     * @param byteCount Number of bytes to produce
+     * @param dest Destination array
+     * @param destOffset Position in dest to write the first byte
+     * @return Position right after the last written byte
+     * @throws NumberFormatException if a character is not a hex digit
+     */
+    public static int packHexStringToBytes(CharSequence hex, int hexOffset, int byteCount, byte[] dest, int destOffset) {
 
-            packedData[i] = (byte) Integer.parseInt(unpackedStr.substring(i*2, (i+1)*2), 16);
+        for (int i = 0; i < byteCount; i++) {
+
+            int pos = hexOffset + i * 2;
+            dest[destOffset++] = (byte) (hexValue(hex, pos) << 4 | hexValue(hex, pos + 1));
         }
-        return packedData;
+        return destOffset;
     }
 
     /**
@@ -85,12 +112,12 @@ public class Utils {
     public static String packHexStringToCharString(String unpackedStr) {
 
         int loopCount = unpackedStr.length() / 2;
-        String packedData = "";
+        char[] packedData = new char[loopCount];
         for(int i=0;i<loopCount;i++) {
 
-            packedData += (char) Integer.parseInt(unpackedStr.substring(i*2, (i+1)*2), 16);
+            packedData[i] = (char) (hexValue(unpackedStr, i * 2) << 4 | hexValue(unpackedStr, i * 2 + 1));
         }
-        return packedData;
+        return new String(packedData);
     }
 
     /**
@@ -100,20 +127,92 @@ public class Utils {
      */
     public static String packByteArrayToString(byte array[]) {
 
-        StringBuilder encoded = new StringBuilder();
-        for (byte c : array) {
+        return packByteArrayToString(array, 0, array.length);
+    }
 
-            String hexByte = Integer.toHexString((int)c);
-            if (hexByte.length() < 2) {
+    /**
+     * Converts part of a byte array into hex string
+     * @param array byte array
+     * @param off Offset of the first byte
+     * @param len Number of bytes to convert
+     * @return Hex string of the bytes
+     */
+    public static String packByteArrayToString(byte[] array, int off, int len) {
 
-                hexByte = "0" + hexByte;
-            } else if (hexByte.length() > 2) {
+        char[] encoded = new char[len * 2];
+        unpackBytesToHexChars(array, off, len, encoded, 0);
+        return new String(encoded);
+    }
 
-                hexByte = hexByte.substring(hexByte.length() - 2, hexByte.length());
-            }
-            encoded.append(hexByte);
+    /**
+     * Writes the hex form of part of a byte array into the given char array
+     * @param src Source bytes
+     * @param off Offset of the first byte
+     * @param len Number of bytes to convert
+     * @param dest Destination chars, must have room for len * 2 chars
+     * @param destOffset Position in dest to write the first char
+     * @return Position right after the last written char
+     */
+    public static int unpackBytesToHexChars(byte[] src, int off, int len, char[] dest, int destOffset) {
+
+        for (int i = off; i < off + len; i++) {
+
+            int b = src[i] & 0xff;
+            dest[destOffset++] = HEX_DIGITS[b >>> 4];
+            dest[destOffset++] = HEX_DIGITS[b & 0x0f];
+        }
+        return destOffset;
+    }
+
+    /**
+     * Converts many byte arrays, e.g. scripts, into hex strings sharing one conversion buffer
+     * @param arrays byte arrays
+     * @return Hex strings in the same order
+     */
+    public static String[] packByteArraysToStrings(List<byte[]> arrays) {
+
+        int maxLength = 0;
+        for (byte[] array : arrays) {
+            maxLength = Math.max(maxLength, array.length);
         }
-        return encoded.toString();
+
+        char[] buffer = new char[maxLength * 2];
+        String[] encoded = new String[arrays.size()];
+        int i = 0;
+        for (byte[] array : arrays) {
+
+            int length = unpackBytesToHexChars(array, 0, array.length, buffer, 0);
+            encoded[i++] = new String(buffer, 0, length);
+        }
+        return encoded;
+    }
+
+    /**
+     * Converts many hex strings, e.g. scripts, into one reusable byte buffer
+     * @param hexStrings Hex strings
+     * @param buffer Buffer to reuse, a larger one is allocated if it is null or too small
+     * @param ends Receives the end position in the buffer of each converted string,
+     * string i occupies [ends[i - 1], ends[i]) with ends[-1] taken as 0
+     * @return The buffer holding the converted bytes
+     */
+    public static byte[] packHexStringsToBytes(List<String> hexStrings, byte[] buffer, int[] ends) {
+
+        int total = 0;
+        for (String hex : hexStrings) {
+            total += hex.length() / 2;
+        }
+        if (buffer == null || buffer.length < total) {
+            buffer = new byte[total];
+        }
+
+        int offset = 0;
+        int i = 0;
+        for (String hex : hexStrings) {
+
+            offset = packHexStringToBytes(hex, 0, hex.length() / 2, buffer, offset);
+            ends[i++] = offset;
+        }
+        return buffer;
     }
 
     /**
@@ -125,12 +224,35 @@ public class Utils {
     public static String unpackCharStringToHexString(String packedStr) {
 
         int loopCount = packedStr.length();
-        String unpackedData = "";
+        StringBuilder unpackedData = new StringBuilder(loopCount * 2);
         for(int i=0; i<loopCount; i++) {
 
-            unpackedData += Integer.toHexString((int) packedStr.charAt(i));
+            int c = packedStr.charAt(i);
+            // Like Integer.toHexString(), leading zeros are not written
+            if (c >= 0x100) {
+                unpackedData.append(Integer.toHexString(c));
+                continue;
+            }
+            if (c >= 0x10) {
+                unpackedData.append(HEX_DIGITS[c >>> 4]);
+            }
+            unpackedData.append(HEX_DIGITS[c & 0x0f]);
         }
-        return unpackedData;
+        return unpackedData.toString();
+    }
+
+    /**
+     * Gets the value of the hex digit at the index
+     * @throws NumberFormatException if the character is not a hex digit
+     */
+    private static int hexValue(CharSequence hex, int index) {
+
+        char c = hex.charAt(index);
+        int value = c < 128 ? HEX_VALUES[c] : -1;
+        if (value < 0) {
+            throw new NumberFormatException("Invalid hex digit '" + c + "' at index " + index);
+        }
+        return value;
     }
 
     /**
@@ -239,17 +361,17 @@ public class Utils {
         Object countObj = null;
         Object offsetObj = 0;
 
-        byte[] packed = packHexStringToBytes(data);
+        // Only the bytes of the var-int are unpacked, not the whole string
+        int available = data.length() / 2 - offset;
 
-        if (packed.length < (1 + offset)) {
+        if (available < 1) {
             countObj = null;
             offsetObj = 0;
         }
         else {
 
-            int elementsToCopy = packed.length - offset;
-            byte[] bytes = new byte[elementsToCopy];
-            System.arraycopy(packed, offset, bytes, 0, (elementsToCopy < 10) ? elementsToCopy : 10);
+            byte[] bytes = new byte[9];
+            packHexStringToBytes(data, offset * 2, Math.min(available, bytes.length), bytes, 0);
 
             int firstByte = (bytes[0] & 0xFF);
 
@@ -259,28 +381,12 @@ public class Utils {
                 countObj = firstByte;
                 offsetObj = offset + 1;
             }
-            // 0xFD = 253
-            else if (firstByte == 253) {
-
-                int noOfBytes = 2;
-                byte[] temp = new byte[noOfBytes];
-                System.arraycopy(bytes, 1, temp, 0, noOfBytes);
-                countObj = calculateVarIntegerValue(temp);
-                offsetObj = offset + noOfBytes + 1;
-            }
-            // 0xFE = 254
-            else if (firstByte == 254) {
-
-                int noOfBytes = 4;
-                byte[] temp = new byte[noOfBytes];
-                System.arraycopy(bytes, 1, temp, 0, noOfBytes);
-                countObj = calculateVarIntegerValue(temp);
-                offsetObj = offset + noOfBytes + 1;
-            }
-            // 0xFF = 255
-            else if (firstByte == 255) {
+            else {
 
-                int noOfBytes = 8;
+                int noOfBytes = varIntegerLength(firstByte) - 1;
+                if (available < noOfBytes + 1) {
+                    throw new ArrayIndexOutOfBoundsException("Truncated var-int at offset " + offset);
+                }
                 byte[] temp = new byte[noOfBytes];
                 System.arraycopy(bytes, 1, temp, 0, noOfBytes);
                 countObj = calculateVarIntegerValue(temp);
@@ -292,6 +398,166 @@ public class Utils {
         return objList;
     }
 
+    /**
+     * Reads a var-int (little-endian after the 0xfd/0xfe/0xff prefix), the one of the transaction serialization.
+     * The var-ints of the marker output payload are written most significant byte first instead, MarkerOutput
+     * and MarkerOutputParser handle those.
+     * @param data Source array
+     * @param cursor cursor[0] holds the position to read from, and is moved past the var-int.
+     * It is set to -1 if the var-int is truncated.
+     * @return Value of the var-int, 0 if it is truncated
+     */
+    public static long readVarInteger(byte[] data, int[] cursor) {
+
+        return readVarInteger(data, data.length, cursor);
+    }
+
+    /**
+     * Reads a var-int (little-endian after the 0xfd/0xfe/0xff prefix) that must end before the limit
+     * @param data Source array
+     * @param limit Position the var-int must not reach past
+     * @param cursor cursor[0] holds the position to read from, and is moved past the var-int.
+     * It is set to -1 if the var-int is truncated.
+     * @return Value of the var-int, 0 if it is truncated
+     */
+    public static long readVarInteger(byte[] data, int limit, int[] cursor) {
+
+        int offset = cursor[0];
+        if (offset < 0 || offset >= limit) {
+            cursor[0] = -1;
+            return 0;
+        }
+
+        int firstByte = data[offset] & 0xff;
+        int length = varIntegerLength(firstByte);
+        if (offset + length > limit) {
+            cursor[0] = -1;
+            return 0;
+        }
+        cursor[0] = offset + length;
+        if (length == 1) {
+            return firstByte;
+        }
+
+        long value = 0;
+        for (int i = length - 1; i >= 1; i--) {
+            value = (value << 8) | (data[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    /**
+     * Reads a var-int (little-endian after the 0xfd/0xfe/0xff prefix) at an absolute position of a buffer, whatever
+     * its byte order
+     * @param buffer Source buffer, its position is left unchanged
+     * @param offset Position to read from
+     * @param limit Position the var-int must not reach past
+     * @return Value of the var-int, Long.MAX_VALUE if it does not fit in a signed long, -1 if it is truncated
+     */
+    public static long readVarInteger(ByteBuffer buffer, int offset, int limit) {
+
+        if (offset < 0 || offset >= limit) {
+            return -1;
+        }
+        int firstByte = buffer.get(offset) & 0xff;
+        int length = varIntegerLength(firstByte);
+        if (offset + length > limit) {
+            return -1;
+        }
+        if (length == 1) {
+            return firstByte;
+        }
+
+        long value = 0;
+        for (int i = length - 1; i >= 1; i--) {
+            value = (value << 8) | (buffer.get(offset + i) & 0xff);
+        }
+        return (value < 0) ? Long.MAX_VALUE : value;
+    }
+
+    /**
+     * Gets the size of the var-int at an absolute position of a buffer from its first byte
+     * @param buffer Source buffer
+     * @param offset Position of the var-int
+     * @return Size in bytes
+     */
+    public static int varIntegerLength(ByteBuffer buffer, int offset) {
+        return varIntegerLength(buffer.get(offset) & 0xff);
+    }
+
+    /**
+     * Writes a var-int (little-endian after the 0xfd/0xfe/0xff prefix)
+     * @param value Value to write, treated as unsigned
+     * @param dest Destination array
+     * @param offset Position to write at
+     * @return Position right after the var-int
+     */
+    public static int writeVarInteger(long value, byte[] dest, int offset) {
+
+        int length = varIntegerSize(value);
+        switch (length) {
+            case 3:
+                dest[offset++] = (byte) 0xfd;
+                break;
+            case 5:
+                dest[offset++] = (byte) 0xfe;
+                break;
+            case 9:
+                dest[offset++] = (byte) 0xff;
+                break;
+            default:
+                dest[offset++] = (byte) value;
+                return offset;
+        }
+        for (int i = 1; i < length; i++) {
+            dest[offset++] = (byte) value;
+            value >>>= 8;
+        }
+        return offset;
+    }
+
+    /**
+     * Calculates the number of bytes the var-int of the value takes
+     * @param value Value treated as unsigned
+     * @return Size in bytes
+     */
+    public static int varIntegerSize(long value) {
+
+        // 0xfd = 253
+        if (value >= 0 && value < 253) {
+            return 1;
+        }
+        // 0xffff = 65535
+        else if (value >= 0 && value <= 65535) {
+            return 3;
+        }
+        // 0xffffffff = 4294967295
+        else if (value >= 0 && value <= 4294967295L) {
+            return 5;
+        }
+        return 9;
+    }
+
+    /**
+     * Gets the size of a var-int from its first byte
+     */
+    private static int varIntegerLength(int firstByte) {
+
+        switch (firstByte) {
+            // 0xFD = 253
+            case 253:
+                return 3;
+            // 0xFE = 254
+            case 254:
+                return 5;
+            // 0xFF = 255
+            case 255:
+                return 9;
+            default:
+                return 1;
+        }
+    }
+
     /**
      * Calculates var-int value
      * @param byteArr
@@ -299,12 +565,10 @@ public class Utils {
      */
     public static long calculateVarIntegerValue(byte[] byteArr) {
 
-        long sum = 0L, len = byteArr.length;
-        sum = (byteArr[0] & 0xFF);
-        for (int i = 1; i < len; i++ ) {
+        long sum = 0L;
+        for (int i = byteArr.length - 1; i >= 0; i-- ) {
 
-            int val = (byteArr[i] & 0xFF);
-            sum += val * Math.pow(256, i);
+            sum = (sum << 8) | (byteArr[i] & 0xFF);
         }
         return sum;
     }
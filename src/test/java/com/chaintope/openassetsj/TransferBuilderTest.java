@@ -0,0 +1,189 @@
+package com.chaintope.openassetsj;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.params.TestNet3Params;
+import org.bitcoinj.script.ScriptBuilder;
+import org.junit.Test;
+
+import com.chaintope.openassetsj.index.CoinSelector;
+import com.chaintope.openassetsj.index.UtxoEntry;
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.ColoredOutput;
+import com.chaintope.openassetsj.model.OutPoint;
+import com.chaintope.openassetsj.model.OutputType;
+import com.chaintope.openassetsj.model.TransferLeg;
+import com.chaintope.openassetsj.protocol.ColoringEngine;
+import com.chaintope.openassetsj.protocol.MarkerOutput;
+
+/**
+ * Validates the logic written in TransferBuilder
+ */
+public class TransferBuilderTest {
+
+	private static final AssetId GOLD = AssetId.fromString("oMb2yzA542yQgwn8XtmGefTzBv5NJ2nDjh");
+	private static final AssetId SILVER = AssetId.fromString("oWLkUn44E45cnQtsP6x1wrvJ2iRx9XyFny");
+
+	private NetworkParameters params = TestNet3Params.get();
+	private Address sender = new ECKey().toAddress(params);
+	private byte[] senderHash = UtxoEntry.ownerHash(ScriptBuilder.createOutputScript(sender).getProgram());
+	private CoinSelector selector = new CoinSelector();
+	private Map<OutPoint, UtxoEntry> wallet = new HashMap<>();
+	private ColoringEngine engine = new ColoringEngine(params, txHash -> null);
+
+	@Test
+	/**
+	 * Method to test the functionality of build() for transfers fitting into one transaction
+	 */
+	public void buildTest() {
+
+		fund(GOLD, 1000, 500);
+		fund(SILVER, 300);
+		fund(null, 100000, 50000);
+		Address[] recipients = { new ECKey().toAddress(params), new ECKey().toAddress(params), new ECKey().toAddress(params) };
+		List<TransferLeg> legs = Arrays.asList(new TransferLeg(recipients[0], GOLD, 100), new TransferLeg(recipients[1], SILVER, 30),
+				new TransferLeg(recipients[1], GOLD, 200), new TransferLeg(recipients[2], GOLD, 50));
+
+		List<Transaction> transactions = new TransferBuilder(params, selector, sender).build(legs);
+		assertEquals(1, transactions.size());
+		Transaction transaction = transactions.get(0);
+		List<ColoredOutput> outputs = color(transaction);
+
+		assertEquals(OutputType.MARKER_OUTPUT, outputs.get(0).getOutputType());
+		assertColored(outputs.get(1), GOLD, 100, recipients[0]);
+		assertColored(outputs.get(2), GOLD, 200, recipients[1]);
+		assertColored(outputs.get(3), GOLD, 50, recipients[2]);
+		// 350 units are taken from the smallest covering output of 500
+		assertColored(outputs.get(4), GOLD, 150, sender);
+		assertColored(outputs.get(5), SILVER, 30, recipients[1]);
+		assertColored(outputs.get(6), SILVER, 270, sender);
+		assertNull(outputs.get(7).getAssetId());
+		assertEquals(8, outputs.size());
+
+		long fee = -transaction.getOutputSum().value;
+		for (TransactionInput input : transaction.getInputs()) {
+			fee += wallet.get(OutPoint.of(input.getOutpoint())).getValue();
+		}
+		assertTrue(fee > 0);
+		assertEquals(1000, selector.getSpendable(GOLD));
+		assertEquals(0, selector.getSpendable(SILVER));
+	}
+
+	@Test
+	/**
+	 * Method to test that a large batch is split at the standard marker output size
+	 */
+	public void splitTest() {
+
+		for (int i = 0; i < 50; i++) {
+			fund(GOLD, 100000);
+			fund(SILVER, 100000);
+			fund(null, 1000000);
+		}
+		List<TransferLeg> legs = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			legs.add(new TransferLeg(new ECKey().toAddress(params), (i % 3 == 0) ? SILVER : GOLD, 1000 + i));
+		}
+
+		List<Transaction> transactions = new TransferBuilder(params, selector, sender).build(legs);
+		assertTrue(transactions.size() > 1);
+		byte[] senderScript = ScriptBuilder.createOutputScript(sender).getProgram();
+		Set<OutPoint> spent = new HashSet<>();
+		int transfers = 0;
+		long gold = 0;
+		for (Transaction transaction : transactions) {
+
+			assertTrue(transaction.getOutput(0).getScriptBytes().length <= MarkerOutput.STANDARD_SCRIPT_LENGTH);
+			for (TransactionInput input : transaction.getInputs()) {
+				assertTrue(spent.add(OutPoint.of(input.getOutpoint())));
+			}
+			List<ColoredOutput> outputs = color(transaction);
+			for (int i = 1; i < outputs.size(); i++) {
+
+				ColoredOutput output = outputs.get(i);
+				if (output.getAssetId() != null && !Arrays.equals(output.getScript(), senderScript)) {
+
+					transfers++;
+					gold += GOLD.equals(output.getAssetId()) ? output.getAssetQuantity() : 0;
+				}
+			}
+		}
+		long expectedGold = 0;
+		for (TransferLeg leg : legs) {
+			expectedGold += GOLD.equals(leg.getAssetId()) ? leg.getQuantity() : 0;
+		}
+		assertEquals(300, transfers);
+		assertEquals(expectedGold, gold);
+	}
+
+	@Test
+	/**
+	 * Method to test that a batch the sender cannot cover leaves the selector as it was
+	 */
+	public void insufficientTest() {
+
+		fund(GOLD, 100, 100);
+		fund(null, 1000000);
+		List<TransferLeg> legs = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			legs.add(new TransferLeg(new ECKey().toAddress(params), GOLD, 3));
+		}
+
+		try {
+			new TransferBuilder(params, selector, sender).build(legs);
+			fail();
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		assertEquals(3, selector.size());
+		assertEquals(200, selector.getSpendable(GOLD));
+		assertEquals(1000000, selector.getSpendable(null));
+	}
+
+	/**
+	 * Adds outputs of the sender, uncolored ones holding the amount in satoshis
+	 */
+	private void fund(AssetId assetId, long... amounts) {
+
+		for (long amount : amounts) {
+
+			OutPoint outPoint = new OutPoint(Sha256Hash.of(new byte[] { (byte) wallet.size(), (byte) (wallet.size() >> 8) }), 1);
+			UtxoEntry entry = (assetId == null) ? new UtxoEntry(null, 0, amount, senderHash)
+					: new UtxoEntry(assetId, amount, 600, senderHash);
+			wallet.put(outPoint, entry);
+			selector.add(outPoint, entry);
+		}
+	}
+
+	private List<ColoredOutput> color(Transaction transaction) {
+
+		List<ColoredOutput> inputs = new ArrayList<>();
+		for (TransactionInput input : transaction.getInputs()) {
+
+			UtxoEntry entry = wallet.get(OutPoint.of(input.getOutpoint()));
+			inputs.add(new ColoredOutput(entry.getValue(), new byte[0], entry.getAssetId(), entry.getAssetQuantity(), OutputType.TRANSFER));
+		}
+		return engine.colorTransaction(transaction, inputs);
+	}
+
+	private void assertColored(ColoredOutput output, AssetId assetId, long quantity, Address owner) {
+
+		assertEquals(assetId, output.getAssetId());
+		assertEquals(quantity, output.getAssetQuantity());
+		assertArrayEquals(ScriptBuilder.createOutputScript(owner).getProgram(), output.getScript());
+	}
+}
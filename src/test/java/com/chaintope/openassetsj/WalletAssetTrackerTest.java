@@ -0,0 +1,186 @@
+package com.chaintope.openassetsj;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionConfidence.ConfidenceType;
+import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.core.TransactionOutPoint;
+import org.bitcoinj.params.TestNet3Params;
+import org.bitcoinj.script.Script;
+import org.bitcoinj.script.ScriptBuilder;
+import org.bitcoinj.utils.Threading;
+import org.bitcoinj.wallet.Wallet;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.protocol.ColoringEngine;
+import com.chaintope.openassetsj.protocol.MarkerOutput;
+import com.chaintope.openassetsj.utils.AssetID;
+
+/**
+ * Validates the logic written in WalletAssetTracker
+ */
+public class WalletAssetTrackerTest {
+
+	private NetworkParameters params = TestNet3Params.get();
+	private Wallet wallet;
+	private Address me;
+	private Map<Sha256Hash, Transaction> foreign = new HashMap<>();
+	private WalletAssetTracker tracker;
+	private AssetId assetId;
+	private Transaction issuance;
+	private Transaction transfer;
+
+	@Before
+	public void setUp() {
+
+		wallet = new Wallet(params);
+		me = wallet.freshReceiveAddress();
+		tracker = new WalletAssetTracker(new ColoringEngine(params, txHash -> {
+			Transaction transaction = foreign.get(txHash);
+			return (transaction != null) ? transaction : wallet.getTransaction(txHash);
+		}));
+
+		// The issuer funds the issuance from an output outside the wallet
+		Address issuer = new ECKey().toAddress(params);
+		Transaction funding = new Transaction(params);
+		funding.addInput(new TransactionInput(params, funding, new byte[] { 1 }, new TransactionOutPoint(params, 0, Sha256Hash.ZERO_HASH)));
+		funding.addOutput(Coin.valueOf(100000), issuer);
+		foreign.put(funding.getHash(), funding);
+		assetId = new AssetID(params).toAssetId(ScriptBuilder.createOutputScript(issuer).getProgram());
+
+		// 100 units issued to the wallet
+		issuance = new Transaction(params);
+		issuance.addInput(new TransactionInput(params, issuance, new byte[] { 1 }, funding.getOutput(0).getOutPointFor()));
+		issuance.addOutput(Coin.valueOf(600), me);
+		issuance.addOutput(Coin.ZERO, marker(100L));
+
+		// 60 units sent away and 40 back to the wallet
+		transfer = new Transaction(params);
+		transfer.addInput(new TransactionInput(params, transfer, new byte[] { 1 }, issuance.getOutput(0).getOutPointFor()));
+		transfer.addOutput(Coin.ZERO, marker(60L, 40L));
+		transfer.addOutput(Coin.valueOf(300), new ECKey().toAddress(params));
+		transfer.addOutput(Coin.valueOf(200), me);
+	}
+
+	@Test
+	/**
+	 * Method to test that received, sent and dead transactions update the balances from wallet events
+	 */
+	public void eventTest() {
+
+		tracker.attach(wallet);
+		receive(issuance);
+		assertEquals(100, tracker.getBalance(assetId));
+		receive(transfer);
+		assertEquals(40, tracker.getBalance(assetId));
+		assertEquals(2, tracker.getTransactionCount());
+
+		// As notified by the wallet when a double spend kills the transfer
+		transfer.getConfidence().setConfidenceType(ConfidenceType.DEAD);
+		tracker.onTransactionConfidenceChanged(wallet, transfer);
+		assertEquals(100, tracker.getBalance(assetId));
+		assertEquals(1, tracker.getTransactionCount());
+
+		tracker.detach();
+	}
+
+	@Test
+	/**
+	 * Method to test that a reorganization reverts the transactions it killed and their effect on descendants
+	 */
+	public void reorganizeTest() {
+
+		receive(issuance);
+		receive(transfer);
+		// Transactions already in the wallet are applied on attach
+		tracker.attach(wallet);
+		assertEquals(40, tracker.getBalance(assetId));
+
+		issuance.getConfidence().setConfidenceType(ConfidenceType.DEAD);
+		tracker.onReorganize(wallet);
+		// The transfer still spends the dead issuance output, its own output stays until it is reported dead
+		assertEquals(40, tracker.getBalance(assetId));
+		transfer.getConfidence().setConfidenceType(ConfidenceType.DEAD);
+		tracker.onReorganize(wallet);
+		assertEquals(0, tracker.getBalance(assetId));
+		assertTrue(tracker.getBalances().isEmpty());
+
+		issuance.getConfidence().setConfidenceType(ConfidenceType.PENDING);
+		tracker.onReorganize(wallet);
+		assertEquals(100, tracker.getBalance(assetId));
+		tracker.detach();
+	}
+
+	@Test
+	/**
+	 * Method to test that a transaction arriving before its parent is applied once the parent arrives
+	 */
+	public void outOfOrderTest() {
+
+		tracker.attach(wallet);
+		receive(transfer);
+		assertEquals(0, tracker.getBalance(assetId));
+		assertEquals(1, tracker.getUnresolved().size());
+
+		receive(issuance);
+		assertTrue(tracker.getUnresolved().isEmpty());
+		assertEquals(40, tracker.getBalance(assetId));
+		tracker.detach();
+	}
+
+	@Test
+	/**
+	 * Method to test that an output spent by two conflicting transactions is debited once, until both are dead
+	 */
+	public void conflictTest() {
+
+		// 70 units sent away and 30 back to the wallet, spending the same output as the transfer
+		Transaction conflicting = new Transaction(params);
+		conflicting.addInput(new TransactionInput(params, conflicting, new byte[] { 2 }, issuance.getOutput(0).getOutPointFor()));
+		conflicting.addOutput(Coin.ZERO, marker(70L, 30L));
+		conflicting.addOutput(Coin.valueOf(300), new ECKey().toAddress(params));
+		conflicting.addOutput(Coin.valueOf(200), me);
+
+		tracker.attach(wallet);
+		receive(issuance);
+		receive(transfer);
+		receive(conflicting);
+		// Both stay applied, the issued 100 units are debited once
+		assertEquals(70, tracker.getBalance(assetId));
+		assertEquals(3, tracker.getTransactionCount());
+
+		transfer.getConfidence().setConfidenceType(ConfidenceType.DEAD);
+		tracker.onTransactionConfidenceChanged(wallet, transfer);
+		// The conflicting transaction still spends the issued output
+		assertEquals(30, tracker.getBalance(assetId));
+
+		conflicting.getConfidence().setConfidenceType(ConfidenceType.DEAD);
+		tracker.onTransactionConfidenceChanged(wallet, conflicting);
+		assertEquals(100, tracker.getBalance(assetId));
+		assertEquals(1, tracker.getTransactionCount());
+		tracker.detach();
+	}
+
+	private void receive(Transaction transaction) {
+
+		wallet.receivePending(transaction, null);
+		Threading.waitForUserCode();
+	}
+
+	private Script marker(Long... quantities) {
+		return new MarkerOutput(new ArrayList<>(Arrays.asList(quantities)), "").buildScript();
+	}
+}
@@ -0,0 +1,113 @@
+package com.chaintope.openassetsj.index;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.params.TestNet3Params;
+import org.bitcoinj.script.ScriptBuilder;
+import org.junit.Test;
+
+/**
+ * Validates the logic written in AddressFilter
+ */
+public class AddressFilterTest {
+
+	private NetworkParameters params = TestNet3Params.get();
+
+	@Test
+	/**
+	 * Method to test that added addresses are always reported and unknown ones rarely
+	 */
+	public void mightContainTest() {
+
+		Random random = new Random(1);
+		AddressFilter filter = new AddressFilter(10000, 0.01);
+		List<byte[]> added = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+
+			byte[] hash160 = new byte[20];
+			random.nextBytes(hash160);
+			filter.put(hash160, 0);
+			added.add(hash160);
+		}
+		for (byte[] hash160 : added) {
+			assertTrue(filter.mightContain(hash160, 0));
+		}
+
+		int falsePositives = 0;
+		byte[] unknown = new byte[20];
+		for (int i = 0; i < 100000; i++) {
+
+			random.nextBytes(unknown);
+			falsePositives += filter.mightContain(unknown, 0) ? 1 : 0;
+		}
+		assertTrue(filter.getExpectedFalsePositiveRate() <= 0.01);
+		assertTrue(falsePositives < 100000 * 0.015);
+		// Additions the filter already reported as held are not counted
+		assertTrue(filter.getInsertionCount() > 9800 && filter.getInsertionCount() <= 10000);
+		assertTrue(filter.getFalsePositiveRate() <= filter.getExpectedFalsePositiveRate());
+		// Within twice the bits of an unblocked filter at the same rate
+		assertTrue(filter.getMemoryBytes() < 2 * 10000 * 9.6 / 8);
+	}
+
+	@Test
+	/**
+	 * Method to test the functionality of put() for addresses, OA addresses and output scripts
+	 */
+	public void addressTest() {
+
+		Address address = Address.fromBase58(params, "mo949sdMme4nk1QeNva37yTfiXLS1LYh9N");
+		Address other = new ECKey().toAddress(params);
+		AddressFilter filter = new AddressFilter(100);
+		assertEquals(0, filter.getFalsePositiveRate(), 0);
+
+		assertTrue(filter.putOaAddress("bWy6wQ3ShF7xUcFa1RYgDmqNF48Wc23wCPq"));
+		assertFalse(filter.put(address));
+		assertEquals(1, filter.getInsertionCount());
+		assertTrue(filter.mightContain(address));
+		assertTrue(filter.mightContainScript(ScriptBuilder.createOutputScript(address).getProgram()));
+		assertFalse(filter.mightContainScript(new byte[] { 0x51 }));
+
+		AddressFilter built = AddressFilter.of(Arrays.asList(address, other), 0.001);
+		assertTrue(built.mightContain(other));
+		assertTrue(built.mightContainScript(ScriptBuilder.createP2SHOutputScript(other.getHash160()).getProgram()));
+	}
+
+	@Test
+	/**
+	 * Method to test put() from several threads while the filter is read
+	 */
+	public void concurrentTest() {
+
+		AddressFilter filter = new AddressFilter(50000);
+		byte[][] hashes = new byte[50000][20];
+		Random random = new Random(2);
+		for (byte[] hash : hashes) {
+			random.nextBytes(hash);
+		}
+		IntStream.range(0, hashes.length).parallel().forEach(i -> {
+
+			filter.put(hashes[i], 0);
+			assertTrue(filter.mightContain(hashes[i], 0));
+		});
+		for (byte[] hash : hashes) {
+			assertTrue(filter.mightContain(hash, 0));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	/**
+	 * Method to test that a buffer too short for a hash160 is rejected
+	 */
+	public void shortHashTest() {
+		new AddressFilter(10).mightContain(new byte[20], 1);
+	}
+}
@@ -0,0 +1,227 @@
+package com.chaintope.openassetsj.index;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.bitcoinj.core.Block;
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.ProtocolException;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.core.TransactionOutPoint;
+import org.bitcoinj.core.TransactionOutput;
+import org.bitcoinj.core.VarInt;
+import org.bitcoinj.params.MainNetParams;
+import org.bitcoinj.params.TestNet3Params;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.chaintope.openassetsj.protocol.MarkerOutput;
+
+/**
+ * Validates the logic written in BlockFileScanner
+ */
+public class BlockFileScannerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final byte[] OWNER = { 0x51 };
+	// OP_RETURN pushing data that does not start with the marker prefix
+	private static final byte[] OTHER_OP_RETURN = { 0x6a, 0x04, 0x4f, 0x41, 0x02, 0x00 };
+
+	private NetworkParameters params = TestNet3Params.get();
+
+	@Test
+	/**
+	 * Method to test the functionality of nextBlock() and the transaction accessors
+	 */
+	public void scanTest() throws IOException {
+
+		Transaction coinbase = coinbase();
+		Transaction plain = transaction(1, OWNER, OTHER_OP_RETURN);
+		Transaction issuance = transaction(2, OWNER, marker(100));
+		Block first = block(Sha256Hash.ZERO_HASH, coinbase, plain, issuance);
+
+		Transaction transfer = transaction(3, marker(40, 60), OWNER, OWNER);
+		byte[] second = blockBytes(block(first.getHash(), coinbase, transfer), coinbase.bitcoinSerialize(), segwit(transfer));
+
+		Path file = folder.getRoot().toPath().resolve("blk00000.dat");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeRecord(out, params, first.bitcoinSerialize());
+		writeRecord(out, params, second);
+		out.write(new byte[4096]);
+		Files.write(file, out.toByteArray());
+
+		try (BlockFileScanner scanner = BlockFileScanner.open(params, file)) {
+
+			assertTrue(scanner.nextBlock());
+			assertEquals(first.getHash(), scanner.getBlockHash());
+			assertEquals(Sha256Hash.ZERO_HASH, scanner.getPrevBlockHash());
+			assertEquals(0, scanner.getBlockFileOffset());
+			assertEquals(3, scanner.getTransactionCount());
+			assertEquals(ByteBuffer.wrap(plain.bitcoinSerialize()), scanner.getTransactionBytes(1));
+			assertFalse(scanner.hasMarkerOutput(0));
+			assertFalse(scanner.hasMarkerOutput(1));
+			assertEquals(1, scanner.getMarkerOutputIndex(2));
+			assertEquals(Arrays.asList(issuance), scanner.getMarkerTransactions());
+
+			assertTrue(scanner.nextBlock());
+			assertEquals(first.getHash(), scanner.getPrevBlockHash());
+			assertEquals(ByteBuffer.wrap(segwit(transfer)), scanner.getTransactionBytes(1));
+			assertEquals(0, scanner.getMarkerOutputIndex(1));
+			Transaction decoded = scanner.getTransaction(1);
+			assertEquals(transfer.getHash(), decoded.getHash());
+			assertEquals(3, decoded.getOutputs().size());
+
+			assertFalse(scanner.nextBlock());
+		}
+		assertEquals(Arrays.asList(file), BlockFileScanner.listBlockFiles(folder.getRoot().toPath()));
+	}
+
+	@Test
+	/**
+	 * Method to test that a record cut off by the end of the file ends the scan
+	 */
+	public void truncatedRecordTest() throws IOException {
+
+		byte[] block = block(Sha256Hash.ZERO_HASH, coinbase()).bitcoinSerialize();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeRecord(out, params, block);
+		writeRecord(out, params, block);
+		byte[] bytes = out.toByteArray();
+		Path file = folder.newFile().toPath();
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 10));
+
+		try (BlockFileScanner scanner = BlockFileScanner.open(params, file)) {
+
+			assertTrue(scanner.nextBlock());
+			assertFalse(scanner.nextBlock());
+		}
+	}
+
+	@Test(expected = ProtocolException.class)
+	/**
+	 * Method to test that a block file of another network is rejected
+	 */
+	public void wrongMagicTest() throws IOException {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeRecord(out, MainNetParams.get(), block(Sha256Hash.ZERO_HASH, coinbase()).bitcoinSerialize());
+		Path file = folder.newFile().toPath();
+		Files.write(file, out.toByteArray());
+
+		try (BlockFileScanner scanner = BlockFileScanner.open(params, file)) {
+			scanner.nextBlock();
+		}
+	}
+
+	@Test(expected = ProtocolException.class)
+	/**
+	 * Method to test that a block whose transactions overrun the record is rejected
+	 */
+	public void malformedBlockTest() throws IOException {
+
+		byte[] block = block(Sha256Hash.ZERO_HASH, coinbase(), transaction(1, OWNER)).bitcoinSerialize();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeRecord(out, params, Arrays.copyOf(block, block.length - 6));
+		Path file = folder.newFile().toPath();
+		Files.write(file, out.toByteArray());
+
+		try (BlockFileScanner scanner = BlockFileScanner.open(params, file)) {
+			scanner.nextBlock();
+		}
+	}
+
+	private static void writeRecord(ByteArrayOutputStream out, NetworkParameters params, byte[] block) {
+
+		long magic = params.getPacketMagic();
+		out.write((int) (magic >>> 24));
+		out.write((int) (magic >>> 16));
+		out.write((int) (magic >>> 8));
+		out.write((int) magic);
+		for (int shift = 0; shift < 32; shift += 8) {
+			out.write(block.length >>> shift);
+		}
+		out.write(block, 0, block.length);
+	}
+
+	/**
+	 * Serializes a block from its header and raw transactions
+	 */
+	private static byte[] blockBytes(Block header, byte[]... transactions) throws IOException {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(header.bitcoinSerialize(), 0, 80);
+		out.write(new VarInt(transactions.length).encode());
+		for (byte[] transaction : transactions) {
+			out.write(transaction);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Serializes the transaction with the segwit flag and one witness item per input
+	 */
+	private static byte[] segwit(Transaction transaction) {
+
+		byte[] legacy = transaction.bitcoinSerialize();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(legacy, 0, 4);
+		out.write(0);
+		out.write(1);
+		out.write(legacy, 4, legacy.length - 8);
+		for (int i = 0; i < transaction.getInputs().size(); i++) {
+
+			out.write(1);
+			out.write(3);
+			out.write(new byte[] { 7, 7, 7 }, 0, 3);
+		}
+		out.write(legacy, legacy.length - 4, 4);
+		return out.toByteArray();
+	}
+
+	private Block block(Sha256Hash prevHash, Transaction... transactions) {
+
+		return new Block(params, 1, prevHash, Sha256Hash.ZERO_HASH, 1500000000L, 0x207fffffL, 0, Arrays.asList(transactions));
+	}
+
+	private Transaction coinbase() {
+
+		Transaction transaction = new Transaction(params);
+		transaction.addInput(new TransactionInput(params, transaction, new byte[] { 0, 0 },
+				new TransactionOutPoint(params, 0xFFFFFFFFL, Sha256Hash.ZERO_HASH)));
+		transaction.addOutput(new TransactionOutput(params, transaction, Coin.COIN, OWNER));
+		return transaction;
+	}
+
+	private Transaction transaction(int seed, byte[]... scripts) {
+
+		Transaction transaction = new Transaction(params);
+		transaction.addInput(new TransactionInput(params, transaction, new byte[0],
+				new TransactionOutPoint(params, 0, Sha256Hash.of(new byte[] { (byte) seed }))));
+		for (byte[] script : scripts) {
+			transaction.addOutput(new TransactionOutput(params, transaction, Coin.valueOf(600), script));
+		}
+		return transaction;
+	}
+
+	private static byte[] marker(long... quantities) {
+
+		ArrayList<Long> assetQuantities = new ArrayList<>();
+		for (long quantity : quantities) {
+			assetQuantities.add(quantity);
+		}
+		return new MarkerOutput(assetQuantities, "").buildScript().getProgram();
+	}
+}
@@ -0,0 +1,279 @@
+package com.chaintope.openassetsj.index;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.bitcoinj.core.Block;
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.core.TransactionOutPoint;
+import org.bitcoinj.core.TransactionOutput;
+import org.bitcoinj.params.TestNet3Params;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.OutPoint;
+import com.chaintope.openassetsj.protocol.MarkerOutput;
+import com.chaintope.openassetsj.utils.AssetID;
+
+/**
+ * Validates the logic written in BlockIngestor
+ */
+public class BlockIngestorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final byte[] ISSUER = { 0x51 };
+	private static final byte[] ALICE = { 0x52 };
+	private static final byte[] BOB = { 0x53 };
+
+	private NetworkParameters params = TestNet3Params.get();
+	private AssetId assetId = new AssetID(params).toAssetId(ISSUER);
+	private Path indexDirectory;
+	private Path journalDirectory;
+	private ColoredUtxoIndex index;
+	private BlockIngestor ingestor;
+
+	private Block genesis;
+	private Block issuanceBlock;
+	private Transaction issuance;
+
+	@Before
+	public void setUp() throws IOException {
+
+		indexDirectory = folder.newFolder("index").toPath();
+		journalDirectory = folder.newFolder("journal").toPath();
+		index = ColoredUtxoIndex.open(indexDirectory);
+		ingestor = new BlockIngestor(params, index, journalDirectory);
+
+		Transaction coinbase = coinbase(0, ISSUER);
+		genesis = block(Sha256Hash.ZERO_HASH, 0, coinbase);
+		issuance = spend(Arrays.asList(outPoint(coinbase, 0)), ALICE, marker(100));
+		issuanceBlock = block(genesis.getHash(), 1, coinbase(1, BOB), issuance);
+	}
+
+	@Test
+	/**
+	 * Method to test the functionality of connectBlock() for issuance and transfer
+	 */
+	public void connectBlockTest() throws IOException {
+
+		ingestor.connectBlock(genesis);
+		ingestor.connectBlock(issuanceBlock);
+		assertEquals(Long.valueOf(100), balances(ALICE).get(assetId));
+
+		// The second transaction spends an output of the first one in the same block
+		Transaction transfer = spend(Arrays.asList(outPoint(issuance, 0)), marker(60, 40), BOB, ALICE);
+		Transaction resend = spend(Arrays.asList(outPoint(transfer, 2)), marker(40), BOB);
+		ingestor.connectBlock(block(issuanceBlock.getHash(), 2, coinbase(2, BOB), transfer, resend));
+
+		assertEquals(2, ingestor.getTipHeight());
+		assertTrue(balances(ALICE).isEmpty());
+		assertEquals(Long.valueOf(100), balances(BOB).get(assetId));
+		assertNull(index.get(new OutPoint(transfer.getHash(), 2)));
+	}
+
+	@Test
+	/**
+	 * Method to test connectBlock() from a block issuing assets out of an output created before indexing started
+	 */
+	public void connectMidChainTest() throws IOException {
+
+		ingestor.connectBlock(issuanceBlock);
+		assertTrue(balances(ALICE).isEmpty());
+		assertNotNull(index.get(new OutPoint(issuance.getHash(), 0)));
+
+		// Ingestion goes on past the block, the outputs it left uncolored carrying no assets
+		Transaction transfer = spend(Arrays.asList(outPoint(issuance, 0)), marker(100), BOB);
+		Block transferBlock = block(issuanceBlock.getHash(), 2, coinbase(2, BOB), transfer);
+		ingestor.connectBlock(transferBlock);
+		assertEquals(transferBlock.getHash(), ingestor.getTipHash());
+		assertTrue(balances(BOB).isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	/**
+	 * Method to test that blocks not extending the tip are rejected
+	 */
+	public void connectOrphanTest() throws IOException {
+
+		ingestor.connectBlock(genesis);
+		ingestor.connectBlock(block(Sha256Hash.ZERO_HASH, 9, coinbase(9, BOB)));
+	}
+
+	@Test
+	/**
+	 * Method to test the functionality of disconnectTip() and reorganize()
+	 */
+	public void reorganizeTest() throws IOException {
+
+		ingestor.connectBlock(genesis);
+		ingestor.connectBlock(issuanceBlock);
+		Transaction transfer = spend(Arrays.asList(outPoint(issuance, 0)), marker(100), BOB);
+		Block transferBlock = block(issuanceBlock.getHash(), 2, coinbase(2, BOB), transfer);
+		ingestor.connectBlock(transferBlock);
+		long indexSize = index.size();
+
+		assertEquals(transferBlock.getHash(), ingestor.disconnectTip());
+		assertEquals(issuanceBlock.getHash(), ingestor.getTipHash());
+		assertEquals(Long.valueOf(100), balances(ALICE).get(assetId));
+		assertTrue(balances(BOB).isEmpty());
+
+		Transaction split = spend(Arrays.asList(outPoint(issuance, 0)), marker(30, 70), ALICE, BOB);
+		Block otherBlock = block(issuanceBlock.getHash(), 3, coinbase(3, BOB), split);
+		ingestor.connectBlock(transferBlock);
+		ingestor.reorganize(issuanceBlock.getHash(), Collections.singletonList(otherBlock));
+
+		assertEquals(otherBlock.getHash(), ingestor.getTipHash());
+		assertEquals(Long.valueOf(30), balances(ALICE).get(assetId));
+		assertEquals(Long.valueOf(70), balances(BOB).get(assetId));
+		assertEquals(indexSize + 1, index.size());
+	}
+
+	@Test
+	/**
+	 * Method to test that a block interrupted by a crash is reverted when the ingestor is created
+	 */
+	public void recoverTest() throws IOException {
+
+		ingestor.connectBlock(genesis);
+		ingestor.connectBlock(issuanceBlock);
+		new UndoJournal(journalDirectory).setPending(1);
+
+		BlockIngestor recovered = new BlockIngestor(params, index, journalDirectory);
+		assertEquals(genesis.getHash(), recovered.getTipHash());
+		assertTrue(balances(ALICE).isEmpty());
+		assertEquals(1, index.size());
+
+		recovered.connectBlock(issuanceBlock);
+		assertEquals(Long.valueOf(100), balances(ALICE).get(assetId));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	/**
+	 * Method to test that blocks older than the undo records kept cannot be disconnected
+	 */
+	public void reorgDepthTest() throws IOException {
+
+		BlockIngestor shallow = new BlockIngestor(params, index, journalDirectory, 1);
+		shallow.connectBlock(genesis);
+		shallow.connectBlock(issuanceBlock);
+		shallow.disconnectTip();
+		shallow.disconnectTip();
+	}
+
+	@Test
+	/**
+	 * Method to test that coloring a block on a pool gives the same changes as coloring it serially
+	 */
+	public void parallelColoringTest() throws IOException {
+
+		Transaction funding = coinbase(0, ISSUER);
+		for (int i = 1; i < 300; i++) {
+			funding.addOutput(new TransactionOutput(params, funding, Coin.COIN, i % 2 == 0 ? ISSUER : BOB));
+		}
+		ingestor.connectBlock(block(Sha256Hash.ZERO_HASH, 0, funding));
+
+		List<Transaction> transactions = new ArrayList<>();
+		transactions.add(coinbase(1, BOB));
+		Transaction previous = null;
+		for (int i = 0; i < 300; i++) {
+
+			Transaction issuing = spend(Arrays.asList(outPoint(funding, i)), ALICE, marker(i + 1));
+			transactions.add(issuing);
+			if (i % 3 == 0) {
+
+				// Chains of transfers, some of them merging two parents
+				Transaction transfer = spend(Arrays.asList(outPoint(issuing, 0)), marker(1, i), ALICE, BOB);
+				transactions.add(transfer);
+				if (previous != null) {
+					transactions.add(spend(Arrays.asList(outPoint(previous, 2), outPoint(transfer, 1)), marker(i + 1), BOB));
+				}
+				previous = transfer;
+			}
+		}
+		Block block = block(ingestor.getTipHash(), 1, transactions.toArray(new Transaction[0]));
+
+		Map<OutPoint, UtxoEntry> serialCreated = new LinkedHashMap<>();
+		Map<OutPoint, UtxoEntry> serialSpent = new LinkedHashMap<>();
+		new BlockIngestor(params, index, journalDirectory, 1, null).colorBlock(block, serialCreated, serialSpent);
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+
+			Map<OutPoint, UtxoEntry> created = new LinkedHashMap<>();
+			Map<OutPoint, UtxoEntry> spent = new LinkedHashMap<>();
+			new BlockIngestor(params, index, journalDirectory, 1, pool).colorBlock(block, created, spent);
+			assertEquals(new ArrayList<>(serialCreated.entrySet()), new ArrayList<>(created.entrySet()));
+			assertEquals(new ArrayList<>(serialSpent.entrySet()), new ArrayList<>(spent.entrySet()));
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		assertEquals(300, serialSpent.size());
+		ingestor.connectBlock(block);
+		assertEquals(serialCreated.size(), index.size());
+	}
+
+	private Map<AssetId, Long> balances(byte[] script) {
+
+		return index.getBalances(UtxoEntry.ownerHash(script));
+	}
+
+	private Block block(Sha256Hash prevHash, long nonce, Transaction... transactions) {
+
+		return new Block(params, 1, prevHash, Sha256Hash.ZERO_HASH, 1500000000L, 0x207fffffL, nonce, Arrays.asList(transactions));
+	}
+
+	private Transaction coinbase(int height, byte[] script) {
+
+		Transaction transaction = new Transaction(params);
+		transaction.addInput(new TransactionInput(params, transaction, new byte[] { (byte) height, 0 },
+				new TransactionOutPoint(params, 0xFFFFFFFFL, Sha256Hash.ZERO_HASH)));
+		transaction.addOutput(new TransactionOutput(params, transaction, Coin.COIN, script));
+		return transaction;
+	}
+
+	private Transaction spend(List<TransactionOutPoint> outPoints, byte[]... scripts) {
+
+		Transaction transaction = new Transaction(params);
+		for (TransactionOutPoint outPoint : outPoints) {
+			transaction.addInput(new TransactionInput(params, transaction, new byte[0], outPoint));
+		}
+		for (byte[] script : scripts) {
+			transaction.addOutput(new TransactionOutput(params, transaction, Coin.valueOf(600), script));
+		}
+		return transaction;
+	}
+
+	private TransactionOutPoint outPoint(Transaction transaction, long index) {
+
+		return new TransactionOutPoint(params, index, transaction.getHash());
+	}
+
+	private byte[] marker(long... quantities) {
+
+		ArrayList<Long> assetQuantities = new ArrayList<>();
+		for (long quantity : quantities) {
+			assetQuantities.add(quantity);
+		}
+		return new MarkerOutput(assetQuantities, "").buildScript().getProgram();
+	}
+}
@@ -0,0 +1,113 @@
+package com.chaintope.openassetsj.index;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.bitcoinj.core.Sha256Hash;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.chaintope.openassetsj.index.CoinSelector.Strategy;
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.OutPoint;
+
+/**
+ * Validates the logic written in CoinSelector
+ */
+public class CoinSelectorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final AssetId GOLD = AssetId.fromString("oMb2yzA542yQgwn8XtmGefTzBv5NJ2nDjh");
+	private static final AssetId SILVER = AssetId.fromString("oWLkUn44E45cnQtsP6x1wrvJ2iRx9XyFny");
+	private static final byte[] OWNER = UtxoEntry.ownerHash(new byte[] { 1 });
+
+	@Test
+	/**
+	 * Method to test the functionality of select() with every strategy
+	 */
+	public void selectTest() {
+
+		CoinSelector selector = new CoinSelector();
+		long[] quantities = { 5, 50, 20, 10, 40, 30 };
+		for (int i = 0; i < quantities.length; i++) {
+			selector.add(outPoint(i), new UtxoEntry(GOLD, quantities[i], 600, OWNER));
+		}
+		selector.add(outPoint(10), new UtxoEntry(SILVER, 7, 600, OWNER));
+		selector.add(outPoint(11), new UtxoEntry(null, 0, 20000, OWNER));
+		selector.add(outPoint(12), new UtxoEntry(null, 0, 5000, OWNER));
+
+		CoinSelection largest = selector.select(GOLD, 75, Strategy.LARGEST_FIRST);
+		assertEquals(Arrays.asList(outPoint(1), outPoint(4)), largest.getOutPoints());
+		assertEquals(90, largest.getTotal());
+		assertEquals(15, largest.getChange());
+
+		CoinSelection minimal = selector.select(GOLD, 75, Strategy.MINIMIZE_INPUTS);
+		assertEquals(Arrays.asList(outPoint(1), outPoint(5)), minimal.getOutPoints());
+		assertEquals(5, minimal.getChange());
+
+		CoinSelection exact = selector.select(GOLD, 20, Strategy.EXACT_MATCH);
+		assertEquals(Arrays.asList(outPoint(2)), exact.getOutPoints());
+		assertEquals(0, exact.getChange());
+		// Without an exact output, the smallest covering output is picked
+		assertEquals(Arrays.asList(outPoint(5)), selector.select(GOLD, 25, Strategy.EXACT_MATCH).getOutPoints());
+
+		assertEquals(6, selector.select(GOLD, 155, Strategy.MINIMIZE_INPUTS).getOutPoints().size());
+		assertNull(selector.select(GOLD, 156, Strategy.LARGEST_FIRST));
+		assertNull(selector.select(AssetId.of(GOLD.getVersion(), new byte[20]), 1, Strategy.LARGEST_FIRST));
+		assertEquals(Arrays.asList(outPoint(12)), selector.select(null, 1000, Strategy.MINIMIZE_INPUTS).getOutPoints());
+		assertEquals(7, selector.getSpendable(SILVER));
+		assertEquals(25000, selector.getSpendable(null));
+	}
+
+	@Test
+	/**
+	 * Method to test the functionality of add(), remove() and removeAll()
+	 */
+	public void updateTest() {
+
+		CoinSelector selector = new CoinSelector();
+		selector.add(outPoint(0), new UtxoEntry(GOLD, 10, 600, OWNER));
+		selector.add(outPoint(1), new UtxoEntry(GOLD, 20, 600, OWNER));
+		// Replaces the output at the same out point
+		selector.add(outPoint(1), new UtxoEntry(SILVER, 3, 600, OWNER));
+		assertEquals(10, selector.getSpendable(GOLD));
+		assertEquals(3, selector.getSpendable(SILVER));
+		assertEquals(2, selector.size());
+
+		selector.removeAll(selector.select(GOLD, 10, Strategy.EXACT_MATCH));
+		assertEquals(0, selector.getSpendable(GOLD));
+		assertNull(selector.select(GOLD, 1, Strategy.LARGEST_FIRST));
+		assertTrue(selector.remove(outPoint(1)));
+		assertFalse(selector.remove(outPoint(1)));
+		assertEquals(0, selector.size());
+	}
+
+	@Test
+	/**
+	 * Method to test the functionality of of() over the outputs of an owner in the index
+	 */
+	public void ofIndexTest() throws IOException {
+
+		try (ColoredUtxoIndex index = ColoredUtxoIndex.open(folder.getRoot().toPath())) {
+
+			index.put(outPoint(0), new UtxoEntry(GOLD, 10, 600, OWNER));
+			index.put(outPoint(1), new UtxoEntry(GOLD, 20, 600, UtxoEntry.ownerHash(new byte[] { 2 })));
+			index.put(outPoint(2), new UtxoEntry(null, 0, 1000, OWNER));
+
+			CoinSelector selector = CoinSelector.of(index, OWNER);
+			assertEquals(2, selector.size());
+			assertEquals(10, selector.getSpendable(GOLD));
+			assertEquals(1000, selector.getSpendable(null));
+		}
+	}
+
+	private static OutPoint outPoint(int tx) {
+
+		return new OutPoint(Sha256Hash.of(new byte[] { (byte) tx }), 0);
+	}
+}
@@ -0,0 +1,191 @@
+package com.chaintope.openassetsj.index;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.bitcoinj.core.Sha256Hash;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.OutPoint;
+
+/**
+ * Validates the logic written in ColoredUtxoIndex
+ */
+public class ColoredUtxoIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final AssetId GOLD = AssetId.fromString("oMb2yzA542yQgwn8XtmGefTzBv5NJ2nDjh");
+	private static final AssetId SILVER = AssetId.fromString("oWLkUn44E45cnQtsP6x1wrvJ2iRx9XyFny");
+
+	@Test
+	/**
+	 * Method to test the functionality of put(), get() and remove()
+	 */
+	public void putGetRemoveTest() throws IOException {
+
+		try (ColoredUtxoIndex index = ColoredUtxoIndex.open(folder.getRoot().toPath())) {
+
+			OutPoint outPoint = outPoint(1, 0);
+			UtxoEntry entry = new UtxoEntry(GOLD, 100, 600, owner(1));
+			assertNull(index.get(outPoint));
+
+			index.put(outPoint, entry);
+			index.put(outPoint(1, 1), new UtxoEntry(null, 0, 1000, owner(1)));
+			assertEquals(entry, index.get(outPoint));
+			assertFalse(index.get(outPoint(1, 1)).isColored());
+			assertEquals(2, index.size());
+
+			UtxoEntry replaced = new UtxoEntry(SILVER, 5, 600, owner(2));
+			index.put(outPoint, replaced);
+			assertEquals(replaced, index.get(outPoint));
+			assertEquals(2, index.size());
+
+			assertEquals(replaced, index.remove(outPoint));
+			assertNull(index.remove(outPoint));
+			assertFalse(index.contains(outPoint));
+			assertEquals(1, index.size());
+		}
+	}
+
+	@Test
+	/**
+	 * Method to test that entries survive growth, segment boundaries and reopening
+	 */
+	public void growAndReopenTest() throws IOException {
+
+		Path directory = folder.getRoot().toPath();
+		Map<OutPoint, UtxoEntry> expected = new HashMap<>();
+		Random random = new Random(3);
+
+		try (ColoredUtxoIndex index = ColoredUtxoIndex.open(directory, 10, 6)) {
+
+			for (int i = 0; i < 5000; i++) {
+
+				OutPoint outPoint = outPoint(i / 4, i % 4);
+				UtxoEntry entry = new UtxoEntry(random.nextBoolean() ? GOLD : null, random.nextInt(1000), i, owner(i % 7));
+				index.put(outPoint, entry);
+				expected.put(outPoint, entry);
+			}
+			// Spend every third output, leaving tombstones behind
+			for (int i = 0; i < 5000; i += 3) {
+
+				OutPoint outPoint = outPoint(i / 4, i % 4);
+				assertEquals(expected.remove(outPoint), index.remove(outPoint));
+			}
+			assertEquals(expected.size(), index.size());
+		}
+
+		try (ColoredUtxoIndex index = ColoredUtxoIndex.open(directory)) {
+
+			assertEquals(expected.size(), index.size());
+			Map<OutPoint, UtxoEntry> actual = new HashMap<>();
+			index.forEach(actual::put);
+			assertEquals(expected, actual);
+			assertEquals(1, index.getAssetIds().size());
+		}
+	}
+
+	@Test
+	/**
+	 * Method to test that the counters are recomputed when the index was not closed
+	 */
+	public void recoverTest() throws IOException {
+
+		Path directory = folder.getRoot().toPath();
+		ColoredUtxoIndex crashed = ColoredUtxoIndex.open(directory);
+		crashed.flush();
+		for (int i = 0; i < 10; i++) {
+			crashed.put(outPoint(i, 0), new UtxoEntry(GOLD, i + 1, 600, owner(1)));
+		}
+		crashed.remove(outPoint(0, 0));
+
+		try (ColoredUtxoIndex index = ColoredUtxoIndex.open(directory)) {
+
+			assertEquals(9, index.size());
+			assertEquals(Long.valueOf(54), index.getBalances(owner(1)).get(GOLD));
+		}
+	}
+
+	@Test
+	/**
+	 * Method to test the functionality of getBalances()
+	 */
+	public void getBalancesTest() throws IOException {
+
+		try (ColoredUtxoIndex index = ColoredUtxoIndex.open(folder.getRoot().toPath())) {
+
+			index.put(outPoint(1, 0), new UtxoEntry(GOLD, 100, 600, owner(1)));
+			index.put(outPoint(1, 1), new UtxoEntry(GOLD, Long.MAX_VALUE / 2, 600, owner(1)));
+			index.put(outPoint(2, 0), new UtxoEntry(SILVER, 7, 600, owner(1)));
+			index.put(outPoint(2, 1), new UtxoEntry(SILVER, 9, 600, owner(2)));
+			index.put(outPoint(3, 0), new UtxoEntry(null, 0, 600, owner(1)));
+
+			Map<AssetId, Long> balances = index.getBalances(owner(1));
+			assertEquals(2, balances.size());
+			assertEquals(Long.valueOf(100 + Long.MAX_VALUE / 2), balances.get(GOLD));
+			assertEquals(Long.valueOf(7), balances.get(SILVER));
+			assertTrue(index.getBalances(owner(3)).isEmpty());
+		}
+	}
+
+	@Test
+	/**
+	 * Method to test that balances follow put(), remove() and growth after the first balance query
+	 */
+	public void balanceUpdatesTest() throws IOException {
+
+		try (ColoredUtxoIndex index = ColoredUtxoIndex.open(folder.getRoot().toPath(), 10, 6)) {
+
+			index.put(outPoint(1, 0), new UtxoEntry(GOLD, 100, 600, owner(1)));
+			assertEquals(100, index.getBalance(owner(1), GOLD));
+			assertEquals(0, index.getBalance(owner(1), SILVER));
+
+			// Replacing an entry moves its quantity to the new owner
+			index.put(outPoint(1, 0), new UtxoEntry(GOLD, 30, 600, owner(2)));
+			index.put(outPoint(1, 1), new UtxoEntry(GOLD, 70, 600, owner(1)));
+			index.put(outPoint(1, 2), new UtxoEntry(SILVER, 5, 600, owner(1)));
+			assertEquals(70, index.getBalance(owner(1), GOLD));
+			assertEquals(30, index.getBalance(owner(2), GOLD));
+			assertEquals(100, index.getTotalBalance(GOLD));
+
+			index.remove(outPoint(1, 1));
+			assertEquals(1, index.getBalances(owner(1)).size());
+			assertEquals(5, index.getTotalBalance(SILVER));
+
+			// Enough entries to rebuild the table several times
+			for (int i = 2; i < 1000; i++) {
+				index.put(outPoint(i, 0), new UtxoEntry(SILVER, 1, 600, owner(i % 3)));
+			}
+			for (int i = 2; i < 1000; i += 2) {
+				index.remove(outPoint(i, 0));
+			}
+			assertEquals(5 + 499, index.getTotalBalance(SILVER));
+			long sum = 0;
+			for (int owner = 0; owner < 3; owner++) {
+				sum += index.getBalance(owner(owner), SILVER);
+			}
+			assertEquals(5 + 499, sum);
+			assertEquals(30, index.getBalances(owner(2)).get(GOLD).longValue());
+		}
+	}
+
+	private static OutPoint outPoint(int tx, int index) {
+
+		return new OutPoint(Sha256Hash.of(new byte[] { (byte) tx, (byte) (tx >> 8) }), index);
+	}
+
+	private static byte[] owner(int owner) {
+
+		return UtxoEntry.ownerHash(new byte[] { (byte) owner });
+	}
+}
@@ -0,0 +1,66 @@
+package com.chaintope.openassetsj.index;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.bitcoinj.core.Sha256Hash;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.OutPoint;
+
+/**
+ * Validates the logic written in OwnerCoinSelectors
+ */
+public class OwnerCoinSelectorsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final AssetId GOLD = AssetId.fromString("oMb2yzA542yQgwn8XtmGefTzBv5NJ2nDjh");
+	private static final byte[] OWNER = UtxoEntry.ownerHash(new byte[] { 1 });
+	private static final byte[] OTHER = UtxoEntry.ownerHash(new byte[] { 2 });
+
+	@Test
+	/**
+	 * Method to test that a selector is built once per owner and follows the puts and removes of the index
+	 */
+	public void followIndexTest() throws IOException {
+
+		try (ColoredUtxoIndex index = ColoredUtxoIndex.open(folder.getRoot().toPath())) {
+
+			OwnerCoinSelectors selectors = new OwnerCoinSelectors(index);
+			index.put(outPoint(0), new UtxoEntry(GOLD, 10, 600, OWNER));
+			index.put(outPoint(1), new UtxoEntry(GOLD, 20, 600, OTHER));
+
+			CoinSelector selector = selectors.get(OWNER);
+			assertSame(selector, selectors.get(OWNER.clone()));
+			assertEquals(1, selectors.size());
+			assertEquals(10, selector.getSpendable(GOLD));
+
+			index.put(outPoint(2), new UtxoEntry(GOLD, 5, 600, OWNER));
+			index.put(outPoint(3), new UtxoEntry(GOLD, 7, 600, OTHER));
+			assertEquals(15, selector.getSpendable(GOLD));
+
+			// An output moving to another owner leaves the selector
+			index.put(outPoint(0), new UtxoEntry(GOLD, 10, 600, OTHER));
+			assertEquals(5, selector.getSpendable(GOLD));
+			index.remove(outPoint(2));
+			assertEquals(0, selector.size());
+			assertEquals(37, selectors.get(OTHER).getSpendable(GOLD));
+
+			selectors.close();
+			index.put(outPoint(4), new UtxoEntry(GOLD, 1, 600, OWNER));
+			assertEquals(0, selector.size());
+			assertFalse(index.removeListener(selectors));
+		}
+	}
+
+	private static OutPoint outPoint(int tx) {
+
+		return new OutPoint(Sha256Hash.of(new byte[] { (byte) tx }), 0);
+	}
+}
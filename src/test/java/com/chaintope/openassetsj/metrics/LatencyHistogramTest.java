@@ -0,0 +1,47 @@
+package com.chaintope.openassetsj.metrics;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Validates the logic written in LatencyHistogram
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	/**
+	 * Method to test that every value falls into a bucket whose bounds hold it
+	 */
+	public void bucketTest() {
+
+		long[] values = { 0, 1, 31, 32, 33, 63, 64, 1000, 123456789, Long.MAX_VALUE };
+		for (long value : values) {
+
+			int bucket = LatencyHistogram.bucketOf(value);
+			assertTrue(value <= LatencyHistogram.upperBoundOf(bucket));
+			assertTrue(bucket == 0 || value > LatencyHistogram.upperBoundOf(bucket - 1));
+		}
+		assertEquals(LatencyHistogram.bucketOf(Long.MAX_VALUE), LatencyHistogram.bucketOf(Long.MAX_VALUE - 1));
+	}
+
+	@Test
+	/**
+	 * Method to test the functionality of getValueAtPercentile() within the bucket precision
+	 */
+	public void percentileTest() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getMedian());
+		for (long value = 1; value <= 10000; value++) {
+			histogram.record(value);
+		}
+		assertEquals(10000, histogram.getCount());
+		assertEquals(5000.5, histogram.getMean(), 1e-9);
+		assertEquals(10000, histogram.getMax());
+		assertEquals(5000, histogram.getMedian(), 5000 / 16);
+		assertEquals(9900, histogram.get99thPercentile(), 9900 / 16);
+		assertEquals(10000, histogram.getValueAtPercentile(100));
+		assertEquals(1, histogram.getValueAtPercentile(0));
+	}
+}
@@ -0,0 +1,111 @@
+package com.chaintope.openassetsj.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.bitcoinj.params.TestNet3Params;
+import org.junit.After;
+import org.junit.Test;
+
+import com.chaintope.openassetsj.protocol.MarkerOutput;
+import com.chaintope.openassetsj.protocol.MarkerOutputParser;
+import com.chaintope.openassetsj.utils.AssetID;
+import com.chaintope.openassetsj.utils.Utils;
+
+/**
+ * Validates the logic written in Metrics and JmxMetricsRegistry
+ */
+public class MetricsTest {
+
+	private MBeanServer server = MBeanServerFactory.newMBeanServer();
+
+	@After
+	public void tearDown() {
+		Metrics.disable();
+	}
+
+	@Test
+	/**
+	 * Method to test that instrumented operations are reported once a registry is enabled
+	 */
+	public void enableTest() throws Exception {
+
+		byte[] script = new MarkerOutput(new ArrayList<>(Arrays.asList(10L)), "").buildScript().getProgram();
+		// A marker whose only quantity is zero
+		byte[] invalid = { 0x6a, 0x06, 0x4f, 0x41, 0x01, 0x00, 0x01, 0x00 };
+		MarkerOutputParser parser = new MarkerOutputParser();
+		parser.parseScript(script, 0, script.length);
+
+		JmxMetricsRegistry registry = new JmxMetricsRegistry(server, "test");
+		Metrics.enable(registry);
+		assertTrue(Metrics.isEnabled());
+		assertTrue(parser.parseScript(script, 0, script.length));
+		assertTrue(parser.validateScript(script, 0, script.length));
+		assertFalse(parser.validateScript(invalid, 0, invalid.length));
+		assertFalse(parser.validateScript(new byte[] { 0x51 }, 0, 1));
+		new AssetID(TestNet3Params.get()).scriptToAssetID(script);
+		Utils.hash160(script);
+
+		assertEquals(1, registry.getHistogram("marker_output.parse").getCount());
+		assertEquals(3, registry.getHistogram("marker_output.validate").getCount());
+		assertEquals(1, registry.getCount("marker_output.rejected"));
+		assertEquals(1, registry.getHistogram("asset_id.derive").getCount());
+		// The asset ID derivation hashes the script with the reusable digests, not Utils.hash160()
+		assertEquals(1, registry.getHistogram("utils.hash160").getCount());
+		assertEquals(1L, server.getAttribute(new ObjectName("test:type=Histogram,name=marker_output.parse"), "Count"));
+		assertEquals(1L, server.getAttribute(new ObjectName("test:type=Counter,name=marker_output.rejected"), "Count"));
+
+		LatencyHistogram parseHistogram = registry.getHistogram("marker_output.parse");
+		Metrics.disable();
+		assertFalse(Metrics.isEnabled());
+		assertTrue(server.queryNames(new ObjectName("test:*"), null).isEmpty());
+		assertNull(registry.getHistogram("marker_output.parse"));
+		parser.parseScript(script, 0, script.length);
+		assertEquals(1, parseHistogram.getCount());
+
+		// Enabled again, the registry exports new beans
+		Metrics.enable(registry);
+		parser.parseScript(script, 0, script.length);
+		assertEquals(1, registry.getHistogram("marker_output.parse").getCount());
+		assertEquals(1L, server.getAttribute(new ObjectName("test:type=Histogram,name=marker_output.parse"), "Count"));
+		assertTrue(server.isRegistered(new ObjectName("test:type=Counter,name=marker_output.rejected")));
+	}
+
+	@Test
+	/**
+	 * Method to test that gauges are exported and read on every query
+	 */
+	public void gaugeTest() throws Exception {
+
+		long[] value = { 5 };
+		Metrics.gauge("test.gauge", () -> value[0]);
+		Metrics.enable(new JmxMetricsRegistry(server, "test"));
+		ObjectName name = new ObjectName("test:type=Gauge,name=test.gauge");
+		assertEquals(5L, server.getAttribute(name, "Value"));
+		value[0] = 7;
+		assertEquals(7L, server.getAttribute(name, "Value"));
+
+		Metrics.gauge("test.gauge", () -> 1);
+		assertEquals(1L, server.getAttribute(name, "Value"));
+	}
+
+	@Test
+	/**
+	 * Method to test that handles do nothing while metrics are disabled
+	 */
+	public void disabledTest() {
+
+		LatencyTimer timer = Metrics.timer("test.timer");
+		assertSame(timer, Metrics.timer("test.timer"));
+		assertEquals(0, timer.start());
+		timer.stop(0);
+		Metrics.counter("test.counter").increment();
+		assertNull(Metrics.getRegistry());
+	}
+}
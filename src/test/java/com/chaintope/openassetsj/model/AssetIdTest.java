@@ -0,0 +1,78 @@
+package com.chaintope.openassetsj.model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.chaintope.openassetsj.utils.Utils;
+
+/**
+ * Validates the logic written in AssetId and AssetIdPool
+ */
+public class AssetIdTest {
+
+	private static final String ASSET_ID = "oMb2yzA542yQgwn8XtmGefTzBv5NJ2nDjh";
+
+	@Test
+	/**
+	 * Method to test the functionality of of() and toString()
+	 */
+	public void ofTest() {
+
+		AssetId assetId = AssetId.of(115, Utils.packHexStringToBytes("3bb1a4b7ae15e2b0f1b9c93e8b4b9ff8e4d0d0e2"));
+		AssetId parsed = AssetId.fromString(assetId.toString());
+		assertEquals(assetId, parsed);
+		assertEquals(assetId.hashCode(), parsed.hashCode());
+		assertEquals(115, parsed.getVersion());
+		assertEquals("3bb1a4b7ae15e2b0f1b9c93e8b4b9ff8e4d0d0e2", Utils.packByteArrayToString(parsed.getHash160()));
+	}
+
+	@Test
+	/**
+	 * Method to test the functionality of fromString() and fromBytes()
+	 */
+	public void fromStringTest() {
+
+		AssetId assetId = AssetId.fromString(ASSET_ID);
+		assertEquals(ASSET_ID, assetId.toString());
+
+		byte[] buffer = new byte[AssetId.LENGTH + 3];
+		assetId.copyTo(buffer, 3);
+		AssetId copy = AssetId.fromBytes(buffer, 3);
+		assertEquals(assetId, copy);
+		assertEquals(0, assetId.compareTo(copy));
+		assertEquals(ASSET_ID, copy.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	/**
+	 * Method to test that of() rejects hashes of the wrong length
+	 */
+	public void ofWrongLengthTest() {
+
+		AssetId.of(23, new byte[19]);
+	}
+
+	@Test
+	/**
+	 * Method to test the functionality of AssetIdPool
+	 */
+	public void poolTest() {
+
+		AssetIdPool pool = new AssetIdPool();
+		AssetId first = AssetId.fromString(ASSET_ID);
+		assertEquals(-1, pool.ordinalOf(first));
+
+		for (int i = 0; i < 100; i++) {
+
+			byte[] hash160 = new byte[20];
+			hash160[19] = (byte) i;
+			assertEquals(i, pool.intern(AssetId.of(23, hash160)));
+		}
+		assertEquals(100, pool.intern(first));
+		assertEquals(100, pool.intern(AssetId.fromString(ASSET_ID)));
+		assertSame(first, pool.canonical(AssetId.fromString(ASSET_ID)));
+		assertEquals(101, pool.size());
+		assertEquals(7, pool.get(7).getHash160()[19]);
+	}
+}
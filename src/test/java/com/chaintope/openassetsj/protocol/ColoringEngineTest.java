@@ -0,0 +1,180 @@
+package com.chaintope.openassetsj.protocol;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.core.TransactionOutPoint;
+import org.bitcoinj.core.TransactionOutput;
+import org.bitcoinj.params.TestNet3Params;
+import org.junit.Test;
+
+import com.chaintope.openassetsj.model.AssetId;
+import com.chaintope.openassetsj.model.ColoredOutput;
+import com.chaintope.openassetsj.model.OutputType;
+import com.chaintope.openassetsj.utils.AssetID;
+import com.chaintope.openassetsj.utils.Utils;
+
+/**
+ * Validates the logic written in ColoringEngine
+ */
+public class ColoringEngineTest {
+
+	private static final byte[] ISSUER_SCRIPT = Utils.packHexStringToBytes("76a914081522820f2ccef873e47ee62b31cb9e9267e72588ac");
+	private static final byte[] OTHER_SCRIPT = Utils.packHexStringToBytes("a914f9d499817e88ef7b10a88673296c6d6df2f4292d87");
+
+	private NetworkParameters params = TestNet3Params.get();
+	private Map<Sha256Hash, Transaction> transactions = new HashMap<>();
+	private int fetchCount;
+	private ColoringEngine engine = new ColoringEngine(params, txHash -> {
+		fetchCount++;
+		return transactions.get(txHash);
+	});
+	private int fundingCount;
+
+	@Test
+	/**
+	 * Method to test the functionality of colorTransaction() for issuance and transfer
+	 */
+	public void issuanceAndTransferTest() {
+
+		Transaction funding = funding(ISSUER_SCRIPT, OTHER_SCRIPT);
+		Transaction issuance = spend(Arrays.asList(outPoint(funding, 0)), ISSUER_SCRIPT, marker(10), OTHER_SCRIPT);
+		Transaction transfer = spend(Arrays.asList(outPoint(issuance, 0), outPoint(funding, 1)),
+				marker(6, 4), OTHER_SCRIPT, ISSUER_SCRIPT, OTHER_SCRIPT);
+
+		AssetId assetId = new AssetID(params).toAssetId(ISSUER_SCRIPT);
+		List<ColoredOutput> issued = engine.colorTransaction(issuance);
+		assertColored(issued.get(0), assetId, 10, OutputType.ISSUANCE);
+		assertColored(issued.get(1), null, 0, OutputType.MARKER_OUTPUT);
+		assertColored(issued.get(2), null, 0, OutputType.TRANSFER);
+
+		List<ColoredOutput> transferred = engine.colorTransaction(transfer);
+		assertColored(transferred.get(0), null, 0, OutputType.MARKER_OUTPUT);
+		assertColored(transferred.get(1), assetId, 6, OutputType.TRANSFER);
+		assertColored(transferred.get(2), assetId, 4, OutputType.TRANSFER);
+		assertColored(transferred.get(3), null, 0, OutputType.TRANSFER);
+		assertArrayEquals(ISSUER_SCRIPT, transferred.get(2).getScript());
+
+		assertColored(engine.getOutput(transfer.getHash(), 1), assetId, 6, OutputType.TRANSFER);
+		assertColored(engine.getOutput(funding.getHash(), 0), null, 0, OutputType.UNCOLORED);
+	}
+
+	@Test
+	/**
+	 * Method to test that transactions with invalid asset quantities are uncolored
+	 */
+	public void invalidTransferTest() {
+
+		Transaction funding = funding(ISSUER_SCRIPT, OTHER_SCRIPT);
+		Transaction issuance = spend(Arrays.asList(outPoint(funding, 0)), ISSUER_SCRIPT, marker(10), OTHER_SCRIPT);
+		Transaction otherIssuance = spend(Arrays.asList(outPoint(funding, 1)), OTHER_SCRIPT, marker(5));
+
+		// More units than the inputs hold
+		Transaction overspend = spend(Arrays.asList(outPoint(issuance, 0)), marker(11), OTHER_SCRIPT);
+		// One output receiving two different assets
+		Transaction mixed = spend(Arrays.asList(outPoint(issuance, 0), outPoint(otherIssuance, 0)), marker(12), OTHER_SCRIPT);
+		// More asset quantities than outputs
+		Transaction extraQuantities = spend(Arrays.asList(outPoint(issuance, 0)), marker(5, 5), OTHER_SCRIPT);
+
+		for (Transaction transaction : Arrays.asList(overspend, mixed, extraQuantities)) {
+			for (ColoredOutput output : engine.colorTransaction(transaction)) {
+				assertColored(output, null, 0, OutputType.UNCOLORED);
+			}
+		}
+	}
+
+	@Test
+	/**
+	 * Method to test that a long chain is colored without recursion and fetched only once
+	 */
+	public void longChainTest() {
+
+		Transaction funding = funding(ISSUER_SCRIPT);
+		Transaction previous = spend(Arrays.asList(outPoint(funding, 0)), ISSUER_SCRIPT, marker(100));
+		for (int i = 0; i < 20000; i++) {
+			previous = spend(Arrays.asList(outPoint(previous, i == 0 ? 0 : 1)), marker(100), OTHER_SCRIPT);
+		}
+
+		ColoredOutput output = engine.getOutput(previous.getHash(), 1);
+		assertEquals(100, output.getAssetQuantity());
+		assertEquals(transactions.size(), fetchCount);
+
+		engine.getOutput(previous.getHash(), 1);
+		assertEquals(transactions.size(), fetchCount);
+		assertTrue(engine.getStatistics().getHitCount() > 0);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	/**
+	 * Method to test that an input spending an unknown transaction is reported
+	 */
+	public void unknownTransactionTest() {
+
+		Transaction transaction = new Transaction(params);
+		transaction.addInput(new TransactionInput(params, transaction, new byte[0],
+				new TransactionOutPoint(params, 0, Sha256Hash.of(new byte[] { 1 }))));
+		addOutput(transaction, marker(1));
+		engine.colorTransaction(transaction);
+	}
+
+	private void assertColored(ColoredOutput output, AssetId assetId, long assetQuantity, OutputType outputType) {
+
+		assertEquals(assetId, output.getAssetId());
+		assertEquals(assetQuantity, output.getAssetQuantity());
+		assertEquals(outputType, output.getOutputType());
+	}
+
+	private Transaction funding(byte[]... scripts) {
+
+		Transaction transaction = new Transaction(params);
+		transaction.addInput(new TransactionInput(params, transaction, new byte[] { (byte) fundingCount++, 0 },
+				new TransactionOutPoint(params, 0xFFFFFFFFL, Sha256Hash.ZERO_HASH)));
+		for (byte[] script : scripts) {
+			addOutput(transaction, script);
+		}
+		transactions.put(transaction.getHash(), transaction);
+		return transaction;
+	}
+
+	private Transaction spend(List<TransactionOutPoint> outPoints, byte[]... scripts) {
+
+		Transaction transaction = new Transaction(params);
+		for (TransactionOutPoint outPoint : outPoints) {
+			transaction.addInput(new TransactionInput(params, transaction, new byte[0], outPoint));
+		}
+		for (byte[] script : scripts) {
+			addOutput(transaction, script);
+		}
+		transactions.put(transaction.getHash(), transaction);
+		return transaction;
+	}
+
+	private void addOutput(Transaction transaction, byte[] script) {
+
+		transaction.addOutput(new TransactionOutput(params, transaction, Coin.valueOf(600), script));
+	}
+
+	private TransactionOutPoint outPoint(Transaction transaction, long index) {
+
+		return new TransactionOutPoint(params, index, transaction.getHash());
+	}
+
+	private byte[] marker(long... quantities) {
+
+		ArrayList<Long> assetQuantities = new ArrayList<>();
+		for (long quantity : quantities) {
+			assetQuantities.add(quantity);
+		}
+		return new MarkerOutput(assetQuantities, "").buildScript().getProgram();
+	}
+}
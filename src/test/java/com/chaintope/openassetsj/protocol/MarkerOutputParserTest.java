@@ -0,0 +1,76 @@
+package com.chaintope.openassetsj.protocol;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.chaintope.openassetsj.protocol.MarkerOutputParser.Rejection;
+import com.chaintope.openassetsj.utils.Utils;
+
+/**
+ * Validates the logic written in MarkerOutputParser
+ */
+public class MarkerOutputParserTest {
+
+	private MarkerOutputParser parser = new MarkerOutputParser();
+
+	/**
+	 * Method to test the functionality of parseScript()
+	 */
+	@Test
+	public void parseScriptTest() {
+
+		byte[] script = Utils.packHexStringToBytes("6a234f41010001904e1b753d68747470733a2f2f6370722e736d2f35596753553150672d71");
+		assertTrue(parser.parseScript(script, 0, script.length));
+		assertNull(parser.getRejection());
+		assertEquals(2, parser.getPayloadOffset());
+		assertEquals(35, parser.getPayloadLength());
+		assertEquals(Collections.singletonList(10000L), parser.getMarkerOutput().getAssetQuantities());
+		assertEquals("u=https://cpr.sm/5YgSU1Pg-q", parser.getMarkerOutput().getMetadata());
+
+		assertTrue(parser.validateScript(script, 0, script.length));
+		assertNull(parser.getMarkerOutput());
+	}
+
+	/**
+	 * Method to test the rejection reasons reported by parseScript()
+	 */
+	@Test
+	public void rejectionTest() {
+
+		assertRejected("76a914", Rejection.NOT_OP_RETURN);
+		assertRejected("6a", Rejection.NO_DATA_PUSH);
+		assertRejected("6a05deadbeef", Rejection.NO_DATA_PUSH);
+		assertRejected("6a04deadbeef", Rejection.NO_MARKER);
+		assertRejected("6a044f410100", Rejection.TRUNCATED_QUANTITY_COUNT);
+		assertRejected("6a064f4101000000", Rejection.EMPTY_QUANTITY_LIST);
+		assertRejected("6a064f4101000280", Rejection.TRUNCATED_QUANTITY);
+		assertRejected("6a0f4f41010001ffffffffffffffffff0100", Rejection.QUANTITY_TOO_LONG);
+		assertRejected("6a074f410100010000", Rejection.ZERO_QUANTITY);
+		assertRejected("6a064f4101000101", Rejection.TRUNCATED_METADATA_LENGTH);
+		assertRejected("6a224f41010001ee05753d68747470733a2f2f6370722e736d2f6d694c5a50484779782d", Rejection.TRUNCATED_METADATA);
+	}
+
+	/**
+	 * Method to test that a large quantity list is parsed in one pass
+	 */
+	@Test
+	public void largeQuantityListTest() {
+
+		ArrayList<Long> assetQuantities = new ArrayList<>(Collections.nCopies(100000, 300L));
+		byte[] script = new MarkerOutput(assetQuantities, "").buildScript().getProgram();
+		assertTrue(parser.parseScript(script, 0, script.length));
+		assertEquals(assetQuantities, parser.getMarkerOutput().getAssetQuantities());
+	}
+
+	private void assertRejected(String scriptHex, Rejection expected) {
+
+		byte[] script = Utils.packHexStringToBytes(scriptHex);
+		assertFalse(parser.parseScript(script, 0, script.length));
+		assertEquals(expected, parser.getRejection());
+		assertNull(parser.getMarkerOutput());
+	}
+}
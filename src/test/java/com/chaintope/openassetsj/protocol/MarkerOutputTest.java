@@ -4,7 +4,9 @@ import static org.junit.Assert.*;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import org.bitcoinj.script.Script;
 import org.junit.Test;
@@ -142,7 +144,46 @@ public class MarkerOutputTest {
 		String invalidVarInt = markerOutput.parseScript(Utils.packHexStringToBytes("6a224f41010001ee05753d68747470733a2f2f6370722e736d2f6d694c5a50484779782d"));
 		assertEquals("", invalidVarInt);
 	}
-	
+
+	/**
+	 * Method to test the functionality of encodeTo() and decode()
+	 */
+	@Test
+	public void encodeToDecodeTest() {
+
+		assetQuantities.add(10000L);
+		assetQuantities.add(5000000000L);
+		metadata = "u=https://cpr.sm/5YgSU1Pg-q";
+		markerOutput = new MarkerOutput(assetQuantities, metadata);
+
+		ByteBuffer buffer = ByteBuffer.allocate(markerOutput.scriptLength() + 3);
+		buffer.put(new byte[] { 1, 2, 3 });
+		markerOutput.encodeTo(buffer);
+		assertFalse(buffer.hasRemaining());
+		assertArrayEquals(markerOutput.buildScript().getProgram(),
+				Arrays.copyOfRange(buffer.array(), 3, buffer.capacity()));
+
+		MarkerOutput decoded = MarkerOutput.decode(buffer.array(), 3, markerOutput.scriptLength());
+		assertEquals(assetQuantities, decoded.getAssetQuantities());
+		assertEquals(metadata, decoded.getMetadata());
+
+		reset();
+
+		assetQuantities.addAll(Collections.nCopies(300, 4L));
+		metadata = "\u8cc7\u7523";
+		markerOutput = new MarkerOutput(assetQuantities, metadata);
+		byte[] script = markerOutput.buildScript().getProgram();
+		decoded = MarkerOutput.decode(script, 0, script.length);
+		assertEquals(300, decoded.getAssetQuantities().size());
+		assertEquals(metadata, decoded.getMetadata());
+
+		reset();
+
+		assertNull(MarkerOutput.decode(Utils.packHexStringToBytes("6a04deadbeef"), 0, 6));
+		assertNull(MarkerOutput.decode(Utils.packHexStringToBytes("084f41010002014400"), 0, 9));
+		assertNull(MarkerOutput.decode(Utils.packHexStringToBytes("6a094f41010002014400"), 0, 10));
+	}
+
 	/**
 	 * Resets the class members for re-use
 	 */
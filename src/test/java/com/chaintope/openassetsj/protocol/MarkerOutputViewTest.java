@@ -0,0 +1,130 @@
+package com.chaintope.openassetsj.protocol;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.chaintope.openassetsj.protocol.MarkerOutputParser.Rejection;
+import com.chaintope.openassetsj.utils.Utils;
+
+/**
+ * Validates the logic written in MarkerOutputView
+ */
+public class MarkerOutputViewTest {
+
+	private MarkerOutputView view = new MarkerOutputView();
+
+	@Test
+	/**
+	 * Method to test the functionality of resetScript() on a marker output with metadata
+	 */
+	public void resetScriptTest() {
+
+		byte[] script = Utils.packHexStringToBytes("6a234f41010001904e1b753d68747470733a2f2f6370722e736d2f35596753553150672d71");
+		assertTrue(view.resetScript(script, 0, script.length));
+		assertTrue(view.isValid());
+		assertNull(view.getRejection());
+		assertEquals(2, view.getPayloadOffset());
+		assertEquals(35, view.getPayloadLength());
+		assertEquals(1, view.quantityCount());
+		assertEquals(10000, view.quantity(0));
+
+		ByteBuffer metadata = view.metadataBytes();
+		assertTrue(metadata.isReadOnly());
+		byte[] bytes = new byte[metadata.remaining()];
+		metadata.get(bytes);
+		assertEquals("u=https://cpr.sm/5YgSU1Pg-q", new String(bytes, StandardCharsets.UTF_8));
+		assertEquals(script.length - bytes.length, view.getMetadataOffset());
+
+		MarkerOutput markerOutput = view.toMarkerOutput();
+		assertEquals(Collections.singletonList(10000L), markerOutput.getAssetQuantities());
+		assertEquals("u=https://cpr.sm/5YgSU1Pg-q", markerOutput.getMetadata());
+	}
+
+	@Test
+	/**
+	 * Method to test that a view reset onto other buffers and regions reports only the last one
+	 */
+	public void reuseTest() {
+
+		ArrayList<Long> assetQuantities = new ArrayList<>(Arrays.asList(1L, 300L, Long.MAX_VALUE >>> 1, 7L));
+		byte[] script = new MarkerOutput(assetQuantities, "").buildScript().getProgram();
+		// The same script embedded in a larger buffer
+		byte[] buffer = new byte[script.length + 8];
+		System.arraycopy(script, 0, buffer, 5, script.length);
+
+		assertTrue(view.resetScript(buffer, 5, script.length));
+		assertEquals(assetQuantities.size(), view.quantityCount());
+		for (int i = 0; i < assetQuantities.size(); i++) {
+			assertEquals((long) assetQuantities.get(i), view.quantity(i));
+		}
+		assertEquals(0, view.getMetadataLength());
+		assertEquals(0, view.metadataBytes().remaining());
+
+		assertFalse(view.resetScript(new byte[] { 0x51 }, 0, 1));
+		assertFalse(view.isValid());
+		assertEquals(0, view.quantityCount());
+		assertNull(view.metadataBytes());
+		assertNull(view.toMarkerOutput());
+
+		byte[] payload = Arrays.copyOfRange(script, 2, script.length);
+		assertTrue(view.resetPayload(payload, 0, payload.length));
+		assertEquals(assetQuantities, view.toMarkerOutput().getAssetQuantities());
+
+		ArrayList<Long> single = new ArrayList<>(Collections.singletonList(42L));
+		script = new MarkerOutput(single, "").buildScript().getProgram();
+		assertTrue(view.resetScript(script, 0, script.length));
+		assertEquals(1, view.quantityCount());
+		assertEquals(42, view.quantity(0));
+	}
+
+	@Test
+	/**
+	 * Method to test that the view rejects what MarkerOutputParser rejects, for the same reason
+	 */
+	public void rejectionTest() {
+
+		assertRejected("76a914", Rejection.NOT_OP_RETURN);
+		assertRejected("6a", Rejection.NO_DATA_PUSH);
+		assertRejected("6a05deadbeef", Rejection.NO_DATA_PUSH);
+		assertRejected("6a04deadbeef", Rejection.NO_MARKER);
+		assertRejected("6a044f410100", Rejection.TRUNCATED_QUANTITY_COUNT);
+		assertRejected("6a064f4101000000", Rejection.EMPTY_QUANTITY_LIST);
+		assertRejected("6a064f4101000280", Rejection.TRUNCATED_QUANTITY);
+		assertRejected("6a0f4f41010001ffffffffffffffffff0100", Rejection.QUANTITY_TOO_LONG);
+		assertRejected("6a0f4f4101000201ffffffffffffffffff", Rejection.TRUNCATED_QUANTITY);
+		assertRejected("6a0d4f41010001ffffffffffffffffff", Rejection.TRUNCATED_QUANTITY);
+		assertRejected("6a074f410100010000", Rejection.ZERO_QUANTITY);
+		assertRejected("6a084f41010001808000", Rejection.ZERO_QUANTITY);
+		assertRejected("6a064f4101000101", Rejection.TRUNCATED_METADATA_LENGTH);
+		assertRejected("6a224f41010001ee05753d68747470733a2f2f6370722e736d2f6d694c5a50484779782d", Rejection.TRUNCATED_METADATA);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	/**
+	 * Method to test that quantity() checks the index
+	 */
+	public void quantityIndexTest() {
+
+		byte[] script = new MarkerOutput(new ArrayList<>(Arrays.asList(5L, 6L)), "").buildScript().getProgram();
+		assertTrue(view.resetScript(script, 0, script.length));
+		view.quantity(2);
+	}
+
+	private void assertRejected(String scriptHex, Rejection expected) {
+
+		byte[] script = Utils.packHexStringToBytes(scriptHex);
+		MarkerOutputParser parser = new MarkerOutputParser();
+		assertFalse(parser.validateScript(script, 0, script.length));
+		assertEquals(expected, parser.getRejection());
+		assertFalse(view.resetScript(script, 0, script.length));
+		assertEquals(expected, view.getRejection());
+		assertEquals(0, view.quantityCount());
+	}
+}
@@ -2,12 +2,19 @@ package com.chaintope.openassetsj.protocol;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.bitcoinj.core.Address;
+import org.bitcoinj.core.AddressFormatException;
+import org.bitcoinj.core.ECKey;
 import org.bitcoinj.core.NetworkParameters;
 import org.bitcoinj.params.MainNetParams;
 import org.bitcoinj.params.TestNet3Params;
 import org.junit.Test;
 
+import com.chaintope.openassetsj.utils.CacheStatistics;
+
 public class OaAddressTest {
 	
 	private NetworkParameters params = TestNet3Params.get();
@@ -60,4 +67,106 @@ public class OaAddressTest {
 		String actualBitcoinAddress = openAssetAddress.oaAddressToAddress(oaAddress).toBase58();
 		assertEquals(expectedBitcoinAddress, actualBitcoinAddress);
 	}
+
+	@Test
+	/**
+	 * Method to test the functionality of generateOaAddress() for compressed keys
+	 */
+	public void generateOaAddressTest() {
+
+		ECKey key = new ECKey();
+		String expected = openAssetAddress.addressToOaAddress(key.decompress().toAddress(params));
+		assertEquals(expected, openAssetAddress.generateOaAddress(key));
+		assertEquals(expected, openAssetAddress.generateOaAddress(key.decompress()));
+	}
+
+	@Test
+	/**
+	 * Method to test the functionality of toOaAddresses() and toAddresses()
+	 */
+	public void bulkConversionTest() {
+
+		List<Address> addresses = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			byte[] hash160 = new byte[20];
+			hash160[0] = (byte) i;
+			hash160[1] = (byte) (i >> 8);
+			addresses.add(new Address(params, hash160));
+		}
+
+		List<String> oaAddresses = openAssetAddress.toOaAddresses(addresses);
+		assertEquals(addresses.size(), oaAddresses.size());
+		for (int i = 0; i < addresses.size(); i++) {
+			assertEquals(openAssetAddress.addressToOaAddress(addresses.get(i)), oaAddresses.get(i));
+		}
+		assertEquals(addresses, openAssetAddress.toAddresses(oaAddresses));
+	}
+
+	@Test
+	/**
+	 * Method to test that cached conversions match derived ones in both directions
+	 */
+	public void cachedConversionTest() {
+
+		OaAddressCache cache = OaAddressCache.withMaximumSize(params, 10);
+		OaAddress cached = new OaAddress(params, cache);
+		Address address = Address.fromBase58(params, "mo949sdMme4nk1QeNva37yTfiXLS1LYh9N");
+
+		assertEquals("bWy6wQ3ShF7xUcFa1RYgDmqNF48Wc23wCPq", cached.addressToOaAddress(address));
+		assertEquals(address, cached.oaAddressToAddress("bWy6wQ3ShF7xUcFa1RYgDmqNF48Wc23wCPq"));
+		assertEquals("bWy6wQ3ShF7xUcFa1RYgDmqNF48Wc23wCPq", cached.addressToOaAddress(address));
+
+		CacheStatistics statistics = cache.getStatistics();
+		assertEquals(2, statistics.getHitCount());
+		assertEquals(1, statistics.getMissCount());
+		assertEquals(2, statistics.getSize());
+
+		try {
+			cached.oaAddressToAddress("bWy6wQ3ShF7xUcFa1RYgDmqNF48Wc23wCPr");
+			fail("Malformed OA address was converted");
+		} catch (AddressFormatException e) {
+			// expected
+		}
+	}
+
+	@Test
+	/**
+	 * Method to test that decoding a P2SH OA address does not cache its P2PKH decoding as mapped back to it
+	 */
+	public void cachedP2shConversionTest() {
+
+		OaAddress cached = new OaAddress(params, OaAddressCache.withMaximumSize(params, 10));
+		OaAddress uncached = new OaAddress(params);
+		Address p2pkh = Address.fromBase58(params, "mo949sdMme4nk1QeNva37yTfiXLS1LYh9N");
+		String p2shOaAddress = uncached.addressToOaAddress(Address.fromP2SHHash(params, p2pkh.getHash160()));
+
+		assertEquals(p2pkh, cached.oaAddressToAddress(p2shOaAddress));
+		assertEquals("bWy6wQ3ShF7xUcFa1RYgDmqNF48Wc23wCPq", cached.addressToOaAddress(p2pkh));
+	}
+
+	@Test
+	/**
+	 * Method to test that converting a P2SH address does not change what its OA address decodes to
+	 */
+	public void cachedP2shReverseTest() {
+
+		OaAddress cached = new OaAddress(params, OaAddressCache.withMaximumSize(params, 10));
+		OaAddress uncached = new OaAddress(params);
+		Address p2pkh = Address.fromBase58(params, "mo949sdMme4nk1QeNva37yTfiXLS1LYh9N");
+		Address p2sh = Address.fromP2SHHash(params, p2pkh.getHash160());
+
+		String oaAddress = cached.addressToOaAddress(p2sh);
+		assertEquals(uncached.addressToOaAddress(p2sh), oaAddress);
+		assertEquals(uncached.oaAddressToAddress(oaAddress), cached.oaAddressToAddress(oaAddress));
+		assertEquals(p2pkh, cached.oaAddressToAddress(oaAddress));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	/**
+	 * Method to test that a cache of another network is rejected
+	 */
+	public void cacheNetworkTest() {
+
+		new OaAddress(params, OaAddressCache.withMaximumSize(MainNetParams.get(), 10));
+	}
 }
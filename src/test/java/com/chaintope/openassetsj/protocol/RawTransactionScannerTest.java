@@ -0,0 +1,131 @@
+package com.chaintope.openassetsj.protocol;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.ProtocolException;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.core.TransactionOutPoint;
+import org.bitcoinj.core.TransactionOutput;
+import org.bitcoinj.params.TestNet3Params;
+import org.junit.Test;
+
+/**
+ * Validates the logic written in RawTransactionScanner
+ */
+public class RawTransactionScannerTest {
+
+	private static final byte[] OWNER = { 0x51 };
+	// OP_RETURN pushing data without the marker prefix
+	private static final byte[] OTHER_OP_RETURN = { 0x6a, 0x04, 0x01, 0x02, 0x03, 0x04 };
+	// OP_RETURN whose push runs past the end of the script
+	private static final byte[] CUT_MARKER = { 0x6a, 0x10, 0x4f, 0x41, 0x01, 0x00 };
+	// Marker prefix followed by a zero quantity, rejected by MarkerOutputParser
+	private static final byte[] ZERO_MARKER = { 0x6a, 0x07, 0x4f, 0x41, 0x01, 0x00, 0x01, 0x00, 0x00 };
+
+	private NetworkParameters params = TestNet3Params.get();
+	private RawTransactionScanner scanner = new RawTransactionScanner();
+
+	@Test
+	/**
+	 * Method to test the functionality of scan() on transactions with and without marker output
+	 */
+	public void scanTest() {
+
+		MarkerOutput marker = new MarkerOutput(new ArrayList<>(Arrays.asList(100L, 50L)), "u=https://cpr.sm/5YgSU1Pg-q");
+		byte[] transfer = transaction(OWNER, OTHER_OP_RETURN, CUT_MARKER, ZERO_MARKER, marker.buildScript().getProgram(), OWNER).bitcoinSerialize();
+		assertTrue(scanner.scan(transfer));
+		assertTrue(scanner.isOpenAssetsTransaction());
+		// The malformed markers before it are skipped, as ColoringEngine does
+		assertEquals(4, scanner.getMarkerOutputIndex());
+		assertEquals(6, scanner.getOutputCount());
+		assertEquals(2, scanner.getInputCount());
+		assertEquals(transfer.length, scanner.getTransactionLength());
+		assertEquals(-1, scanner.getWitnessOffset());
+		assertEquals(ByteBuffer.wrap(marker.toPayloadBytes()), scanner.getPayload());
+		assertEquals(marker.getAssetQuantities(),
+				MarkerOutput.decodePayload(transfer, scanner.getPayloadOffset(), scanner.getPayloadLength()).getAssetQuantities());
+
+		byte[] plain = transaction(OWNER, OTHER_OP_RETURN, CUT_MARKER, ZERO_MARKER).bitcoinSerialize();
+		assertFalse(scanner.scan(plain));
+		assertEquals(-1, scanner.getMarkerOutputIndex());
+		assertEquals(-1, scanner.getPayloadOffset());
+		assertNull(scanner.getPayload());
+	}
+
+	@Test
+	/**
+	 * Method to test scan() on a segwit transaction followed by other data
+	 */
+	public void segwitTest() {
+
+		MarkerOutput marker = new MarkerOutput(new ArrayList<>(Arrays.asList(7L)), "");
+		Transaction transaction = transaction(marker.buildScript().getProgram(), OWNER);
+		byte[] segwit = segwit(transaction);
+		byte[] padded = new byte[segwit.length + 20];
+		System.arraycopy(segwit, 0, padded, 10, segwit.length);
+
+		assertTrue(scanner.scan(padded, 10, padded.length - 10));
+		assertEquals(0, scanner.getMarkerOutputIndex());
+		assertEquals(segwit.length, scanner.getTransactionLength());
+		assertEquals(10 + transaction.bitcoinSerialize().length - 4 + 2, scanner.getWitnessOffset());
+		assertEquals(ByteBuffer.wrap(marker.toPayloadBytes()), scanner.getPayload());
+
+		// Without an accessible array the script is validated from a copy
+		assertTrue(scanner.scan(ByteBuffer.wrap(padded).asReadOnlyBuffer(), 10, padded.length - 10));
+		assertEquals(0, scanner.getMarkerOutputIndex());
+		assertEquals(ByteBuffer.wrap(marker.toPayloadBytes()), scanner.getPayload());
+	}
+
+	@Test(expected = ProtocolException.class)
+	/**
+	 * Method to test that a transaction cut off before its lock time is rejected
+	 */
+	public void truncatedTest() {
+
+		byte[] transaction = transaction(OWNER).bitcoinSerialize();
+		scanner.scan(transaction, 0, transaction.length - 1);
+	}
+
+	private Transaction transaction(byte[]... scripts) {
+
+		Transaction transaction = new Transaction(params);
+		for (int i = 0; i < 2; i++) {
+			transaction.addInput(new TransactionInput(params, transaction, new byte[] { 1, 2, 3 },
+					new TransactionOutPoint(params, i, Sha256Hash.ZERO_HASH)));
+		}
+		for (byte[] script : scripts) {
+			transaction.addOutput(new TransactionOutput(params, transaction, Coin.valueOf(600), script));
+		}
+		return transaction;
+	}
+
+	/**
+	 * Serializes the transaction with the segwit flag and one witness item per input
+	 */
+	private static byte[] segwit(Transaction transaction) {
+
+		byte[] legacy = transaction.bitcoinSerialize();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(legacy, 0, 4);
+		out.write(0);
+		out.write(1);
+		out.write(legacy, 4, legacy.length - 8);
+		for (int i = 0; i < transaction.getInputs().size(); i++) {
+
+			out.write(1);
+			out.write(3);
+			out.write(new byte[] { 7, 7, 7 }, 0, 3);
+		}
+		out.write(legacy, legacy.length - 4, 4);
+		return out.toByteArray();
+	}
+}
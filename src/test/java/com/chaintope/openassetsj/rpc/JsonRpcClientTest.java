@@ -0,0 +1,270 @@
+package com.chaintope.openassetsj.rpc;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Utils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.chaintope.openassetsj.model.Rpc;
+import com.chaintope.openassetsj.utils.AsyncTasks;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Validates the logic written in JsonRpcClient, against a stub node answering getrawtransaction and getblockcount
+ */
+public class JsonRpcClientTest {
+
+	private static final String USER = "user";
+	private static final String PASSWORD = "password";
+
+	private HttpServer server;
+	private Rpc rpc;
+	private Map<String, byte[]> transactions = new HashMap<>();
+	private AtomicInteger requestCount = new AtomicInteger();
+	private AtomicInteger running = new AtomicInteger();
+	private AtomicInteger maxRunning = new AtomicInteger();
+	private Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<>());
+	private volatile long responseDelayMillis;
+
+	@Before
+	public void setUp() throws IOException {
+
+		for (int i = 0; i < 600; i++) {
+
+			byte[] transaction = new byte[] { 1, 0, 0, 0, (byte) i, (byte) (i >> 8) };
+			transactions.put(Sha256Hash.twiceOf(transaction).toString(), transaction);
+		}
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", this::handle);
+		server.setExecutor(Executors.newFixedThreadPool(8));
+		server.start();
+		rpc = new Rpc(USER, PASSWORD, server.getAddress().getPort(), "127.0.0.1");
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	/**
+	 * Method to test the functionality of call() for results and node errors
+	 */
+	public void callTest() throws IOException {
+
+		try (JsonRpcClient client = new JsonRpcClient(rpc)) {
+
+			assertEquals(42, client.call("getblockcount").getAsInt());
+			try {
+				client.call("stop");
+				fail();
+			} catch (JsonRpcException e) {
+				assertEquals(-32601, e.getCode());
+			}
+		}
+	}
+
+	@Test
+	/**
+	 * Method to test that 500 getrawtransaction calls take a single round trip, unknown transactions giving null
+	 */
+	public void getRawTransactionsTest() throws IOException {
+
+		List<Sha256Hash> txHashes = new ArrayList<>();
+		for (String txHash : transactions.keySet()) {
+			if (txHashes.size() < 499) {
+				txHashes.add(Sha256Hash.wrap(txHash));
+			}
+		}
+		txHashes.add(Sha256Hash.ZERO_HASH);
+
+		try (JsonRpcClient client = new JsonRpcClient(rpc)) {
+
+			List<byte[]> raw = client.getRawTransactions(txHashes);
+			assertEquals(1, requestCount.get());
+			assertEquals(500, raw.size());
+			for (int i = 0; i < 499; i++) {
+				assertArrayEquals(transactions.get(txHashes.get(i).toString()), raw.get(i));
+			}
+			assertNull(raw.get(499));
+			assertNull(client.getRawTransaction(Sha256Hash.ZERO_HASH));
+		}
+	}
+
+	@Test
+	/**
+	 * Method to test that batches are split, outstanding requests bounded and connections reused
+	 */
+	public void inFlightTest() throws Exception {
+
+		responseDelayMillis = 5;
+		List<Sha256Hash> txHashes = new ArrayList<>();
+		for (String txHash : transactions.keySet()) {
+			txHashes.add(Sha256Hash.wrap(txHash));
+		}
+
+		try (JsonRpcClient client = new JsonRpcClient(rpc, 2, 2, 25)) {
+
+			List<CompletableFuture<List<byte[]>>> futures = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				futures.add(client.getRawTransactionsAsync(txHashes));
+			}
+			for (CompletableFuture<List<byte[]>> future : futures) {
+
+				List<byte[]> raw = future.get();
+				for (int i = 0; i < txHashes.size(); i++) {
+					assertArrayEquals(transactions.get(txHashes.get(i).toString()), raw.get(i));
+				}
+			}
+			assertEquals(4 * 600 / 25, requestCount.get());
+			assertTrue(maxRunning.get() <= 2);
+			assertTrue(clientPorts.size() <= 2);
+		}
+	}
+
+	@Test
+	/**
+	 * Method to test that a call timing out through AsyncTasks cancels its HTTP request and frees its slot
+	 */
+	public void cancelTest() throws Exception {
+
+		responseDelayMillis = 2000;
+		try (JsonRpcClient client = new JsonRpcClient(rpc, 1, 1, 25)) {
+
+			CompletableFuture<JsonElement> future = AsyncTasks.supplyAsync(() -> client.call("getblockcount"),
+					AsyncTasks.defaultExecutor(), Duration.ofMillis(100));
+			try {
+				future.get();
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof TimeoutException);
+			}
+
+			// The only in-flight slot is taken until the first request is cancelled
+			responseDelayMillis = 0;
+			long start = System.nanoTime();
+			assertEquals(42, client.call("getblockcount").getAsInt());
+			assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	/**
+	 * Method to test that a rejected login fails the call
+	 */
+	public void unauthorizedTest() throws IOException {
+
+		try (JsonRpcClient client = new JsonRpcClient(new Rpc(USER, "wrong", rpc.getPort(), rpc.getHost()))) {
+			client.call("getblockcount");
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+
+		requestCount.incrementAndGet();
+		clientPorts.add(exchange.getRemoteAddress().getPort());
+		int now = running.incrementAndGet();
+		maxRunning.accumulateAndGet(now, Math::max);
+		try {
+			String expected = "Basic " + Base64.getEncoder().encodeToString((USER + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+			if (!expected.equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+
+				exchange.sendResponseHeaders(401, -1);
+				return;
+			}
+			if (responseDelayMillis > 0) {
+				Thread.sleep(responseDelayMillis);
+			}
+
+			JsonElement request = new JsonParser().parse(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+			JsonElement response;
+			if (request.isJsonArray()) {
+
+				JsonArray responses = new JsonArray();
+				// Answers in reverse order, the client matches them by ID
+				JsonArray calls = request.getAsJsonArray();
+				for (int i = calls.size() - 1; i >= 0; i--) {
+					responses.add(answer(calls.get(i).getAsJsonObject()));
+				}
+				response = responses;
+			}
+			else {
+				response = answer(request.getAsJsonObject());
+			}
+			byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			running.decrementAndGet();
+			exchange.close();
+		}
+	}
+
+	private JsonObject answer(JsonObject call) {
+
+		JsonObject response = new JsonObject();
+		response.add("id", call.get("id"));
+		String method = call.get("method").getAsString();
+		if (method.equals("getblockcount")) {
+
+			response.addProperty("result", 42);
+			response.add("error", JsonNull.INSTANCE);
+		}
+		else if (method.equals("getrawtransaction")) {
+
+			byte[] transaction = transactions.get(call.getAsJsonArray("params").get(0).getAsString());
+			if (transaction == null) {
+				response.add("error", error(-5, "No such mempool or blockchain transaction"));
+			}
+			else {
+				response.addProperty("result", Utils.HEX.encode(transaction));
+			}
+		}
+		else {
+			response.add("error", error(-32601, "Method not found"));
+		}
+		return response;
+	}
+
+	private static JsonObject error(int code, String message) {
+
+		JsonObject error = new JsonObject();
+		error.addProperty("code", code);
+		error.addProperty("message", message);
+		return error;
+	}
+}
@@ -0,0 +1,167 @@
+package com.chaintope.openassetsj.rpc;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionInput;
+import org.bitcoinj.core.TransactionOutPoint;
+import org.bitcoinj.core.TransactionOutput;
+import org.bitcoinj.params.TestNet3Params;
+import org.junit.Test;
+
+import com.chaintope.openassetsj.model.ColoredOutput;
+import com.chaintope.openassetsj.protocol.ColoringEngine;
+import com.chaintope.openassetsj.protocol.MarkerOutput;
+
+/**
+ * Validates the logic written in RawTransactionCache
+ */
+public class RawTransactionCacheTest {
+
+	private static final byte[] ISSUER = { 0x51 };
+	private static final byte[] OWNER = { 0x52 };
+
+	private NetworkParameters params = TestNet3Params.get();
+	private Map<Sha256Hash, byte[]> node = new HashMap<>();
+	private List<List<Sha256Hash>> batches = new ArrayList<>();
+	private RawTransactionSource source = txHashes -> {
+
+		batches.add(txHashes);
+		List<byte[]> transactions = new ArrayList<>();
+		for (Sha256Hash txHash : txHashes) {
+			transactions.add(node.get(txHash));
+		}
+		return CompletableFuture.completedFuture(transactions);
+	};
+
+	@Test
+	/**
+	 * Method to test that the parents of transactions with a marker output are prefetched in one batch
+	 */
+	public void prefetchTest() {
+
+		Transaction funding = transaction(Arrays.asList(new TransactionOutPoint(params, 0xFFFFFFFFL, Sha256Hash.ZERO_HASH)), ISSUER);
+		Transaction otherFunding = transaction(Arrays.asList(new TransactionOutPoint(params, 0xFFFFFFFFL, Sha256Hash.ZERO_HASH)), OWNER, OWNER);
+		Transaction issuance = transaction(Arrays.asList(outPoint(funding, 0)), OWNER, marker(100));
+		Transaction transfer = transaction(Arrays.asList(outPoint(issuance, 0), outPoint(otherFunding, 1)), marker(100), ISSUER);
+
+		RawTransactionCache cache = new RawTransactionCache(params, source);
+		assertEquals(transfer.getHash(), cache.getTransaction(transfer.getHash()).getHash());
+		assertEquals(2, batches.size());
+		assertEquals(Arrays.asList(issuance.getHash(), otherFunding.getHash()), batches.get(1));
+		assertEquals(2, cache.getPrefetchedCount());
+
+		assertEquals(issuance.getHash(), cache.getTransaction(issuance.getHash()).getHash());
+		assertEquals(Arrays.asList(funding.getHash()), batches.get(2));
+		cache.getTransaction(funding.getHash());
+		cache.getTransaction(transfer.getHash());
+		// Neither the transaction without marker output nor cached parents trigger another batch
+		assertEquals(3, batches.size());
+
+		assertNull(cache.getTransaction(Sha256Hash.ZERO_HASH));
+		assertEquals(3, cache.getStatistics().getHitCount());
+		assertEquals(2, cache.getStatistics().getMissCount());
+		assertEquals(2, cache.getPrefetchHitCount());
+		assertEquals(2.0 / 3, cache.getPrefetchEffectiveness(), 1e-9);
+	}
+
+	@Test
+	/**
+	 * Method to test that the cache stays within its count and byte bounds
+	 */
+	public void boundsTest() {
+
+		List<Sha256Hash> txHashes = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+
+			Transaction transaction = transaction(Arrays.asList(new TransactionOutPoint(params, i, Sha256Hash.ZERO_HASH)), new byte[i * 10]);
+			txHashes.add(transaction.getHash());
+		}
+
+		RawTransactionCache byCount = new RawTransactionCache(params, source, 10, Long.MAX_VALUE / 2);
+		RawTransactionCache byBytes = new RawTransactionCache(params, source, 1000, 2000);
+		long bytes = 0;
+		for (Sha256Hash txHash : txHashes) {
+
+			byCount.getRawTransaction(txHash);
+			bytes += byBytes.getRawTransaction(txHash).length;
+		}
+		assertTrue(byCount.getStatistics().getSize() <= 10);
+		assertTrue(byBytes.getStatistics().getSize() < 50);
+		assertTrue(byBytes.getStatistics().getEvictionCount() > 0);
+		assertTrue(bytes > 2000);
+	}
+
+	@Test
+	/**
+	 * Method to test that modifying the bytes returned by getRawTransaction() leaves the cache unchanged
+	 */
+	public void rawTransactionCopyTest() {
+
+		Transaction funding = transaction(Arrays.asList(new TransactionOutPoint(params, 0xFFFFFFFFL, Sha256Hash.ZERO_HASH)), ISSUER);
+		RawTransactionCache cache = new RawTransactionCache(params, source);
+
+		byte[] bytes = cache.getRawTransaction(funding.getHash());
+		Arrays.fill(bytes, (byte) 0);
+		assertArrayEquals(funding.bitcoinSerialize(), cache.getRawTransaction(funding.getHash()));
+		assertEquals(funding.getHash(), cache.getTransaction(funding.getHash()).getHash());
+		assertEquals(1, batches.size());
+	}
+
+	@Test
+	/**
+	 * Method to test the cache as the transaction provider of the coloring engine
+	 */
+	public void coloringTest() {
+
+		Transaction funding = transaction(Arrays.asList(new TransactionOutPoint(params, 0xFFFFFFFFL, Sha256Hash.ZERO_HASH)), ISSUER);
+		Transaction issuance = transaction(Arrays.asList(outPoint(funding, 0)), OWNER, marker(100));
+		Transaction transfer = transaction(Arrays.asList(outPoint(issuance, 0)), marker(60, 40), ISSUER, OWNER);
+
+		List<ColoredOutput> outputs = new ColoringEngine(params, new RawTransactionCache(params, source)).colorTransaction(transfer);
+		assertEquals(60, outputs.get(1).getAssetQuantity());
+		assertEquals(40, outputs.get(2).getAssetQuantity());
+		// The issuance is prefetched when the engine looks at the transfer inputs
+		assertEquals(Arrays.asList(issuance.getHash()), batches.get(0));
+	}
+
+	/**
+	 * Creates a transaction and makes it known to the node
+	 */
+	private Transaction transaction(List<TransactionOutPoint> outPoints, byte[]... scripts) {
+
+		Transaction transaction = new Transaction(params);
+		for (TransactionOutPoint outPoint : outPoints) {
+			transaction.addInput(new TransactionInput(params, transaction, new byte[] { 0, 0 }, outPoint));
+		}
+		for (byte[] script : scripts) {
+			transaction.addOutput(new TransactionOutput(params, transaction, Coin.valueOf(600), script));
+		}
+		node.put(transaction.getHash(), transaction.bitcoinSerialize());
+		return transaction;
+	}
+
+	private TransactionOutPoint outPoint(Transaction transaction, long index) {
+
+		return new TransactionOutPoint(params, index, transaction.getHash());
+	}
+
+	private static byte[] marker(long... quantities) {
+
+		ArrayList<Long> assetQuantities = new ArrayList<>();
+		for (long quantity : quantities) {
+			assetQuantities.add(quantity);
+		}
+		return new MarkerOutput(assetQuantities, "").buildScript().getProgram();
+	}
+}
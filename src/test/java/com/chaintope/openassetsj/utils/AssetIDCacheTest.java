@@ -0,0 +1,71 @@
+package com.chaintope.openassetsj.utils;
+
+import static org.junit.Assert.*;
+
+import org.bitcoinj.params.MainNetParams;
+import org.bitcoinj.params.TestNet3Params;
+import org.junit.Test;
+
+public class AssetIDCacheTest {
+
+	@Test
+	/**
+	 * Method to test that cached asset IDs match derived ones and are counted
+	 */
+	public void scriptToAssetIDTest() {
+
+		AssetIDCache cache = AssetIDCache.withMaximumSize(TestNet3Params.get(), 10);
+		AssetID assetID = new AssetID(TestNet3Params.get(), cache);
+		byte[] script = Utils.packHexStringToBytes("a914f9d499817e88ef7b10a88673296c6d6df2f4292d87");
+
+		assertEquals("oMb2yzA542yQgwn8XtmGefTzBv5NJ2nDjh", assetID.scriptToAssetID(script));
+		script[0] = 0;
+		assertEquals("oMb2yzA542yQgwn8XtmGefTzBv5NJ2nDjh",
+				assetID.scriptToAssetID("a914f9d499817e88ef7b10a88673296c6d6df2f4292d87"));
+		assertNotEquals("oMb2yzA542yQgwn8XtmGefTzBv5NJ2nDjh", assetID.scriptToAssetID(script));
+
+		CacheStatistics statistics = cache.getStatistics();
+		assertEquals(1, statistics.getHitCount());
+		assertEquals(2, statistics.getMissCount());
+		assertEquals(2, statistics.getSize());
+	}
+
+	@Test
+	/**
+	 * Method to test eviction of a bounded cache
+	 */
+	public void evictionTest() {
+
+		AssetIDCache cache = AssetIDCache.withMaximumSize(TestNet3Params.get(), 4);
+		AssetID assetID = new AssetID(TestNet3Params.get(), cache);
+		for (int i = 0; i < 20; i++) {
+			assetID.scriptToAssetID(new byte[] { (byte) i });
+		}
+		assertTrue(cache.size() <= 4);
+		assertTrue(cache.getStatistics().getEvictionCount() >= 16);
+
+		AssetIDCache weighted = AssetIDCache.withMaximumWeight(TestNet3Params.get(), 1000);
+		assetID = new AssetID(TestNet3Params.get(), weighted);
+		for (int i = 0; i < 20; i++) {
+			assetID.scriptToAssetID(new byte[] { (byte) i });
+		}
+		assertTrue(weighted.size() < 20);
+	}
+
+	@Test
+	/**
+	 * Method to test sharing caches between AssetID instances of a network
+	 */
+	public void sharedTest() {
+
+		assertSame(AssetIDCache.shared(TestNet3Params.get()), AssetIDCache.shared(TestNet3Params.get()));
+		assertNotSame(AssetIDCache.shared(TestNet3Params.get()), AssetIDCache.shared(MainNetParams.get()));
+
+		try {
+			new AssetID(MainNetParams.get(), AssetIDCache.shared(TestNet3Params.get()));
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -2,11 +2,18 @@ package com.chaintope.openassetsj.utils;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 import org.bitcoinj.core.NetworkParameters;
 import org.bitcoinj.params.MainNetParams;
 import org.bitcoinj.params.TestNet3Params;
 import org.junit.Test;
 
+import com.chaintope.openassetsj.model.AssetId;
+
 public class AssetIDTest {
 
 	private NetworkParameters params = TestNet3Params.get();
@@ -32,4 +39,51 @@ public class AssetIDTest {
 		assertEquals("oMb2yzA542yQgwn8XtmGefTzBv5NJ2nDjh", assetId);
 //		assertEquals(params.getId(), assetId);
 	}
+
+	@Test
+	/**
+	 * Method to test the functionality of scriptsToAssetIDs()
+	 */
+	public void scriptsToAssetIDsTest() {
+
+		Random random = new Random(1);
+		List<byte[]> scripts = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			byte[] script = new byte[1 + random.nextInt(40)];
+			random.nextBytes(script);
+			scripts.add(script);
+		}
+		scripts.add(Utils.packHexStringToBytes("a914f9d499817e88ef7b10a88673296c6d6df2f4292d87"));
+
+		List<String> assetIds = assetID.scriptsToAssetIDs(scripts);
+		assertEquals(scripts.size(), assetIds.size());
+		for (int i = 0; i < scripts.size(); i++) {
+			assertEquals(assetID.scriptToAssetID(scripts.get(i)), assetIds.get(i));
+		}
+		assertEquals("oMb2yzA542yQgwn8XtmGefTzBv5NJ2nDjh", assetIds.get(5000));
+	}
+
+	@Test
+	/**
+	 * Method to test the functionality of toAssetId() and toAssetIds()
+	 */
+	public void toAssetIdTest() {
+
+		AssetId assetId = assetID.toAssetId(Utils.packHexStringToBytes("a914f9d499817e88ef7b10a88673296c6d6df2f4292d87"));
+		assertEquals("oMb2yzA542yQgwn8XtmGefTzBv5NJ2nDjh", assetId.toString());
+		assertEquals("oWLkUn44E45cnQtsP6x1wrvJ2iRx9XyFny",
+				assetID.pubKeyHashToAssetId(Utils.packHexStringToBytes("081522820f2ccef873e47ee62b31cb9e9267e725")).toString());
+
+		Random random = new Random(2);
+		byte[][] scripts = new byte[2000][];
+		for (int i = 0; i < scripts.length; i++) {
+			scripts[i] = new byte[1 + random.nextInt(40)];
+			random.nextBytes(scripts[i]);
+		}
+		AssetId[] assetIds = new AssetId[scripts.length];
+		assetID.toAssetIds(scripts, assetIds, ForkJoinPool.commonPool());
+		for (int i = 0; i < scripts.length; i++) {
+			assertEquals(assetID.scriptToAssetID(scripts[i]), assetIds[i].toString());
+		}
+	}
 }
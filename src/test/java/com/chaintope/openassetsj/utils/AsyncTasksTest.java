@@ -0,0 +1,102 @@
+package com.chaintope.openassetsj.utils;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+/**
+ * Validates the logic written in AsyncTasks
+ */
+public class AsyncTasksTest {
+
+	@Test
+	/**
+	 * Method to test the functionality of supplyAsync() for results and failures
+	 */
+	public void supplyAsyncTest() throws Exception {
+
+		assertEquals(Integer.valueOf(42), AsyncTasks.supplyAsync(() -> 42, AsyncTasks.defaultExecutor(), Duration.ofSeconds(10)).get());
+		try {
+			AsyncTasks.supplyAsync(() -> {
+				throw new IllegalStateException("failed");
+			}, AsyncTasks.defaultExecutor(), null).get();
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	@Test
+	/**
+	 * Method to test that an expired timeout fails the future and interrupts the call
+	 */
+	public void timeoutTest() throws Exception {
+
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch interrupted = new CountDownLatch(1);
+		// The timeout is armed once execute() returns, so the call has started when it expires
+		Executor executor = task -> {
+			Thread thread = new Thread(task);
+			thread.setDaemon(true);
+			thread.start();
+			await(started);
+		};
+		CompletableFuture<Void> future = AsyncTasks.supplyAsync(() -> sleep(started, interrupted), executor, Duration.ofMillis(50));
+		try {
+			future.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	/**
+	 * Method to test that cancelling the future interrupts the call
+	 */
+	public void cancelTest() throws Exception {
+
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch interrupted = new CountDownLatch(1);
+		CompletableFuture<Void> future = AsyncTasks.supplyAsync(() -> sleep(started, interrupted), AsyncTasks.defaultExecutor(), null);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		assertTrue(future.cancel(true));
+		try {
+			future.join();
+			fail();
+		} catch (CancellationException e) {
+			// Expected
+		}
+		assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+	}
+
+	private static Void sleep(CountDownLatch started, CountDownLatch interrupted) {
+
+		started.countDown();
+		try {
+			Thread.sleep(10000);
+		} catch (InterruptedException e) {
+			interrupted.countDown();
+		}
+		return null;
+	}
+
+	private static void await(CountDownLatch latch) {
+
+		try {
+			assertTrue(latch.await(5, TimeUnit.SECONDS));
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
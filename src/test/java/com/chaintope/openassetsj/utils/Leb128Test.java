@@ -2,6 +2,9 @@ package com.chaintope.openassetsj.utils;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import org.bitcoinj.core.NetworkParameters;
 import org.bitcoinj.params.TestNet3Params;
 import org.junit.Test;
@@ -17,4 +20,49 @@ public class Leb128Test {
 		String encodedStr = Leb128.encodeLeb128(300);
 		assertEquals("ac02", encodedStr);
 	}
+
+	@Test
+	/**
+	 * Method to test the functionality of encodeLeb128() with 64-bit values
+	 */
+	public void encodeLeb128LongTest() {
+
+		assertEquals("00", Leb128.encodeLeb128(0L));
+		assertEquals("80e497d012", Leb128.encodeLeb128(5000000000L));
+		assertEquals("ffffffffffffffff7f", Leb128.encodeLeb128(Long.MAX_VALUE));
+		assertEquals("ffffffffffffffffff01", Leb128.encodeLeb128(-1L));
+		assertEquals(5000000000L, Leb128.decodeLeb128("80e497d012"));
+	}
+
+	@Test
+	/**
+	 * Method to test the functionality of writeLeb128() and readLeb128() on byte offsets
+	 */
+	public void writeReadLeb128Test() {
+
+		long[] values = { 0L, 1L, 127L, 128L, 300L, 1L << 31, 5000000000L, Long.MAX_VALUE, -1L };
+		byte[] data = new byte[values.length * Leb128.MAX_LENGTH];
+		int offset = 0;
+		for (long value : values) {
+			int next = Leb128.writeLeb128(value, data, offset);
+			assertEquals(Leb128.encodedLength(value), next - offset);
+			offset = next;
+		}
+
+		int[] cursor = { 0 };
+		ByteBuffer buffer = ByteBuffer.wrap(data, 0, offset);
+		for (long value : values) {
+			assertEquals(value, Leb128.readLeb128(data, cursor));
+			assertEquals(value, Leb128.readLeb128(buffer));
+		}
+		assertEquals(offset, cursor[0]);
+		assertFalse(buffer.hasRemaining());
+
+		cursor[0] = 0;
+		Leb128.readLeb128(Utils.packHexStringToBytes("ac"), cursor);
+		assertEquals(-1, cursor[0]);
+
+		assertEquals(Arrays.asList((Object) 300L, (Object) 3), Leb128.readLeb128("00ac0201", 1));
+		assertEquals(Arrays.asList(null, (Object) 1), Leb128.readLeb128("00ac", 1));
+	}
 }
@@ -2,6 +2,11 @@ package com.chaintope.openassetsj.utils;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
 import org.bitcoinj.core.Address;
 import org.bitcoinj.core.NetworkParameters;
 import org.bitcoinj.params.MainNetParams;
@@ -39,4 +44,93 @@ public class UtilsTest {
 		value = Integer.parseInt(Utils.readVarInteger("ff1122334400000000").get(0).toString());
 		assertEquals(1144201745, value);
 	}
+
+	@Test
+	/**
+	 * Method to test the functionality of readVarInteger() and writeVarInteger() on byte offsets
+	 */
+	public void readWriteVarIntegerTest() {
+
+		long[] values = { 0L, 252L, 253L, 65535L, 65536L, 4294967295L, 4294967296L, Long.MAX_VALUE };
+		byte[] data = new byte[values.length * 9];
+		int offset = 0;
+		for (long value : values) {
+			int next = Utils.writeVarInteger(value, data, offset);
+			assertEquals(Utils.varIntegerSize(value), next - offset);
+			offset = next;
+		}
+
+		int[] cursor = { 0 };
+		for (long value : values) {
+			assertEquals(value, Utils.readVarInteger(data, cursor));
+		}
+		assertEquals(offset, cursor[0]);
+
+		assertEquals(8721L, Utils.readVarInteger(Utils.packHexStringToBytes("fd1122"), new int[] { 0 }));
+		cursor[0] = 0;
+		Utils.readVarInteger(Utils.packHexStringToBytes("fe112233"), cursor);
+		assertEquals(-1, cursor[0]);
+	}
+
+	@Test
+	/**
+	 * Method to test the functionality of readVarInteger() on buffers, whatever their byte order
+	 */
+	public void readVarIntegerBufferTest() {
+
+		ByteBuffer buffer = ByteBuffer.wrap(Utils.packHexStringToBytes("00fd1122fe11223344ffffffffffffffffff"));
+		assertEquals(8721L, Utils.readVarInteger(buffer, 1, buffer.limit()));
+		assertEquals(3, Utils.varIntegerLength(buffer, 1));
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(0x44332211L, Utils.readVarInteger(buffer, 4, buffer.limit()));
+		assertEquals(Long.MAX_VALUE, Utils.readVarInteger(buffer, 9, buffer.limit()));
+		assertEquals(0, buffer.position());
+
+		assertEquals(-1, Utils.readVarInteger(buffer, 4, 8));
+		assertEquals(-1, Utils.readVarInteger(buffer, buffer.limit(), buffer.limit()));
+	}
+
+	@Test
+	/**
+	 * Method to test the functionality of the hex conversions
+	 */
+	public void hexConversionTest() {
+
+		byte[] bytes = { 0x00, 0x0f, (byte) 0xa0, (byte) 0xff, 0x4f };
+		assertEquals("000fa0ff4f", Utils.packByteArrayToString(bytes));
+		assertEquals("0fa0", Utils.packByteArrayToString(bytes, 1, 2));
+		assertArrayEquals(bytes, Utils.packHexStringToBytes("000FA0ff4f"));
+		assertEquals("FOO", Utils.packHexStringToCharString("464F4F"));
+		assertEquals("464f4f", Utils.unpackCharStringToHexString("FOO"));
+		assertEquals("a41", Utils.unpackCharStringToHexString("\nA"));
+
+		try {
+			Utils.packHexStringToBytes("zz");
+			fail();
+		} catch (NumberFormatException e) {
+			// expected
+		}
+	}
+
+	@Test
+	/**
+	 * Method to test the functionality of the bulk hex conversions
+	 */
+	public void bulkHexConversionTest() {
+
+		List<byte[]> scripts = Arrays.asList(
+				Utils.packHexStringToBytes("76a914"), new byte[0], Utils.packHexStringToBytes("6a084f41010002014400"));
+		String[] hexStrings = Utils.packByteArraysToStrings(scripts);
+		assertArrayEquals(new String[] { "76a914", "", "6a084f41010002014400" }, hexStrings);
+
+		int[] ends = new int[hexStrings.length];
+		byte[] buffer = new byte[4];
+		buffer = Utils.packHexStringsToBytes(Arrays.asList(hexStrings), buffer, ends);
+		assertArrayEquals(new int[] { 3, 3, 13 }, ends);
+		assertArrayEquals(scripts.get(2), Arrays.copyOfRange(buffer, ends[1], ends[2]));
+
+		byte[] reused = Utils.packHexStringsToBytes(Arrays.asList("aabb"), buffer, ends);
+		assertSame(buffer, reused);
+		assertEquals(2, ends[0]);
+	}
 }